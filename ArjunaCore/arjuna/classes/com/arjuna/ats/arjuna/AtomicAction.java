@@ -31,9 +31,16 @@
 
 package com.arjuna.ats.arjuna;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+
 import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.AbstractRecord;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.coordinator.BasicAction;
+import com.arjuna.ats.arjuna.coordinator.RecordList;
+import com.arjuna.ats.arjuna.coordinator.RecordListIterator;
+import com.arjuna.ats.arjuna.coordinator.RecordType;
 import com.arjuna.ats.arjuna.coordinator.TransactionReaper;
 import com.arjuna.ats.arjuna.coordinator.TwoPhaseCoordinator;
 import com.arjuna.ats.arjuna.coordinator.TxControl;
@@ -172,6 +179,54 @@ public class AtomicAction extends TwoPhaseCoordinator
 		return status;
 	}
 
+	/**
+	 * Commit the transaction without blocking the caller, with heuristic
+	 * reporting.
+	 *
+	 * @return a stage which completes with the <code>ActionStatus</code>
+	 *         indicating outcome.
+	 */
+
+	public CompletionStage<Integer> commitAsync ()
+	{
+		return commitAsync(true);
+	}
+
+	/**
+	 * Commit the transaction without blocking the caller. The calling thread
+	 * is disassociated from the transaction straight away and the commit
+	 * runs, as commit would, on a TwoPhaseCommitThreadPool termination thread
+	 * which is associated with the transaction for the duration. That thread
+	 * is blocked until the commit finishes, so asynchronous commits wait for
+	 * one another once every termination thread is busy.
+	 *
+	 * @return a stage which completes with the <code>ActionStatus</code>
+	 *         indicating outcome.
+	 */
+
+	public CompletionStage<Integer> commitAsync (final boolean report_heuristics)
+	{
+		ThreadActionData.purgeAction(this);
+
+		return terminateAsync(new Callable<Integer>()
+		{
+			public Integer call ()
+			{
+				ThreadActionData.pushAction(AtomicAction.this);
+
+				try
+				{
+					return commit(report_heuristics);
+				}
+				finally
+				{
+					// commit normally does this, but not if it throws
+					ThreadActionData.purgeAction(AtomicAction.this);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Abort (rollback) the transaction.
 	 *
@@ -391,6 +446,50 @@ public class AtomicAction extends TwoPhaseCoordinator
 		return true;
 	}
 
+	/**
+	 * Only plain AtomicActions, which the AtomicActionRecoveryModule recovers,
+	 * share log writes. Subclasses which use their own type may have their logs
+	 * read by Uid in places which know nothing of batch entries.
+	 *
+	 * Nor do actions with XA participants: the XA recovery orphan filters look
+	 * up the log of a branch's transaction by Uid, and would not find it inside
+	 * a batch entry before recovery has split it.
+	 *
+	 * @return <code>true</code> if the type is that of AtomicAction and there
+	 * are no XA participants.
+	 */
+
+	protected boolean batchIntentionList ()
+	{
+		return "/StateManager/BasicAction/TwoPhaseCoordinator/AtomicAction".equals(type())
+				&& !hasXAParticipant(pendingList) && !hasXAParticipant(preparedList)
+				&& !hasXAParticipant(heuristicList);
+	}
+
+	private static boolean hasXAParticipant (RecordList list)
+	{
+		if (list == null)
+			return false;
+
+		RecordListIterator iter = new RecordListIterator(list);
+		AbstractRecord rec;
+
+		while ((rec = iter.iterate()) != null)
+		{
+			switch (rec.typeIs())
+			{
+			case RecordType.JTA_RECORD:
+			case RecordType.JTAX_RECORD:
+			case RecordType.COMMITMARKABLERESOURCE:
+				return true;
+			default:
+				break;
+			}
+		}
+
+		return false;
+	}
+
 	protected int _timeout = NO_TIMEOUT;
 
 }
@@ -22,6 +22,7 @@ package com.arjuna.ats.arjuna.common;
 
 import com.arjuna.ats.arjuna.coordinator.CheckedActionFactory;
 import com.arjuna.ats.arjuna.coordinator.TransactionReaper;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitExecutorFactory;
 import com.arjuna.ats.arjuna.utils.Utility;
 import com.arjuna.ats.internal.arjuna.coordinator.CheckedActionFactoryImple;
 import com.arjuna.ats.internal.arjuna.objectstore.HashedActionStore;
@@ -50,6 +51,8 @@ public class CoordinatorEnvironmentBean implements CoordinatorEnvironmentBeanMBe
     private volatile boolean transactionLog = false; // rename to useTransactionLog ?
 
     private volatile int maxTwoPhaseCommitThreads = 100;
+    private volatile String twoPhaseCommitExecutorFactoryClassName = "com.arjuna.ats.internal.arjuna.coordinator.FixedThreadPoolExecutorFactory";
+    private volatile TwoPhaseCommitExecutorFactory twoPhaseCommitExecutorFactory = null;
 
     // public static final String TRANSACTION_LOG_REMOVAL_MARKER = "com.arjuna.ats.arjuna.coordinator.transactionLog.removalMarker";
     //private String removalMarker;
@@ -70,6 +73,8 @@ public class CoordinatorEnvironmentBean implements CoordinatorEnvironmentBeanMBe
     private volatile long txReaperCancelWaitPeriod = TransactionReaper.defaultCancelWaitPeriod;
     private volatile long txReaperCancelFailWaitPeriod = TransactionReaper.defaultCancelFailWaitPeriod;
     private volatile int txReaperZombieMax = TransactionReaper.defaultZombieMax;
+    private volatile boolean txReaperTimingWheel = false;
+    private volatile long txReaperTimingWheelTick = 10;
 
     private volatile int defaultTimeout = 60; // seconds
     private volatile boolean transactionStatusManagerEnable = true;
@@ -90,6 +95,12 @@ public class CoordinatorEnvironmentBean implements CoordinatorEnvironmentBeanMBe
 
     private volatile boolean finalizeBasicActions = false;
 
+    private volatile int actionManagerStripes = 1;
+    private volatile boolean lazyActionTracking = false;
+
+    private volatile boolean logBatching = false;
+    private volatile int maxLogBatchSize = 64;
+
     /**
      * Returns true if anynchronous commit behaviour is enabled.
      *
@@ -188,6 +199,89 @@ public class CoordinatorEnvironmentBean implements CoordinatorEnvironmentBeanMBe
         this.maxTwoPhaseCommitThreads = maxTwoPhaseCommitThreads;
     }
 
+    /**
+     * Returns the class name of the TwoPhaseCommitExecutorFactory which creates the executor
+     * for asynchronous prepare, commit and synchronizations. The implementations provided are
+     * FixedThreadPoolExecutorFactory, WorkStealingExecutorFactory and ThreadPerTaskExecutorFactory
+     * in com.arjuna.ats.internal.arjuna.coordinator.
+     *
+     * Default: "com.arjuna.ats.internal.arjuna.coordinator.FixedThreadPoolExecutorFactory"
+     *
+     * @return the class name of the TwoPhaseCommitExecutorFactory implementation to use.
+     */
+    public String getTwoPhaseCommitExecutorFactoryClassName()
+    {
+        return twoPhaseCommitExecutorFactoryClassName;
+    }
+
+    /**
+     * Sets the class name of the TwoPhaseCommitExecutorFactory implementation.
+     *
+     * @param twoPhaseCommitExecutorFactoryClassName the name of a class that implements TwoPhaseCommitExecutorFactory.
+     */
+    public void setTwoPhaseCommitExecutorFactoryClassName(String twoPhaseCommitExecutorFactoryClassName)
+    {
+        synchronized(this)
+        {
+            if(twoPhaseCommitExecutorFactoryClassName == null)
+            {
+                this.twoPhaseCommitExecutorFactory = null;
+            }
+            else if(!twoPhaseCommitExecutorFactoryClassName.equals(this.twoPhaseCommitExecutorFactoryClassName))
+            {
+                this.twoPhaseCommitExecutorFactory = null;
+            }
+            this.twoPhaseCommitExecutorFactoryClassName = twoPhaseCommitExecutorFactoryClassName;
+        }
+    }
+
+    /**
+     * Returns an instance of a class implementing TwoPhaseCommitExecutorFactory.
+     *
+     * If there is no pre-instantiated instance set and classloading or instantiation fails,
+     * this method will log appropriate warning and return null, not throw an exception.
+     *
+     * @return a TwoPhaseCommitExecutorFactory implementation instance, or null.
+     */
+    public TwoPhaseCommitExecutorFactory getTwoPhaseCommitExecutorFactory()
+    {
+        if(twoPhaseCommitExecutorFactory == null && twoPhaseCommitExecutorFactoryClassName != null)
+        {
+            synchronized (this) {
+                if(twoPhaseCommitExecutorFactory == null && twoPhaseCommitExecutorFactoryClassName != null) {
+                    TwoPhaseCommitExecutorFactory instance = ClassloadingUtility.loadAndInstantiateClass(TwoPhaseCommitExecutorFactory.class, twoPhaseCommitExecutorFactoryClassName, null);
+                    twoPhaseCommitExecutorFactory = instance;
+                }
+            }
+        }
+
+        return twoPhaseCommitExecutorFactory;
+    }
+
+    /**
+     * Sets the instance of TwoPhaseCommitExecutorFactory.
+     *
+     * @param instance an Object that implements TwoPhaseCommitExecutorFactory, or null.
+     */
+    public void setTwoPhaseCommitExecutorFactory(TwoPhaseCommitExecutorFactory instance)
+    {
+        synchronized(this)
+        {
+            TwoPhaseCommitExecutorFactory oldInstance = this.twoPhaseCommitExecutorFactory;
+            twoPhaseCommitExecutorFactory = instance;
+
+            if(instance == null)
+            {
+                this.twoPhaseCommitExecutorFactoryClassName = null;
+            }
+            else if(instance != oldInstance)
+            {
+                String name = ClassloadingUtility.getNameForClass(instance);
+                this.twoPhaseCommitExecutorFactoryClassName = name;
+            }
+        }
+    }
+
     /**
      * Returns true if one phase commit optimization is to be used.
      *
@@ -519,6 +613,53 @@ public class CoordinatorEnvironmentBean implements CoordinatorEnvironmentBeanMBe
         this.txReaperZombieMax = txReaperZombieMax;
     }
 
+    /**
+     * Returns true if the transaction reaper should keep its transactions in a hierarchical timing wheel
+     * rather than a sorted list. The wheel makes adding and removing transactions constant time, which
+     * matters when there are very many concurrent transactions with timeouts.
+     *
+     * Default: false
+     *
+     * @return true if the reaper uses a timing wheel, false otherwise.
+     */
+    public boolean isTxReaperTimingWheel()
+    {
+        return txReaperTimingWheel;
+    }
+
+    /**
+     * Sets if the transaction reaper should keep its transactions in a timing wheel.
+     *
+     * @param txReaperTimingWheel true to use a timing wheel, false to use a sorted list.
+     */
+    public void setTxReaperTimingWheel(boolean txReaperTimingWheel)
+    {
+        this.txReaperTimingWheel = txReaperTimingWheel;
+    }
+
+    /**
+     * Returns the time covered by each slot of the reaper's timing wheel, in milliseconds.
+     * Values less than 1 are treated as 1.
+     *
+     * Default: 10ms
+     *
+     * @return the timing wheel tick, in milliseconds.
+     */
+    public long getTxReaperTimingWheelTick()
+    {
+        return (txReaperTimingWheelTick <= 0 ? 1 : txReaperTimingWheelTick);
+    }
+
+    /**
+     * Sets the time covered by each slot of the reaper's timing wheel.
+     *
+     * @param txReaperTimingWheelTick the timing wheel tick, in milliseconds.
+     */
+    public void setTxReaperTimingWheelTick(long txReaperTimingWheelTick)
+    {
+        this.txReaperTimingWheelTick = txReaperTimingWheelTick;
+    }
+
     /**
      * Returns the default interval after which a transaction may be considered for timeout, in seconds.
      * Note: depending on the reaper mode and workload, transactions may not be timed out immediately.
@@ -751,6 +892,116 @@ public class CoordinatorEnvironmentBean implements CoordinatorEnvironmentBeanMBe
         this.finalizeBasicActions = finalizeBasicActions;
     }
 
+    /**
+     * Returns the number of independent maps the ActionManager spreads the running
+     * transactions over. Setting this to the number of cores stops threads beginning
+     * and ending transactions from updating the same map. Values less than 1 are
+     * treated as 1. Read once, when the ActionManager is first used.
+     *
+     * Default: 1
+     *
+     * @return the number of ActionManager stripes.
+     */
+    public int getActionManagerStripes()
+    {
+        return (actionManagerStripes <= 0 ? 1 : actionManagerStripes);
+    }
+
+    /**
+     * Sets the number of independent maps the ActionManager spreads the running
+     * transactions over.
+     *
+     * @param actionManagerStripes the number of stripes.
+     */
+    public void setActionManagerStripes(int actionManagerStripes)
+    {
+        this.actionManagerStripes = actionManagerStripes;
+    }
+
+    /**
+     * Returns true if transactions are only registered with the ActionManager once
+     * they start to prepare, rather than when they begin. Transactions which end
+     * with no participants, or which commit in one phase, are then never tracked.
+     * Statistics gathering needs every running transaction so if it is enabled
+     * transactions are always registered when they begin.
+     *
+     * Only enable this if nothing needs to look up running transactions by Uid
+     * before they prepare (the JTS interposition code does).
+     *
+     * Default: false
+     *
+     * @return true if action tracking is deferred until prepare, false otherwise.
+     */
+    public boolean isLazyActionTracking()
+    {
+        return lazyActionTracking;
+    }
+
+    /**
+     * Sets if transactions are only registered with the ActionManager once they
+     * start to prepare.
+     *
+     * @param lazyActionTracking true to defer tracking until prepare, false otherwise.
+     */
+    public void setLazyActionTracking(boolean lazyActionTracking)
+    {
+        this.lazyActionTracking = lazyActionTracking;
+    }
+
+    /**
+     * Returns true if top-level AtomicActions which prepare at the same time may
+     * share a single intentions list write. Actions which prepare while another
+     * write is in progress are written together as one batch entry, which crash
+     * recovery splits back into the individual logs. A write is never delayed to
+     * wait for others, so the batch size follows the commit rate.
+     *
+     * Transactions with XA participants, which includes every JTA transaction that
+     * has enlisted a resource, are never batched. XA recovery looks their logs up
+     * by Uid and cannot see inside a batch entry.
+     *
+     * Default: false
+     *
+     * @return true if log batching is enabled, false otherwise.
+     */
+    public boolean isLogBatching()
+    {
+        return logBatching;
+    }
+
+    /**
+     * Sets if top-level AtomicActions which prepare at the same time may share a
+     * single intentions list write.
+     *
+     * @param logBatching true to enable log batching, false to disable.
+     */
+    public void setLogBatching(boolean logBatching)
+    {
+        this.logBatching = logBatching;
+    }
+
+    /**
+     * Returns the largest number of intentions lists written as one batch entry.
+     * Values less than 1 are treated as 1.
+     *
+     * Default: 64
+     *
+     * @return the maximum log batch size.
+     */
+    public int getMaxLogBatchSize()
+    {
+        return (maxLogBatchSize <= 0 ? 1 : maxLogBatchSize);
+    }
+
+    /**
+     * Sets the largest number of intentions lists written as one batch entry.
+     *
+     * @param maxLogBatchSize the maximum log batch size.
+     */
+    public void setMaxLogBatchSize(int maxLogBatchSize)
+    {
+        this.maxLogBatchSize = maxLogBatchSize;
+    }
+
     /**
      * Returns true if asynchronous before completion behaviour is enabled.
      *
@@ -62,6 +62,10 @@ public interface CoordinatorEnvironmentBeanMBean
 
     int getTxReaperZombieMax();
 
+    boolean isTxReaperTimingWheel();
+
+    long getTxReaperTimingWheelTick();
+
     int getDefaultTimeout();
 
     boolean isTransactionStatusManagerEnable();
@@ -70,6 +74,16 @@ public interface CoordinatorEnvironmentBeanMBean
 
     String getCheckedActionFactoryClassName();
 
+    String getTwoPhaseCommitExecutorFactoryClassName();
+
+    int getActionManagerStripes();
+
+    boolean isLazyActionTracking();
+
+    boolean isLogBatching();
+
+    int getMaxLogBatchSize();
+
     @Deprecated
     String getCommunicationStore();
 }
@@ -61,6 +61,10 @@ public class CoreEnvironmentBean implements CoreEnvironmentBeanMBean
     private volatile boolean allowMultipleLastResources = false;
     private volatile boolean disableMultipleLastResourcesWarning = false;
 
+    private volatile boolean byteBufferStates = false;
+
+    private volatile int uidSequenceBlockSize = 64;
+
     @FullPropertyName(name = "timeout.factor")
     private volatile int timeoutFactor = 1;
 
@@ -332,6 +336,59 @@ public class CoreEnvironmentBean implements CoreEnvironmentBeanMBean
         this.disableMultipleLastResourcesWarning = disableMultipleLastResourcesWarning;
     }
 
+    /**
+     * Returns if object states are packed into and unpacked from java.nio.ByteBuffers,
+     * without per-call locking, rather than synchronized data streams. The packed
+     * format is the same either way. Read once, when the state classes are loaded.
+     *
+     * Default: false.
+     *
+     * @return true if byte buffer states are used, false otherwise.
+     */
+    public boolean isByteBufferStates()
+    {
+        return byteBufferStates;
+    }
+
+    /**
+     * Sets if object states are packed into and unpacked from java.nio.ByteBuffers.
+     *
+     * @param byteBufferStates true to use byte buffer states, false otherwise.
+     */
+    public void setByteBufferStates(boolean byteBufferStates)
+    {
+        this.byteBufferStates = byteBufferStates;
+    }
+
+    /**
+     * Returns the number of Uid sequence values each thread reserves at a time. New Uids
+     * take their sequence value from the calling thread's block, so threads only touch
+     * the shared counter once per block. A value of 1 reserves every value individually,
+     * which keeps the sequence values in global creation order. Read once, when the
+     * first Uid is generated.
+     *
+     * Default: 64
+     *
+     * @return the size of the per thread blocks of Uid sequence values.
+     */
+    public int getUidSequenceBlockSize()
+    {
+        if (uidSequenceBlockSize <= 0)
+            return 1;
+
+        return uidSequenceBlockSize;
+    }
+
+    /**
+     * Sets the number of Uid sequence values each thread reserves at a time.
+     *
+     * @param uidSequenceBlockSize the block size, 1 to disable per thread blocks.
+     */
+    public void setUidSequenceBlockSize(int uidSequenceBlockSize)
+    {
+        this.uidSequenceBlockSize = uidSequenceBlockSize;
+    }
+
     /**
      * @return the version control tag of the source used, or "unknown"
      */
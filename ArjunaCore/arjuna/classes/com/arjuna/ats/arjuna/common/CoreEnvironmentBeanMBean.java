@@ -43,6 +43,10 @@ public interface CoreEnvironmentBeanMBean
 
     boolean isDisableMultipleLastResourcesWarning();
 
+    boolean isByteBufferStates();
+
+    int getUidSequenceBlockSize();
+
     String getBuildVersion();
 
     String getBuildId();
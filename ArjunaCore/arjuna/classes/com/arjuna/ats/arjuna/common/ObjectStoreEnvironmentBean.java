@@ -54,6 +54,20 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
 
     private volatile boolean volatileStoreSupportAllObjUids;
 
+    private volatile boolean groupCommit = false;
+    private volatile int groupCommitWindow = 500; // in microseconds
+    private volatile int groupCommitMaxBatchSize = 256;
+
+    private volatile boolean objectStoreIndex = false;
+
+    private volatile int writeBehindFlushers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private volatile int writeBehindMaxPending = 4096;
+
+    private volatile int offHeapStoreSegments = 16;
+
+    private volatile int offHeapStoreChunkSize = 1024 * 1024;  // size in bytes
+
     @FullPropertyName(name = "com.arjuna.ats.internal.arjuna.objectstore.cacheStore.size")
     private volatile int cacheStoreSize = 10240;  // size in bytes
     @FullPropertyName(name = "com.arjuna.ats.internal.arjuna.objectstore.cacheStore.sync")
@@ -83,6 +97,12 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
 	private volatile boolean dropTable;
 	
 	private volatile boolean createTable = true;
+
+	private volatile boolean jdbcBatchWrites = false;
+
+	private volatile int jdbcBatchSize = 64;
+
+	private volatile int jdbcBatchConnections = 2;
     
     private volatile boolean exposeAllLogRecordsAsMBeans = false;
 
@@ -684,6 +704,244 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
         this.purgeTime = purgeTime;
     }
 
+    /**
+     * Returns true if concurrent synchronous writes and removals should be made durable
+     * together (group commit) rather than each paying for its own disk sync.
+     * Each caller still blocks until its own state is durable.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * Default: false
+     *
+     * @return true if group commit is enabled, false otherwise.
+     */
+    public boolean isGroupCommit()
+    {
+        return groupCommit;
+    }
+
+    /**
+     * Sets if concurrent synchronous writes and removals should share disk syncs.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * @param groupCommit true to enable group commit, false to sync each operation individually.
+     */
+    public void setGroupCommit(boolean groupCommit)
+    {
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Returns the maximum time, in microseconds, that a group commit leader will wait for
+     * other writers to join its batch before syncing. The wait is only applied when the
+     * store is under concurrent load.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * Default: 500 microseconds
+     *
+     * @return the group commit window in microseconds.
+     */
+    public int getGroupCommitWindow()
+    {
+        if (groupCommitWindow < 0)
+        {
+            return 0;
+        }
+
+        return groupCommitWindow;
+    }
+
+    /**
+     * Sets the maximum time, in microseconds, that a group commit leader will wait for a batch to fill.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * @param groupCommitWindow the window in microseconds.
+     */
+    public void setGroupCommitWindow(int groupCommitWindow)
+    {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    /**
+     * Returns the number of sync requests after which a group commit batch is flushed
+     * without waiting for the rest of the window.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * Default: 256
+     *
+     * @return the maximum group commit batch size.
+     */
+    public int getGroupCommitMaxBatchSize()
+    {
+        if (groupCommitMaxBatchSize <= 0)
+        {
+            return 1;
+        }
+
+        return groupCommitMaxBatchSize;
+    }
+
+    /**
+     * Sets the number of sync requests after which a group commit batch is flushed.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * @param groupCommitMaxBatchSize the maximum batch size.
+     */
+    public void setGroupCommitMaxBatchSize(int groupCommitMaxBatchSize)
+    {
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+    }
+
+    /**
+     * Returns true if the object store maintains a memory-mapped index of its states, so that
+     * listing the contents of the store (e.g. during recovery) does not require a directory scan.
+     * The index is not forced as states are written, so if the store was not shut down cleanly
+     * (see StoreManager.shutdown) the index is rebuilt by scanning the store on first use.
+     *
+     * Default: false
+     *
+     * @return true if the store index is enabled, false otherwise.
+     */
+    public boolean isObjectStoreIndex()
+    {
+        return objectStoreIndex;
+    }
+
+    /**
+     * Sets if the object store maintains a memory-mapped index of its states.
+     *
+     * This property is used by the following object store implementations: ActionStore, CacheStore, HashedActionStore,
+     * HashedStore, ShadowingStore, ShadowNoFileLockStore.
+     *
+     * @param objectStoreIndex true to enable the store index, false to disable.
+     */
+    public void setObjectStoreIndex(boolean objectStoreIndex)
+    {
+        this.objectStoreIndex = objectStoreIndex;
+    }
+
+    /**
+     * Returns the number of threads which apply queued work to the disk for the WriteBehindCacheStore.
+     *
+     * Default: half the number of available processors, and at least 1.
+     *
+     * @return the number of flusher threads.
+     */
+    public int getWriteBehindFlushers()
+    {
+        if (writeBehindFlushers <= 0)
+        {
+            return 1;
+        }
+
+        return writeBehindFlushers;
+    }
+
+    /**
+     * Sets the number of threads which apply queued work to the disk for the WriteBehindCacheStore.
+     *
+     * @param writeBehindFlushers the number of flusher threads.
+     */
+    public void setWriteBehindFlushers(int writeBehindFlushers)
+    {
+        this.writeBehindFlushers = writeBehindFlushers;
+    }
+
+    /**
+     * Returns the maximum number of operations the WriteBehindCacheStore queues before
+     * callers must wait for the flusher threads to catch up.
+     *
+     * Default: 4096
+     *
+     * @return the maximum number of queued operations.
+     */
+    public int getWriteBehindMaxPending()
+    {
+        if (writeBehindMaxPending <= 0)
+        {
+            return 1;
+        }
+
+        return writeBehindMaxPending;
+    }
+
+    /**
+     * Sets the maximum number of operations the WriteBehindCacheStore queues.
+     *
+     * @param writeBehindMaxPending the maximum number of queued operations.
+     */
+    public void setWriteBehindMaxPending(int writeBehindMaxPending)
+    {
+        this.writeBehindMaxPending = writeBehindMaxPending;
+    }
+
+    /**
+     * Returns the number of independently locked segments, each with its own index and
+     * memory, that the OffHeapVolatileStore divides its states between.
+     *
+     * Default: 16
+     *
+     * @return the number of segments.
+     */
+    public int getOffHeapStoreSegments()
+    {
+        if (offHeapStoreSegments <= 0)
+        {
+            return 1;
+        }
+
+        return offHeapStoreSegments;
+    }
+
+    /**
+     * Sets the number of segments for the OffHeapVolatileStore.
+     *
+     * @param offHeapStoreSegments the number of segments.
+     */
+    public void setOffHeapStoreSegments(int offHeapStoreSegments)
+    {
+        this.offHeapStoreSegments = offHeapStoreSegments;
+    }
+
+    /**
+     * Returns the size in bytes of the blocks of direct memory the OffHeapVolatileStore
+     * allocates states from. A larger state is given a block of its own.
+     *
+     * Default: 1048576
+     *
+     * @return the block size in bytes.
+     */
+    public int getOffHeapStoreChunkSize()
+    {
+        if (offHeapStoreChunkSize <= 0)
+        {
+            return 1024 * 1024;
+        }
+
+        return offHeapStoreChunkSize;
+    }
+
+    /**
+     * Sets the size in bytes of the blocks of direct memory for the OffHeapVolatileStore.
+     *
+     * @param offHeapStoreChunkSize the block size in bytes.
+     */
+    public void setOffHeapStoreChunkSize(int offHeapStoreChunkSize)
+    {
+        this.offHeapStoreChunkSize = offHeapStoreChunkSize;
+    }
+
 	/**
 	 * Returns an instance of a class implementing JDBCAccess.
 	 * 
@@ -760,6 +1018,80 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
 		this.createTable = createTable;
 	}
 
+	/**
+	 * Should the store coalesce concurrent write, remove and commit
+	 * operations into JDBC batches, with one database commit per batch.
+	 * 
+	 * Default: false
+	 * 
+	 * @return Whether to batch state updates
+	 */
+	public boolean getJdbcBatchWrites() {
+		return jdbcBatchWrites;
+	}
+
+	/**
+	 * Set whether to batch state updates.
+	 * 
+	 * @param jdbcBatchWrites
+	 *            Batch state updates
+	 */
+	public void setJdbcBatchWrites(boolean jdbcBatchWrites) {
+		this.jdbcBatchWrites = jdbcBatchWrites;
+	}
+
+	/**
+	 * The maximum number of state operations in a single batch.
+	 * 
+	 * Default: 64
+	 * 
+	 * @return The maximum batch size
+	 */
+	public int getJdbcBatchSize() {
+		if (jdbcBatchSize <= 0) {
+			return 1;
+		}
+
+		return jdbcBatchSize;
+	}
+
+	/**
+	 * Set the maximum number of state operations in a single batch.
+	 * 
+	 * @param jdbcBatchSize
+	 *            The maximum batch size
+	 */
+	public void setJdbcBatchSize(int jdbcBatchSize) {
+		this.jdbcBatchSize = jdbcBatchSize;
+	}
+
+	/**
+	 * The number of dedicated connections (and writer threads) used to
+	 * execute batches. Batches on different connections are in flight
+	 * concurrently.
+	 * 
+	 * Default: 2
+	 * 
+	 * @return The number of batch connections
+	 */
+	public int getJdbcBatchConnections() {
+		if (jdbcBatchConnections <= 0) {
+			return 1;
+		}
+
+		return jdbcBatchConnections;
+	}
+
+	/**
+	 * Set the number of dedicated connections used to execute batches.
+	 * 
+	 * @param jdbcBatchConnections
+	 *            The number of batch connections
+	 */
+	public void setJdbcBatchConnections(int jdbcBatchConnections) {
+		this.jdbcBatchConnections = jdbcBatchConnections;
+	}
+
     /**
      * @return Whether basic information about all log reccords are exposed
      */
@@ -64,6 +64,22 @@ public interface ObjectStoreEnvironmentBeanMBean
     long getTxLogSize();
 
     long getPurgeTime();
+
+    boolean isGroupCommit();
+
+    int getGroupCommitWindow();
+
+    int getGroupCommitMaxBatchSize();
+
+    boolean isObjectStoreIndex();
+
+    int getWriteBehindFlushers();
+
+    int getWriteBehindMaxPending();
+
+    int getOffHeapStoreSegments();
+
+    int getOffHeapStoreChunkSize();
     
 	/**
 	 * Get the JDBCAccess details.
@@ -108,4 +124,25 @@ public interface ObjectStoreEnvironmentBeanMBean
 	 */
 	public void setDropTable(boolean dropTable);
 
+	/**
+	 * Should the store batch state updates
+	 * 
+	 * @return Whether to batch state updates
+	 */
+	public boolean getJdbcBatchWrites();
+
+	/**
+	 * The maximum number of state operations in a single batch.
+	 * 
+	 * @return The maximum batch size
+	 */
+	public int getJdbcBatchSize();
+
+	/**
+	 * The number of dedicated connections used to execute batches.
+	 * 
+	 * @return The number of batch connections
+	 */
+	public int getJdbcBatchConnections();
+
 }
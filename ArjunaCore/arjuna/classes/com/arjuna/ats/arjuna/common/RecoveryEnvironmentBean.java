@@ -69,6 +69,11 @@ public class RecoveryEnvironmentBean implements RecoveryEnvironmentBeanMBean
     @FullPropertyName(name = "com.arjuna.ats.internal.arjuna.recovery.listener.timeoutsocket")
     private volatile boolean timeoutSocket = false;
 
+    private volatile boolean parallelRecovery = false;
+    private volatile int recoveryThreads = Runtime.getRuntime().availableProcessors();
+    private volatile int recoveryModuleTimeout = 0; // seconds
+    private volatile int recoveryBatchSize = 64;
+
     /**
      * Returns the interval between recovery scans, in seconds.
      *
@@ -602,4 +607,108 @@ public class RecoveryEnvironmentBean implements RecoveryEnvironmentBeanMBean
     {
         this.timeoutSocket = timeoutSocket;
     }
+
+    /**
+     * Returns true if the recovery modules run their passes in parallel on a pool of
+     * recovery threads, rather than one after another on the periodic recovery thread.
+     * Every module still completes its first pass before any module starts its second.
+     *
+     * Default: false
+     *
+     * @return true if parallel recovery is enabled, false if not.
+     */
+    public boolean isParallelRecovery()
+    {
+        return parallelRecovery;
+    }
+
+    /**
+     * Sets if the recovery modules run their passes in parallel.
+     *
+     * @param parallelRecovery true to enable parallel recovery, false to disable.
+     */
+    public void setParallelRecovery(boolean parallelRecovery)
+    {
+        this.parallelRecovery = parallelRecovery;
+    }
+
+    /**
+     * Returns the number of threads used for parallel recovery.
+     *
+     * Default: the number of available processors
+     *
+     * @return the number of recovery threads.
+     */
+    public int getRecoveryThreads()
+    {
+        if (recoveryThreads <= 0)
+        {
+            return 1;
+        }
+
+        return recoveryThreads;
+    }
+
+    /**
+     * Sets the number of threads used for parallel recovery.
+     *
+     * @param recoveryThreads the number of recovery threads.
+     */
+    public void setRecoveryThreads(int recoveryThreads)
+    {
+        this.recoveryThreads = recoveryThreads;
+    }
+
+    /**
+     * Returns how long, in seconds, a scan waits for each pass of a recovery module when
+     * recovering in parallel. A module which takes longer is left to finish in the background,
+     * but does not take part in the rest of the scan or in later scans until it does. 0 means
+     * wait for as long as it takes.
+     *
+     * Default: 0 seconds
+     *
+     * @return the recovery module timeout, in seconds.
+     */
+    public int getRecoveryModuleTimeout()
+    {
+        return recoveryModuleTimeout;
+    }
+
+    /**
+     * Sets how long, in seconds, a scan waits for each pass of a recovery module.
+     *
+     * @param recoveryModuleTimeout the recovery module timeout, in seconds.
+     */
+    public void setRecoveryModuleTimeout(int recoveryModuleTimeout)
+    {
+        this.recoveryModuleTimeout = recoveryModuleTimeout;
+    }
+
+    /**
+     * Returns the number of transactions a recovery module hands to each recovery thread
+     * at a time when recovering in parallel.
+     *
+     * Default: 64
+     *
+     * @return the recovery batch size.
+     */
+    public int getRecoveryBatchSize()
+    {
+        if (recoveryBatchSize <= 0)
+        {
+            return 1;
+        }
+
+        return recoveryBatchSize;
+    }
+
+    /**
+     * Sets the number of transactions handed to each recovery thread at a time.
+     *
+     * @param recoveryBatchSize the recovery batch size.
+     */
+    public void setRecoveryBatchSize(int recoveryBatchSize)
+    {
+        this.recoveryBatchSize = recoveryBatchSize;
+    }
 }
@@ -54,4 +54,12 @@ public interface RecoveryEnvironmentBeanMBean
     List<String> getRecoveryActivatorClassNames();
 
     boolean isTimeoutSocket();
+
+    boolean isParallelRecovery();
+
+    int getRecoveryThreads();
+
+    int getRecoveryModuleTimeout();
+
+    int getRecoveryBatchSize();
 }
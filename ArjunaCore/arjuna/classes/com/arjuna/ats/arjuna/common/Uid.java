@@ -31,16 +31,12 @@
 
 package com.arjuna.ats.arjuna.common;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.arjuna.ats.arjuna.exceptions.FatalError;
 import com.arjuna.ats.arjuna.logging.tsLogger;
@@ -78,12 +74,10 @@ public class Uid implements Cloneable, Serializable
             hostAddr = Utility.hostInetAddr(); /* calculated only once */
             process = Utility.getpid();
 
-            if (Uid.initTime == 0)
-                Uid.initTime = (int) (System.currentTimeMillis() / 1000);
+            long value = Uid.getValue();
 
-            sec = Uid.initTime;
-
-            other = Uid.getValue();
+            sec = (int) (value >>> 32);
+            other = (int) value;
 
             _valid = true;
 
@@ -116,14 +110,14 @@ public class Uid implements Cloneable, Serializable
         
         try
         {
-            ByteArrayInputStream ba = new ByteArrayInputStream(byteForm);
-            DataInputStream ds = new DataInputStream(ba);
-            
-            hostAddr[0] = ds.readLong();
-            hostAddr[1] = ds.readLong();
-            process = ds.readInt();
-            sec = ds.readInt();
-            other = ds.readInt();
+            if (byteForm.length < UID_SIZE)
+                throw new EOFException();
+
+            hostAddr[0] = readLong(byteForm, 0);
+            hostAddr[1] = readLong(byteForm, 8);
+            process = readInt(byteForm, 16);
+            sec = readInt(byteForm, 20);
+            other = readInt(byteForm, 24);
             
             _valid = true;
         }
@@ -322,11 +316,7 @@ public class Uid implements Cloneable, Serializable
         // no need to synchronize since object is immutable
 
         if (_stringForm == null)
-            _stringForm = Utility.longToHexString(hostAddr[0]) + Uid.breakChar
-                    + Utility.longToHexString(hostAddr[1]) + Uid.breakChar
-                    + Utility.intToHexString(process) + Uid.breakChar
-                    + Utility.intToHexString(sec) + Uid.breakChar
-                    + Utility.intToHexString(other);
+            _stringForm = buildStringForm(Uid.breakChar);
 
         return _stringForm;
     }
@@ -338,11 +328,10 @@ public class Uid implements Cloneable, Serializable
 
     public String fileStringForm ()
     {
-        return Utility.longToHexString(hostAddr[0]) + Uid.fileBreakChar
-                + Utility.longToHexString(hostAddr[1]) + Uid.fileBreakChar
-                + Utility.intToHexString(process) + Uid.fileBreakChar
-                + Utility.intToHexString(sec) + Uid.fileBreakChar
-                + Utility.intToHexString(other);
+        if (_fileStringForm == null)
+            _fileStringForm = buildStringForm(Uid.fileBreakChar);
+
+        return _fileStringForm;
     }
     
     /**
@@ -361,25 +350,20 @@ public class Uid implements Cloneable, Serializable
         
         if (_byteForm == null)
         {
-            ByteArrayOutputStream ba = new ByteArrayOutputStream(UID_SIZE);
-            DataOutputStream ds = new DataOutputStream(ba);
-            
-            try
-            {
-                ds.writeLong(hostAddr[0]);
-                ds.writeLong(hostAddr[1]);
-                ds.writeInt(process);
-                ds.writeInt(sec);
-                ds.writeInt(other);
-                //_byteForm = stringForm().getBytes(StandardCharsets.UTF_8);
-                
-                _byteForm = ba.toByteArray();
-            }
-            catch (final Throwable ex) {
-                tsLogger.i18NLogger.warn_common_Uid_getbytes(ex);
+            /*
+             * Same layout as DataOutputStream would give us (big endian),
+             * without the streams.
+             */
 
-                _byteForm = null;
-            }
+            byte[] b = new byte[UID_SIZE];
+
+            writeLong(b, 0, hostAddr[0]);
+            writeLong(b, 8, hostAddr[1]);
+            writeInt(b, 16, process);
+            writeInt(b, 20, sec);
+            writeInt(b, 24, other);
+
+            _byteForm = b;
         }
 
         return _byteForm;
@@ -426,6 +410,14 @@ public class Uid implements Cloneable, Serializable
         other = toCopy.other;
         _hashValue = toCopy._hashValue;
         _valid = toCopy._valid;
+
+        /*
+         * The cached forms are immutable too, so share them.
+         */
+
+        _stringForm = toCopy._stringForm;
+        _fileStringForm = toCopy._fileStringForm;
+        _byteForm = toCopy._byteForm;
     }
 
     /**
@@ -647,21 +639,114 @@ public class Uid implements Cloneable, Serializable
     private static final int MAX_SEQ_VALUE = 0x40000000; // 2^30, which is a bit
                                                          // conservative.
 
-    private static int getValue ()
+    /*
+     * Returns the time (the sec field) in the upper 32 bits and the sequence
+     * value (the other field) in the lower 32 bits. Values come from a block
+     * reserved by the calling thread so we only go to the shared counter
+     * once per block.
+     */
+
+    private static long getValue ()
+    {
+        SequenceBlock block = sequenceBlock.get();
+
+        if (block.next == block.limit)
+        {
+            long start = reserve(SequenceBlock.BLOCK_SIZE);
+
+            block.time = (int) (start >>> 32);
+            block.next = (int) start;
+            block.limit = block.next + SequenceBlock.BLOCK_SIZE;
+        }
+
+        return ((long) block.time << 32) | (block.next++ & 0xffffffffL);
+    }
+
+    /*
+     * The shared sequence keeps the time in the upper 32 bits and the next
+     * free value in the lower 32 bits, so a block and the time it belongs
+     * to are always reserved together. When the values run out we move on
+     * to a new time, which must differ from the last one for the Uids to
+     * stay unique.
+     */
+
+    private static long reserve (int size)
     {
-        int value = 0;
-        do
+        while (true)
         {
-            value = uidsCreated.getAndIncrement();
-            if (value == MAX_SEQ_VALUE)
+            long current = sequence.get();
+            int time = (int) (current >>> 32);
+            int start = (int) current;
+
+            if ((time == 0) || (start > MAX_SEQ_VALUE - size))
             {
-                uidsCreated.set(0);
-                initTime = (int) (System.currentTimeMillis() / 1000);
+                int now = (int) (System.currentTimeMillis() / 1000);
+
+                if (time != 0)
+                {
+                    now = Math.max(now, time + 1);
+                    start = 0;
+                }
+
+                time = now;
             }
+
+            long next = ((long) time << 32) | ((start + size) & 0xffffffffL);
+
+            if (sequence.compareAndSet(current, next))
+                return ((long) time << 32) | (start & 0xffffffffL);
         }
-        while (value >= MAX_SEQ_VALUE);
+    }
+
+    private final String buildStringForm (char separator)
+    {
+        StringBuilder sb = new StringBuilder(64);
+
+        sb.append(Utility.longToHexString(hostAddr[0])).append(separator)
+                .append(Utility.longToHexString(hostAddr[1])).append(separator)
+                .append(Utility.intToHexString(process)).append(separator)
+                .append(Utility.intToHexString(sec)).append(separator)
+                .append(Utility.intToHexString(other));
 
-        return value;
+        return sb.toString();
+    }
+
+    private static void writeLong (byte[] b, int offset, long value)
+    {
+        writeInt(b, offset, (int) (value >>> 32));
+        writeInt(b, offset + 4, (int) value);
+    }
+
+    private static void writeInt (byte[] b, int offset, int value)
+    {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    private static long readLong (byte[] b, int offset)
+    {
+        return ((long) readInt(b, offset) << 32) | (readInt(b, offset + 4) & 0xffffffffL);
+    }
+
+    private static int readInt (byte[] b, int offset)
+    {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16)
+                | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+    }
+
+    /*
+     * The calling thread's current block of sequence values.
+     */
+
+    private static final class SequenceBlock
+    {
+        static final int BLOCK_SIZE = arjPropertyManager.getCoreEnvironmentBean().getUidSequenceBlockSize();
+
+        int time;
+        int next;
+        int limit;
     }
 
     /*
@@ -743,9 +828,18 @@ public class Uid implements Cloneable, Serializable
     
     private volatile byte[] _byteForm;
 
-    private static final AtomicInteger uidsCreated = new AtomicInteger();
+    private transient volatile String _fileStringForm;
+
+    private static final AtomicLong sequence = new AtomicLong();
 
-    private static volatile int initTime;
+    private static final ThreadLocal<SequenceBlock> sequenceBlock = new ThreadLocal<SequenceBlock>()
+    {
+        @Override
+        protected SequenceBlock initialValue ()
+        {
+            return new SequenceBlock();
+        }
+    };
 
     private static final char breakChar = ':';
 
@@ -519,6 +519,38 @@ public abstract class AbstractRecord extends StateManager
 
 	public abstract boolean shouldReplace (AbstractRecord a);
 
+	/**
+	 * Is the position of this record in an intentions list decided purely by
+	 * its ordering? Records which never merge with, replace, add to or alter
+	 * the records already present (i.e., shouldMerge, shouldReplace, shouldAdd
+	 * and shouldAlter always return <code>false</code>) can return
+	 * <code>true</code>, which allows RecordList to place them without walking
+	 * the whole list. Subclasses which override any of those methods must
+	 * return <code>false</code>.
+	 *
+	 * @return <code>false</code> by default.
+	 */
+
+	public boolean insertsByOrderOnly ()
+	{
+		return false;
+	}
+
+	/**
+	 * Does this record drive the same resource manager as the given one? When
+	 * the participants of an action are prepared or committed in parallel,
+	 * records which share a resource manager are still driven one after the
+	 * other, so that a resource manager never sees two of its branches being
+	 * completed at the same time.
+	 *
+	 * @return <code>false</code> by default.
+	 */
+
+	public boolean sameResourceManager (AbstractRecord other)
+	{
+		return false;
+	}
+
 	/**
 	 * The current record is about to replace the one presented. This method is
 	 * invoked to give the current record a chance to copy information, for
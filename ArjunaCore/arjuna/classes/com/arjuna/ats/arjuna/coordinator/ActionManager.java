@@ -31,10 +31,13 @@
 
 package com.arjuna.ats.arjuna.coordinator;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
 
 /*
  * @author Mark Little (mark_little@hp.com)
@@ -75,12 +78,12 @@ public class ActionManager
 
 	public void put(BasicAction act)
 	{
-		_allActions.put(act.get_uid(), new Lifetime(act));
+		stripe(act.get_uid()).put(act.get_uid(), new Lifetime(act));
 	}
 
 	public BasicAction get(Uid id)
 	{
-		Lifetime lt = _allActions.get(id);
+		Lifetime lt = stripe(id).get(id);
 		
 		if (lt != null)
 			return lt.getAction();
@@ -96,7 +99,7 @@ public class ActionManager
     @Deprecated
 	public long getTimeAdded (Uid id)
 	{
-		Lifetime lt = _allActions.get(id);
+		Lifetime lt = stripe(id).get(id);
 		
 		if (lt != null)
 			return lt.getTimeAdded();
@@ -106,19 +109,66 @@ public class ActionManager
 	
 	public void remove(Uid id)
 	{
-		_allActions.remove(id);
+		stripe(id).remove(id);
 	}
 
     public int getNumberOfInflightTransactions()
     {
-        return _allActions.size();
+        int count = 0;
+
+        for (Map<Uid, Lifetime> actions : _allActions)
+            count += actions.size();
+
+        return count;
+    }
+
+    /**
+     * @return a snapshot of the transactions that are currently registered. The
+     * collection is not updated as transactions begin and end.
+     */
+    public Collection<BasicAction> getInflightTransactions()
+    {
+        Collection<BasicAction> inflight = new ArrayList<BasicAction>(getNumberOfInflightTransactions());
+
+        for (Map<Uid, Lifetime> actions : _allActions)
+        {
+            for (Lifetime lt : actions.values())
+                inflight.add(lt.getAction());
+        }
+
+        return inflight;
     }
 	
 	private ActionManager()
 	{
 	}
 
+	private static Map<Uid, Lifetime> stripe(Uid id)
+	{
+		if (_allActions.length == 1)
+			return _allActions[0];
+
+		int h = id.hashCode();
+
+		return _allActions[((h ^ (h >>> 16)) & 0x7fffffff) % _allActions.length];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<Uid, Lifetime>[] createStripes()
+	{
+		Map<Uid, Lifetime>[] stripes = new Map[arjPropertyManager.getCoordinatorEnvironmentBean().getActionManagerStripes()];
+
+		for (int i = 0; i < stripes.length; i++)
+			stripes[i] = new ConcurrentHashMap<Uid, Lifetime>();
+
+		return stripes;
+	}
+
 	private static final ActionManager _theManager = new ActionManager();
 
-	private static final Map<Uid, Lifetime> _allActions = new ConcurrentHashMap<Uid, Lifetime>();
+	/*
+	 * Running transactions, spread over one or more maps by Uid.
+	 */
+
+	private static final Map<Uid, Lifetime>[] _allActions = createStripes();
 }
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.arjuna.coordinator;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.arjuna.ats.internal.arjuna.thread.ThreadActionData;
+
+/**
+ * Commits, one after the other, the records of a top-level action which share
+ * a resource manager, so that different resource managers can be committed in
+ * parallel. Only the outcomes are recorded here: the action accounts for them
+ * itself once every resource manager has been told to commit.
+ */
+
+/*
+ * Default visibility.
+ */
+class AsyncParticipantCommit implements Runnable {
+    public void run() {
+        /*
+         * As for AsyncPrepare, only change the notion of the current transaction
+         * so that any abstract records that need that information can still have it.
+         */
+
+        ThreadActionData.pushAction(_theAction, false);
+
+        try {
+            for (int i = 0; i < _theRecords.size(); i++)
+                _outcomes[i] = _theRecords.get(i).topLevelCommit();
+        } finally {
+            ThreadActionData.popAction(false);
+        }
+    }
+
+    int size() {
+        return _theRecords.size();
+    }
+
+    AbstractRecord record(int index) {
+        return _theRecords.get(index);
+    }
+
+    /**
+     * @return the outcome of committing the record, or FINISH_ERROR if it never
+     * completed, so that it is left for recovery.
+     */
+    int outcome(int index) {
+        return _outcomes[index];
+    }
+
+    AsyncParticipantCommit(BasicAction act, List<AbstractRecord> recs) {
+        _theAction = act;
+        _theRecords = recs;
+        _outcomes = new int[recs.size()];
+
+        Arrays.fill(_outcomes, TwoPhaseOutcome.FINISH_ERROR);
+    }
+
+    private final BasicAction _theAction;
+    private final List<AbstractRecord> _theRecords;
+    private final int[] _outcomes;
+}
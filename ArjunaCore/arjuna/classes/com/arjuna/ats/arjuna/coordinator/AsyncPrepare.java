@@ -33,7 +33,10 @@ package com.arjuna.ats.arjuna.coordinator;
 
 import com.arjuna.ats.internal.arjuna.thread.ThreadActionData;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Instances of this class are responsible for performing asynchronous
@@ -58,22 +61,84 @@ class AsyncPrepare implements Callable<Integer> {
 
         ThreadActionData.pushAction(_theAction, false);
 
-        _outcome = _theAction.doPrepare(_reportHeuristics, _theRecord);
+        try {
+            return prepare();
+        } finally {
+            ThreadActionData.popAction(false);
+        }
+    }
+
+    /**
+     * Prepare the records in turn unless the fan-out has already been abandoned, either because another
+     * participant voted to roll back or because the transaction ran out of time. A skipped record
+     * is put back on the pendingList, exactly as a failed one would be, so that it is rolled back.
+     * The records of one job share a resource manager, so the first of them to fail stops the rest.
+     *
+     * @return the outcome of the prepare.
+     */
+    int prepare() {
+        int outcome = TwoPhaseOutcome.PREPARE_READONLY;
+        boolean prepared = false;
+
+        for (AbstractRecord record : _theRecords) {
+            boolean voted = (outcome == TwoPhaseOutcome.PREPARE_OK || outcome == TwoPhaseOutcome.PREPARE_READONLY);
+
+            if (!voted || (_abandoned != null && _abandoned.get())) {
+                _theAction.insertRecord(_theAction.pendingList, record);
+
+                if (voted)
+                    outcome = TwoPhaseOutcome.PREPARE_NOTOK;
+
+                continue;
+            }
+
+            int vote = _theAction.doPrepare(_reportHeuristics, record);
+
+            prepared = true;
 
-        ThreadActionData.popAction(false);
+            if (vote == TwoPhaseOutcome.PREPARE_OK) {
+                outcome = vote;
+            } else if (vote != TwoPhaseOutcome.PREPARE_READONLY) {
+                outcome = vote;
+
+                if (_abandoned != null)
+                    _abandoned.set(true);
+            }
+        }
+
+        _skipped = !prepared;
+        _outcome = outcome;
 
         return _outcome;
     }
 
+    /**
+     * @return true if no record was prepared because the fan-out had been abandoned.
+     */
+    boolean skipped() {
+        return _skipped;
+    }
+
     protected AsyncPrepare(BasicAction act, boolean reportHeuristics, AbstractRecord rec) {
+        this(act, reportHeuristics, rec, null);
+    }
+
+    AsyncPrepare(BasicAction act, boolean reportHeuristics, AbstractRecord rec, AtomicBoolean abandoned) {
+        this(act, reportHeuristics, Collections.singletonList(rec), abandoned);
+    }
+
+    AsyncPrepare(BasicAction act, boolean reportHeuristics, List<AbstractRecord> recs, AtomicBoolean abandoned) {
         _theAction = act;
         _outcome = TwoPhaseOutcome.PREPARE_NOTOK;
         _reportHeuristics = reportHeuristics;
-        _theRecord = rec;
+        _theRecords = recs;
+        _abandoned = abandoned;
     }
 
     private BasicAction _theAction;
     private int _outcome;
     private boolean _reportHeuristics;
-    private AbstractRecord _theRecord;
+    private List<AbstractRecord> _theRecords;
+    private final AtomicBoolean _abandoned;
+    private volatile boolean _skipped;
 };
@@ -38,7 +38,11 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.arjuna.ats.arjuna.ObjectType;
 import com.arjuna.ats.arjuna.StateManager;
@@ -212,6 +216,7 @@ public class BasicAction extends StateManager
 
         transactionStore = null;
         currentHierarchy = null;
+        deferredHierarchyType = NO_DEFERRED_HIERARCHY;
 
         _checkedAction = null;
 
@@ -234,6 +239,27 @@ public class BasicAction extends StateManager
 
     public final ActionHierarchy getHierarchy ()
     {
+        if (deferredHierarchyType != NO_DEFERRED_HIERARCHY)
+        {
+            synchronized (this)
+            {
+                /*
+                 * Top-level actions do not build their hierarchy in Begin
+                 * as most of them never need it. Do it now.
+                 */
+
+                if (deferredHierarchyType != NO_DEFERRED_HIERARCHY)
+                {
+                    ActionHierarchy hierarchy = new ActionHierarchy(ActionHierarchy.DEFAULT_HIERARCHY_DEPTH);
+
+                    hierarchy.add(get_uid(), deferredHierarchyType);
+
+                    currentHierarchy = hierarchy;
+                    deferredHierarchyType = NO_DEFERRED_HIERARCHY;
+                }
+            }
+        }
+
         return currentHierarchy;
     }
 
@@ -278,6 +304,34 @@ public class BasicAction extends StateManager
         return res;
     }
 
+    /**
+     * Drive the participants of this (top-level) action through prepare and
+     * commit in parallel, whatever the global asynchronous prepare setting.
+     * Participants which share a resource manager (see
+     * AbstractRecord.sameResourceManager) are still driven one after the
+     * other, and last resource participants are still only prepared once
+     * every other participant has voted. Must be set before the action
+     * starts to terminate.
+     *
+     * @param parallel <code>true</code> to complete the participants in
+     *        parallel.
+     */
+
+    public final void setParallelParticipants (boolean parallel)
+    {
+        parallelParticipants = parallel;
+    }
+
+    /**
+     * @return <code>true</code> if the participants of this action will be
+     *         prepared and committed in parallel.
+     */
+
+    public final boolean parallelParticipants ()
+    {
+        return parallelParticipants;
+    }
+
     /**
      * @return the number of threads associated with this transaction.
      */
@@ -325,6 +379,9 @@ public class BasicAction extends StateManager
 
     public final int hierarchyDepth ()
     {
+        if (deferredHierarchyType != NO_DEFERRED_HIERARCHY)
+            return 1;
+
         if (currentHierarchy != null)
             return currentHierarchy.depth();
         else
@@ -1313,6 +1370,14 @@ public class BasicAction extends StateManager
      */
     public List<Throwable> getDeferredThrowables() 
     {
+        /*
+         * Most transactions never defer anything so only create the list
+         * when somebody actually asks for it.
+         */
+
+        if (deferredThrowables == null)
+            deferredThrowables = new ArrayList<>();
+
         return deferredThrowables;
     }
     
@@ -1407,7 +1472,16 @@ public class BasicAction extends StateManager
                     }
                 }
 
-                ActionManager.manager().put(this);
+                /*
+                 * With lazy tracking nobody needs to find the action by its
+                 * Uid until it prepares, unless statistics are being kept.
+                 */
+
+                if (!lazyActionTracking || TxStats.enabled())
+                {
+                    ActionManager.manager().put(this);
+                    tracked = true;
+                }
 
                 if(finalizeBasicActions) {
                     finalizerObject = new BasicActionFinalizer(this);
@@ -1415,6 +1489,8 @@ public class BasicAction extends StateManager
 
                 if (TxStats.enabled())
                 {
+                    beginTime = System.nanoTime();
+
                     TxStats.getInstance().incrementTransactions();
 
                     if (parentAct != null)
@@ -1842,6 +1918,21 @@ public class BasicAction extends StateManager
      */
 
     protected synchronized final void phase2Commit (boolean reportHeuristics) throws Error
+    {
+        long startTime = TxStats.enabled() ? System.nanoTime() : 0;
+
+        try
+        {
+            phase2CommitInternal(reportHeuristics);
+        }
+        finally
+        {
+            if (startTime != 0)
+                TxStats.getInstance().recordLatency(TxStats.Phase.PHASE2, System.nanoTime() - startTime);
+        }
+    }
+
+    private final void phase2CommitInternal (boolean reportHeuristics) throws Error
     {
         if (tsLogger.logger.isTraceEnabled()) {
             tsLogger.logger.trace("BasicAction::phase2Commit() for action-id "
@@ -1870,7 +1961,10 @@ public class BasicAction extends StateManager
                 * aborting (or going with the heuristic decision).
                 */
 
-            doCommit(preparedList, reportHeuristics); /*
+            if (parallelParticipants && (actionType == ActionType.TOP_LEVEL))
+                parallelCommit(preparedList, reportHeuristics);
+            else
+                doCommit(preparedList, reportHeuristics); /*
 													   * process the
 													   * preparedList
 													   */
@@ -1958,6 +2052,21 @@ public class BasicAction extends StateManager
      */
 
     protected synchronized final void phase2Abort (boolean reportHeuristics)
+    {
+        long startTime = TxStats.enabled() ? System.nanoTime() : 0;
+
+        try
+        {
+            phase2AbortInternal(reportHeuristics);
+        }
+        finally
+        {
+            if (startTime != 0)
+                TxStats.getInstance().recordLatency(TxStats.Phase.PHASE2, System.nanoTime() - startTime);
+        }
+    }
+
+    private final void phase2AbortInternal (boolean reportHeuristics)
     {
         if (tsLogger.logger.isTraceEnabled()) {
             tsLogger.logger.trace("BasicAction::phase2Abort() for action-id "
@@ -2025,7 +2134,10 @@ public class BasicAction extends StateManager
     protected int async_prepare(boolean reportHeuristics) {
         int p = TwoPhaseOutcome.PREPARE_OK;
         Collection<AbstractRecord> lastResourceRecords = new ArrayList<AbstractRecord>();
-        Collection<Future<Integer>> tasks = new ArrayList<Future<Integer>>();
+        List<AsyncPrepare> jobs = new ArrayList<AsyncPrepare>();
+        List<FutureTask<Integer>> tasks = new ArrayList<FutureTask<Integer>>();
+        AtomicBoolean abandoned = new AtomicBoolean(false);
+        long deadline = prepareDeadline();
 
         AbstractRecord last2PCAwareRecord = pendingList.getRear();
 
@@ -2035,29 +2147,86 @@ public class BasicAction extends StateManager
             last2PCAwareRecord = pendingList.getRear();
         }
 
-        // Prepare 2PC aware resources
+        /*
+         * Take every record off the pendingList before submitting any of them: a participant which fails
+         * is put back on the pendingList and must not be picked up and prepared a second time.
+         */
+        List<AbstractRecord> records = new ArrayList<AbstractRecord>(pendingList.size() + 1);
+
         while (pendingList.size() != 0) {
-            tasks.add(TwoPhaseCommitThreadPool.submitJob(new AsyncPrepare(this, reportHeuristics, pendingList.getFront())));
+            records.add(pendingList.getFront());
         }
 
-        // Prepare the last (or only) 2PC aware resource on the callers thread
-        if (last2PCAwareRecord != null) {
-            p = doPrepare(reportHeuristics, last2PCAwareRecord);
+        if (last2PCAwareRecord != null)
+            records.add(last2PCAwareRecord);
+
+        // Records on the same resource manager are prepared one after the other by a single job
+        List<AbstractRecord> callersGroup = null;
+
+        for (List<AbstractRecord> group : groupByResourceManager(records)) {
+            if (group.get(group.size() - 1) == last2PCAwareRecord)
+                callersGroup = group;
+            else
+                jobs.add(new AsyncPrepare(this, reportHeuristics, group, abandoned));
+        }
+
+        // Prepare 2PC aware resources
+        for (AsyncPrepare job : jobs) {
+            FutureTask<Integer> task = new FutureTask<Integer>(job);
+
+            tasks.add(task);
+
+            try {
+                TwoPhaseCommitThreadPool.submitJob(task);
+            } catch (RejectedExecutionException e) {
+                // the job is run on this thread when its outcome is collected below
+            }
+        }
+
+        boolean voted = false;
+
+        // Prepare the resource manager of the last (or only) 2PC aware resource on the callers thread
+        if (callersGroup != null) {
+            if (deadline != 0 && System.nanoTime() - deadline >= 0)
+                abandoned.set(true);
+
+            AsyncPrepare job = new AsyncPrepare(this, reportHeuristics, callersGroup, abandoned);
+
+            int outcome = job.prepare();
+
+            // a skipped group did not vote, the outcome is decided by whatever caused the skip
+            if (!job.skipped()) {
+                p = outcome;
+                voted = true;
+            }
         }
 
         // Get results of the 2PC aware resources prepare
-        for (Future<Integer> task : tasks) {
+        for (int i = 0; i < tasks.size(); i++) {
+            int outcome;
+
             try {
-                int outcome = task.get();
+                outcome = awaitPrepare(tasks.get(i), deadline, abandoned);
 
-                if (p == TwoPhaseOutcome.PREPARE_OK) {
-                    p = outcome;
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                if (jobs.get(i).skipped())
+                    continue;
             } catch (ExecutionException e) {
-                e.printStackTrace();
+                tsLogger.i18NLogger.warn_coordinator_BasicAction_asyncPrepareFailed(get_uid(), e.getCause());
+
+                abandoned.set(true);
+                outcome = TwoPhaseOutcome.PREPARE_NOTOK;
             }
+
+            p = voted ? mergeVotes(p, outcome) : outcome;
+            voted = true;
+        }
+
+        /*
+         * The fan-out was abandoned without a participant voting to roll back, so the deadline passed and
+         * the skipped records are back on the pendingList: they must be rolled back, never committed.
+         */
+        if (abandoned.get() && isVoteToCommit(p)) {
+            p = TwoPhaseOutcome.PREPARE_NOTOK;
         }
 
         // Commit one phase aware resources
@@ -2073,6 +2242,124 @@ public class BasicAction extends StateManager
         return p;
     }
 
+    /**
+     * Split records into groups which share a resource manager, keeping the order of the records
+     * both across and within the groups.
+     */
+
+    private static List<List<AbstractRecord>> groupByResourceManager(List<AbstractRecord> records) {
+        List<List<AbstractRecord>> groups = new ArrayList<List<AbstractRecord>>(records.size());
+
+        for (AbstractRecord record : records) {
+            List<AbstractRecord> group = null;
+
+            for (List<AbstractRecord> candidate : groups) {
+                if (candidate.get(0).sameResourceManager(record)) {
+                    group = candidate;
+                    break;
+                }
+            }
+
+            if (group == null) {
+                group = new ArrayList<AbstractRecord>(1);
+                groups.add(group);
+            }
+
+            group.add(record);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Combine two prepare votes in the way a serial prepare does: a vote to roll back decides the
+     * outcome whatever else was voted, and otherwise a single PREPARE_OK outweighs any number of
+     * PREPARE_READONLY votes.
+     */
+
+    private static int mergeVotes(int first, int second) {
+        if (!isVoteToCommit(first))
+            return first;
+
+        if (!isVoteToCommit(second))
+            return second;
+
+        if ((first == TwoPhaseOutcome.PREPARE_READONLY) && (second == TwoPhaseOutcome.PREPARE_READONLY))
+            return TwoPhaseOutcome.PREPARE_READONLY;
+
+        return TwoPhaseOutcome.PREPARE_OK;
+    }
+
+    private static boolean isVoteToCommit(int vote) {
+        return (vote == TwoPhaseOutcome.PREPARE_OK) || (vote == TwoPhaseOutcome.PREPARE_READONLY);
+    }
+
+    /**
+     * Wait for an asynchronous prepare, abandoning the outstanding prepares if the transaction times
+     * out first. A job which no pool thread has picked up yet is run on the calling thread, so that
+     * prepare cannot stall behind a busy (or exhausted) pool.
+     *
+     * Once the deadline has passed, a job which has already started is still waited for without a
+     * bound: it is inside a participant's prepare and its record must end up on one of the lists
+     * before phase two can process it. This is no different from a serial prepare, which waits for
+     * the participant on the calling thread, and the participant's own timeout bounds the call.
+     * An interrupt does not stop the wait for the same reason and is restored afterwards.
+     */
+
+    private int awaitPrepare(FutureTask<Integer> task, long deadline, AtomicBoolean abandoned)
+            throws ExecutionException {
+        boolean interrupted = false;
+
+        try {
+            if (deadline != 0 && System.nanoTime() - deadline >= 0)
+                abandonPrepare(abandoned);
+
+            task.run();
+
+            while (deadline != 0 && !abandoned.get()) {
+                try {
+                    return task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    abandonPrepare(abandoned);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void abandonPrepare(AtomicBoolean abandoned) {
+        if (abandoned.compareAndSet(false, true))
+            tsLogger.i18NLogger.warn_coordinator_BasicAction_prepareTimeout(get_uid());
+    }
+
+    /**
+     * @return the System.nanoTime() by which prepare must complete, or 0 if the transaction has no timeout.
+     */
+
+    private long prepareDeadline() {
+        TransactionReaper reaper = TransactionReaper.existingReaper();
+
+        // don't create a reaper just to discover that this transaction was never given a timeout
+        if (reaper == null || reaper.getTimeout(this) == 0)
+            return 0;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, reaper.getRemainingTimeoutMills(this)));
+
+        return (deadline == 0) ? 1 : deadline;
+    }
+
     /**
      * Phase one of a two phase commit protocol. This function returns the
      * ouctome of the prepare operation. If all goes well it will be PREPARE_OK,
@@ -2087,6 +2374,26 @@ public class BasicAction extends StateManager
      */
 
     protected synchronized final int prepare (boolean reportHeuristics)
+    {
+        if (!TxStats.enabled())
+            return prepareInternal(reportHeuristics);
+
+        long startTime = System.nanoTime();
+
+        if (beginTime != 0)
+            TxStats.getInstance().recordLatency(TxStats.Phase.BEGIN_TO_PREPARE, startTime - beginTime);
+
+        try
+        {
+            return prepareInternal(reportHeuristics);
+        }
+        finally
+        {
+            TxStats.getInstance().recordLatency(TxStats.Phase.PREPARE, System.nanoTime() - startTime);
+        }
+    }
+
+    private final int prepareInternal (boolean reportHeuristics)
     {
         if (tsLogger.logger.isTraceEnabled()) {
             tsLogger.logger.trace("BasicAction::prepare () for action-id "
@@ -2121,6 +2428,17 @@ public class BasicAction extends StateManager
             }
         }
 
+        /*
+         * Recovery (ActionStatusService) has to be able to find us from
+         * here on.
+         */
+
+        if (!tracked)
+        {
+            ActionManager.manager().put(this);
+            tracked = true;
+        }
+
         criticalStart();
 
         createPreparedLists();
@@ -2144,7 +2462,7 @@ public class BasicAction extends StateManager
            * list.
            */
 
-        if ((actionType == ActionType.TOP_LEVEL) && (TxControl.asyncPrepare))
+        if ((actionType == ActionType.TOP_LEVEL) && (TxControl.asyncPrepare || parallelParticipants))
         {
             p = async_prepare(reportHeuristics);
         }
@@ -2290,6 +2608,8 @@ public class BasicAction extends StateManager
         {
             /* Only do this if we have some records worth saving! */
 
+            long writeStart = TxStats.enabled() ? System.nanoTime() : 0;
+            boolean batchedLog = TxControl.logBatching && batchIntentionList();
             Uid u = getSavingUid();
             String tn = type();
             OutputObjectState state = new OutputObjectState(u, tn);
@@ -2308,7 +2628,11 @@ public class BasicAction extends StateManager
             {
                 try
                 {
-                    if (!transactionStore.write_committed(u, tn, state)) {
+                    boolean written = batchedLog
+                            ? TransactionLogBatcher.forStore(transactionStore).write(u, tn, state)
+                            : transactionStore.write_committed(u, tn, state);
+
+                    if (!written) {
                         tsLogger.i18NLogger.warn_coordinator_BasicAction_46(get_uid());
 
                         criticalEnd();
@@ -2318,7 +2642,12 @@ public class BasicAction extends StateManager
                         return TwoPhaseOutcome.PREPARE_NOTOK;
                     }
                     else
+                    {
                         savedIntentionList = true;
+
+                        if (writeStart != 0)
+                            TxStats.getInstance().recordLatency(TxStats.Phase.LOG_WRITE, System.nanoTime() - writeStart);
+                    }
                 }
                 catch (ObjectStoreException e)
                 {
@@ -2367,12 +2696,6 @@ public class BasicAction extends StateManager
 
         criticalStart();
 
-        if ((heuristicList == null) && reportHeuristics)
-            heuristicList = new RecordList();
-
-        if (failedList == null)
-            failedList = new RecordList();
-
         /*
            * Since it is one-phase, the outcome from the record is the outcome of
            * the transaction. Therefore, we don't need to save much intermediary
@@ -2413,7 +2736,7 @@ public class BasicAction extends StateManager
                      */
                
                 if (p == TwoPhaseOutcome.ONE_PHASE_ERROR) {
-                   addDeferredThrowables(recordBeingHandled, deferredThrowables);
+                   addDeferredThrowables(recordBeingHandled);
                 }
 
                 if (p == TwoPhaseOutcome.FINISH_ERROR)
@@ -2423,11 +2746,14 @@ public class BasicAction extends StateManager
                               * that the transaction has aborted.
                               */
 
+                    if (failedList == null)
+                        failedList = new RecordList();
+
                     if (!failedList.insert(recordBeingHandled))
                         recordBeingHandled = null;
                     else
                     {
-                        addDeferredThrowables(recordBeingHandled, deferredThrowables);
+                        addDeferredThrowables(recordBeingHandled);
                         if (!stateToSave)
                             stateToSave = recordBeingHandled.doSave();
                     }
@@ -2453,10 +2779,13 @@ public class BasicAction extends StateManager
                 if (reportHeuristics) {
                     updateHeuristic(p, true);
 
+                    if (heuristicList == null)
+                        heuristicList = new RecordList();
+
                     if (!heuristicList.insert(recordBeingHandled))
                         recordBeingHandled = null;
                     else {
-                        addDeferredThrowables(recordBeingHandled, deferredThrowables);
+                        addDeferredThrowables(recordBeingHandled);
                         if (!stateToSave)
                             stateToSave = recordBeingHandled.doSave();
                     }
@@ -2486,7 +2815,8 @@ public class BasicAction extends StateManager
 
         if (actionType == ActionType.TOP_LEVEL)
         {
-            if (stateToSave && ((heuristicList.size() > 0) || (failedList.size() > 0)))
+            if (stateToSave && (((heuristicList != null) && (heuristicList.size() > 0))
+                    || ((failedList != null) && (failedList.size() > 0))))
             {
                 if (getStore() == null)
                 {
@@ -2726,7 +3056,7 @@ public class BasicAction extends StateManager
                         }
                     }
 
-                    addDeferredThrowables(record, deferredThrowables);
+                    addDeferredThrowables(record);
 
                     /*
                               * Prepare on this record failed - we are in trouble.
@@ -2755,7 +3085,7 @@ public class BasicAction extends StateManager
                     if (reportHeuristics)
                         updateHeuristic(p, false);
 
-                    addDeferredThrowables(record, deferredThrowables);
+                    addDeferredThrowables(record);
 
                     /*
                     * Don't add to the prepared list. We process heuristics
@@ -2889,69 +3219,9 @@ public class BasicAction extends StateManager
         {
             if (actionType == ActionType.TOP_LEVEL)
             {
-                if ((ok = recordBeingHandled.topLevelCommit()) == TwoPhaseOutcome.FINISH_OK)
-                {
-                    /*
-                          * Record successfully committed, we can delete it now.
-                          */
-
-                    recordBeingHandled = null;
+                ok = recordBeingHandled.topLevelCommit();
 
-                    updateHeuristic(TwoPhaseOutcome.FINISH_OK, true); // must
-                    // remember
-                    // that
-                    // something
-                    // has
-                    // committed
-                }
-                else
-                {
-                    if (tsLogger.logger.isTraceEnabled()) {
-                        tsLogger.logger.trace("BasicAction.doCommit for "+get_uid()+" received "+
-                                TwoPhaseOutcome.stringForm(ok)+" from "+RecordType.typeToClass(recordBeingHandled.typeIs()));
-                    }
-
-                    if ((reportHeuristics)
-                            && ((ok == TwoPhaseOutcome.HEURISTIC_ROLLBACK)
-                            || (ok == TwoPhaseOutcome.HEURISTIC_COMMIT)
-                            || (ok == TwoPhaseOutcome.HEURISTIC_MIXED) || (ok == TwoPhaseOutcome.HEURISTIC_HAZARD)))
-                    {
-                        updateHeuristic(ok, true);
-                        heuristicList.insert(recordBeingHandled);
-                        addDeferredThrowables(recordBeingHandled, deferredThrowables);
-                    }
-                    else
-                    {
-                        if (ok == TwoPhaseOutcome.NOT_PREPARED)
-                        {
-                            /*
-                                    * If this is the first resource then rollback,
-                                    * otherwise promote to HEURISTIC_HAZARD, but don't
-                                    * add to heuristicList.
-                                    */
-
-                            updateHeuristic(TwoPhaseOutcome.HEURISTIC_HAZARD, true);
-                        }
-                        else
-                        {
-                            /*
-                                    * The commit failed. Add this record to the failed
-                                    * list to indicate this. Covers statuses like FAILED_ERROR.
-                                    */
-
-
-                            if ((ok == TwoPhaseOutcome.HEURISTIC_ROLLBACK)
-                                    || (ok == TwoPhaseOutcome.HEURISTIC_COMMIT)
-                                    || (ok == TwoPhaseOutcome.HEURISTIC_MIXED) || (ok == TwoPhaseOutcome.HEURISTIC_HAZARD))
-                            {
-                                updateHeuristic(ok, true);                               
-                            }
-                            
-                            failedList.insert(recordBeingHandled);
-                            addDeferredThrowables(recordBeingHandled, deferredThrowables);
-                        }
-                    }
-                }
+                topLevelCommitted(reportHeuristics, ok);
             }
             else
             {
@@ -2988,6 +3258,199 @@ public class BasicAction extends StateManager
         return ok;
     }
 
+    /**
+     * Account for the outcome of committing recordBeingHandled in a top-level
+     * action: discard it if it committed, otherwise remember it on the
+     * heuristic or failed list.
+     */
+
+    private final void topLevelCommitted (boolean reportHeuristics, int ok)
+    {
+        if (ok == TwoPhaseOutcome.FINISH_OK)
+        {
+            /*
+                  * Record successfully committed, we can delete it now.
+                  */
+
+            recordBeingHandled = null;
+
+            updateHeuristic(TwoPhaseOutcome.FINISH_OK, true); // must
+            // remember
+            // that
+            // something
+            // has
+            // committed
+        }
+        else
+        {
+            if (tsLogger.logger.isTraceEnabled()) {
+                tsLogger.logger.trace("BasicAction.doCommit for "+get_uid()+" received "+
+                        TwoPhaseOutcome.stringForm(ok)+" from "+RecordType.typeToClass(recordBeingHandled.typeIs()));
+            }
+
+            if ((reportHeuristics)
+                    && ((ok == TwoPhaseOutcome.HEURISTIC_ROLLBACK)
+                    || (ok == TwoPhaseOutcome.HEURISTIC_COMMIT)
+                    || (ok == TwoPhaseOutcome.HEURISTIC_MIXED) || (ok == TwoPhaseOutcome.HEURISTIC_HAZARD)))
+            {
+                updateHeuristic(ok, true);
+                heuristicList.insert(recordBeingHandled);
+                addDeferredThrowables(recordBeingHandled);
+            }
+            else
+            {
+                if (ok == TwoPhaseOutcome.NOT_PREPARED)
+                {
+                    /*
+                            * If this is the first resource then rollback,
+                            * otherwise promote to HEURISTIC_HAZARD, but don't
+                            * add to heuristicList.
+                            */
+
+                    updateHeuristic(TwoPhaseOutcome.HEURISTIC_HAZARD, true);
+                }
+                else
+                {
+                    /*
+                            * The commit failed. Add this record to the failed
+                            * list to indicate this. Covers statuses like FAILED_ERROR.
+                            */
+
+
+                    if ((ok == TwoPhaseOutcome.HEURISTIC_ROLLBACK)
+                            || (ok == TwoPhaseOutcome.HEURISTIC_COMMIT)
+                            || (ok == TwoPhaseOutcome.HEURISTIC_MIXED) || (ok == TwoPhaseOutcome.HEURISTIC_HAZARD))
+                    {
+                        updateHeuristic(ok, true);                               
+                    }
+                    
+                    failedList.insert(recordBeingHandled);
+                    addDeferredThrowables(recordBeingHandled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Commit the records of a list in parallel, one job per resource manager,
+     * and then account for the outcomes on the calling thread. Since every
+     * participant is told to commit at the same time, a heuristic rollback
+     * from the first of them cannot be used to roll the others back as
+     * doCommit does. Last resource records are committed afterwards, in order.
+     */
+
+    private final void parallelCommit (RecordList rl, boolean reportHeuristics)
+    {
+        /*
+         * A commit markable resource is the commit point of the transaction, so
+         * it must commit on its own (and may still roll everything else back)
+         * before any other participant is told to commit.
+         */
+
+        if ((rl != null) && (rl.size() > 1) && (rl.peekFront().typeIs() == RecordType.COMMITMARKABLERESOURCE))
+        {
+            RecordList commitPoint = new RecordList();
+
+            commitPoint.insert(rl.getFront());
+
+            doCommit(commitPoint, reportHeuristics);
+        }
+
+        if ((rl == null) || (rl.size() < 2))
+        {
+            doCommit(rl, reportHeuristics);
+
+            return;
+        }
+
+        List<AbstractRecord> records = new ArrayList<AbstractRecord>(rl.size());
+        List<AbstractRecord> lastResourceRecords = new ArrayList<AbstractRecord>();
+        AbstractRecord rec;
+
+        while ((rec = rl.getFront()) != null)
+        {
+            if (rec.typeIs() == RecordType.LASTRESOURCE)
+                lastResourceRecords.add(rec);
+            else
+                records.add(rec);
+        }
+
+        List<AsyncParticipantCommit> jobs = new ArrayList<AsyncParticipantCommit>();
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+
+        for (List<AbstractRecord> group : groupByResourceManager(records))
+        {
+            AsyncParticipantCommit job = new AsyncParticipantCommit(this, group);
+            FutureTask<Void> task = new FutureTask<Void>(job, null);
+
+            jobs.add(job);
+            tasks.add(task);
+
+            // the first resource manager is committed on the calling thread
+            if (tasks.size() > 1)
+            {
+                try
+                {
+                    TwoPhaseCommitThreadPool.submitJob(task);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // the commit decision is already logged, so the job is run on this thread below
+                }
+            }
+        }
+
+        boolean interrupted = false;
+
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            FutureTask<Void> task = tasks.get(i);
+
+            /*
+             * Run any job which no pool thread has picked up yet ourselves, so that
+             * committing cannot stall behind a busy (or exhausted) pool.
+             */
+
+            task.run();
+
+            while (true)
+            {
+                try
+                {
+                    task.get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    tsLogger.i18NLogger.warn_coordinator_BasicAction_parallelCommitFailed(get_uid(), e.getCause());
+                    break;
+                }
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        pastFirstParticipant = true;
+
+        for (AsyncParticipantCommit job : jobs)
+        {
+            for (int i = 0; i < job.size(); i++)
+            {
+                recordBeingHandled = job.record(i);
+
+                topLevelCommitted(reportHeuristics, job.outcome(i));
+            }
+        }
+
+        for (AbstractRecord lastResourceRecord : lastResourceRecords)
+            doCommit(reportHeuristics, lastResourceRecord);
+    }
+
     /*
       * Walk down a record list extracting records and calling the appropriate
       * abort function. Discard records when done.
@@ -3052,7 +3515,7 @@ public class BasicAction extends StateManager
 
                         updateHeuristic(ok, false);
                         heuristicList.insert(recordBeingHandled);
-                        addDeferredThrowables(recordBeingHandled, deferredThrowables);
+                        addDeferredThrowables(recordBeingHandled);
                     }
                     else
                     {
@@ -3091,7 +3554,7 @@ public class BasicAction extends StateManager
 
     protected AbstractRecord insertRecord (RecordList reclist, AbstractRecord record)
     {
-        boolean lock = TxControl.asyncPrepare;
+        boolean lock = TxControl.asyncPrepare || parallelParticipants;
 
         if (lock)
         {
@@ -3110,6 +3573,18 @@ public class BasicAction extends StateManager
         return record;
     }
 
+    /**
+     * May the intentions list share a store write with those of other actions
+     * preparing at the same time? Only used if log batching is enabled.
+     *
+     * @return <code>false</code> by default.
+     */
+
+    protected boolean batchIntentionList ()
+    {
+        return false;
+    }
+
     /**
      * Do we want to check that a transaction can only be terminated by a thread
      * that has it as its current transaction? The base class has this check
@@ -3275,6 +3750,11 @@ public class BasicAction extends StateManager
                         if (!transactionStore.write_committed(u, tn, state)) {
                             tsLogger.i18NLogger.warn_coordinator_BasicAction_65();
                         }
+                        else if (TxControl.logBatching)
+                        {
+                            // the individual log now supersedes any batch entry the intentions list went into
+                            TransactionLogBatcher.forStore(transactionStore).release(u);
+                        }
                     }
                     catch (ObjectStoreException e)
                     {
@@ -3289,7 +3769,11 @@ public class BasicAction extends StateManager
                 {
                     if (savedIntentionList)
                     {
-                        if (transactionStore.remove_committed(getSavingUid(), type()))
+                        boolean removed = TxControl.logBatching
+                                ? TransactionLogBatcher.forStore(transactionStore).remove(getSavingUid(), type())
+                                : transactionStore.remove_committed(getSavingUid(), type());
+
+                        if (removed)
                         {
                             savedIntentionList = false;
                         }
@@ -3530,19 +4014,18 @@ public class BasicAction extends StateManager
             }
 
             currentHierarchy = new ActionHierarchy(parent.getHierarchy());
+            currentHierarchy.add(get_uid(), actionType);
         }
         else
         {
-            currentHierarchy = new ActionHierarchy(
-                    ActionHierarchy.DEFAULT_HIERARCHY_DEPTH);
-
             /*
-                * This is a top-level atomic action so set the signal handler block
-                * a number of signals.
+                * This is a top-level atomic action. Its hierarchy only contains
+                * itself so leave it to getHierarchy to create it if and when
+                * it is needed.
                 */
-        }
 
-        currentHierarchy.add(get_uid(), actionType);
+            deferredHierarchyType = actionType;
+        }
 
         switch (actionType)
         {
@@ -3706,12 +4189,12 @@ public class BasicAction extends StateManager
     
     /* Adds the deferred throwables of the given record to the given list of throwables. */
     
-    private void addDeferredThrowables(AbstractRecord record, List<Throwable> throwables) 
+    private void addDeferredThrowables(AbstractRecord record) 
     {
         if (record instanceof ExceptionDeferrer)
-            ((ExceptionDeferrer) record).getDeferredThrowables(throwables);
+            ((ExceptionDeferrer) record).getDeferredThrowables(getDeferredThrowables());
         else if (record.value() instanceof ExceptionDeferrer)
-            ((ExceptionDeferrer) record.value()).getDeferredThrowables(throwables);
+            ((ExceptionDeferrer) record.value()).getDeferredThrowables(getDeferredThrowables());
     }
 
     /* These (genuine) lists hold the abstract records */
@@ -3724,6 +4207,7 @@ public class BasicAction extends StateManager
     protected boolean savedIntentionList;
 
     private ActionHierarchy currentHierarchy;
+    private volatile int deferredHierarchyType = NO_DEFERRED_HIERARCHY;
     private ParticipantStore transactionStore;  // a ParticipantStore is also a TxLog
 
     //    private boolean savedIntentionList;
@@ -3738,6 +4222,7 @@ public class BasicAction extends StateManager
     private CheckedAction _checkedAction; // control what happens if threads active when terminating.
     private boolean pastFirstParticipant;  // remember where we are (were) in committing during recovery
     private boolean internalError; // is there an error internal to the TM (such as write log errors, for example)
+    private volatile boolean parallelParticipants; // prepare and commit the participants concurrently
 
     /*
       * We need to keep track of the number of threads associated with each
@@ -3749,10 +4234,27 @@ public class BasicAction extends StateManager
     private Hashtable<BasicAction, BasicAction> _childActions;
 
     private BasicActionFinalizer finalizerObject;
+
+    private static final int NO_DEFERRED_HIERARCHY = -1;
+
     private static final boolean finalizeBasicActions = arjPropertyManager.getCoordinatorEnvironmentBean().isFinalizeBasicActions();
 
+    private static final boolean lazyActionTracking = arjPropertyManager.getCoordinatorEnvironmentBean().isLazyActionTracking();
+
+    /*
+     * Has this action been put in the ActionManager?
+     */
+
+    private boolean tracked;
+
+    /*
+     * When Begin was called, if statistics are enabled.
+     */
+
+    private long beginTime;
+
     //    private Mutex _lock = new Mutex(); // TODO
-    private List<Throwable> deferredThrowables = new ArrayList<>();
+    private List<Throwable> deferredThrowables;
 
     protected boolean subordinate;
     
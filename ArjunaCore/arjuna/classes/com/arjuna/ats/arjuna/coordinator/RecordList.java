@@ -62,6 +62,7 @@ public class RecordList
         listHead = null;
         listTail = null;
         noEntries = 0;
+        ordered = true;
     }
 
     public RecordList(RecordList copy)
@@ -69,6 +70,7 @@ public class RecordList
         listHead = copy.listHead;
         listTail = copy.listTail;
         noEntries = copy.noEntries;
+        ordered = copy.ordered;
     }
 
     /**
@@ -85,6 +87,7 @@ public class RecordList
         {
             listHead = listTail = null;
             noEntries = 0;
+            ordered = true;
         }
         else if (noEntries > 1)
         {
@@ -112,6 +115,7 @@ public class RecordList
         {
             listHead = listTail = null;
             noEntries = 0;
+            ordered = true;
         }
         else if (noEntries > 1)
         {
@@ -140,6 +144,14 @@ public class RecordList
 
     public final boolean insert (AbstractRecord newRecord)
     {
+        /*
+         * A record which is placed purely by its ordering can be positioned by
+         * working back from the tail, which is where records enlisted in Uid
+         * order belong, as long as the list is known to be in order.
+         */
+        if (ordered && newRecord.insertsByOrderOnly())
+            return insertFromRear(newRecord);
+
         /* Do the insert starting at the head of the list */
         return insert(newRecord, listHead);
     }
@@ -173,6 +185,8 @@ public class RecordList
             newRecord.setPrevious(null);
             newRecord.setNext(listHead);
             listHead = newRecord;
+
+            checkOrder(newRecord);
         }
 
         noEntries++;
@@ -196,6 +210,8 @@ public class RecordList
             newRecord.setPrevious(listTail);
             newRecord.setNext(null);
             listTail = newRecord;
+
+            checkOrder(newRecord);
         }
 
         noEntries++;
@@ -229,6 +245,7 @@ public class RecordList
         {
             listHead = listTail = null;
             noEntries = 0;
+            ordered = true;
         }
         else if (noEntries > 1)
         {
@@ -374,8 +391,13 @@ public class RecordList
                     else
                     {
                         if (newRecord.shouldAlter(current))
+                        {
                             newRecord.alter(current);
 
+                            // we cannot tell whether altering the record changed its position
+                            ordered = false;
+                        }
+
                         if (newRecord.equals(current))
                         {
                             return false;
@@ -441,6 +463,58 @@ public class RecordList
             listHead = newRecord;
 
         noEntries++;
+
+        checkOrder(newRecord);
+    }
+
+    /**
+     * Ordered insertion for a record which does not interact with the others
+     * in the list. Only valid while the list is ordered, in which case it
+     * places the record exactly where the walk from the head would have done,
+     * i.e., after every record it is not less than, and rejects it if an equal
+     * record is present.
+     */
+
+    private final boolean insertFromRear (AbstractRecord newRecord)
+    {
+        AbstractRecord current = listTail;
+
+        while ((current != null) && newRecord.lessThan(current))
+            current = current.getPrevious();
+
+        if (current == null)
+        {
+            putFront(newRecord);
+
+            return true;
+        }
+
+        if (newRecord.equals(current))
+            return false;
+
+        if (current == listTail)
+            putRear(newRecord);
+        else
+            insertBefore(newRecord, current.getNext());
+
+        return true;
+    }
+
+    /**
+     * Note whether a newly linked record has broken the ordering of the list.
+     */
+
+    private final void checkOrder (AbstractRecord record)
+    {
+        if (!ordered)
+            return;
+
+        AbstractRecord previous = record.getPrevious();
+        AbstractRecord next = record.getNext();
+
+        if (((previous != null) && record.lessThan(previous))
+                || ((next != null) && next.lessThan(record)))
+            ordered = false;
     }
 
     private final void replace (AbstractRecord newRecord,
@@ -459,6 +533,8 @@ public class RecordList
         else
             listTail = newRecord;
 
+        checkOrder(newRecord);
+
         oldRecord = null;
     }
 
@@ -468,4 +544,12 @@ public class RecordList
 
     private int noEntries;
 
+    /*
+     * True while every record is no less than the one before it, which is
+     * the case unless records have been pushed explicitly out of order or
+     * merged/replaced/altered into a different position.
+     */
+
+    private boolean ordered;
+
 }
@@ -0,0 +1,446 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.arjuna.coordinator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.objectstore.TxLog;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+
+/**
+ * Merges the intentions lists of top-level actions which prepare at the same
+ * time into a single log entry, so that they share one store write.
+ *
+ * There is no batching timer. A thread which finds no write in progress writes
+ * its own entry straight away, in the normal format, so a lightly loaded system
+ * sees no extra latency. The entries of threads which arrive while a write is in
+ * progress queue up and the next of them to get in writes the whole queue (up to
+ * the configured maximum) as one entry. The batch size therefore follows the
+ * commit rate.
+ *
+ * An action which completes is trimmed from its batch entry straight away, so
+ * that recovery never replays it, and the entry is removed along with the last
+ * of its actions. If the system fails first then crash recovery uses
+ * {@link #splitBatch} to turn the entry back into the individual logs the
+ * remaining actions would have written, and recovers those as normal.
+ */
+
+public class TransactionLogBatcher
+{
+    /**
+     * The type under which batch entries are written to the store.
+     */
+
+    public static final String BATCH_TYPE = "/StateManager/BasicAction/TwoPhaseCoordinator/LogBatch";
+
+    /**
+     * @param store the store the intentions lists are written to.
+     * @return the batcher for that store.
+     */
+
+    public static TransactionLogBatcher forStore (TxLog store)
+    {
+        TransactionLogBatcher batcher = batchers.get(store);
+
+        if (batcher == null)
+        {
+            TransactionLogBatcher existing = batchers.putIfAbsent(store, batcher = new TransactionLogBatcher(store));
+
+            if (existing != null)
+                batcher = existing;
+        }
+
+        return batcher;
+    }
+
+    /**
+     * @param batchUid the Uid of a batch entry.
+     * @return true if an action in this JVM still depends upon the entry.
+     */
+
+    public static boolean isActive (Uid batchUid)
+    {
+        for (TransactionLogBatcher batcher : batchers.values())
+        {
+            if (batcher.active.containsKey(batchUid))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param store the store holding the batch entry.
+     * @param batchUid the Uid of the batch entry.
+     * @return the Uids of the actions in the batch, or null if the entry does not exist.
+     * @throws ObjectStoreException if the entry cannot be read.
+     */
+
+    public static Uid[] batchMembers (RecoveryStore store, Uid batchUid) throws ObjectStoreException
+    {
+        Map<Uid, InputObjectState> members = readBatch(store, batchUid);
+
+        return (members == null) ? null : members.keySet().toArray(new Uid[members.size()]);
+    }
+
+    /**
+     * Write each action in a batch entry back as an individual log, unless the
+     * action has since written its own, and then remove the entry.
+     *
+     * @param store the store holding the batch entry.
+     * @param batchUid the Uid of the batch entry.
+     * @return true if the entry was split and removed, false otherwise.
+     * @throws ObjectStoreException if the store fails.
+     */
+
+    public static boolean splitBatch (RecoveryStore store, Uid batchUid) throws ObjectStoreException
+    {
+        Map<Uid, InputObjectState> members = readBatch(store, batchUid);
+
+        if (members == null)
+            return false;
+
+        for (Map.Entry<Uid, InputObjectState> member : members.entrySet())
+        {
+            Uid uid = member.getKey();
+            InputObjectState state = member.getValue();
+
+            if (store.currentState(uid, state.type()) == StateStatus.OS_UNKNOWN)
+            {
+                if (!store.write_committed(uid, state.type(), new OutputObjectState(state)))
+                    return false;
+            }
+        }
+
+        return store.remove_committed(batchUid, BATCH_TYPE);
+    }
+
+    /**
+     * Write an intentions list, sharing the store write with any other actions
+     * writing at the same time.
+     *
+     * @return true if the intentions list was written, false otherwise.
+     * @throws ObjectStoreException if the store fails.
+     */
+
+    public boolean write (Uid uid, String type, OutputObjectState state) throws ObjectStoreException
+    {
+        PendingWrite pending = new PendingWrite(uid, type, state);
+        boolean interrupted = false;
+
+        synchronized (this)
+        {
+            queue.add(pending);
+        }
+
+        try
+        {
+            while (true)
+            {
+                List<PendingWrite> batch;
+
+                synchronized (this)
+                {
+                    while (writing && !pending.done)
+                    {
+                        try
+                        {
+                            wait();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            // the write has to finish one way or the other, so carry on waiting
+                            interrupted = true;
+                        }
+                    }
+
+                    if (pending.done)
+                        break;
+
+                    writing = true;
+
+                    int size = Math.min(queue.size(), maxBatchSize);
+
+                    batch = new ArrayList<PendingWrite>(queue.subList(0, size));
+                    queue.subList(0, size).clear();
+                }
+
+                try
+                {
+                    flush(batch);
+                }
+                finally
+                {
+                    synchronized (this)
+                    {
+                        for (PendingWrite written : batch)
+                            written.done = true;
+
+                        writing = false;
+
+                        notifyAll();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        if (pending.failure != null)
+            throw pending.failure;
+
+        return pending.result;
+    }
+
+    /**
+     * Remove an intentions list written with {@link #write}. If it went into a
+     * batch entry then it is trimmed from the entry, and the entry is removed
+     * along with the last of its actions.
+     *
+     * @return true if the intentions list was removed, false otherwise.
+     * @throws ObjectStoreException if the store fails.
+     */
+
+    public boolean remove (Uid uid, String type) throws ObjectStoreException
+    {
+        if (release(uid))
+            return true;
+
+        return store.remove_committed(uid, type);
+    }
+
+    /**
+     * Stop an action depending upon its batch entry, typically because it has
+     * just rewritten its intentions list as an individual log.
+     *
+     * The action is trimmed from the batch entry before this returns, so that
+     * recovery cannot write its intentions list back once it has completed.
+     *
+     * @return true if the action was in a batch, false otherwise.
+     * @throws ObjectStoreException if the batch entry could not be trimmed or removed.
+     */
+
+    public boolean release (Uid uid) throws ObjectStoreException
+    {
+        Batch batch = members.remove(uid);
+
+        if (batch == null)
+            return false;
+
+        // trims are written one at a time so that the last write holds every release before it
+        synchronized (batch)
+        {
+            batch.remaining.remove(uid);
+
+            if (batch.remaining.isEmpty())
+            {
+                active.remove(batch.uid);
+
+                store.remove_committed(batch.uid, BATCH_TYPE);
+            }
+            else if (!store.write_committed(batch.uid, BATCH_TYPE, packBatch(batch.uid, batch.remaining.values())))
+            {
+                throw new ObjectStoreException("Could not remove "+uid+" from log batch "+batch.uid);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of intentions lists waiting for the write in progress to finish.
+     */
+
+    public synchronized int getQueueDepth ()
+    {
+        return queue.size();
+    }
+
+    private TransactionLogBatcher (TxLog store)
+    {
+        this.store = store;
+    }
+
+    private void flush (List<PendingWrite> batch)
+    {
+        if (batch.size() == 1)
+        {
+            PendingWrite pending = batch.get(0);
+
+            try
+            {
+                pending.result = store.write_committed(pending.uid, pending.type, pending.state);
+            }
+            catch (ObjectStoreException e)
+            {
+                pending.failure = e;
+            }
+
+            return;
+        }
+
+        Batch written = new Batch(new Uid(), batch);
+        boolean result = false;
+        ObjectStoreException failure = null;
+
+        // register the members first so that recovery in this JVM leaves the entry alone
+        active.put(written.uid, written);
+
+        for (PendingWrite pending : batch)
+            members.put(pending.uid, written);
+
+        try
+        {
+            result = store.write_committed(written.uid, BATCH_TYPE, packBatch(written.uid, batch));
+        }
+        catch (ObjectStoreException e)
+        {
+            failure = e;
+        }
+
+        if (!result)
+        {
+            active.remove(written.uid);
+
+            for (PendingWrite pending : batch)
+                members.remove(pending.uid);
+        }
+
+        for (PendingWrite pending : batch)
+        {
+            pending.result = result;
+            pending.failure = failure;
+        }
+    }
+
+    private static OutputObjectState packBatch (Uid batchUid, Collection<PendingWrite> batch) throws ObjectStoreException
+    {
+        OutputObjectState state = new OutputObjectState(batchUid, BATCH_TYPE);
+
+        try
+        {
+            state.packInt(batch.size());
+
+            for (PendingWrite pending : batch)
+            {
+                UidHelper.packInto(pending.uid, state);
+                state.packString(pending.type);
+                state.packBytes(pending.state.buffer());
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(e);
+        }
+
+        return state;
+    }
+
+    private static Map<Uid, InputObjectState> readBatch (RecoveryStore store, Uid batchUid) throws ObjectStoreException
+    {
+        InputObjectState state = store.read_committed(batchUid, BATCH_TYPE);
+
+        if (state == null)
+            return null;
+
+        try
+        {
+            int count = state.unpackInt();
+            Map<Uid, InputObjectState> members = new HashMap<Uid, InputObjectState>(count);
+
+            for (int i = 0; i < count; i++)
+            {
+                Uid uid = UidHelper.unpackFrom(state);
+                String type = state.unpackString();
+
+                members.put(uid, new InputObjectState(uid, type, state.unpackBytes()));
+            }
+
+            return members;
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(e);
+        }
+    }
+
+    private static class PendingWrite
+    {
+        PendingWrite (Uid uid, String type, OutputObjectState state)
+        {
+            this.uid = uid;
+            this.type = type;
+            this.state = state;
+        }
+
+        final Uid uid;
+        final String type;
+        final OutputObjectState state;
+
+        boolean done;
+        boolean result;
+        ObjectStoreException failure;
+    }
+
+    private static class Batch
+    {
+        Batch (Uid uid, List<PendingWrite> batch)
+        {
+            this.uid = uid;
+
+            for (PendingWrite pending : batch)
+                remaining.put(pending.uid, pending);
+        }
+
+        final Uid uid;
+        // guarded by the Batch itself
+        final Map<Uid, PendingWrite> remaining = new LinkedHashMap<Uid, PendingWrite>();
+    }
+
+    private static final ConcurrentMap<TxLog, TransactionLogBatcher> batchers = new ConcurrentHashMap<TxLog, TransactionLogBatcher>();
+
+    private static final int maxBatchSize = arjPropertyManager.getCoordinatorEnvironmentBean().getMaxLogBatchSize();
+
+    private final TxLog store;
+    private final List<PendingWrite> queue = new ArrayList<PendingWrite>();
+    private final ConcurrentMap<Uid, Batch> members = new ConcurrentHashMap<Uid, Batch>();
+    private final ConcurrentMap<Uid, Batch> active = new ConcurrentHashMap<Uid, Batch>();
+    private boolean writing;
+}
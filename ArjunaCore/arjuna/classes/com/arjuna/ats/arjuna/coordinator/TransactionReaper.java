@@ -43,8 +43,10 @@ import com.arjuna.ats.arjuna.coordinator.listener.ReaperMonitor;
 import com.arjuna.ats.arjuna.logging.tsLogger;
 import com.arjuna.ats.internal.arjuna.coordinator.ReaperElement;
 import com.arjuna.ats.internal.arjuna.coordinator.ReaperElementManager;
+import com.arjuna.ats.internal.arjuna.coordinator.ReaperElementQueue;
 import com.arjuna.ats.internal.arjuna.coordinator.ReaperThread;
 import com.arjuna.ats.internal.arjuna.coordinator.ReaperWorkerThread;
+import com.arjuna.ats.internal.arjuna.coordinator.TimingWheelReaperElementManager;
 
 /**
  * Class to record transactions with non-zero timeout values, and class to
@@ -741,6 +743,9 @@ public class TransactionReaper
         }
 
         _reaperWorkerThread = null;
+
+        // no transaction is left to need the two phase commit threads
+        TwoPhaseCommitThreadPool.shutdown();
     }
 
     // called (indirectly) by user code doing removals on e.g. commit/rollback
@@ -896,6 +901,14 @@ public class TransactionReaper
         return _theReaper;
     }
 
+    /**
+     * @return the reaper if one has been created, or null. Unlike transactionReaper() this never
+     * instantiates the reaper.
+     */
+    static TransactionReaper existingReaper() {
+        return _theReaper;
+    }
+
     /**
      * Terminate the transaction reaper. This is a synchronous operation
      * and will only return once the reaper has been shutdown cleanly.
@@ -938,7 +951,9 @@ public class TransactionReaper
         _theReaper = null;
     }
 
-    private final ReaperElementManager _reaperElements = new ReaperElementManager();
+    private final ReaperElementQueue _reaperElements = arjPropertyManager.getCoordinatorEnvironmentBean().isTxReaperTimingWheel()
+            ? new TimingWheelReaperElementManager(arjPropertyManager.getCoordinatorEnvironmentBean().getTxReaperTimingWheelTick())
+            : new ReaperElementManager();
 
     // The keys are actually Reapable, as that's what insert takes. However, some functions use get(Object)
     // and rely on clever hashcode/equals behaviour, especially for the JTS. Thus the generics key type is Object.
@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.arjuna.coordinator;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the executors which the TwoPhaseCommitThreadPool runs asynchronous
+ * prepare, commit and synchronization work, and asynchronous terminations, on.
+ * Their threads should be daemon threads, so that they do not keep the JVM alive.
+ *
+ * @see com.arjuna.ats.arjuna.common.CoordinatorEnvironmentBean#setTwoPhaseCommitExecutorFactoryClassName(String)
+ */
+
+public interface TwoPhaseCommitExecutorFactory
+{
+    /**
+     * Create an executor. Each executor is created the first time it is needed,
+     * and is used until TwoPhaseCommitThreadPool.shutdown is called.
+     *
+     * @param maxThreads the configured maximum number of two phase commit threads,
+     *                   which an implementation may treat as a bound or ignore.
+     * @return the executor.
+     */
+
+    public ExecutorService createExecutor (int maxThreads);
+}
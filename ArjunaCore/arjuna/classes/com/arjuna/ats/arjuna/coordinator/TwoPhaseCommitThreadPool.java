@@ -1,23 +1,197 @@
 package com.arjuna.ats.arjuna.coordinator;
 
 import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.internal.arjuna.coordinator.FixedThreadPoolExecutorFactory;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Runs asynchronous prepare, commit and synchronization work, and asynchronous terminations.
+ * The executors come from the configured TwoPhaseCommitExecutorFactory. Every task is metered,
+ * so the depth of the queue and the latency of tasks (from submission to completion) can be
+ * monitored whichever executor is used.
+ */
 public class TwoPhaseCommitThreadPool {
     private static final int poolSize = arjPropertyManager.getCoordinatorEnvironmentBean().
             getMaxTwoPhaseCommitThreads();
-    private static final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+    private static final TwoPhaseCommitExecutorFactory factory = getFactory();
+
+    private static volatile ExecutorService executor;
+    private static volatile ExecutorService terminationExecutor;
+
+    private static final LongAdder queued = new LongAdder();
+    private static final LongAdder active = new LongAdder();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder totalLatency = new LongAdder();
+    private static final AtomicLong maxLatency = new AtomicLong();
+
+    private static final Executor meteredExecutor = new Executor() {
+        public void execute(Runnable command) {
+            meter(getExecutor(), command);
+        }
+    };
 
     public static Future<Integer> submitJob(Callable<Integer> job) {
-        return executor.submit(job);
+        FutureTask<Integer> task = new FutureTask<Integer>(job);
+
+        meteredExecutor.execute(task);
+
+        return task;
     }
 
     public static void submitJob(Runnable job) {
-        executor.submit(job);
+        meteredExecutor.execute(new FutureTask<Void>(job, null));
+    }
+
+    /**
+     * Run the termination of a whole transaction. A termination waits for the prepare and
+     * synchronization work which it submits to this pool, so terminations run on an executor
+     * of their own: were they to occupy every thread of the pool, that work could never be
+     * scheduled. The executor comes from the same factory as the pool and is only created
+     * once a transaction is first terminated asynchronously.
+     *
+     * A termination holds its thread until the transaction has finished, so unless the factory
+     * runs each task on a thread of its own no more than maxTwoPhaseCommitThreads asynchronous
+     * terminations run at once and the rest wait for a thread.
+     */
+    public static void submitTermination(Runnable job) {
+        meter(getTerminationExecutor(), job);
+    }
+
+    /**
+     * Shut the executors down once the work already submitted to them has finished. Should more
+     * work be submitted afterwards then new executors are created for it.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+
+        if (terminationExecutor != null) {
+            terminationExecutor.shutdown();
+            terminationExecutor = null;
+        }
     }
 
     public static CompletionService<Boolean> getNewCompletionService() {
-        return new ExecutorCompletionService<Boolean>(executor);
+        return new ExecutorCompletionService<Boolean>(meteredExecutor);
+    }
+
+    /**
+     * @return the number of tasks which have been submitted but not yet started.
+     */
+    public static long getQueueDepth() {
+        return queued.sum();
+    }
+
+    /**
+     * @return the number of tasks which are running.
+     */
+    public static long getActiveTaskCount() {
+        return active.sum();
+    }
+
+    /**
+     * @return the number of tasks which have finished.
+     */
+    public static long getCompletedTaskCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return the mean time from submission to completion of the tasks which have finished, in nanoseconds.
+     */
+    public static long getAverageTaskLatency() {
+        long count = completed.sum();
+
+        return (count == 0) ? 0 : totalLatency.sum() / count;
+    }
+
+    /**
+     * @return the longest time from submission to completion of any task, in nanoseconds.
+     */
+    public static long getMaxTaskLatency() {
+        return maxLatency.get();
+    }
+
+    private static void meter(ExecutorService executor, Runnable command) {
+        MeteredTask task = new MeteredTask(command);
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            queued.decrement();
+
+            throw e;
+        }
+    }
+
+    private static ExecutorService getExecutor() {
+        ExecutorService current = executor;
+
+        if (current == null) {
+            synchronized (TwoPhaseCommitThreadPool.class) {
+                if ((current = executor) == null)
+                    executor = current = factory.createExecutor(poolSize);
+            }
+        }
+
+        return current;
+    }
+
+    private static ExecutorService getTerminationExecutor() {
+        ExecutorService current = terminationExecutor;
+
+        if (current == null) {
+            synchronized (TwoPhaseCommitThreadPool.class) {
+                if ((current = terminationExecutor) == null)
+                    terminationExecutor = current = factory.createExecutor(poolSize);
+            }
+        }
+
+        return current;
+    }
+
+    private static TwoPhaseCommitExecutorFactory getFactory() {
+        TwoPhaseCommitExecutorFactory factory = arjPropertyManager.getCoordinatorEnvironmentBean().getTwoPhaseCommitExecutorFactory();
+
+        // a factory which could not be loaded has already been reported, so just use the default
+        if (factory == null)
+            return new FixedThreadPoolExecutorFactory();
+
+        return factory;
+    }
+
+    private static class MeteredTask implements Runnable {
+        MeteredTask(Runnable task) {
+            this.task = task;
+
+            queued.increment();
+        }
+
+        public void run() {
+            queued.decrement();
+            active.increment();
+
+            try {
+                task.run();
+            } finally {
+                long latency = System.nanoTime() - submitted;
+                long max;
+
+                active.decrement();
+                completed.increment();
+                totalLatency.add(latency);
+
+                while (latency > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, latency))
+                    ;
+            }
+        }
+
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
     }
 }
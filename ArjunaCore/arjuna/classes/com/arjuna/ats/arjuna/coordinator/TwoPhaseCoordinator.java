@@ -85,10 +85,19 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
 		    parent().removeChildAction(this);
 		}
 
+        boolean timed = TxStats.enabled() && (_synchs != null);
+        long startTime = 0;
+
         boolean canEnd = true;
         if(status() != ActionStatus.ABORT_ONLY || TxControl.isBeforeCompletionWhenRollbackOnly())
         {
+            if (timed)
+                startTime = System.nanoTime();
+
             canEnd = beforeCompletion();
+
+            if (timed)
+                TxStats.getInstance().recordLatency(TxStats.Phase.BEFORE_COMPLETION, System.nanoTime() - startTime);
         }
 
 		if (canEnd)
@@ -98,8 +107,71 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
 		else
 			outcome = super.Abort();
 
+		if (timed)
+			startTime = System.nanoTime();
+
 		afterCompletion(outcome, report_heuristics);
 
+		if (timed)
+			TxStats.getInstance().recordLatency(TxStats.Phase.AFTER_COMPLETION, System.nanoTime() - startTime);
+
+		return outcome;
+	}
+
+	/**
+	 * Terminate the transaction as end does, but without blocking the caller.
+	 * Synchronizations, prepare, the log write and phase 2 run on a
+	 * TwoPhaseCommitThreadPool termination thread, and the returned stage completes with
+	 * the outcome (or exceptionally if termination throws). Callers such as
+	 * event loops can therefore terminate many transactions while the pool
+	 * bounds the number of threads working on them.
+	 *
+	 * @return the <code>ActionStatus</code> indicating the outcome, when known.
+	 */
+
+	public CompletionStage<Integer> endAsync (final boolean report_heuristics)
+	{
+		return terminateAsync(new Callable<Integer>()
+		{
+			public Integer call ()
+			{
+				return end(report_heuristics);
+			}
+		});
+	}
+
+	/**
+	 * Run the termination on a TwoPhaseCommitThreadPool termination thread,
+	 * which is never one of the threads its own asynchronous prepare and
+	 * synchronization work is waiting for.
+	 */
+
+	protected final CompletionStage<Integer> terminateAsync (final Callable<Integer> termination)
+	{
+		final CompletableFuture<Integer> outcome = new CompletableFuture<Integer>();
+
+		try
+		{
+			TwoPhaseCommitThreadPool.submitTermination(new Runnable()
+			{
+				public void run ()
+				{
+					try
+					{
+						outcome.complete(termination.call());
+					}
+					catch (Throwable ex)
+					{
+						outcome.completeExceptionally(ex);
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException ex)
+		{
+			outcome.completeExceptionally(ex);
+		}
+
 		return outcome;
 	}
 
@@ -158,12 +230,24 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
 		    }
 
             synchronized (_synchs) {
+                // nobody waits for a synchronization registered after asynchronous beforeCompletion has ended
+                if (asyncBeforeCompletionEnded)
+                    return AddOutcome.AR_REJECTED;
+
                 if (runningSynchronizations != null) {
                     if (executingInterposedSynchs && !sr.isInterposed())
                         return AddOutcome.AR_REJECTED;
 
-                    runningSynchronizations.add(synchronizationCompletionService.submit(
-                            new AsyncBeforeSynchronization(this, sr)));
+                    if (!_synchs.add(sr))
+                        return AddOutcome.AR_REJECTED;
+
+                    if (sr.isInterposed() && !executingInterposedSynchs) {
+                        // interposed synchronizations must not start until every non interposed one has finished
+                        pendingInterposedSynchs.add(sr);
+                    } else {
+                        runningSynchronizations.add(synchronizationCompletionService.submit(
+                                new AsyncBeforeSynchronization(this, sr)));
+                    }
 
                     return AddOutcome.AR_ADDED;
                 }
@@ -193,69 +277,121 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
 		return result;
 	}
 
+    /**
+     * Run the beforeCompletion methods in two groups: the non interposed synchronizations first and then,
+     * once all of those have completed, the interposed ones. Members of a group do not depend upon each
+     * other so they run in parallel on the two phase commit thread pool, with the calling thread taking
+     * the first record of each group itself rather than sitting idle while it waits for the others.
+     *
+     * Synchronizations registered whilst a group is running join the group if they belong to it. Interposed
+     * synchronizations registered during the non interposed group are held back until the second group.
+     * Synchronizations registered once the phase has ended, whether or not it succeeded, are rejected.
+     *
+     * @return true if all synchronizations completed successfully, false otherwise.
+     */
     private boolean asyncBeforeCompletion() {
         boolean problem = false;
-        Collection<SynchronizationRecord> interposedSynchs = new ArrayList<SynchronizationRecord>();
+        List<SynchronizationRecord> group = new ArrayList<SynchronizationRecord>();
 
         synchronized (_synchs) {
             synchronizationCompletionService = TwoPhaseCommitThreadPool.getNewCompletionService();
             runningSynchronizations = new ArrayList<Future<Boolean>>(_synchs.size());
+            pendingInterposedSynchs = new ArrayList<SynchronizationRecord>();
 
             for (SynchronizationRecord synchRecord : _synchs) {
                 if (synchRecord.isInterposed())
-                    interposedSynchs.add(synchRecord);
+                    pendingInterposedSynchs.add(synchRecord);
                 else
-                    runningSynchronizations.add(synchronizationCompletionService.submit(
-                            new AsyncBeforeSynchronization(this, synchRecord)));
+                    group.add(synchRecord);
             }
-
-            // any further additions to _synchs from here on can only be interposed synchronizations
         }
 
         try {
-            int processed = 0;
+            problem = !runBeforeCompletionGroup(group);
 
-            do {
+            if (!problem) {
                 synchronized (_synchs) {
-                    if (processed == runningSynchronizations.size()) {
-                        if (executingInterposedSynchs || interposedSynchs.size() == 0)
-                            break; // all synchronizations have been executed
-
-                        // all non interposed synchronizations have been executed
-                        executingInterposedSynchs = true;
-                        processed = 0;
-                        runningSynchronizations.clear();
+                    // interposed synchronizations registered from now on are submitted as soon as they are added
+                    group = pendingInterposedSynchs;
+                    pendingInterposedSynchs = null;
+                }
 
-                        for (SynchronizationRecord synchRecord : interposedSynchs) {
-                            runningSynchronizations.add(synchronizationCompletionService.submit(
-                                    new AsyncBeforeSynchronization(this, synchRecord)));
-                        }
-                    }
+                problem = !runBeforeCompletionGroup(group);
+            }
+        }  finally {
+            // if there was a problem then cancel any remaining synchronizations
+            synchronized (_synchs) {
+                try {
+                    for (Future<Boolean> f : runningSynchronizations)
+                        f.cancel(false); // canceling a completed task is a null op
+                } finally {
+                    runningSynchronizations = null;
+                    pendingInterposedSynchs = null;
+                    asyncBeforeCompletionEnded = true;
                 }
+            }
+        }
 
-                processed += 1;
+        return !problem;
+    }
 
-                try {
-                    if (!synchronizationCompletionService.take().get())
-                        problem = true;
-                } catch (ExecutionException e) {
-                    if (_deferredThrowable == null)
-                        _deferredThrowable = e.getCause();
+    /**
+     * Run a group and wait for it, including any members registered while it runs. The group ends under the
+     * same lock that registration takes, so a late registration either joins this group or the next one.
+     */
+    private boolean runBeforeCompletionGroup(List<SynchronizationRecord> group) {
+        SynchronizationRecord inline = group.isEmpty() ? null : group.get(0);
 
-                    // the wrapper around the synchronization will already have logged the error
-                    problem = true;
-                } catch (InterruptedException e) {
-                    tsLogger.i18NLogger.warn_coordinator_TwoPhaseCoordinator_2(_currentRecord.toString(), e);
-                    problem = true;
+        synchronized (_synchs) {
+            for (int i = 1; i < group.size(); i++) {
+                runningSynchronizations.add(synchronizationCompletionService.submit(
+                        new AsyncBeforeSynchronization(this, group.get(i))));
+            }
+        }
+
+        boolean problem = false;
+
+        try {
+            if (inline != null)
+                problem = !new AsyncBeforeSynchronization(this, inline).call();
+        } catch (Exception | Error e) {
+            if (_deferredThrowable == null)
+                _deferredThrowable = e;
+
+            // the wrapper around the synchronization will already have logged the error
+            problem = true;
+        }
+
+        int processed = 0;
+
+        while (!problem) {
+            synchronized (_synchs) {
+                if (processed == runningSynchronizations.size()) {
+                    // every member of the group, including late registrations, has been executed
+                    if (executingInterposedSynchs)
+                        asyncBeforeCompletionEnded = true;
+                    else
+                        executingInterposedSynchs = true;
+
+                    runningSynchronizations.clear();
+
+                    break;
                 }
-            } while (!problem);
-        }  finally {
-            // if there was a problem then cancel any remaining synchronizations
+            }
+
+            processed += 1;
+
             try {
-                for (Future<Boolean> f : runningSynchronizations)
-                    f.cancel(false); // canceling a completed task is a null op
-            } finally {
-                runningSynchronizations.clear();
+                if (!synchronizationCompletionService.take().get())
+                    problem = true;
+            } catch (ExecutionException e) {
+                if (_deferredThrowable == null)
+                    _deferredThrowable = e.getCause();
+
+                problem = true;
+            } catch (InterruptedException e) {
+                tsLogger.i18NLogger.warn_coordinator_TwoPhaseCoordinator_2(inline.toString(), e);
+                problem = true;
             }
         }
 
@@ -338,30 +474,20 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
 	                 * on the remaining records (it's not done for rollabcks anyhow).
 	                 *
 	                 * Since Synchronizations may register other Synchronizations, we can't simply
-	                 * iterate the collection. Instead we work from an ordered copy, which we periodically
-	                 * check for freshness. The addSynchronization method uses _currentRecord to disallow
-	                 * adding records in the part of the array we have already traversed, thus all
+	                 * iterate the collection. Instead we repeatedly ask the set for the successor of the
+	                 * record we have just run. The addSynchronization method uses _currentRecord to disallow
+	                 * adding records before the part of the set we have already traversed, thus all
 	                 * Synchronization will be called and the (jta only) rules on ordering of interposed
 	                 * Synchronization will be respected.
 	                 */
 
-	                int lastIndexProcessed = -1;
-	                SynchronizationRecord[] copiedSynchs;
+	                SynchronizationRecord next;
 	                // need to guard against synchs being added while we are performing beforeCompletion processing
 	                synchronized (_synchs) {
-	                    copiedSynchs = (SynchronizationRecord[])_synchs.toArray(new SynchronizationRecord[] {});
+	                    next = _synchs.isEmpty() ? null : _synchs.first();
 	                }
-	                while( (lastIndexProcessed < _synchs.size()-1) && !problem) {
-
-	                    synchronized (_synchs) {
-	                        // if new Synchronization have been registered, refresh our copy of the collection:
-	                        if(copiedSynchs.length != _synchs.size()) {
-	                            copiedSynchs = (SynchronizationRecord[])_synchs.toArray(new SynchronizationRecord[] {});
-	                        }
-	                    }
-
-	                    lastIndexProcessed = lastIndexProcessed+1;
-	                    _currentRecord = copiedSynchs[lastIndexProcessed];
+	                while (next != null && !problem) {
+	                    _currentRecord = next;
 
 	                    try
 	                    {
@@ -386,6 +512,10 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
 	                        }
 	                        problem = true;
 	                    }
+
+	                    synchronized (_synchs) {
+	                        next = _synchs.higher(_currentRecord);
+	                    }
 	                }
 	            }
 	        }
@@ -592,10 +722,12 @@ public class TwoPhaseCoordinator extends BasicAction implements Reapable
         return synchs;
     }
 
-    private SortedSet<SynchronizationRecord> _synchs;
+    private NavigableSet<SynchronizationRecord> _synchs;
     private List<Future<Boolean>> runningSynchronizations = null;
+    private List<SynchronizationRecord> pendingInterposedSynchs = null; // interposed registrations held back by asyncBeforeCompletion
     private CompletionService<Boolean> synchronizationCompletionService = null;
     private boolean executingInterposedSynchs = false;
+    private boolean asyncBeforeCompletionEnded = false;
 	private SynchronizationRecord _currentRecord; // the most recently processed Synchronization.
 	private Throwable _deferredThrowable;
 
@@ -222,6 +222,8 @@ public class TxControl
 
     static final boolean asyncAfterSynch = arjPropertyManager.getCoordinatorEnvironmentBean().isAsyncAfterSynchronization();
 
+    static final boolean logBatching = arjPropertyManager.getCoordinatorEnvironmentBean().isLogBatching();
+
 	static final boolean onePhase = arjPropertyManager.getCoordinatorEnvironmentBean().isCommitOnePhase();
 
 	static final boolean readonlyOptimisation = arjPropertyManager.getCoordinatorEnvironmentBean().isReadonlyOptimisation();
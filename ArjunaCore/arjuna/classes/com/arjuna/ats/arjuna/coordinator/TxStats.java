@@ -31,12 +31,12 @@
 
 package com.arjuna.ats.arjuna.coordinator;
 
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.arjuna.ats.arjuna.common.CoordinatorEnvironmentBean;
 import com.arjuna.ats.arjuna.common.arjPropertyManager;
-import com.arjuna.ats.arjuna.coordinator.internal.TxCommitStatistic;
+import com.arjuna.ats.arjuna.coordinator.internal.LatencyHistogram;
 
 /**
  * This class is used to maintain statistics on transactions that have been
@@ -50,6 +50,28 @@ import com.arjuna.ats.arjuna.coordinator.internal.TxCommitStatistic;
 
 public class TxStats implements TxStatsMBean
 {
+    /**
+     * The parts of a transaction's lifetime that latencies are recorded for.
+     */
+
+    public enum Phase
+    {
+        /** From begin until prepare starts. */
+        BEGIN_TO_PREPARE,
+        /** The whole of the prepare phase, including writing the log. */
+        PREPARE,
+        /** Writing the intentions list to the object store. */
+        LOG_WRITE,
+        /** The second phase, whether it commits or rolls back. */
+        PHASE2,
+        /** Running the beforeCompletion synchronizations. */
+        BEFORE_COMPLETION,
+        /** Running the afterCompletion synchronizations. */
+        AFTER_COMPLETION,
+        /** The commit times that the average commit time is calculated from. */
+        COMMIT
+    }
+
     private static TxStats _instance = new TxStats();
 
     private static CoordinatorEnvironmentBean _environmentBean;
@@ -74,7 +96,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfTransactions()
 	{
-        return numberOfTransactions.longValue();
+        return numberOfTransactions.sum();
 	}
     
     /**
@@ -82,7 +104,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfNestedTransactions()
 	{
-        return numberOfNestedTransactions.longValue();
+        return numberOfNestedTransactions.sum();
 	}
 
 	/**
@@ -91,7 +113,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfHeuristics()
 	{
-        return numberOfHeuristics.get();
+        return numberOfHeuristics.sum();
 	}
 
 	/**
@@ -99,14 +121,14 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfCommittedTransactions()
 	{
-        return commitStatistic.get().getNumberOfCommittedTransactions();
+        return getLatencySnapshot(Phase.COMMIT).getCount();
 	}
 
 	/**
 	 * @return the average time, in nanoseconds, it has taken to commit a transaction.
 	 */
 	public long getAverageCommitTime() {
-		return commitStatistic.get().getAverageCommitTime();
+		return getLatencySnapshot(Phase.COMMIT).getMean();
 	}
 
 	/**
@@ -114,7 +136,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfAbortedTransactions()
 	{
-        return numberOfAbortedTransactions.get();
+        return numberOfAbortedTransactions.sum();
 	}
 	
 	/**
@@ -130,7 +152,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfTimedOutTransactions()
 	{
-        return numberOfTimeouts.get();
+        return numberOfTimeouts.sum();
 	}
 	
 	/**
@@ -138,7 +160,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfApplicationRollbacks()
 	{
-        return numberOfApplicationAborts.get();
+        return numberOfApplicationAborts.sum();
 	}
 
 	/**
@@ -147,7 +169,7 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfSystemRollbacks()
 	{
-		return numberOfSystemAborts.get();
+		return numberOfSystemAborts.sum();
 	}
 
 	/**
@@ -155,7 +177,31 @@ public class TxStats implements TxStatsMBean
 	 */
 	public long getNumberOfResourceRollbacks()
 	{
-        return numberOfResourceAborts.get();
+        return numberOfResourceAborts.sum();
+	}
+
+	/**
+	 * @param phase the part of the transaction lifetime.
+	 * @return the latencies, in nanoseconds, recorded for the given phase.
+	 */
+	public LatencyHistogram.Snapshot getLatencySnapshot(Phase phase)
+	{
+		return histogram(phase).snapshot();
+	}
+
+	public long getLatencyPercentile(String phase, double percentile)
+	{
+		return getLatencySnapshot(toPhase(phase)).getValueAtPercentile(percentile);
+	}
+
+	public long getLatencyCount(String phase)
+	{
+		return getLatencySnapshot(toPhase(phase)).getCount();
+	}
+
+	public long getMaxLatency(String phase)
+	{
+		return getLatencySnapshot(toPhase(phase)).getMax();
 	}
 
 	/**
@@ -187,21 +233,32 @@ public class TxStats implements TxStatsMBean
 				+ getNumberOfResourceRollbacks());
 		pw.println("Average time (in nanosecs) to commit a transaction: "
 				+ getAverageCommitTime());
+
+		for (Phase phase : Phase.values())
+		{
+			LatencyHistogram.Snapshot snapshot = getLatencySnapshot(phase);
+
+			pw.println("Latency (in nanosecs) of " + phase + ": count " + snapshot.getCount()
+					+ ", p50 " + snapshot.getValueAtPercentile(50)
+					+ ", p99 " + snapshot.getValueAtPercentile(99)
+					+ ", p99.9 " + snapshot.getValueAtPercentile(99.9)
+					+ ", max " + snapshot.getMax());
+		}
 	}
 
 	void incrementTransactions()
 	{
-        numberOfTransactions.incrementAndGet();
+        numberOfTransactions.increment();
 	}
 
 	void incrementNestedTransactions()
 	{
-        numberOfNestedTransactions.incrementAndGet();
+        numberOfNestedTransactions.increment();
 	}
 
 	void incrementAbortedTransactions()
 	{
-        numberOfAbortedTransactions.incrementAndGet();
+        numberOfAbortedTransactions.increment();
 	}
 
 	/**
@@ -214,73 +271,85 @@ public class TxStats implements TxStatsMBean
 	}
 
 	/**
-	 * Calculate a moving average:
-	 *
-	 * @param duration the new datum for updating the average
-	 * @param prevCount the previous number of datums
-	 * @param prevAvg the average of the previous prevCount datums
-	 * @return the new average that includes the new datum according to the
-	 * standard formula:
-	 *   nextAvg = (duration  + prevCount * prevAvg) / (prevCount + 1)
+	 * @param duration the time in nanoseconds it took for the 2PC phase to complete. The averaged commit
+	 *                   time is available by calling {@link #getAverageCommitTime()}
 	 */
-	private long nextAverage(long duration, long prevCount, long prevAvg) {
-		long nCount = prevCount + 1;
-		double d1 = duration / nCount;
-		double d2 = (prevAvg / nCount) * prevCount;
-
-		return Math.round(d1 + d2);
+	void incrementCommittedTransactions(long duration) {
+		recordLatency(Phase.COMMIT, duration);
 	}
 
 	/**
-	 * @param duration the time in nanoseconds it took for the 2PC phase to complete. The averaged commit
-	 *                   time is available by calling {@link #getAverageCommitTime()}
+	 * @param phase the part of the transaction lifetime.
+	 * @param duration the time it took, in nanoseconds.
 	 */
-	void incrementCommittedTransactions(long duration) {
-		TxCommitStatistic prev, next;
+	void recordLatency(Phase phase, long duration) {
+		histogram(phase).record(duration);
+	}
+
+	/*
+	 * The histograms take a few kilobytes each, so only create them once
+	 * statistics are actually gathered or asked for.
+	 */
+	private LatencyHistogram histogram(Phase phase) {
+		LatencyHistogram[] current = histograms;
+
+		if (current == null) {
+			synchronized (this) {
+				current = histograms;
 
-		do {
-			prev = commitStatistic.get();
+				if (current == null) {
+					current = new LatencyHistogram[Phase.values().length];
+
+					for (int i = 0; i < current.length; i++)
+						current[i] = new LatencyHistogram();
+
+					histograms = current;
+				}
+			}
+		}
+
+		return current[phase.ordinal()];
+	}
 
-			long prevCount = prev.getNumberOfCommittedTransactions();
-			long nextAvg = nextAverage(duration, prevCount, prev.getAverageCommitTime());
+	private static Phase toPhase(String phase) {
+		if (phase == null)
+			throw new IllegalArgumentException();
 
-			next = new TxCommitStatistic(prevCount + 1, nextAvg);
-		} while (!commitStatistic.compareAndSet(prev, next));
+		return Phase.valueOf(phase.toUpperCase(Locale.ENGLISH));
 	}
 
 	void incrementHeuristics()
 	{
-        numberOfHeuristics.incrementAndGet();
+        numberOfHeuristics.increment();
 	}
 	
 	void incrementTimeouts ()
 	{
-        numberOfTimeouts.incrementAndGet();
+        numberOfTimeouts.increment();
 	}
 
 	void incrementApplicationRollbacks ()
 	{
-        numberOfApplicationAborts.incrementAndGet();
+        numberOfApplicationAborts.increment();
 	}
 
 	void incrementSystemRollbacks ()
 	{
-		numberOfSystemAborts.incrementAndGet();
+		numberOfSystemAborts.increment();
 	}
 
 	void incrementResourceRollbacks ()
 	{
-        numberOfResourceAborts.incrementAndGet();
+        numberOfResourceAborts.increment();
 	}
 
-	private AtomicLong numberOfTransactions = new AtomicLong(0);
-	private AtomicLong numberOfNestedTransactions = new AtomicLong(0);
-	private AtomicLong numberOfAbortedTransactions = new AtomicLong(0);
-	private AtomicLong numberOfHeuristics = new AtomicLong(0);
-	private AtomicLong numberOfTimeouts = new AtomicLong(0);
-	private AtomicLong numberOfApplicationAborts = new AtomicLong(0);
-	private AtomicLong numberOfSystemAborts = new AtomicLong(0);
-	private AtomicLong numberOfResourceAborts = new AtomicLong(0);
-	private AtomicReference<TxCommitStatistic> commitStatistic =
-			new AtomicReference<>(new TxCommitStatistic(0, 0));
+	private LongAdder numberOfTransactions = new LongAdder();
+	private LongAdder numberOfNestedTransactions = new LongAdder();
+	private LongAdder numberOfAbortedTransactions = new LongAdder();
+	private LongAdder numberOfHeuristics = new LongAdder();
+	private LongAdder numberOfTimeouts = new LongAdder();
+	private LongAdder numberOfApplicationAborts = new LongAdder();
+	private LongAdder numberOfSystemAborts = new LongAdder();
+	private LongAdder numberOfResourceAborts = new LongAdder();
+	private volatile LatencyHistogram[] histograms;
 }
@@ -111,4 +111,27 @@ public interface TxStatsMBean
      * @return the number of transactions that rolled back due to resource (participant) failure.
      */
     long getNumberOfResourceRollbacks();
+
+    /**
+     * Returns the latency that the given percentage of the recorded latencies of a phase do not exceed.
+     * The phases are the names of the {@link TxStats.Phase} constants, e.g. PREPARE or LOG_WRITE.
+     * @param phase the name of the phase.
+     * @param percentile the percentile, between 0 and 100.
+     * @return the latency in nanoseconds, accurate to within 12.5%.
+     */
+    long getLatencyPercentile(String phase, double percentile);
+
+    /**
+     * Returns the number of latencies recorded for a phase.
+     * @param phase the name of the phase.
+     * @return the number of recorded latencies.
+     */
+    long getLatencyCount(String phase);
+
+    /**
+     * Returns the longest latency recorded for a phase.
+     * @param phase the name of the phase.
+     * @return the longest latency in nanoseconds.
+     */
+    long getMaxLatency(String phase);
 }
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.arjuna.coordinator.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, in nanoseconds, with buckets that grow
+ * exponentially so that any recorded value is reported with an error of at
+ * most 12.5% (3 significant bits). Values up to 2^40ns (about 18 minutes)
+ * are kept, larger ones are counted in the last bucket.
+ *
+ * Recording is wait free: each thread updates one of a number of striped
+ * bucket arrays, which are only added together when a snapshot is taken.
+ */
+
+public final class LatencyHistogram
+{
+    public LatencyHistogram ()
+    {
+        int stripes = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+        _buckets = new AtomicLongArray[stripes];
+
+        for (int i = 0; i < stripes; i++)
+            _buckets[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Record a duration. Negative values are recorded as 0.
+     *
+     * @param nanos the duration, in nanoseconds.
+     */
+
+    public void record (long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+
+        int stripe = (int) Thread.currentThread().getId() & (_buckets.length - 1);
+
+        _buckets[stripe].incrementAndGet(bucketFor(nanos));
+        _total.add(nanos);
+        _max.accumulate(nanos);
+    }
+
+    /**
+     * @return the values recorded so far. Values recorded while the snapshot
+     * is being taken may or may not be included.
+     */
+
+    public Snapshot snapshot ()
+    {
+        long[] counts = new long[BUCKETS];
+
+        for (AtomicLongArray stripe : _buckets)
+        {
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] += stripe.get(i);
+        }
+
+        return new Snapshot(counts, _total.sum(), _max.get());
+    }
+
+    /**
+     * An immutable view of the histogram.
+     */
+
+    public static final class Snapshot
+    {
+        Snapshot (long[] counts, long total, long max)
+        {
+            long count = 0;
+
+            for (long c : counts)
+                count += c;
+
+            _counts = counts;
+            _count = count;
+            _total = total;
+            _max = max;
+        }
+
+        /**
+         * @return the number of recorded values.
+         */
+
+        public long getCount ()
+        {
+            return _count;
+        }
+
+        /**
+         * @return the mean of the recorded values, in nanoseconds.
+         */
+
+        public long getMean ()
+        {
+            return (_count == 0 ? 0 : _total / _count);
+        }
+
+        /**
+         * @return the largest recorded value, in nanoseconds.
+         */
+
+        public long getMax ()
+        {
+            return _max;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100.
+         * @return the value, in nanoseconds, that the given percentage of the
+         * recorded values do not exceed.
+         */
+
+        public long getValueAtPercentile (double percentile)
+        {
+            if ((percentile < 0) || (percentile > 100))
+                throw new IllegalArgumentException();
+
+            if (_count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * _count));
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                seen += _counts[i];
+
+                if (seen >= rank)
+                    return Math.min(highestValueIn(i), _max);
+            }
+
+            return _max;
+        }
+
+        private final long[] _counts;
+        private final long _count;
+        private final long _total;
+        private final long _max;
+    }
+
+    /*
+     * Values below 8 get a bucket each. After that every power of two is
+     * split into 8 buckets using the 3 bits below the highest one.
+     */
+
+    static int bucketFor (long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        if (exponent > MAX_EXPONENT)
+            return BUCKETS - 1;
+
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueIn (int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        if (bucket == BUCKETS - 1)
+            return Long.MAX_VALUE;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS + 1;
+    private static final int MAX_STRIPES = 8;
+
+    private final AtomicLongArray[] _buckets;
+    private final LongAdder _total = new LongAdder();
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+}
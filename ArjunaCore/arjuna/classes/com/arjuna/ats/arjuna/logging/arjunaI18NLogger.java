@@ -1558,6 +1558,77 @@ public interface arjunaI18NLogger {
     @LogMessage(level = INFO)
     public void info_osb_HeaderStateCtorInfo(String reason);
 
+    @Message(id = 12390, value = "ShadowingStore could not sync the directory entry for {0}", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_ShadowingStore_dirsync(String arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12391, value = "SegmentedLogStore ignoring {0} as it is not a valid log segment", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_segmentedlog_invalid_segment(String arg0);
+
+    @Message(id = 12392, value = "SegmentedLogStore found a damaged record in {0} at offset {1}, ignoring the remainder of the segment", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_segmentedlog_torn_record(String arg0, long arg1);
+
+    @Message(id = 12393, value = "SegmentedLogStore record in {0} failed its checksum", format = MESSAGE_FORMAT)
+    public String get_segmentedlog_corrupt_record(String arg0);
+
+    @Message(id = 12394, value = "SegmentedLogStore could not delete compacted segment {0}", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_segmentedlog_delete_failed(String arg0);
+
+    @Message(id = 12395, value = "SegmentedLogStore compaction failed for {0}", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_segmentedlog_compaction_failed(String arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12396, value = "Object store index {0} is in use by another process, falling back to scanning the store", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_StoreIndex_locked(String arg0);
+
+    @Message(id = 12397, value = "Object store index {0} is not valid and will be rebuilt from the store", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_StoreIndex_invalid(String arg0);
+
+    @Message(id = 12398, value = "Object store index for {0} could not be opened, falling back to scanning the store", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_StoreIndex_unavailable(String arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12399, value = "JDBCStore batch of {0} operations failed, they will be retried individually", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_JDBCBatchWriter_batchfailed(int arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12400, value = "Write-behind of {0} and {1} failed", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_WriteBehindCacheStore_failed(Uid arg0, String arg1, @Cause() Throwable arg2);
+
+    @Message(id = 12401, value = "Recovery module {0} did not complete its {1} pass within {2} seconds and is skipped until it does", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_recovery_PeriodicRecovery_moduleTimeout(String arg0, String arg1, int arg2);
+
+    @Message(id = 12402, value = "Recovery module {0} failed during its {1} pass", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_recovery_PeriodicRecovery_moduleFailed(String arg0, String arg1, @Cause() Throwable arg2);
+
+    @Message(id = 12403, value = "BasicAction: {0} timed out during prepare, outstanding participants will not be prepared", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_coordinator_BasicAction_prepareTimeout(Uid arg0);
+
+    @Message(id = 12404, value = "AtomicActionRecoveryModule: could not split log batch {0}", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_recovery_AtomicActionRecoveryModule_splitFailed(Uid arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12405, value = "BasicAction: {0} could not commit a group of participants in parallel, they will be retried by recovery", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_coordinator_BasicAction_parallelCommitFailed(Uid arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12406, value = "BasicAction: {0} could not prepare a group of participants in parallel, the transaction will roll back", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_coordinator_BasicAction_asyncPrepareFailed(Uid arg0, @Cause() Throwable arg1);
+
+    @Message(id = 12407, value = "Object store index {0} could not be closed and will be rebuilt from the store on next use", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_objectstore_StoreIndex_closeFailed(String arg0, @Cause() Throwable arg1);
+
     /*
         Allocate new messages directly above this notice.
           - id: use the next id number in numeric sequence. Don't reuse ids.
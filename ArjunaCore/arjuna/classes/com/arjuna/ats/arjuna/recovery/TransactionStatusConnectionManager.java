@@ -127,13 +127,15 @@ public class TransactionStatusConnectionManager
 
     /**
      * Use the TransactionStatusConnector to remotly query a transaction manager to get the tx status.
+     * Synchronized as a connector can only handle one request at a time and recovery modules may
+     * be asking from several threads when recovering in parallel.
      *
      * @param process_id the process identifier
      * @param transactionType the type of the transaction
      * @param tranUid the Uid of the transaction
      * @return the remote transaction status
      */
-    private int getRemoteTransactionStatus(String process_id, String transactionType, Uid tranUid ) {
+    private synchronized int getRemoteTransactionStatus(String process_id, String transactionType, Uid tranUid ) {
 
         int status = ActionStatus.INVALID ;
 
@@ -173,7 +175,7 @@ public class TransactionStatusConnectionManager
      * objects, and add to local hash table.
      */
 
-    public void updateTSMI()
+    public synchronized void updateTSMI()
     {
 	boolean tsmis = false ;
 
@@ -33,6 +33,7 @@ package com.arjuna.ats.arjuna.state;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
@@ -44,6 +45,10 @@ import com.arjuna.ats.arjuna.logging.tsLogger;
  * created using an OutputBuffer. Similar to java serialization. However,
  * InputBuffers are compatible with OTSArjuna states.
  * 
+ * If CoreEnvironmentBean.byteBufferStates is set then the data is read
+ * through a java.nio.ByteBuffer over the byte array, without any per-call
+ * locking, rather than through a synchronized DataInputStream.
+ * 
  * @author Mark Little (mark@arjuna.com)
  * @version $Id: InputBuffer.java 2342 2006-03-30 13:06:17Z $
  * @since JTS 1.0.
@@ -78,10 +83,7 @@ public class InputBuffer
 
         try
         {
-            _inputStream = new ByteArrayInputStream(_byteArray);
-            _input = new DataInputStream(_inputStream);
-
-            skipHeader();
+            open();
         }
         catch (IOException e)
         {
@@ -107,9 +109,15 @@ public class InputBuffer
      * Is the buffer valid?
      */
 
-    public final synchronized boolean valid ()
+    public final boolean valid ()
     {
-        return _valid;
+        if (_bytes != null)
+            return _valid;
+
+        synchronized (this)
+        {
+            return _valid;
+        }
     }
 
     /**
@@ -128,10 +136,7 @@ public class InputBuffer
 
             try
             {
-                _inputStream = new ByteArrayInputStream(_byteArray);
-                _input = new DataInputStream(_inputStream);
-
-                skipHeader();
+                open();
             }
             catch (IOException e)
             {
@@ -144,18 +149,30 @@ public class InputBuffer
      * Return the length of the byte buffer.
      */
 
-    public final synchronized int length ()
+    public final int length ()
     {
-        return ((_byteArray == null) ? 0 : _byteArray.length);
+        if (_bytes != null)
+            return _byteArray.length;
+
+        synchronized (this)
+        {
+            return ((_byteArray == null) ? 0 : _byteArray.length);
+        }
     }
 
     /**
      * Return the internal byte buffer.
      */
 
-    public final synchronized byte[] buffer ()
+    public final byte[] buffer ()
     {
-        return _byteArray;
+        if (_bytes != null)
+            return _byteArray;
+
+        synchronized (this)
+        {
+            return _byteArray;
+        }
     }
 
     /**
@@ -170,16 +187,14 @@ public class InputBuffer
 
         try
         {
-            _inputStream = new ByteArrayInputStream(_byteArray);
-            _input = new DataInputStream(_inputStream);
-
             _valid = true;
 
-            skipHeader();
+            open();
         }
         catch (Exception e)
         {
             _byteArray = null;
+            _bytes = null;
             _valid = false;
         }
     }
@@ -189,7 +204,7 @@ public class InputBuffer
      * the right type then an IOException is thrown.
      */
 
-    public final synchronized byte unpackByte () throws IOException
+    public final byte unpackByte () throws IOException
     {
         if (!_valid)
             throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_1());
@@ -204,22 +219,43 @@ public class InputBuffer
      * buffer is not of the right type then an IOException is thrown.
      */
 
-    public final synchronized byte[] unpackBytes () throws IOException
+    public final byte[] unpackBytes () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_2());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_2());
 
-        int size = unpackInt();
-        byte b[] = new byte[size];
+            int size = unpackInt();
+            byte b[] = new byte[size];
 
-        if (size > 0)
-        {
-            _input.read(b, 0, size);
+            if (size > 0)
+            {
+                _bytes.get(b, 0, Math.min(size, _bytes.remaining()));
+
+                realignBytes(size);
+            }
 
-            realign(size);
+            return b;
         }
 
-        return b;
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_2());
+
+            int size = unpackInt();
+            byte b[] = new byte[size];
+
+            if (size > 0)
+            {
+                _input.read(b, 0, size);
+
+                realign(size);
+            }
+
+            return b;
+        }
     }
 
     /**
@@ -227,20 +263,39 @@ public class InputBuffer
      * of the right type then an IOException is thrown.
      */
 
-    public final synchronized boolean unpackBoolean () throws IOException
+    public final boolean unpackBoolean () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_3());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_3());
 
-        _valid = false;
+            _valid = false;
 
-        _inputStream.skip(3);
+            skipBytes(3);
 
-        boolean b = _input.readBoolean();
+            boolean b = need(1).get() != 0;
 
-        _valid = true;
+            _valid = true;
 
-        return b;
+            return b;
+        }
+
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_3());
+
+            _valid = false;
+
+            _inputStream.skip(3);
+
+            boolean b = _input.readBoolean();
+
+            _valid = true;
+
+            return b;
+        }
     }
 
     /**
@@ -248,7 +303,7 @@ public class InputBuffer
      * of the right type then an IOException is thrown.
      */
 
-    public final synchronized char unpackChar () throws IOException
+    public final char unpackChar () throws IOException
     {
         if (!_valid)
             throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_4());
@@ -263,7 +318,7 @@ public class InputBuffer
      * the right type then an IOException is thrown.
      */
 
-    public final synchronized short unpackShort () throws IOException
+    public final short unpackShort () throws IOException
     {
         if (!_valid)
             throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_5());
@@ -278,18 +333,35 @@ public class InputBuffer
      * of the right type then an IOException is thrown.
      */
 
-    public final synchronized int unpackInt () throws IOException
+    public final int unpackInt () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_6());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_6());
 
-        _valid = false;
+            _valid = false;
 
-        int i = _input.readInt();
+            int i = need(4).getInt();
 
-        _valid = true;
+            _valid = true;
+
+            return i;
+        }
+
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_6());
+
+            _valid = false;
+
+            int i = _input.readInt();
 
-        return i;
+            _valid = true;
+
+            return i;
+        }
     }
 
     /**
@@ -297,18 +369,35 @@ public class InputBuffer
      * the right type then an IOException is thrown.
      */
 
-    public final synchronized long unpackLong () throws IOException
+    public final long unpackLong () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_7());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_7());
 
-        _valid = false;
+            _valid = false;
 
-        long l = _input.readLong();
+            long l = need(8).getLong();
 
-        _valid = true;
+            _valid = true;
 
-        return l;
+            return l;
+        }
+
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_7());
+
+            _valid = false;
+
+            long l = _input.readLong();
+
+            _valid = true;
+
+            return l;
+        }
     }
 
     /**
@@ -316,18 +405,35 @@ public class InputBuffer
      * the right type then an IOException is thrown.
      */
 
-    public final synchronized float unpackFloat () throws IOException
+    public final float unpackFloat () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_8());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_8());
 
-        _valid = false;
+            _valid = false;
 
-        float f = _input.readFloat();
+            float f = need(4).getFloat();
 
-        _valid = true;
+            _valid = true;
+
+            return f;
+        }
+
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_8());
 
-        return f;
+            _valid = false;
+
+            float f = _input.readFloat();
+
+            _valid = true;
+
+            return f;
+        }
     }
 
     /**
@@ -335,18 +441,35 @@ public class InputBuffer
      * the right type then an IOException is thrown.
      */
 
-    public final synchronized double unpackDouble () throws IOException
+    public final double unpackDouble () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_9());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_9());
 
-        _valid = false;
+            _valid = false;
 
-        double d = _input.readDouble();
+            double d = need(8).getDouble();
 
-        _valid = true;
+            _valid = true;
+
+            return d;
+        }
+
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_9());
+
+            _valid = false;
 
-        return d;
+            double d = _input.readDouble();
+
+            _valid = true;
+
+            return d;
+        }
     }
 
     /**
@@ -357,30 +480,57 @@ public class InputBuffer
      * the "same" string.
      */
 
-    public final synchronized String unpackString () throws IOException
+    public final String unpackString () throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_10());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_10());
 
-        int length = unpackInt();
+            int length = unpackInt();
 
-        if (length == 0)
-            return null;
+            if (length == 0)
+                return null;
 
-        /*
-         * We don't need the '\0' character which Arjuna puts in the buffer. We
-         * only put it in for compatibility with C++. So ignore it.
-         */
+            /*
+             * Decode straight from the backing array and step over the '\0'.
+             */
+
+            int size = Math.min(length - 1, _bytes.remaining());
+            String s = new String(_byteArray, _bytes.position(), size, StandardCharsets.UTF_8);
 
-        byte[] b = new byte[length - 1];
-        byte[] dummy = new byte[1];
+            skipBytes(size + 1);
 
-        _input.read(b, 0, length - 1);
-        _input.read(dummy, 0, 1);
+            realignBytes(length);
 
-        realign(length);
+            return s;
+        }
 
-        return new String(b, StandardCharsets.UTF_8);
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_InputBuffer_10());
+
+            int length = unpackInt();
+
+            if (length == 0)
+                return null;
+
+            /*
+             * We don't need the '\0' character which Arjuna puts in the buffer. We
+             * only put it in for compatibility with C++. So ignore it.
+             */
+
+            byte[] b = new byte[length - 1];
+            byte[] dummy = new byte[1];
+
+            _input.read(b, 0, length - 1);
+            _input.read(dummy, 0, 1);
+
+            realign(length);
+
+            return new String(b, StandardCharsets.UTF_8);
+        }
     }
 
     /**
@@ -407,10 +557,7 @@ public class InputBuffer
 
         try
         {
-            _inputStream = new ByteArrayInputStream(_byteArray);
-            _input = new DataInputStream(_inputStream);
-
-            skipHeader();
+            open();
         }
         catch (IOException e)
         {
@@ -429,10 +576,7 @@ public class InputBuffer
 
         try
         {
-            _inputStream = new ByteArrayInputStream(_byteArray);
-            _input = new DataInputStream(_inputStream);
-
-            skipHeader();
+            open();
         }
         catch (IOException e)
         {
@@ -480,6 +624,55 @@ public class InputBuffer
         _inputStream.skip(OutputBuffer.headerSize); // sizeof buffer header
     }
 
+    /*
+     * Start reading the byte array from the beginning, skipping the header.
+     */
+
+    private final void open () throws IOException
+    {
+        if (OutputBuffer.BYTE_BUFFERS)
+        {
+            _bytes = java.nio.ByteBuffer.wrap(_byteArray);
+
+            skipBytes(OutputBuffer.headerSize); // sizeof buffer header
+
+            return;
+        }
+
+        _inputStream = new ByteArrayInputStream(_byteArray);
+        _input = new DataInputStream(_inputStream);
+
+        skipHeader();
+    }
+
+    /*
+     * The byte buffer equivalents of the stream operations, which never skip
+     * past the end of the data and raise an EOFException on underflow.
+     */
+
+    private final void realignBytes (int amount)
+    {
+        if ((amount % OutputBuffer.ALIGNMENT) > 0)
+            skipBytes(OutputBuffer.ALIGNMENT - (amount % OutputBuffer.ALIGNMENT));
+    }
+
+    private final void skipBytes (int amount)
+    {
+        _bytes.position(_bytes.position() + Math.min(amount, _bytes.remaining()));
+    }
+
+    private final java.nio.ByteBuffer need (int amount) throws EOFException
+    {
+        if (_bytes.remaining() < amount)
+        {
+            _bytes.position(_bytes.limit());
+
+            throw new EOFException();
+        }
+
+        return _bytes;
+    }
+
     protected boolean _valid;
 
     private DataInputStream _input;
@@ -488,4 +681,6 @@ public class InputBuffer
 
     private byte[] _byteArray;
 
+    private java.nio.ByteBuffer _bytes; // only used for byte buffer states
+
 }
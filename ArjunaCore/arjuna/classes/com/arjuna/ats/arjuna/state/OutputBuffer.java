@@ -36,7 +36,9 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
 import com.arjuna.ats.arjuna.logging.tsLogger;
 
 /**
@@ -44,6 +46,12 @@ import com.arjuna.ats.arjuna.logging.tsLogger;
  * Similar to java serialization. However, OutputBuffers are compatible with
  * OTSArjuna states.
  * 
+ * If CoreEnvironmentBean.byteBufferStates is set then the data is packed
+ * directly into a growable java.nio.ByteBuffer, without any per-call locking,
+ * rather than through a synchronized DataOutputStream. The packed format is
+ * the same either way. Such buffers must not be shared between threads
+ * without external synchronization.
+ * 
  * @author Mark Little (mark@arjuna.com)
  * @version $Id: OutputBuffer.java 2342 2006-03-30 13:06:17Z $
  * @since JTS 1.0.
@@ -60,6 +68,15 @@ public class OutputBuffer
     {
         _valid = true;
 
+        if (BYTE_BUFFERS)
+        {
+            _bytes = allocate(DEFAULT_SIZE);
+
+            initBytes();
+
+            return;
+        }
+
         try
         {
             _outputStream = new ByteArrayOutputStream();
@@ -82,6 +99,15 @@ public class OutputBuffer
     {
         _valid = true;
 
+        if (BYTE_BUFFERS)
+        {
+            _bytes = allocate(buffSize);
+
+            initBytes();
+
+            return;
+        }
+
         try
         {
             _outputStream = new ByteArrayOutputStream(buffSize);
@@ -103,6 +129,24 @@ public class OutputBuffer
     {
         _valid = true;
 
+        if (BYTE_BUFFERS)
+        {
+            if (b == null)
+            {
+                _bytes = allocate(DEFAULT_SIZE);
+                _valid = false;
+
+                return;
+            }
+
+            _bytes = allocate(b.length + headerSize);
+            _bytes.put(b, 0, b.length);
+
+            initBytes();
+
+            return;
+        }
+
         try
         {
             _outputStream = new ByteArrayOutputStream(0);
@@ -140,36 +184,88 @@ public class OutputBuffer
      * Is the buffer valid?
      */
 
-    public final synchronized boolean valid ()
+    public final boolean valid ()
     {
-        return _valid;
+        if (_bytes != null)
+            return _valid;
+
+        synchronized (this)
+        {
+            return _valid;
+        }
     }
 
     /**
      * Return the byte array used to store data types.
      */
 
-    public final synchronized byte[] buffer ()
+    public final byte[] buffer ()
     {
-        try
+        if (_bytes != null)
+            return Arrays.copyOf(_bytes.array(), _bytes.position());
+
+        synchronized (this)
         {
-            _output.flush();
+            try
+            {
+                _output.flush();
+            }
+            catch (final IOException ex)
+            {
+                // ignore?
+            }
+
+            return _outputStream.toByteArray();
         }
-        catch (final IOException ex)
+    }
+
+    /**
+     * Return a read-only view of the packed data, positioned at the start
+     * and limited to its length. With byte buffer states this shares the
+     * backing storage, so no copy is made, and the view must not be used
+     * once the buffer is packed into again. Otherwise it wraps a copy.
+     */
+
+    public final java.nio.ByteBuffer byteBuffer ()
+    {
+        if (_bytes != null)
         {
-            // ignore?
+            java.nio.ByteBuffer view = _bytes.duplicate();
+
+            view.flip();
+
+            return view.asReadOnlyBuffer();
         }
-        
-        return _outputStream.toByteArray();
+
+        return java.nio.ByteBuffer.wrap(buffer()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Put the packed data into the target buffer, without an intermediate
+     * copy when byte buffer states are used.
+     */
+
+    public final void writeTo (java.nio.ByteBuffer target)
+    {
+        if (_bytes != null)
+            target.put(_bytes.array(), 0, _bytes.position());
+        else
+            target.put(buffer());
     }
 
     /**
      * Return the length of the byte array being used to store data types.
      */
 
-    public final synchronized int length ()
+    public final int length ()
     {
-        return _outputStream.size();
+        if (_bytes != null)
+            return _bytes.position();
+
+        synchronized (this)
+        {
+            return _outputStream.size();
+        }
     }
 
     /**
@@ -182,6 +278,22 @@ public class OutputBuffer
         {
             _valid = true;
 
+            if (BYTE_BUFFERS)
+            {
+                int length = b.length();
+
+                _bytes = allocate(length + headerSize);
+
+                if (b._bytes != null)
+                    _bytes.put(b._bytes.array(), 0, length);
+                else
+                    _bytes.put(b.buffer(), 0, length);
+
+                initBytes();
+
+                return;
+            }
+
             try
             {
                 _outputStream = new ByteArrayOutputStream(b.length());
@@ -202,22 +314,47 @@ public class OutputBuffer
      * Clear the OutputBuffer and rewind the pack pointer.
      */
 
-    public final synchronized void reset () throws IOException
+    public final void reset () throws IOException
     {
-        _outputStream.reset();
-        initBuffer();
+        if (_bytes != null)
+        {
+            _bytes.clear();
+
+            initBytes();
+
+            return;
+        }
+
+        synchronized (this)
+        {
+            _outputStream.reset();
+            initBuffer();
+        }
     }
 
     /**
      * Pack a byte. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packByte (byte b) throws IOException
+    public final void packByte (byte b) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_1());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_1());
+
+            ensureCapacity(4).putInt(b);
+
+            return;
+        }
 
-        packInt((byte) b);
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_1());
+
+            packInt((byte) b);
+        }
     }
 
     /**
@@ -225,17 +362,47 @@ public class OutputBuffer
      * thrown.
      */
 
-    public final synchronized void packBytes (byte[] b) throws IOException
+    public final void packBytes (byte[] b) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_2());
+        packBytes(b, 0, b.length);
+    }
+
+    /**
+     * Pack <code>length</code> bytes of the array, starting at
+     * <code>offset</code>. They are unpacked as a byte array of that length.
+     * If the buffer is invalid then an IOException is thrown.
+     */
 
-        packInt(b.length);
+    public final void packBytes (byte[] b, int offset, int length) throws IOException
+    {
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_2());
 
-        if (b.length > 0)
+            ensureCapacity(4 + length + ALIGNMENT).putInt(length);
+
+            if (length > 0)
+            {
+                _bytes.put(b, offset, length);
+                realignBytes(length);
+            }
+
+            return;
+        }
+
+        synchronized (this)
         {
-            _output.write(b, 0, b.length);
-            realign(b.length);
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_2());
+
+            packInt(length);
+
+            if (length > 0)
+            {
+                _output.write(b, offset, length);
+                realign(length);
+            }
         }
     }
 
@@ -243,19 +410,32 @@ public class OutputBuffer
      * Pack the boolean. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packBoolean (boolean b) throws IOException
+    public final void packBoolean (boolean b) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_3());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_3());
 
-        _valid = false;
+            ensureCapacity(4).putInt(b ? 1 : 0); // three pad bytes then the boolean
 
-        for (int i = 0; i < 3; i++)
-            _output.write(OutputBuffer._byte, 0, 1);
+            return;
+        }
 
-        _output.writeBoolean(b);
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_3());
 
-        _valid = true;
+            _valid = false;
+
+            for (int i = 0; i < 3; i++)
+                _output.write(OutputBuffer._byte, 0, 1);
+
+            _output.writeBoolean(b);
+
+            _valid = true;
+        }
     }
 
     /**
@@ -263,7 +443,7 @@ public class OutputBuffer
      * thrown.
      */
 
-    public final synchronized void packChar (char c) throws IOException
+    public final void packChar (char c) throws IOException
     {
         if (!_valid)
             throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_4());
@@ -275,7 +455,7 @@ public class OutputBuffer
      * Pack the short. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packShort (short s) throws IOException
+    public final void packShort (short s) throws IOException
     {
         if (!_valid)
             throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_5());
@@ -287,64 +467,116 @@ public class OutputBuffer
      * Pack the integer. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packInt (int i) throws IOException
+    public final void packInt (int i) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_6());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_6());
 
-        _valid = false;
+            ensureCapacity(4).putInt(i);
 
-        _output.writeInt(i);
+            return;
+        }
 
-        _valid = true;
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_6());
+
+            _valid = false;
+
+            _output.writeInt(i);
+
+            _valid = true;
+        }
     }
 
     /**
      * Pack the long. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packLong (long l) throws IOException
+    public final void packLong (long l) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_7());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_7());
+
+            ensureCapacity(8).putLong(l);
 
-        _valid = false;
+            return;
+        }
 
-        _output.writeLong(l);
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_7());
 
-        _valid = true;
+            _valid = false;
+
+            _output.writeLong(l);
+
+            _valid = true;
+        }
     }
 
     /**
      * Pack the float. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packFloat (float f) throws IOException
+    public final void packFloat (float f) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_8());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_8());
 
-        _valid = false;
+            ensureCapacity(4).putFloat(f);
 
-        _output.writeFloat(f);
+            return;
+        }
 
-        _valid = true;
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_8());
+
+            _valid = false;
+
+            _output.writeFloat(f);
+
+            _valid = true;
+        }
     }
 
     /**
      * Pack the double. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packDouble (double d) throws IOException
+    public final void packDouble (double d) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_9());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_9());
 
-        _valid = false;
+            ensureCapacity(8).putDouble(d);
 
-        _output.writeDouble(d);
+            return;
+        }
 
-        _valid = true;
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_9());
+
+            _valid = false;
+
+            _output.writeDouble(d);
+
+            _valid = true;
+        }
     }
 
     /**
@@ -353,33 +585,60 @@ public class OutputBuffer
      * object. If the buffer is invalid then an IOException is thrown.
      */
 
-    public final synchronized void packString (String s) throws IOException
+    public final void packString (String s) throws IOException
     {
-        if (!_valid)
-            throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_10());
+        if (_bytes != null)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_10());
 
-        int sz = 0;
-        String dummy = null;
+            if (s == null)
+            {
+                ensureCapacity(4).putInt(0);
 
-        if (s != null)
-        {
-            sz = s.length() + 1;
-            dummy = s + '\0';
+                return;
+            }
 
-        }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
 
-        packInt(sz);
+            // the length is in characters, including the '\0' kept for compatibility with C++
+            ensureCapacity(4 + bytes.length + 1 + ALIGNMENT).putInt(s.length() + 1);
 
-        _valid = false;
+            _bytes.put(bytes).put((byte) 0);
 
-        if (sz > 0)
-        {
-            byte[] bytes = dummy.getBytes(StandardCharsets.UTF_8);
-            _output.write(bytes, 0, bytes.length);
-            realign(bytes.length);
+            realignBytes(bytes.length + 1);
+
+            return;
         }
 
-        _valid = true;
+        synchronized (this)
+        {
+            if (!_valid)
+                throw new IOException(tsLogger.i18NLogger.get_state_OutputBuffer_10());
+
+            int sz = 0;
+            String dummy = null;
+
+            if (s != null)
+            {
+                sz = s.length() + 1;
+                dummy = s + '\0';
+
+            }
+
+            packInt(sz);
+
+            _valid = false;
+
+            if (sz > 0)
+            {
+                byte[] bytes = dummy.getBytes(StandardCharsets.UTF_8);
+                _output.write(bytes, 0, bytes.length);
+                realign(bytes.length);
+            }
+
+            _valid = true;
+        }
     }
 
     /**
@@ -398,7 +657,10 @@ public class OutputBuffer
              * pack number of bytes and then pack each byte separately.
              */
 
-            buff.packBytes(buffer());
+            if (_bytes != null)
+                buff.packBytes(_bytes.array(), 0, _bytes.position());
+            else
+                buff.packBytes(buffer());
         }
     }
 
@@ -430,6 +692,15 @@ public class OutputBuffer
         if (!_valid)
             return false;
 
+        if (_bytes != null)
+        {
+            _bytes = allocate(DEFAULT_SIZE);
+
+            initBytes();
+
+            return true;
+        }
+
         try
         {
             _outputStream = new ByteArrayOutputStream();
@@ -473,6 +744,48 @@ public class OutputBuffer
         _output.writeByte(0);
     }
 
+    /*
+     * The byte buffer equivalents of the above. A heap buffer is big endian,
+     * as is DataOutputStream, so the packed format is the same.
+     */
+
+    private final void realignBytes (int amount)
+    {
+        if ((amount % OutputBuffer.ALIGNMENT) > 0)
+        {
+            int excess = OutputBuffer.ALIGNMENT
+                    - (amount % OutputBuffer.ALIGNMENT);
+
+            for (int i = 0; i < excess; i++)
+                _bytes.put((byte) 0);
+        }
+    }
+
+    private final void initBytes ()
+    {
+        ensureCapacity(headerSize).put(HEADER);
+    }
+
+    private final java.nio.ByteBuffer ensureCapacity (int required)
+    {
+        if (_bytes.remaining() < required)
+        {
+            java.nio.ByteBuffer bigger = allocate(Math.max(_bytes.capacity() * 2, _bytes.position() + required));
+
+            _bytes.flip();
+            bigger.put(_bytes);
+
+            _bytes = bigger;
+        }
+
+        return _bytes;
+    }
+
+    private static java.nio.ByteBuffer allocate (int size)
+    {
+        return java.nio.ByteBuffer.allocate(Math.max(size, headerSize));
+    }
+
     protected boolean _valid;
 
     protected static final int headerSize = 8;
@@ -483,6 +796,14 @@ public class OutputBuffer
 
     private ByteArrayOutputStream _outputStream;
 
+    private java.nio.ByteBuffer _bytes; // only used for byte buffer states
+
     private static final byte[] _byte = new byte[1];
 
+    private static final byte[] HEADER = { '#', 'B', 'E', 1, 16, 32, 64, 0 };
+
+    private static final int DEFAULT_SIZE = 32; // as for ByteArrayOutputStream
+
+    static final boolean BYTE_BUFFERS = arjPropertyManager.getCoreEnvironmentBean().isByteBufferStates();
+
 }
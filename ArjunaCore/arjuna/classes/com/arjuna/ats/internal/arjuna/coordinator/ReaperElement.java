@@ -152,6 +152,12 @@ public class ReaperElement implements Comparable<ReaperElement>
 
     public int _timeout;
 
+    /*
+     * where a TimingWheelReaperElementManager currently holds the element.
+     */
+
+    volatile Object _location;
+
         /*
          * status field to track the progress of the reaper worker which is
          * attempting to cancel the associated TX. this is necessary to ensure
@@ -63,7 +63,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @author Jonathan Halliday (jonathan.halliday@redhat.com) 2009-10
  */
-public class ReaperElementManager
+public class ReaperElementManager implements ReaperElementQueue
 {
     /**
      * @return the first (i.e. earliest to time out) element of the colleciton or null if empty
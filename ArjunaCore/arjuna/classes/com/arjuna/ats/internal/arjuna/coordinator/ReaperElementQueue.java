@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.coordinator;
+
+/**
+ * The collection of ReaperElements ordered by timeout which the TransactionReaper
+ * works from. Elements are added and removed by client threads as transactions
+ * begin and end, while the reaper thread asks for the element which times out
+ * first and reorders elements as it processes them.
+ *
+ * @see ReaperElementManager
+ * @see TimingWheelReaperElementManager
+ */
+public interface ReaperElementQueue
+{
+    /**
+     * @return the first (i.e. earliest to time out) element of the collection or null if empty
+     */
+    public ReaperElement getFirst();
+
+    /**
+     * @param reaperElement the element to add.
+     * @throws IllegalStateException if the element is already present.
+     */
+    public void add(ReaperElement reaperElement) throws IllegalStateException;
+
+    /**
+     * @param reaperElement the reaper element to reorder.
+     * @param delayMillis the amount of time from now at which the element should next time out.
+     * @return the new soonest timeout in the collection (not necessarily that of the reordered element)
+     */
+    public long reorder(ReaperElement reaperElement, long delayMillis);
+
+    /**
+     * @return the number of elements. Possibly expensive, so for testing only.
+     */
+    public int size();
+
+    public boolean isEmpty();
+
+    /**
+     * Make every element time out immediately, for use during shutdown.
+     */
+    public void setAllTimeoutsToZero();
+
+    public void remove(ReaperElement reaperElement);
+}
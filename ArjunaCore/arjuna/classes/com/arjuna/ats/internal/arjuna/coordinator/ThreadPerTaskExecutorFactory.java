@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.coordinator;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitExecutorFactory;
+import com.arjuna.ats.arjuna.logging.tsLogger;
+
+/**
+ * Runs every task on a thread of its own, so slow participants never hold up
+ * other transactions. maxThreads is ignored.
+ *
+ * On a JVM with virtual threads each task gets a virtual thread. Otherwise
+ * platform threads are used, which are cached and reused once idle but are
+ * not bounded in number.
+ */
+
+public class ThreadPerTaskExecutorFactory implements TwoPhaseCommitExecutorFactory
+{
+    public ExecutorService createExecutor (int maxThreads)
+    {
+        try
+        {
+            // looked up reflectively, as the code is built for older JVMs
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (Exception e)
+        {
+            // no virtual threads, or they are a preview feature which is not enabled
+
+            if (tsLogger.logger.isDebugEnabled()) {
+                tsLogger.logger.debug("ThreadPerTaskExecutorFactory: virtual threads are not available, using platform threads", e);
+            }
+        }
+
+        return Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            public Thread newThread (Runnable r)
+            {
+                Thread thread = new Thread(r, "Two Phase Commit Task-" + _count.incrementAndGet());
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    private final AtomicInteger _count = new AtomicInteger();
+}
@@ -0,0 +1,300 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.coordinator;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * An alternative to ReaperElementManager for very large numbers of concurrent transactions
+ * with timeouts, selected by CoordinatorEnvironmentBean.txReaperTimingWheel.
+ *
+ * Elements are kept in a hierarchical timing wheel: LEVELS wheels of SLOTS buckets, where a
+ * bucket on the first wheel covers one tick and a bucket on each following wheel covers a
+ * whole turn of the wheel before it. An element goes in the bucket of the lowest wheel on
+ * which its timeout shares all of the higher digits of the current time, so add and remove
+ * are O(1). As time moves on the reaper empties the buckets which have come due, moving
+ * their elements down a wheel or, from the first wheel, into the due set. Elements whose
+ * timeout is beyond the last wheel wait in an overflow set until the last wheel turns over.
+ *
+ * Buckets are concurrent sets and each element records the bucket it is in, so client
+ * threads add and remove without locking. The element's location is updated by CAS, so an
+ * element removed by a client while the reaper is moving it is dropped rather than reinserted. A client adding to a bucket the reaper has just emptied
+ * notices that the time has passed it and places the element again.
+ *
+ * The reaper side (getFirst, reorder and setAllTimeoutsToZero) is guarded by the instance
+ * lock. The first element is the earliest in the due set or, if that is empty, the earliest
+ * in the first non empty bucket of the lowest non empty wheel, so it is exact rather than to
+ * the nearest tick.
+ */
+public class TimingWheelReaperElementManager implements ReaperElementQueue
+{
+    /**
+     * @param tickMillis the time covered by a bucket of the first wheel.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheelReaperElementManager(long tickMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+
+        wheels = new Set[LEVELS][SLOTS];
+
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheels[level][slot] = ConcurrentHashMap.newKeySet();
+            }
+        }
+
+        cursor = System.currentTimeMillis() / this.tickMillis;
+    }
+
+    public synchronized ReaperElement getFirst() {
+        advance(System.currentTimeMillis() / tickMillis);
+
+        ReaperElement first = earliest(due, null);
+
+        if (first != null) {
+            return first;
+        }
+
+        long current = cursor;
+
+        // everything on a wheel times out before everything on the wheels above it
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = digit(current, level) + 1; slot < SLOTS; slot++) {
+                first = earliest(wheels[level][slot], null);
+
+                if (first != null) {
+                    return first;
+                }
+            }
+        }
+
+        return earliest(overflow, null);
+    }
+
+    // Note - unsynchronized for performance.
+    public void add(ReaperElement reaperElement) throws IllegalStateException {
+        Object location = reaperElement._location;
+
+        if (location != null && location != REMOVED) {
+            throw new IllegalStateException();
+        }
+
+        // count first, so that the count can never be lower than the number of elements
+        count.increment();
+
+        if (!place(reaperElement, location)) {
+            count.decrement();
+
+            throw new IllegalStateException();
+        }
+    }
+
+    public synchronized long reorder(ReaperElement reaperElement, long delayMillis) {
+        Object location = reaperElement._location;
+
+        if (location instanceof Set && ((Set<?>) location).remove(reaperElement)) {
+            reaperElement.setAbsoluteTimeout((System.currentTimeMillis() + delayMillis));
+
+            place(reaperElement, location);
+        }
+
+        ReaperElement first = getFirst();
+
+        return (first == null) ? Long.MAX_VALUE : first.getAbsoluteTimeout();
+    }
+
+    public int size() {
+        return count.intValue();
+    }
+
+    public boolean isEmpty() {
+        return count.sum() == 0;
+    }
+
+    public synchronized void setAllTimeoutsToZero() {
+        for (Set<ReaperElement>[] wheel : wheels) {
+            for (Set<ReaperElement> bucket : wheel) {
+                expire(bucket);
+            }
+        }
+
+        expire(overflow);
+        expire(due);
+    }
+
+    // Note - unsynchronized for performance.
+    public void remove(ReaperElement reaperElement) {
+        for (;;) {
+            Object location = reaperElement._location;
+
+            if (location == null || location == REMOVED) {
+                return;
+            }
+
+            if (LOCATION.compareAndSet(reaperElement, location, REMOVED)) {
+                ((Set<?>) location).remove(reaperElement);
+                count.decrement();
+
+                return;
+            }
+        }
+    }
+
+    ////////////
+
+    /**
+     * put the element in the bucket for its timeout.
+     *
+     * @param expected where the element is recorded as being now.
+     * @return false if the element was not where expected, e.g. because it has been removed.
+     */
+    private boolean place(ReaperElement reaperElement, Object expected) {
+        for (;;) {
+            long current = cursor;
+            long deadline = reaperElement.getAbsoluteTimeout() / tickMillis;
+            Set<ReaperElement> bucket;
+            long expiry; // the tick at which the reaper empties the bucket
+
+            if (deadline <= current) {
+                bucket = due;
+                expiry = Long.MAX_VALUE;
+            } else {
+                int level = 0;
+
+                while (level < LEVELS && (deadline >>> (BITS * (level + 1))) != (current >>> (BITS * (level + 1)))) {
+                    level++;
+                }
+
+                if (level == LEVELS) {
+                    bucket = overflow;
+                    expiry = ((current >>> (BITS * LEVELS)) + 1) << (BITS * LEVELS);
+                } else {
+                    bucket = wheels[level][digit(deadline, level)];
+                    expiry = (deadline >>> (BITS * level)) << (BITS * level);
+                }
+            }
+
+            if (!LOCATION.compareAndSet(reaperElement, expected, bucket)) {
+                return false;
+            }
+
+            bucket.add(reaperElement);
+
+            if (reaperElement._location == REMOVED) {
+                // removed while we were adding it, and possibly before it got here
+                bucket.remove(reaperElement);
+
+                return true;
+            }
+
+            if (cursor < expiry) {
+                return true;
+            }
+
+            // the reaper may have emptied the bucket before we got there, so try again
+            if (!bucket.remove(reaperElement)) {
+                return true; // no, it has it
+            }
+
+            expected = bucket;
+        }
+    }
+
+    /**
+     * move time on to the given tick, emptying each bucket as it comes due.
+     */
+    private void advance(long tick) {
+        while (cursor < tick) {
+            long next = cursor + 1;
+
+            // publish the new time before emptying buckets, see place
+            cursor = next;
+
+            if ((next & ((1L << (BITS * LEVELS)) - 1)) == 0) {
+                cascade(overflow);
+            }
+
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((next & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(wheels[level][digit(next, level)]);
+                }
+            }
+
+            cascade(wheels[0][digit(next, 0)]);
+        }
+    }
+
+    private void cascade(Set<ReaperElement> bucket) {
+        for (ReaperElement reaperElement : bucket) {
+            if (bucket.remove(reaperElement)) {
+                place(reaperElement, bucket);
+            }
+        }
+    }
+
+    private void expire(Set<ReaperElement> bucket) {
+        for (ReaperElement reaperElement : bucket) {
+            if (bucket.remove(reaperElement)) {
+                reaperElement.setAbsoluteTimeout(0);
+
+                place(reaperElement, bucket);
+            }
+        }
+    }
+
+    private static ReaperElement earliest(Set<ReaperElement> bucket, ReaperElement first) {
+        for (ReaperElement reaperElement : bucket) {
+            if (first == null || reaperElement.compareTo(first) < 0) {
+                first = reaperElement;
+            }
+        }
+
+        return first;
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) (tick >>> (BITS * level)) & (SLOTS - 1);
+    }
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int LEVELS = 4;
+
+    private static final Object REMOVED = new Object();
+
+    private static final AtomicReferenceFieldUpdater<ReaperElement, Object> LOCATION =
+            AtomicReferenceFieldUpdater.newUpdater(ReaperElement.class, Object.class, "_location");
+
+    private final long tickMillis;
+
+    private final Set<ReaperElement>[][] wheels;
+    private final Set<ReaperElement> due = ConcurrentHashMap.newKeySet();
+    private final Set<ReaperElement> overflow = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder count = new LongAdder();
+
+    // the current tick. only written by the reaper, under the instance lock.
+    private volatile long cursor;
+}
@@ -0,0 +1,41 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.coordinator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitExecutorFactory;
+
+/**
+ * A work stealing pool whose parallelism is bounded by maxThreads. Each worker
+ * has its own queue and idle workers take work from busy ones, so work queued
+ * behind a slow participant is picked up by another thread rather than waiting.
+ */
+
+public class WorkStealingExecutorFactory implements TwoPhaseCommitExecutorFactory
+{
+    public ExecutorService createExecutor (int maxThreads)
+    {
+        return Executors.newWorkStealingPool(maxThreads);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.internal.arjuna.objectstore;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.SyncFailedException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.utils.Utility;
+
+/**
+ * Collects the sync requests of concurrent writers and removers and makes
+ * them durable together. The first caller to arrive becomes the leader: it
+ * waits (at most) for the configured window so that other callers can join
+ * the batch, then syncs every queued file descriptor and each distinct parent
+ * directory once. Every caller still blocks until its own request has been
+ * made durable.
+ *
+ * The window is only applied if the previous batch had more than one member,
+ * so a lightly loaded store does not pay any additional latency.
+ */
+
+public class GroupCommitSync
+{
+    public GroupCommitSync (long windowMicros, int maxBatchSize)
+    {
+        _windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+        _maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Make the contents of the (still open) file durable, along with the
+     * directory entry that refers to it.
+     */
+
+    public void sync (FileDescriptor fd, File file) throws SyncFailedException
+    {
+        await(new Request(fd, file.getAbsoluteFile().getParentFile()));
+    }
+
+    /**
+     * Make the removal (or rename) of an entry in the given directory durable.
+     */
+
+    public void syncDirectory (File directory) throws SyncFailedException
+    {
+        await(new Request(null, directory));
+    }
+
+    /**
+     * @return the number of sync batches performed so far.
+     */
+
+    public long getBatchCount ()
+    {
+        synchronized (_lock)
+        {
+            return _batchCount;
+        }
+    }
+
+    /**
+     * @return the number of requests made durable so far.
+     */
+
+    public long getRequestCount ()
+    {
+        synchronized (_lock)
+        {
+            return _requestCount;
+        }
+    }
+
+    private void await (Request request) throws SyncFailedException
+    {
+        boolean interrupted = false;
+
+        synchronized (_lock)
+        {
+            _pending.add(request);
+
+            if (_pending.size() >= _maxBatchSize)
+                _lock.notifyAll();
+
+            while (!request.done && _leaderActive)
+            {
+                try
+                {
+                    _lock.wait();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+
+            if (!request.done)
+                _leaderActive = true;
+        }
+
+        if (!request.done)
+            lead();
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (request.failure != null)
+        {
+            SyncFailedException ex = new SyncFailedException(request.failure.getMessage());
+
+            ex.initCause(request.failure);
+
+            throw ex;
+        }
+    }
+
+    private void lead ()
+    {
+        List<Request> batch;
+
+        synchronized (_lock)
+        {
+            if (_lastBatchSize > 1 && _windowNanos > 0)
+            {
+                long deadline = System.nanoTime() + _windowNanos;
+                long remaining = _windowNanos;
+
+                while (_pending.size() < _maxBatchSize && remaining > 0)
+                {
+                    try
+                    {
+                        TimeUnit.NANOSECONDS.timedWait(_lock, remaining);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+
+                        break;
+                    }
+
+                    remaining = deadline - System.nanoTime();
+                }
+            }
+
+            batch = _pending;
+            _pending = new ArrayList<Request>();
+        }
+
+        try
+        {
+            syncBatch(batch);
+        }
+        finally
+        {
+            synchronized (_lock)
+            {
+                for (Request r : batch)
+                    r.done = true;
+
+                _lastBatchSize = batch.size();
+                _batchCount++;
+                _requestCount += batch.size();
+                _leaderActive = false;
+
+                _lock.notifyAll();
+            }
+        }
+    }
+
+    private void syncBatch (List<Request> batch)
+    {
+        if (tsLogger.logger.isTraceEnabled()) {
+            tsLogger.logger.trace("GroupCommitSync.syncBatch - syncing " + batch.size() + " request(s)");
+        }
+
+        Set<File> directories = new HashSet<File>();
+
+        for (Request r : batch)
+        {
+            if (r.fd != null)
+            {
+                try
+                {
+                    r.fd.sync();
+                }
+                catch (SyncFailedException ex)
+                {
+                    r.failure = ex;
+                }
+            }
+
+            if (r.directory != null)
+                directories.add(r.directory);
+        }
+
+        for (File dir : directories)
+        {
+            try
+            {
+                syncDirectory0(dir);
+            }
+            catch (IOException ex)
+            {
+                /*
+                 * Not every platform allows a directory to be opened and forced
+                 * (e.g., Windows) so this is no worse than the non-batched case.
+                 */
+
+                if (tsLogger.logger.isTraceEnabled()) {
+                    tsLogger.logger.trace("GroupCommitSync.syncBatch - could not sync directory " + dir, ex);
+                }
+            }
+        }
+    }
+
+    private static void syncDirectory0 (File dir) throws IOException
+    {
+        if (!_directorySyncSupported)
+            return;
+
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+    }
+
+    private static class Request
+    {
+        Request (FileDescriptor fd, File directory)
+        {
+            this.fd = fd;
+            this.directory = directory;
+        }
+
+        final FileDescriptor fd;
+        final File directory;
+        volatile boolean done;
+        volatile SyncFailedException failure;
+    }
+
+    private final Object _lock = new Object();
+    private final long _windowNanos;
+    private final int _maxBatchSize;
+
+    private List<Request> _pending = new ArrayList<Request>();
+    private boolean _leaderActive = false;
+    private int _lastBatchSize = 0;
+    private long _batchCount = 0;
+    private long _requestCount = 0;
+
+    private static final boolean _directorySyncSupported = !Utility.isWindows();
+}
@@ -781,7 +781,7 @@ public class LogStore extends FileSystemStore
                     buff.putInt(uidString.length);
                     buff.put(uidString);
                     buff.putInt(imageSize);
-                    buff.put(state.buffer());
+                    state.writeTo(buff);
 
                     synchronized (_lock)
                     {
@@ -1083,7 +1083,8 @@ public class LogStore extends FileSystemStore
                     for (int i = 0; i < objectStates.size(); i++)
                     {
                         byte[] uidString = objectStates.get(i).stateUid().stringForm().getBytes(StandardCharsets.UTF_8);
-                        int buffSize = _redzone.length + uidString.length + objectStates.get(i).buffer().length + 8;
+                        byte[] image = objectStates.get(i).buffer();
+                        int buffSize = _redzone.length + uidString.length + image.length + 8;
                         java.nio.ByteBuffer buff = java.nio.ByteBuffer.allocate(buffSize);
 
                         size += buffSize;
@@ -1093,8 +1094,8 @@ public class LogStore extends FileSystemStore
                             buff.put(_redzone);
                             buff.putInt(uidString.length);
                             buff.put(uidString);
-                            buff.putInt(objectStates.get(i).buffer().length);
-                            buff.put(objectStates.get(i).buffer(),0, objectStates.get(i).buffer().length);
+                            buff.putInt(image.length);
+                            buff.put(image, 0, image.length);
                         }
                         catch (final Exception ex)
                         {
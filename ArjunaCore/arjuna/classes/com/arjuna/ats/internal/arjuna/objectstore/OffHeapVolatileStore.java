@@ -0,0 +1,480 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.objectstore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+
+/**
+ * A VolatileStore which keeps the states in direct memory rather than on the
+ * heap, for in-memory deployments with very many short lived records where
+ * a map of byte arrays puts too much pressure on the garbage collector.
+ *
+ * The states are divided between independently locked segments. Each has an
+ * open addressing index, held in primitive arrays and keyed by the fields
+ * of the Uid, and allocates states from blocks of direct memory. A block is
+ * reused once every state in it has been removed, so memory is only held
+ * for as long as the longest lived state in a block.
+ */
+public class OffHeapVolatileStore extends VolatileStore
+{
+    public OffHeapVolatileStore(ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
+    {
+        super(objectStoreEnvironmentBean);
+
+        int number = 1;
+
+        while (number < objectStoreEnvironmentBean.getOffHeapStoreSegments())
+            number <<= 1;
+
+        segments = new Segment[number];
+
+        for (int i = 0; i < number; i++)
+            segments[i] = new Segment(objectStoreEnvironmentBean.getOffHeapStoreChunkSize());
+    }
+
+    /**
+     * @return the name of the object store.
+     */
+
+    public String getStoreName()
+    {
+        return "OffHeapVolatileStore";
+    }
+
+    /**
+     * @return the number of states in the store.
+     */
+
+    public int size()
+    {
+        int size = 0;
+
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                size += segment.count;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @return the number of bytes of direct memory held by the store.
+     */
+
+    public long getAllocatedMemory()
+    {
+        long allocated = 0;
+
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                allocated += segment.allocated;
+            }
+        }
+
+        return allocated;
+    }
+
+    protected boolean remove(Uid u, String tn, int state) throws ObjectStoreException
+    {
+        byte[] id = u.getBytes();
+        long hash = hash(id);
+
+        return segmentFor(hash).remove(id, hash);
+    }
+
+    protected InputObjectState read(Uid u, String tn, int state) throws ObjectStoreException
+    {
+        byte[] id = u.getBytes();
+        long hash = hash(id);
+        byte[] data = segmentFor(hash).get(id, hash);
+
+        if (data != null)
+            return new InputObjectState(u, tn, data);
+        else
+            return null;
+    }
+
+    protected boolean write(Uid u, String tn, OutputObjectState buff, int state) throws ObjectStoreException
+    {
+        byte[] id = u.getBytes();
+        long hash = hash(id);
+
+        segmentFor(hash).put(id, hash, buff);
+
+        return true;
+    }
+
+    protected int getState(Uid u)
+    {
+        byte[] id = u.getBytes();
+        long hash = hash(id);
+
+        if (segmentFor(hash).contains(id, hash))
+            return StateStatus.OS_COMMITTED;
+        else
+            return StateStatus.OS_UNKNOWN;
+    }
+
+    private Segment segmentFor(long hash)
+    {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    /*
+     * The byte form of a Uid is the two longs of the host address followed by
+     * the process, time and counter ints, which we hold as four longs.
+     */
+
+    private static long key(byte[] id, int part)
+    {
+        if (part == 3)
+            return getInt(id, 24);
+        else
+            return ((long) getInt(id, part * 8) << 32) | (getInt(id, part * 8 + 4) & 0xFFFFFFFFL);
+    }
+
+    private static int getInt(byte[] b, int offset)
+    {
+        return (b[offset] << 24) | ((b[offset + 1] & 0xFF) << 16) | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    private static long hash(byte[] id)
+    {
+        return hash(key(id, 0), key(id, 1), key(id, 2), key(id, 3));
+    }
+
+    private static long hash(long k0, long k1, long k2, long k3)
+    {
+        long h = k0 * 31 + k1;
+
+        h = h * 31 + k2;
+        h = h * 31 + k3;
+
+        // the murmur3 finalizer, to spread the bits of the counter over the whole value
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+
+    /*
+     * A block of direct memory that states are allocated from in order.
+     */
+
+    private static final class Chunk
+    {
+        Chunk(int id, int size, boolean dedicated)
+        {
+            this.id = id;
+            this.memory = ByteBuffer.allocateDirect(size);
+            this.dedicated = dedicated;
+        }
+
+        final int id;
+
+        final ByteBuffer memory;
+
+        final boolean dedicated; // holds a single state bigger than the block size
+
+        int top; // where the next state goes
+
+        int live; // states in the block which have not been removed
+    }
+
+    /*
+     * A linear probing hash table in primitive arrays, with deletion by
+     * backward shift so there are no tombstones, plus the memory the states
+     * are allocated from. Everything is guarded by the segment lock.
+     */
+
+    private static final class Segment
+    {
+        Segment(int chunkSize)
+        {
+            this.chunkSize = chunkSize;
+
+            keys = new long[INITIAL_CAPACITY * 4];
+            locations = new long[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+        }
+
+        synchronized boolean contains(byte[] id, long hash)
+        {
+            return find(id, hash) >= 0;
+        }
+
+        synchronized byte[] get(byte[] id, long hash)
+        {
+            int slot = find(id, hash);
+
+            if (slot < 0)
+                return null;
+
+            long location = locations[slot];
+            Chunk chunk = chunks.get((int) (location >>> 32) - 1);
+            byte[] data = new byte[lengths[slot]];
+
+            chunk.memory.position((int) location);
+            chunk.memory.get(data);
+
+            return data;
+        }
+
+        synchronized void put(byte[] id, long hash, OutputObjectState state)
+        {
+            int slot = find(id, hash);
+            int length = state.length();
+
+            if (slot >= 0)
+            {
+                free(locations[slot]);
+            }
+            else
+            {
+                if ((count + 1) * 4 > locations.length * 3)
+                    resize(locations.length * 2);
+
+                slot = (int) hash & (locations.length - 1);
+
+                while (locations[slot] != 0)
+                    slot = (slot + 1) & (locations.length - 1);
+
+                for (int i = 0; i < 4; i++)
+                    keys[slot * 4 + i] = key(id, i);
+
+                count++;
+            }
+
+            Chunk chunk = allocate(length);
+            int offset = chunk.top;
+
+            chunk.top += length;
+            chunk.live++;
+
+            chunk.memory.limit(chunk.top);
+            chunk.memory.position(offset);
+
+            state.writeTo(chunk.memory);
+
+            chunk.memory.clear();
+
+            locations[slot] = ((long) (chunk.id + 1) << 32) | offset;
+            lengths[slot] = length;
+        }
+
+        synchronized boolean remove(byte[] id, long hash)
+        {
+            int slot = find(id, hash);
+
+            if (slot < 0)
+                return false;
+
+            free(locations[slot]);
+
+            count--;
+
+            /*
+             * Move back any later entries in the run which would no longer be
+             * found once this slot is empty.
+             */
+
+            int mask = locations.length - 1;
+            int empty = slot;
+            int next = slot;
+
+            for (;;)
+            {
+                next = (next + 1) & mask;
+
+                if (locations[next] == 0)
+                    break;
+
+                int home = (int) hash(keys[next * 4], keys[next * 4 + 1], keys[next * 4 + 2], keys[next * 4 + 3]) & mask;
+                boolean inPlace = (empty <= next) ? (empty < home && home <= next) : (empty < home || home <= next);
+
+                if (!inPlace)
+                {
+                    System.arraycopy(keys, next * 4, keys, empty * 4, 4);
+                    locations[empty] = locations[next];
+                    lengths[empty] = lengths[next];
+
+                    empty = next;
+                }
+            }
+
+            locations[empty] = 0;
+
+            return true;
+        }
+
+        private int find(byte[] id, long hash)
+        {
+            long k0 = key(id, 0);
+            long k1 = key(id, 1);
+            long k2 = key(id, 2);
+            long k3 = key(id, 3);
+            int mask = locations.length - 1;
+            int slot = (int) hash & mask;
+
+            while (locations[slot] != 0)
+            {
+                int base = slot * 4;
+
+                if (keys[base + 3] == k3 && keys[base + 2] == k2 && keys[base + 1] == k1 && keys[base] == k0)
+                    return slot;
+
+                slot = (slot + 1) & mask;
+            }
+
+            return -1;
+        }
+
+        private void resize(int capacity)
+        {
+            long[] oldKeys = keys;
+            long[] oldLocations = locations;
+            int[] oldLengths = lengths;
+            int mask = capacity - 1;
+
+            keys = new long[capacity * 4];
+            locations = new long[capacity];
+            lengths = new int[capacity];
+
+            for (int i = 0; i < oldLocations.length; i++)
+            {
+                if (oldLocations[i] != 0)
+                {
+                    int base = i * 4;
+                    int slot = (int) hash(oldKeys[base], oldKeys[base + 1], oldKeys[base + 2], oldKeys[base + 3]) & mask;
+
+                    while (locations[slot] != 0)
+                        slot = (slot + 1) & mask;
+
+                    System.arraycopy(oldKeys, base, keys, slot * 4, 4);
+                    locations[slot] = oldLocations[i];
+                    lengths[slot] = oldLengths[i];
+                }
+            }
+        }
+
+        private Chunk allocate(int length)
+        {
+            if (length > chunkSize)
+                return newChunk(length, true);
+
+            if (current == null || current.memory.capacity() - current.top < length)
+            {
+                if (current != null && current.live == 0)
+                    current.top = 0;
+                else
+                    current = spare.isEmpty() ? newChunk(chunkSize, false) : spare.poll();
+            }
+
+            return current;
+        }
+
+        private void free(long location)
+        {
+            Chunk chunk = chunks.get((int) (location >>> 32) - 1);
+
+            if (--chunk.live > 0)
+                return;
+
+            if (chunk == current)
+            {
+                chunk.top = 0;
+            }
+            else if (!chunk.dedicated && spare.size() < MAX_SPARE)
+            {
+                chunk.top = 0;
+                spare.add(chunk);
+            }
+            else
+            {
+                // let the collector give the memory back
+
+                chunks.set(chunk.id, null);
+                unusedIds.push(chunk.id);
+                allocated -= chunk.memory.capacity();
+            }
+        }
+
+        private Chunk newChunk(int size, boolean dedicated)
+        {
+            int id = unusedIds.isEmpty() ? chunks.size() : unusedIds.pop();
+            Chunk chunk = new Chunk(id, size, dedicated);
+
+            if (id == chunks.size())
+                chunks.add(chunk);
+            else
+                chunks.set(id, chunk);
+
+            allocated += size;
+
+            return chunk;
+        }
+
+        private final int chunkSize;
+
+        private long[] keys; // four per slot
+
+        private long[] locations; // chunk id + 1 in the high word and offset in the low, or 0 if the slot is empty
+
+        private int[] lengths;
+
+        private int count;
+
+        private long allocated;
+
+        private Chunk current;
+
+        private final ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+
+        private final ArrayDeque<Chunk> spare = new ArrayDeque<Chunk>();
+
+        private final ArrayDeque<Integer> unusedIds = new ArrayDeque<Integer>();
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int MAX_SPARE = 4;
+
+    private final Segment[] segments;
+}
@@ -38,6 +38,9 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.SyncFailedException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.Uid;
@@ -48,6 +51,7 @@ import com.arjuna.ats.arjuna.objectstore.StateType;
 import com.arjuna.ats.arjuna.state.InputObjectState;
 import com.arjuna.ats.arjuna.state.OutputObjectState;
 import com.arjuna.ats.arjuna.utils.FileLock;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
 
 /**
  * A shadowing file store implementation. Each version of the object's state is
@@ -170,6 +174,10 @@ public class ShadowingStore extends FileSystemStore
                 {
                     super.addToCache(filename);
                     super.removeFromCache(shadow);
+
+                    syncDirectoryOf(originalState);
+                    updateIndex(objUid, tName, (state == StateStatus.OS_UNCOMMITTED_HIDDEN)
+                            ? StateStatus.OS_COMMITTED_HIDDEN : StateStatus.OS_COMMITTED);
                 }
 
                 shadowState = null;
@@ -204,6 +212,7 @@ public class ShadowingStore extends FileSystemStore
         int state = currentState(objUid, tName);
         String path1 = null;
         String path2 = null;
+        int indexed = state;
 
         switch (state)
         {
@@ -222,6 +231,8 @@ public class ShadowingStore extends FileSystemStore
                 {
                     super.removeFromCache(path1);
                     super.addToCache(path2);
+
+                    indexed = StateStatus.OS_COMMITTED_HIDDEN;
                 }
                 else {
                     tsLogger.i18NLogger.warn_objectstore_ShadowingStore_3(newState.getName(), oldState.getName());
@@ -244,6 +255,8 @@ public class ShadowingStore extends FileSystemStore
                 {
                     super.removeFromCache(path1);
                     super.addToCache(path2);
+
+                    indexed = StateStatus.OS_UNCOMMITTED_HIDDEN;
                 }
                 else {
                     tsLogger.i18NLogger.warn_objectstore_ShadowingStore_3(newState.getName(), oldState.getName());
@@ -258,6 +271,9 @@ public class ShadowingStore extends FileSystemStore
                 hiddenOk = false;
         }
 
+        if (indexed != state)
+            updateIndex(objUid, tName, indexed);
+
         return hiddenOk;
     }
 
@@ -273,6 +289,7 @@ public class ShadowingStore extends FileSystemStore
         int state = currentState(objUid, tName);
         String path1 = null;
         String path2 = null;
+        int indexed = state;
 
         switch (state)
         {
@@ -288,6 +305,8 @@ public class ShadowingStore extends FileSystemStore
                 {
                     super.removeFromCache(path2);
                     super.addToCache(path1);
+
+                    indexed = StateStatus.OS_UNCOMMITTED;
                 }
                 else {
                     tsLogger.i18NLogger.warn_objectstore_ShadowingStore_4(newState.getName(), oldState.getName());
@@ -310,6 +329,8 @@ public class ShadowingStore extends FileSystemStore
                 {
                     super.removeFromCache(path2);
                     super.addToCache(path1);
+
+                    indexed = StateStatus.OS_COMMITTED;
                 }
                 else {
                     tsLogger.i18NLogger.warn_objectstore_ShadowingStore_4(newState.getName(), oldState.getName());
@@ -327,6 +348,9 @@ public class ShadowingStore extends FileSystemStore
                 revealedOk = false;
         }
 
+        if (indexed != state)
+            updateIndex(objUid, tName, indexed);
+
         return revealedOk;
     }
 
@@ -526,6 +550,9 @@ public class ShadowingStore extends FileSystemStore
                     }
 
                     closeAndUnlock(fd, null, null);
+
+                    if (removeOk)
+                        syncDirectoryOf(fd);
                 }
                 else {
                     tsLogger.i18NLogger.warn_objectstore_ShadowingStore_12(objUid);
@@ -534,7 +561,20 @@ public class ShadowingStore extends FileSystemStore
                 }
 
                 if (removeOk)
+                {
                     super.removeFromCache(fname);
+
+                    /*
+                     * Removing the original of a committed state, as a transaction log is
+                     * removed, leaves nothing behind (short of a hidden copy made by the
+                     * tooling, which the index does not track), so skip the stat there.
+                     */
+
+                    if ((ft == StateType.OS_ORIGINAL) && (state == StateStatus.OS_COMMITTED))
+                        updateIndex(objUid, name, StateStatus.OS_UNKNOWN);
+                    else if (storeIndex() != null)
+                        updateIndex(objUid, name, currentState(objUid, name));
+                }
             }
             else
             {
@@ -589,7 +629,10 @@ public class ShadowingStore extends FileSystemStore
                 {
                     ofile = new FileOutputStream(fd);
 
-                    ofile.write(state.buffer(), 0, imageSize);
+                    java.nio.ByteBuffer image = state.byteBuffer();
+
+                    while (image.hasRemaining())
+                        ofile.getChannel().write(image);
 
                     if (synchronousWrites())
                     {
@@ -599,7 +642,11 @@ public class ShadowingStore extends FileSystemStore
 
                         FileDescriptor fileDesc = ofile.getFD(); // assume it's
                         // valid!
-                        fileDesc.sync();
+
+                        if (groupCommit != null)
+                            groupCommit.sync(fileDesc, fd);
+                        else
+                            fileDesc.sync();
                     }
                 }
                 catch (SyncFailedException e)
@@ -638,6 +685,9 @@ public class ShadowingStore extends FileSystemStore
 
             super.addToCache(fname);
 
+            // the index is rebuilt if the VM fails, so the entry does not need to be forced
+            updateIndex(objUid, tName, (ft == StateType.OS_SHADOW) ? StateStatus.OS_UNCOMMITTED : StateStatus.OS_COMMITTED);
+
             return true;
         }
         else
@@ -647,11 +697,299 @@ public class ShadowingStore extends FileSystemStore
                             + objUid);
     }
 
+    /**
+     * Given a type name initialise <code>state</code> to contain all of the
+     * Uids of objects of that type. If the store index is enabled then the
+     * index is used rather than scanning the file system.
+     */
+
+    public boolean allObjUids (String tName, InputObjectState state, int match) throws ObjectStoreException
+    {
+        StoreIndex index = storeIndex();
+
+        if (index == null)
+            return scanAllObjUids(tName, state, match);
+
+        if (tsLogger.logger.isTraceEnabled()) {
+            tsLogger.logger.trace("ShadowingStore.allObjUids(" + tName + ", " + state + ", " + match + ") - using index");
+        }
+
+        OutputObjectState store = new OutputObjectState();
+
+        try
+        {
+            for (Map.Entry<Uid, Integer> entry : index.getEntries(tName).entrySet())
+            {
+                Uid aUid = entry.getKey();
+                int current = currentState(aUid, tName);
+
+                // the index may be behind for removals and status changes, so trust the store
+
+                if (current != entry.getValue().intValue())
+                    index.update(tName, aUid, current);
+
+                if ((current != StateStatus.OS_UNKNOWN) && ((match == StateStatus.OS_UNKNOWN) || (match == current)))
+                    UidHelper.packInto(aUid, store);
+            }
+
+            UidHelper.packInto(Uid.nullUid(), store);
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(tsLogger.i18NLogger.get_objectstore_FileSystemStore_2a(), e);
+        }
+
+        state.setBuffer(store.buffer());
+
+        return true;
+    }
+
+    /**
+     * Obtain all types of objects stored in the object store. If the store
+     * index is enabled then only types which currently have states are returned.
+     */
+
+    public boolean allTypes (InputObjectState foundTypes) throws ObjectStoreException
+    {
+        StoreIndex index = storeIndex();
+
+        if (index == null)
+            return super.allTypes(foundTypes);
+
+        Set<String> typeSet = new HashSet<String>();
+        OutputObjectState store = new OutputObjectState();
+
+        try
+        {
+            for (String typeName : index.getTypes())
+            {
+                String value = "";
+
+                for (String element : typeName.split("/"))
+                {
+                    if (element.length() == 0)
+                        continue;
+
+                    value = (value.length() == 0) ? element : value + File.separator + element;
+
+                    if (typeSet.add(value))
+                        store.packString(value);
+                }
+            }
+
+            store.packString("");
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(tsLogger.i18NLogger.get_objectstore_FileSystemStore_4(), e);
+        }
+
+        foundTypes.setBuffer(store.buffer());
+
+        return true;
+    }
+
+    /**
+     * Close the store index, if open, so that the next VM to use the store can
+     * load it rather than rebuild it.
+     */
+
+    public void stop ()
+    {
+        StoreIndex index;
+
+        synchronized (this)
+        {
+            index = _storeIndex;
+            _storeIndex = null;
+        }
+
+        if (index != null)
+        {
+            try
+            {
+                index.close();
+            }
+            catch (IOException e)
+            {
+                tsLogger.i18NLogger.warn_objectstore_StoreIndex_closeFailed(getStoreName(), e);
+            }
+        }
+
+        super.stop();
+    }
+
+    /**
+     * Scan the file system for the Uids of objects of the given type.
+     */
+
+    protected boolean scanAllObjUids (String tName, InputObjectState state, int match) throws ObjectStoreException
+    {
+        return super.allObjUids(tName, state, match);
+    }
+
+    /**
+     * @return the store index, opening and (if necessary) populating it on first
+     * use, or null if the index is not enabled or cannot be used.
+     */
+
+    protected final StoreIndex storeIndex () throws ObjectStoreException
+    {
+        if (!_useIndex)
+            return null;
+
+        StoreIndex index = _storeIndex;
+
+        if (index != null)
+            return index;
+
+        synchronized (this)
+        {
+            if ((_storeIndex == null) && _useIndex)
+            {
+                try
+                {
+                    index = StoreIndex.getInstance(new File(locateStore(getStoreName()), StoreIndex.INDEX_NAME));
+                }
+                catch (IOException e)
+                {
+                    tsLogger.i18NLogger.warn_objectstore_StoreIndex_unavailable(getStoreName(), e);
+
+                    index = null;
+                }
+
+                if (index == null)
+                {
+                    _useIndex = false;
+
+                    return null;
+                }
+
+                synchronized (index)
+                {
+                    if (index.requiresRebuild())
+                        rebuildIndex(index);
+                }
+
+                _storeIndex = index;
+            }
+
+            return _storeIndex;
+        }
+    }
+
+    /*
+     * Populate a new index from the contents of the store. This is the one
+     * time cost of enabling the index on an existing store.
+     */
+
+    private void rebuildIndex (StoreIndex index) throws ObjectStoreException
+    {
+        InputObjectState types = new InputObjectState();
+
+        if (!super.allTypes(types))
+            return;
+
+        try
+        {
+            String typeName = types.unpackString();
+
+            while ((typeName != null) && (typeName.length() > 0))
+            {
+                InputObjectState uids = new InputObjectState();
+
+                if (scanAllObjUids(typeName, uids, StateStatus.OS_UNKNOWN))
+                {
+                    Uid aUid = UidHelper.unpackFrom(uids);
+
+                    while (aUid.notEquals(Uid.nullUid()))
+                    {
+                        index.update(typeName, aUid, currentState(aUid, typeName));
+
+                        aUid = UidHelper.unpackFrom(uids);
+                    }
+                }
+
+                typeName = types.unpackString();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(tsLogger.i18NLogger.get_objectstore_FileSystemStore_2a(), e);
+        }
+
+        index.rebuilt();
+    }
+
+    /**
+     * Record the new status of the state in the store index, if enabled. The
+     * caller already knows the status, so the store is not consulted.
+     */
+
+    protected void updateIndex (Uid objUid, String tName, int status) throws ObjectStoreException
+    {
+        StoreIndex index = storeIndex();
+
+        if (index == null)
+            return;
+
+        try
+        {
+            index.update(tName, objUid, status);
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(tsLogger.i18NLogger.get_objectstore_FileSystemStore_2a(), e);
+        }
+    }
+
+    /**
+     * If group commit is enabled then make the directory entry change (a
+     * removal or rename) durable, sharing the sync with any concurrent callers.
+     * Without group commit directory changes are left to the file system, as
+     * they always have been.
+     */
+
+    protected void syncDirectoryOf (File fd)
+    {
+        if ((groupCommit != null) && synchronousWrites())
+        {
+            try
+            {
+                groupCommit.syncDirectory(fd.getAbsoluteFile().getParentFile());
+            }
+            catch (SyncFailedException e)
+            {
+                tsLogger.i18NLogger.warn_objectstore_ShadowingStore_dirsync(fd.getPath(), e);
+            }
+        }
+    }
+
     public ShadowingStore(ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
     {
         super(objectStoreEnvironmentBean);
+
+        if (objectStoreEnvironmentBean.isGroupCommit())
+        {
+            groupCommit = new GroupCommitSync(objectStoreEnvironmentBean.getGroupCommitWindow(),
+                    objectStoreEnvironmentBean.getGroupCommitMaxBatchSize());
+        }
+        else
+            groupCommit = null;
+
+        _useIndex = objectStoreEnvironmentBean.isObjectStoreIndex();
     }
 
+    /**
+     * Shared by all writers to this store instance when group commit is enabled, otherwise null.
+     */
+
+    protected final GroupCommitSync groupCommit;
+
+    private volatile boolean _useIndex;
+
+    private volatile StoreIndex _storeIndex;
+
     public static final char HIDDINGCHAR = '#';
 
     public static final char SHADOWCHAR = '!';
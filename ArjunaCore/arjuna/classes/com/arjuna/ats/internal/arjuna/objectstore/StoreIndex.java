@@ -0,0 +1,597 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.internal.arjuna.objectstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+
+/**
+ * A persistent, memory-mapped index of the (type name, Uid, StateStatus)
+ * entries held by a file system object store. The store updates the index as
+ * it writes and removes states, so that recovery scans and tooling can iterate
+ * the index rather than listing every directory of the store. Restart cost is
+ * therefore proportional to the number of live entries rather than the size
+ * (or history) of the store.
+ *
+ * The file is an append-only sequence of small CRC protected entries which is
+ * replayed into memory when the index is opened, and rewritten (compacted) when
+ * it fills. Updates are not forced as the store writes, so the index costs no
+ * syncs on the commit path. Instead the header records whether the index was
+ * closed cleanly: opening the index marks it as in use, and the last close
+ * forces every update and then marks it closed. An index which is found in use
+ * when it is opened may be missing entries, because the VM using it failed, so
+ * it is discarded and rebuilt from the store. The status of an entry is only a
+ * hint: the store verifies the status of every index entry it hands out, so a
+ * stale entry is simply dropped.
+ *
+ * The index assumes exclusive use of the store. If another process already
+ * holds the index lock then {@link #getInstance(File)} returns null and the
+ * store falls back to scanning.
+ */
+
+public class StoreIndex
+{
+    /**
+     * Obtain the index for the given file, opening (or creating) it if this is
+     * the first use within the VM.
+     *
+     * @return the index, or null if it is in use by another process.
+     */
+
+    public static StoreIndex getInstance (File file) throws IOException
+    {
+        String path = file.getCanonicalPath();
+
+        synchronized (_instances)
+        {
+            StoreIndex index = _instances.get(path);
+
+            if (index == null)
+            {
+                index = open(new File(path));
+
+                if (index != null)
+                    _instances.put(path, index);
+            }
+
+            if (index != null)
+                index._references++;
+
+            return index;
+        }
+    }
+
+    /**
+     * @return true if the index file did not exist, was unusable or was not
+     * closed cleanly when it was opened, in which case the caller must populate
+     * it from the store.
+     */
+
+    public boolean requiresRebuild ()
+    {
+        return _requiresRebuild;
+    }
+
+    /**
+     * Called once the caller has populated a new index.
+     */
+
+    public void rebuilt ()
+    {
+        _requiresRebuild = false;
+
+        force();
+    }
+
+    /**
+     * Record the current status of the state (type name, Uid). A status of
+     * StateStatus.OS_UNKNOWN removes the entry.
+     */
+
+    public void update (String typeName, Uid uid, int status) throws IOException
+    {
+        String type = normalise(typeName);
+        boolean removed = (status == StateStatus.OS_UNKNOWN);
+
+        synchronized (this)
+        {
+            ConcurrentMap<Uid, Integer> entries = entriesFor(type);
+            Integer previous = removed ? entries.remove(uid) : entries.put(uid, status);
+
+            if ((previous == null && removed) || (previous != null && previous.intValue() == status))
+                return;
+
+            if (removed)
+                _live--;
+            else if (previous == null)
+                _live++;
+
+            append(type, uid, removed ? REMOVED : (byte) status);
+        }
+    }
+
+    /**
+     * Make every update so far durable. Concurrent callers share a single force.
+     */
+
+    public void force ()
+    {
+        long target = _appended.get();
+
+        if (_forced.get() >= target)
+            return;
+
+        synchronized (_forceLock)
+        {
+            if (_forced.get() >= target)
+                return;
+
+            MappedByteBuffer buffer;
+
+            synchronized (this)
+            {
+                buffer = _buffer;
+                target = _appended.get();
+            }
+
+            buffer.force();
+
+            _forced.set(target);
+        }
+    }
+
+    /**
+     * @return the type names with at least one entry, without any leading separator.
+     */
+
+    public Set<String> getTypes ()
+    {
+        Set<String> types = new TreeSet<String>();
+
+        for (Map.Entry<String, ConcurrentMap<Uid, Integer>> entry : _content.entrySet())
+        {
+            if (!entry.getValue().isEmpty())
+                types.add(entry.getKey());
+        }
+
+        return types;
+    }
+
+    /**
+     * @return a snapshot of the Uids of the given type and their last recorded status.
+     */
+
+    public Map<Uid, Integer> getEntries (String typeName)
+    {
+        ConcurrentMap<Uid, Integer> entries = _content.get(normalise(typeName));
+
+        if (entries == null)
+            return new HashMap<Uid, Integer>();
+
+        return new HashMap<Uid, Integer>(entries);
+    }
+
+    /**
+     * @return the number of entries in the index.
+     */
+
+    public synchronized int size ()
+    {
+        return _live;
+    }
+
+    /**
+     * Give up a reference obtained from {@link #getInstance(File)}. Once the
+     * last is given up, force any outstanding updates, mark the index closed,
+     * release the inter-process lock and forget this instance, so that the next
+     * call to {@link #getInstance(File)} reloads the index from disk.
+     */
+
+    public void close () throws IOException
+    {
+        synchronized (_instances)
+        {
+            if (--_references > 0)
+                return;
+
+            _instances.remove(_file.getPath());
+
+            try
+            {
+                force();
+
+                synchronized (this)
+                {
+                    _buffer.putInt(STATE_OFFSET, CLOSED);
+                    _buffer.force();
+                }
+            }
+            finally
+            {
+                _lockRaf.close();
+            }
+        }
+    }
+
+    static String normalise (String typeName)
+    {
+        if (typeName == null)
+            return "";
+
+        String type = typeName.replace(File.separatorChar, '/');
+        int start = 0;
+        int end = type.length();
+
+        while ((start < end) && (type.charAt(start) == '/'))
+            start++;
+
+        while ((end > start) && (type.charAt(end - 1) == '/'))
+            end--;
+
+        return type.substring(start, end);
+    }
+
+    private static StoreIndex open (File file) throws IOException
+    {
+        File lockFile = new File(file.getPath() + LOCK_SUFFIX);
+        RandomAccessFile lockRaf = new RandomAccessFile(lockFile, "rw");
+        FileLock lock;
+
+        try
+        {
+            lock = lockRaf.getChannel().tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            lock = null;
+        }
+
+        if (lock == null)
+        {
+            lockRaf.close();
+
+            tsLogger.i18NLogger.warn_objectstore_StoreIndex_locked(file.getPath());
+
+            return null;
+        }
+
+        StoreIndex index = new StoreIndex(file, lockRaf);
+
+        index.load();
+
+        return index;
+    }
+
+    private StoreIndex (File file, RandomAccessFile lockRaf)
+    {
+        _file = file;
+        _lockRaf = lockRaf;
+    }
+
+    private void load () throws IOException
+    {
+        boolean exists = _file.exists() && (_file.length() >= HEADER_SIZE);
+
+        map(exists ? Math.max(_file.length(), INITIAL_CAPACITY) : INITIAL_CAPACITY, !exists);
+
+        if (!exists || (_buffer.getInt(0) != MAGIC) || (_buffer.getInt(4) != VERSION))
+        {
+            if (exists) {
+                tsLogger.i18NLogger.warn_objectstore_StoreIndex_invalid(_file.getPath());
+            }
+
+            reset();
+
+            _requiresRebuild = true;
+
+            return;
+        }
+
+        if (_buffer.getInt(STATE_OFFSET) != CLOSED)
+        {
+            // the VM which had it open failed, so updates it made may be missing
+
+            if (tsLogger.logger.isDebugEnabled()) {
+                tsLogger.logger.debug("StoreIndex.load - " + _file.getPath() + " was not closed cleanly and will be rebuilt");
+            }
+
+            reset();
+
+            _requiresRebuild = true;
+
+            return;
+        }
+
+        int position = HEADER_SIZE;
+        boolean torn = false;
+
+        while (position + ENTRY_HEADER_SIZE <= _buffer.capacity())
+        {
+            int status = _buffer.get(position);
+            int typeLength = _buffer.getShort(position + 1) & 0xffff;
+            int uidLength = _buffer.getShort(position + 3) & 0xffff;
+            int crc = _buffer.getInt(position + 5);
+            int length = ENTRY_HEADER_SIZE + typeLength + uidLength;
+
+            if ((uidLength == 0) || (position + length > _buffer.capacity()))
+                break;
+
+            byte[] body = new byte[typeLength + uidLength];
+
+            _buffer.position(position + ENTRY_HEADER_SIZE);
+            _buffer.get(body);
+
+            if (crc != checksum((byte) status, body))
+            {
+                // torn entry from a crash mid-append, nothing beyond it is valid
+                torn = true;
+
+                break;
+            }
+
+            String type = new String(body, 0, typeLength, StandardCharsets.UTF_8);
+            Uid uid = new Uid(new String(body, typeLength, uidLength, StandardCharsets.UTF_8));
+            ConcurrentMap<Uid, Integer> entries = entriesFor(type);
+
+            if (status == REMOVED)
+            {
+                if (entries.remove(uid) != null)
+                    _live--;
+            }
+            else if (entries.put(uid, status) == null)
+                _live++;
+
+            position += length;
+        }
+
+        _position = position;
+
+        if (torn)
+        {
+            // clear the remains of the torn entry so that later appends replay cleanly
+            for (int i = position; i < _buffer.capacity(); i++)
+                _buffer.put(i, (byte) 0);
+        }
+
+        // from now on the updates are not forced, so the index is only good once closed
+        _buffer.putInt(STATE_OFFSET, IN_USE);
+        _buffer.force();
+    }
+
+    // must hold the instance lock
+    private void append (String type, Uid uid, byte status) throws IOException
+    {
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        byte[] uidBytes = uid.stringForm().getBytes(StandardCharsets.UTF_8);
+        int length = ENTRY_HEADER_SIZE + typeBytes.length + uidBytes.length;
+
+        if (_position + length > _buffer.capacity())
+            compact(length);
+
+        byte[] body = new byte[typeBytes.length + uidBytes.length];
+
+        System.arraycopy(typeBytes, 0, body, 0, typeBytes.length);
+        System.arraycopy(uidBytes, 0, body, typeBytes.length, uidBytes.length);
+
+        // write the body first so that a non-zero uid length is never seen before its data
+        _buffer.position(_position + ENTRY_HEADER_SIZE);
+        _buffer.put(body);
+        _buffer.putInt(_position + 5, checksum(status, body));
+        _buffer.putShort(_position + 1, (short) typeBytes.length);
+        _buffer.put(_position, status);
+        _buffer.putShort(_position + 3, (short) uidBytes.length);
+
+        _position += length;
+
+        _appended.incrementAndGet();
+    }
+
+    /*
+     * Rewrite the live entries into a new file (growing it if they would fill more
+     * than half of the current capacity) and atomically replace the old one.
+     */
+
+    // must hold the instance lock
+    private void compact (int required) throws IOException
+    {
+        ByteBuffer live = ByteBuffer.allocate(_buffer.capacity());
+        int liveBytes = 0;
+
+        for (Map.Entry<String, ConcurrentMap<Uid, Integer>> typeEntry : _content.entrySet())
+        {
+            byte[] typeBytes = typeEntry.getKey().getBytes(StandardCharsets.UTF_8);
+
+            for (Map.Entry<Uid, Integer> entry : typeEntry.getValue().entrySet())
+            {
+                byte[] uidBytes = entry.getKey().stringForm().getBytes(StandardCharsets.UTF_8);
+                byte[] body = new byte[typeBytes.length + uidBytes.length];
+                byte status = (byte) entry.getValue().intValue();
+
+                System.arraycopy(typeBytes, 0, body, 0, typeBytes.length);
+                System.arraycopy(uidBytes, 0, body, typeBytes.length, uidBytes.length);
+
+                if (live.remaining() < ENTRY_HEADER_SIZE + body.length)
+                {
+                    ByteBuffer bigger = ByteBuffer.allocate(live.capacity() * 2);
+
+                    live.flip();
+                    bigger.put(live);
+                    live = bigger;
+                }
+
+                live.put(status).putShort((short) typeBytes.length).putShort((short) uidBytes.length);
+                live.putInt(checksum(status, body)).put(body);
+
+                liveBytes += ENTRY_HEADER_SIZE + body.length;
+            }
+        }
+
+        long capacity = _buffer.capacity();
+
+        while (HEADER_SIZE + liveBytes + required > capacity / 2)
+            capacity *= 2;
+
+        File tmp = new File(_file.getPath() + TMP_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+
+        try
+        {
+            raf.setLength(0);
+            raf.setLength(capacity);
+
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(STATE_OFFSET, IN_USE);
+            live.flip();
+            buffer.position(HEADER_SIZE);
+            buffer.put(live);
+            buffer.force();
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        map(capacity, false);
+
+        _position = HEADER_SIZE + liveBytes;
+
+        _appended.incrementAndGet();
+    }
+
+    // must hold the instance lock (or be called during construction)
+    private void map (long capacity, boolean create) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(_file, "rw");
+
+        try
+        {
+            if (create || (raf.length() < capacity))
+                raf.setLength(capacity);
+
+            _buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        finally
+        {
+            raf.close(); // the mapping remains valid
+        }
+    }
+
+    private void reset ()
+    {
+        for (int i = 0; i < _buffer.capacity(); i++)
+            _buffer.put(i, (byte) 0);
+
+        _buffer.putInt(0, MAGIC);
+        _buffer.putInt(4, VERSION);
+        _buffer.putInt(STATE_OFFSET, IN_USE);
+        _buffer.force();
+
+        _position = HEADER_SIZE;
+        _live = 0;
+        _content.clear();
+    }
+
+    private ConcurrentMap<Uid, Integer> entriesFor (String type)
+    {
+        ConcurrentMap<Uid, Integer> entries = _content.get(type);
+
+        if (entries == null)
+        {
+            entries = new ConcurrentHashMap<Uid, Integer>();
+
+            ConcurrentMap<Uid, Integer> existing = _content.putIfAbsent(type, entries);
+
+            if (existing != null)
+                entries = existing;
+        }
+
+        return entries;
+    }
+
+    private static int checksum (byte status, byte[] body)
+    {
+        CRC32 crc = new CRC32();
+
+        crc.update(status);
+        crc.update(body, 0, body.length);
+
+        return (int) crc.getValue();
+    }
+
+    public static final String INDEX_NAME = "StoreIndex";
+
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final byte REMOVED = 0;
+
+    private static final int MAGIC = 0x4a534958;
+    private static final int VERSION = 1;
+    private static final int STATE_OFFSET = 8;
+    private static final int IN_USE = 0;
+    private static final int CLOSED = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_HEADER_SIZE = 1 + 2 + 2 + 4; // status, type length, uid length, crc
+    private static final long INITIAL_CAPACITY = 1024 * 1024;
+
+    private static final Map<String, StoreIndex> _instances = new HashMap<String, StoreIndex>();
+
+    private final File _file;
+    private final RandomAccessFile _lockRaf; // holds the inter-process lock until the last close
+    private final ConcurrentMap<String, ConcurrentMap<Uid, Integer>> _content = new ConcurrentHashMap<String, ConcurrentMap<Uid, Integer>>();
+    private final Object _forceLock = new Object();
+    private final AtomicLong _appended = new AtomicLong();
+    private final AtomicLong _forced = new AtomicLong();
+
+    private MappedByteBuffer _buffer;
+    private int _position;
+    private int _live;
+    private int _references; // guarded by _instances
+    private volatile boolean _requiresRebuild;
+}
@@ -309,18 +309,21 @@ public class VolatileStore extends ObjectStore
           that used synchronized Map if you want a build for small footprint environments.
 
           The byte[] array is simply the contents of the Object's state buffer.
+
+          Subclasses that keep the states elsewhere, such as OffHeapVolatileStore, override
+          read, write, remove and getState.
     */
     private ConcurrentMap<Uid, byte[]> stateMap = new ConcurrentHashMap<Uid, byte[]>();
 
     private ConcurrentMap<Uid, String> stateTypes;
 
-    private boolean remove(Uid u, String tn, int state) throws ObjectStoreException
+    protected boolean remove(Uid u, String tn, int state) throws ObjectStoreException
     {
         Object oldValue = stateMap.remove(u);
         return (oldValue != null);
     }
 
-    private InputObjectState read(Uid u, String tn, int state) throws ObjectStoreException
+    protected InputObjectState read(Uid u, String tn, int state) throws ObjectStoreException
     {
         byte[] data = stateMap.get(u);
 
@@ -332,13 +335,13 @@ public class VolatileStore extends ObjectStore
         }
     }
 
-    private boolean write(Uid u, String tn, OutputObjectState buff, int state) throws ObjectStoreException
+    protected boolean write(Uid u, String tn, OutputObjectState buff, int state) throws ObjectStoreException
     {
         stateMap.put(u, buff.buffer());
         return true;
     }
 
-    private int getState(Uid u)
+    protected int getState(Uid u)
     {
         if(stateMap.containsKey(u)) {
             return StateStatus.OS_COMMITTED;
@@ -0,0 +1,607 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.internal.arjuna.objectstore;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.objectstore.StateType;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+
+/**
+ * A write-behind cached object store. Like {@link CacheStore}, writes, removes
+ * and commits are queued and applied to the underlying hashed store later, but
+ * the pending work is sharded by Uid and each shard is a lock-free queue, so
+ * callers do not contend on a single lock. Each shard is drained in order by
+ * one of several flusher threads, which preserves the order of the operations
+ * on any given state.
+ *
+ * A write which supersedes a write of the same state that is still waiting to
+ * be flushed replaces it rather than being queued, and a remove cancels a
+ * waiting write of the state it removes.
+ *
+ * Queue depth, coalescing and flush latency are available from the getters
+ * on this class.
+ */
+
+public class WriteBehindCacheStore extends HashedStore
+{
+    public WriteBehindCacheStore (ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
+    {
+        super(objectStoreEnvironmentBean);
+
+        super.syncWrites = objectStoreEnvironmentBean.isCacheStoreSync();
+
+        _maxPending = objectStoreEnvironmentBean.getWriteBehindMaxPending();
+        _flushers = new Flusher[objectStoreEnvironmentBean.getWriteBehindFlushers()];
+        _shards = new Shard[_flushers.length * SHARDS_PER_FLUSHER];
+
+        for (int i = 0; i < _shards.length; i++)
+            _shards[i] = new Shard(i);
+
+        for (int i = 0; i < _flushers.length; i++)
+        {
+            _flushers[i] = new Flusher(i);
+            _flushers[i].start();
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread("WriteBehindCacheStoreShutdownThread")
+        {
+            public void run ()
+            {
+                flush();
+            }
+        });
+    }
+
+    public boolean commit_state (Uid objUid, String tName) throws ObjectStoreException
+    {
+        enqueue(new Work(COMMIT, objUid, tName, StateType.OS_SHADOW, null));
+
+        return true;
+    }
+
+    public boolean hide_state (Uid objUid, String tName) throws ObjectStoreException
+    {
+        quiesce(objUid, tName);
+
+        return super.hide_state(objUid, tName);
+    }
+
+    public boolean reveal_state (Uid objUid, String tName) throws ObjectStoreException
+    {
+        quiesce(objUid, tName);
+
+        return super.reveal_state(objUid, tName);
+    }
+
+    /**
+     * Wait until all of the work queued before this call has been applied to
+     * the underlying store.
+     */
+
+    public void sync () throws java.io.SyncFailedException, ObjectStoreException
+    {
+        flush();
+    }
+
+    /**
+     * @return the number of operations waiting to be (or being) flushed.
+     */
+
+    public int getQueueDepth ()
+    {
+        return _pending.get();
+    }
+
+    /**
+     * @return the number of operations applied to the underlying store.
+     */
+
+    public long getFlushedCount ()
+    {
+        return _flushed.get();
+    }
+
+    /**
+     * @return the number of writes which replaced a waiting write of the same state.
+     */
+
+    public long getCoalescedCount ()
+    {
+        return _coalesced.get();
+    }
+
+    /**
+     * @return the number of writes cancelled by a later remove of the same state.
+     */
+
+    public long getCancelledCount ()
+    {
+        return _cancelled.get();
+    }
+
+    /**
+     * @return the mean time, in microseconds, from an operation being queued to it being applied.
+     */
+
+    public long getAverageFlushLatency ()
+    {
+        long flushed = _flushed.get();
+
+        return (flushed == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(_totalLatency.get() / flushed);
+    }
+
+    /**
+     * @return the longest time, in microseconds, from an operation being queued to it being applied.
+     */
+
+    public long getMaximumFlushLatency ()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(_maxLatency.get());
+    }
+
+    protected boolean remove_state (Uid objUid, String name, int ft) throws ObjectStoreException
+    {
+        Shard shard = shardFor(objUid);
+        String key = key(objUid, name);
+        Work tail = shard.tails.get(key);
+
+        /*
+         * If the last thing queued for this state is a write of the same state
+         * then it need never happen. If nothing before it is outstanding and
+         * there's nothing on disk then there's nothing left to remove either.
+         */
+
+        if ((tail != null) && (tail.type == WRITE) && (tail.fileType == ft) && tail.cancel())
+        {
+            _cancelled.incrementAndGet();
+
+            Work previous = tail.previous;
+
+            if (((previous == null) || previous.isFinished()) && !exists(genPathName(objUid, name, ft)))
+                return true;
+        }
+        else if (((tail == null) || tail.isFinished()) && !exists(genPathName(objUid, name, ft)))
+        {
+            return false;
+        }
+
+        enqueue(new Work(REMOVE, objUid, name, ft, null));
+
+        return true;
+    }
+
+    protected boolean write_state (Uid objUid, String tName, OutputObjectState state, int ft) throws ObjectStoreException
+    {
+        Shard shard = shardFor(objUid);
+        Work tail = shard.tails.get(key(objUid, tName));
+
+        // write_state overwrites the state, so a waiting write of the same state can simply take the new image
+        if ((tail != null) && (tail.type == WRITE) && (tail.fileType == ft) && tail.supersede(state))
+        {
+            _coalesced.incrementAndGet();
+
+            return true;
+        }
+
+        enqueue(new Work(WRITE, objUid, tName, ft, state));
+
+        return true;
+    }
+
+    /**
+     * Before we look at the disk look for the state amongst the queued work,
+     * newest first, in case it hasn't been written out yet.
+     */
+
+    protected InputObjectState read_state (Uid objUid, String tName, int ft) throws ObjectStoreException
+    {
+        Shard shard = shardFor(objUid);
+        String key = key(objUid, tName);
+
+        for (;;)
+        {
+            long completed = shard.completed;
+            int fileType = ft;
+            Work work = shard.tails.get(key);
+
+            while ((work != null) && !work.isFinished())
+            {
+                if (work.type == COMMIT)
+                {
+                    // a commit turns the shadow into the original and leaves no shadow
+                    if (fileType == StateType.OS_SHADOW)
+                        return null;
+
+                    fileType = StateType.OS_SHADOW;
+                }
+                else if (work.fileType == fileType && !work.isCancelled())
+                {
+                    OutputObjectState state = work.state();
+
+                    if (work.type == REMOVE)
+                        return null;
+                    else if (state != null)
+                        return new InputObjectState(state);
+                }
+
+                work = work.previous;
+            }
+
+            InputObjectState state = super.read_state(objUid, tName, fileType);
+
+            // if work completed while we were looking, the disk and queue may disagree so look again
+            if ((completed == shard.completed) || (state != null))
+                return state;
+        }
+    }
+
+    private void enqueue (Work work)
+    {
+        Shard shard = shardFor(work.objUid);
+
+        while (_pending.get() >= _maxPending)
+        {
+            // too much outstanding, so give the flushers a chance to catch up
+            wakeFlushers();
+
+            LockSupport.parkNanos(OVERFLOW_WAIT);
+        }
+
+        _pending.incrementAndGet();
+
+        /*
+         * Link the work to whatever was queued before it for the same state
+         * before making it visible, so readers always see the whole chain.
+         */
+
+        for (;;)
+        {
+            Work previous = shard.tails.get(work.key);
+
+            work.previous = previous;
+
+            if ((previous == null) ? (shard.tails.putIfAbsent(work.key, work) == null) : shard.tails.replace(work.key, previous, work))
+                break;
+        }
+
+        shard.enqueued.incrementAndGet();
+        shard.queue.offer(work);
+
+        Flusher flusher = _flushers[shard.index % _flushers.length];
+
+        if (flusher.idle)
+            LockSupport.unpark(flusher);
+    }
+
+    /*
+     * Wait until all of the work queued (so far) for the state has been done.
+     */
+
+    private void quiesce (Uid objUid, String tName)
+    {
+        Shard shard = shardFor(objUid);
+        String key = key(objUid, tName);
+        Work tail;
+
+        while (((tail = shard.tails.get(key)) != null) && !tail.isFinished())
+        {
+            wakeFlushers();
+
+            LockSupport.parkNanos(OVERFLOW_WAIT);
+        }
+    }
+
+    private void flush ()
+    {
+        long[] targets = new long[_shards.length];
+
+        for (int i = 0; i < _shards.length; i++)
+            targets[i] = _shards[i].enqueued.get();
+
+        for (int i = 0; i < _shards.length; i++)
+        {
+            while (_shards[i].completed < targets[i])
+            {
+                Flusher flusher = _flushers[i % _flushers.length];
+
+                if (!flusher.isAlive())
+                {
+                    // the VM is going down and the daemon flusher has gone, so do the work here
+                    synchronized (flusher)
+                    {
+                        drain(_shards[i]);
+                    }
+                }
+                else
+                {
+                    LockSupport.unpark(flusher);
+                    LockSupport.parkNanos(OVERFLOW_WAIT);
+                }
+            }
+        }
+    }
+
+    private void wakeFlushers ()
+    {
+        for (Flusher flusher : _flushers)
+            LockSupport.unpark(flusher);
+    }
+
+    /*
+     * Apply the work queued on the shard. Only ever called by one thread at a
+     * time for a given shard.
+     */
+
+    private boolean drain (Shard shard)
+    {
+        boolean didWork = false;
+        Work work;
+
+        while ((work = shard.queue.poll()) != null)
+        {
+            if (work.claim())
+            {
+                apply(work);
+
+                long latency = System.nanoTime() - work.queued;
+                long max;
+
+                _totalLatency.addAndGet(latency);
+                _flushed.incrementAndGet();
+
+                while (latency > (max = _maxLatency.get()) && !_maxLatency.compareAndSet(max, latency))
+                    ;
+            }
+
+            work.finish();
+            shard.tails.remove(work.key, work);
+            shard.completed++;
+
+            _pending.decrementAndGet();
+
+            didWork = true;
+        }
+
+        return didWork;
+    }
+
+    private void apply (Work work)
+    {
+        try
+        {
+            switch (work.type)
+            {
+                case COMMIT:
+                    if (!super.commit_state(work.objUid, work.tName))
+                        tsLogger.i18NLogger.warn_objectstore_CacheStore_1(work.objUid, work.tName);
+                    break;
+                case REMOVE:
+                    if (!super.remove_state(work.objUid, work.tName, work.fileType))
+                        tsLogger.i18NLogger.warn_objectstore_CacheStore_2(work.objUid, work.tName, Integer.toString(work.fileType));
+                    break;
+                default:
+                {
+                    OutputObjectState state = work.state();
+
+                    if (!super.write_state(work.objUid, work.tName, state, work.fileType))
+                        tsLogger.i18NLogger.warn_objectstore_CacheStore_3(work.objUid, work.tName, state.toString(), Integer.toString(work.fileType));
+                }
+                    break;
+            }
+        }
+        catch (ObjectStoreException ex)
+        {
+            tsLogger.i18NLogger.warn_objectstore_WriteBehindCacheStore_failed(work.objUid, work.tName, ex);
+        }
+    }
+
+    private Shard shardFor (Uid objUid)
+    {
+        return _shards[(objUid.hashCode() & Integer.MAX_VALUE) % _shards.length];
+    }
+
+    private static String key (Uid objUid, String tName)
+    {
+        return tName + '#' + objUid.stringForm();
+    }
+
+    private class Flusher extends Thread
+    {
+        Flusher (int index)
+        {
+            super("WriteBehindCacheStoreFlusher-" + index);
+
+            _index = index;
+
+            setDaemon(true);
+        }
+
+        public void run ()
+        {
+            for (;;)
+            {
+                boolean didWork = false;
+
+                synchronized (this)
+                {
+                    for (int i = _index; i < _shards.length; i += _flushers.length)
+                        didWork |= drain(_shards[i]);
+                }
+
+                if (!didWork)
+                {
+                    idle = true;
+
+                    // look again in case work arrived before the flag was seen
+                    if (isEmpty())
+                        LockSupport.parkNanos(IDLE_WAIT);
+
+                    idle = false;
+                }
+            }
+        }
+
+        private boolean isEmpty ()
+        {
+            for (int i = _index; i < _shards.length; i += _flushers.length)
+            {
+                if (!_shards[i].queue.isEmpty())
+                    return false;
+            }
+
+            return true;
+        }
+
+        volatile boolean idle;
+
+        private final int _index;
+    }
+
+    private static class Shard
+    {
+        Shard (int index)
+        {
+            this.index = index;
+        }
+
+        final int index;
+        final Queue<Work> queue = new ConcurrentLinkedQueue<Work>();
+        final ConcurrentMap<String, Work> tails = new ConcurrentHashMap<String, Work>();
+        final AtomicLong enqueued = new AtomicLong();
+        volatile long completed; // only updated by the thread draining the shard
+    }
+
+    private static class Work
+    {
+        Work (int type, Uid objUid, String tName, int fileType, OutputObjectState state)
+        {
+            this.type = type;
+            this.objUid = new Uid(objUid);
+            this.tName = tName;
+            this.fileType = fileType;
+            this.key = key(objUid, tName);
+            this.queued = System.nanoTime();
+            this.state = new AtomicReference<OutputObjectState>(state);
+        }
+
+        OutputObjectState state ()
+        {
+            return state.get();
+        }
+
+        /*
+         * Replace the state to be written. This only counts if the flusher
+         * has not already claimed the work, otherwise the caller must queue
+         * the new state itself.
+         */
+
+        boolean supersede (OutputObjectState newState)
+        {
+            if (status.get() != PENDING)
+                return false;
+
+            state.set(newState);
+
+            return status.get() == PENDING;
+        }
+
+        boolean cancel ()
+        {
+            return status.compareAndSet(PENDING, CANCELLED);
+        }
+
+        boolean claim ()
+        {
+            return status.compareAndSet(PENDING, CLAIMED);
+        }
+
+        void finish ()
+        {
+            if (status.get() == CLAIMED)
+                status.set(DONE);
+
+            previous = null;
+        }
+
+        boolean isCancelled ()
+        {
+            return status.get() == CANCELLED;
+        }
+
+        boolean isFinished ()
+        {
+            int current = status.get();
+
+            return (current == DONE) || ((current == CANCELLED) && (previous == null));
+        }
+
+        final int type;
+        final Uid objUid;
+        final String tName;
+        final int fileType;
+        final String key;
+        final long queued;
+
+        volatile Work previous;
+
+        private final AtomicReference<OutputObjectState> state;
+        private final AtomicInteger status = new AtomicInteger(PENDING);
+    }
+
+    private static final int WRITE = 0;
+    private static final int REMOVE = 1;
+    private static final int COMMIT = 2;
+
+    private static final int PENDING = 0;
+    private static final int CLAIMED = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private static final int SHARDS_PER_FLUSHER = 8;
+    private static final long OVERFLOW_WAIT = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Shard[] _shards;
+    private final Flusher[] _flushers;
+    private final int _maxPending;
+    private final AtomicInteger _pending = new AtomicInteger();
+    private final AtomicLong _flushed = new AtomicLong();
+    private final AtomicLong _coalesced = new AtomicLong();
+    private final AtomicLong _cancelled = new AtomicLong();
+    private final AtomicLong _totalLatency = new AtomicLong();
+    private final AtomicLong _maxLatency = new AtomicLong();
+}
@@ -0,0 +1,482 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.internal.arjuna.objectstore.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.objectstore.jdbc.JDBCAccess;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+
+/**
+ * Coalesces concurrent write_state, remove_state and commit_state requests
+ * into JDBC batches. Each writer thread owns a dedicated store connection and
+ * executes one batch (and one database commit) at a time, so with several
+ * writers a number of batches are in flight at once. Callers block until the
+ * batch containing their operation has been committed.
+ * 
+ * If a batch fails, or any operation in it does not have the expected effect,
+ * the batch is rolled back and its operations are redone one at a time using
+ * the unbatched code in {@link JDBCImple_driver}, so every caller sees the
+ * same result it would have seen without batching.
+ */
+
+class JDBCBatchWriter {
+
+	JDBCBatchWriter(JDBCImple_driver driver, JDBCAccess jdbcAccess,
+			String tableName, int batchSize, int connections) {
+		this.driver = driver;
+		this.jdbcAccess = jdbcAccess;
+		this.tableName = tableName;
+		this.batchSize = batchSize;
+
+		for (int i = 0; i < connections; i++) {
+			Writer writer = new Writer(tableName + "-" + i);
+
+			writer.start();
+		}
+	}
+
+	boolean write_state(Uid objUid, String typeName, OutputObjectState state,
+			int stateType) throws ObjectStoreException {
+		int imageSize = (int) state.length();
+
+		// leave the warnings for bad states to the unbatched code
+		if (typeName == null || imageSize <= 0
+				|| imageSize > driver.getMaxStateSize()) {
+			return driver.doWriteState(objUid, typeName, state, stateType);
+		}
+
+		return submit(new Operation(Operation.WRITE, objUid, typeName,
+				stateType, state));
+	}
+
+	boolean remove_state(Uid objUid, String typeName, int stateType)
+			throws ObjectStoreException {
+		if (typeName == null
+				|| (stateType != StateStatus.OS_COMMITTED && stateType != StateStatus.OS_UNCOMMITTED)) {
+			return driver.doRemoveState(objUid, typeName, stateType);
+		}
+
+		return submit(new Operation(Operation.REMOVE, objUid, typeName,
+				stateType, null));
+	}
+
+	boolean commit_state(Uid objUid, String typeName)
+			throws ObjectStoreException {
+		return submit(new Operation(Operation.COMMIT, objUid, typeName,
+				StateStatus.OS_UNCOMMITTED, null));
+	}
+
+	private boolean submit(Operation operation) {
+		queue.add(operation);
+
+		return operation.await();
+	}
+
+	/*
+	 * Execute the batch as runs of consecutive operations of the same kind,
+	 * each run being one JDBC batch per statement. A run never contains two
+	 * operations on the same state, so the order of operations on any state
+	 * is preserved.
+	 * 
+	 * Returns false if the batch must be rolled back and redone.
+	 */
+	private boolean execute(Connection connection, List<Operation> batch)
+			throws SQLException {
+		int start = 0;
+
+		while (start < batch.size()) {
+			int kind = batch.get(start).kind;
+			Set<String> keys = new HashSet<String>();
+			int end = start;
+
+			while (end < batch.size() && batch.get(end).kind == kind
+					&& keys.add(batch.get(end).key)) {
+				end++;
+			}
+
+			List<Operation> run = batch.subList(start, end);
+			boolean ok;
+
+			switch (kind) {
+			case Operation.WRITE:
+				ok = executeWrites(connection, run);
+				break;
+			case Operation.REMOVE:
+				ok = executeRemoves(connection, run);
+				break;
+			default:
+				ok = executeCommits(connection, run);
+				break;
+			}
+
+			if (!ok) {
+				return false;
+			}
+
+			start = end;
+		}
+
+		return true;
+	}
+
+	private boolean executeWrites(Connection connection, List<Operation> run)
+			throws SQLException {
+		String upsert = driver.getUpsertSQL(tableName);
+
+		if (upsert != null) {
+			try (PreparedStatement pstmt = connection.prepareStatement(upsert)) {
+				for (Operation operation : run) {
+					pstmt.setString(1, operation.typeName);
+					pstmt.setString(2, operation.uidString);
+					pstmt.setInt(3, operation.stateType);
+					pstmt.setBytes(4, operation.state.buffer());
+					pstmt.addBatch();
+				}
+
+				return complete(run, pstmt.executeBatch(), true);
+			}
+		}
+
+		// no single statement upsert for this database: update, then insert what was not there
+		List<Operation> inserts = new ArrayList<Operation>();
+
+		try (PreparedStatement pstmt = connection.prepareStatement("UPDATE "
+				+ tableName + " SET ObjectState = ?"
+				+ " WHERE TypeName=? AND UidString=? AND StateType=?")) {
+			for (Operation operation : run) {
+				bindUpdate(pstmt, operation);
+				pstmt.addBatch();
+			}
+
+			int[] counts = pstmt.executeBatch();
+
+			if (counts.length != run.size()) {
+				return false;
+			}
+
+			for (int i = 0; i < counts.length; i++) {
+				Operation operation = run.get(i);
+
+				if (counts[i] == Statement.SUCCESS_NO_INFO) {
+					// the update is idempotent, so repeat it to find out whether the row exists
+					bindUpdate(pstmt, operation);
+					counts[i] = pstmt.executeUpdate();
+				}
+
+				if (counts[i] == Statement.EXECUTE_FAILED) {
+					return false;
+				} else if (counts[i] == 0) {
+					inserts.add(operation);
+				} else {
+					operation.result = true;
+				}
+			}
+		}
+
+		if (inserts.isEmpty()) {
+			return true;
+		}
+
+		try (PreparedStatement pstmt = connection.prepareStatement("INSERT INTO "
+				+ tableName
+				+ " (TypeName,UidString,StateType,Hidden,ObjectState) VALUES (?,?,?,0,?)")) {
+			for (Operation operation : inserts) {
+				pstmt.setString(1, operation.typeName);
+				pstmt.setString(2, operation.uidString);
+				pstmt.setInt(3, operation.stateType);
+				pstmt.setBytes(4, operation.state.buffer());
+				pstmt.addBatch();
+			}
+
+			return complete(inserts, pstmt.executeBatch(), true);
+		}
+	}
+
+	private boolean executeRemoves(Connection connection, List<Operation> run)
+			throws SQLException {
+		try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM "
+				+ tableName
+				+ " WHERE TypeName = ? AND UidString = ? AND StateType = ?")) {
+			for (Operation operation : run) {
+				pstmt.setString(1, operation.typeName);
+				pstmt.setString(2, operation.uidString);
+				pstmt.setInt(3, operation.stateType);
+				pstmt.addBatch();
+			}
+
+			// removing a state which is not there is not a failure
+			return complete(run, pstmt.executeBatch(), false);
+		}
+	}
+
+	private boolean executeCommits(Connection connection, List<Operation> run)
+			throws SQLException {
+		try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM "
+				+ tableName
+				+ " WHERE TypeName = ? AND UidString = ? AND StateType = " + StateStatus.OS_COMMITTED)) {
+			for (Operation operation : run) {
+				pstmt.setString(1, operation.typeName);
+				pstmt.setString(2, operation.uidString);
+				pstmt.addBatch();
+			}
+
+			int[] counts = pstmt.executeBatch();
+
+			for (int count : counts) {
+				if (count == Statement.EXECUTE_FAILED) {
+					return false;
+				}
+			}
+		}
+
+		/*
+		 * If there was nothing to commit the previously committed state must
+		 * survive, which the unbatched code arranges by rolling back.
+		 */
+		try (PreparedStatement pstmt = connection.prepareStatement("UPDATE "
+				+ tableName
+				+ " SET StateType = " + StateStatus.OS_COMMITTED + " WHERE TypeName = ? AND UidString = ? AND StateType = "
+				+ StateStatus.OS_UNCOMMITTED)) {
+			for (Operation operation : run) {
+				pstmt.setString(1, operation.typeName);
+				pstmt.setString(2, operation.uidString);
+				pstmt.addBatch();
+			}
+
+			return complete(run, pstmt.executeBatch(), true);
+		}
+	}
+
+	/*
+	 * Record the result of each operation from its update count. If
+	 * changeRequired then an operation which changed no rows invalidates the
+	 * batch.
+	 */
+	private static boolean complete(List<Operation> run, int[] counts,
+			boolean changeRequired) {
+		if (counts.length != run.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == Statement.EXECUTE_FAILED
+					|| (counts[i] == 0 && changeRequired)) {
+				return false;
+			}
+
+			run.get(i).result = (counts[i] != 0);
+		}
+
+		return true;
+	}
+
+	private static void bindUpdate(PreparedStatement pstmt, Operation operation)
+			throws SQLException {
+		pstmt.setBytes(1, operation.state.buffer());
+		pstmt.setString(2, operation.typeName);
+		pstmt.setString(3, operation.uidString);
+		pstmt.setInt(4, operation.stateType);
+	}
+
+	/*
+	 * Redo an operation on its own, using a pooled connection.
+	 */
+	private boolean executeUnbatched(Operation operation) {
+		try {
+			switch (operation.kind) {
+			case Operation.WRITE:
+				return driver.doWriteState(operation.uid,
+						operation.originalTypeName, operation.state,
+						operation.stateType);
+			case Operation.REMOVE:
+				return driver.doRemoveState(operation.uid,
+						operation.originalTypeName, operation.stateType);
+			default:
+				return driver.doCommitState(operation.uid,
+						operation.originalTypeName);
+			}
+		} catch (Exception e) {
+			tsLogger.i18NLogger.warn_objectstore_JDBCImple_writefailed(e);
+
+			return false;
+		}
+	}
+
+	private class Writer extends Thread {
+
+		Writer(String name) {
+			super("JDBCStore batch writer " + name);
+
+			setDaemon(true);
+		}
+
+		public void run() {
+			List<Operation> batch = new ArrayList<Operation>(batchSize);
+
+			for (;;) {
+				try {
+					batch.add(queue.take());
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				queue.drainTo(batch, batchSize - 1);
+
+				boolean committed = false;
+
+				try {
+					Connection connection = connection();
+
+					if (execute(connection, batch)) {
+						connection.commit();
+						committed = true;
+					} else {
+						connection.rollback();
+					}
+				} catch (SQLException e) {
+					tsLogger.i18NLogger.warn_objectstore_JDBCBatchWriter_batchfailed(batch.size(), e);
+
+					discardConnection();
+				}
+
+				for (Operation operation : batch) {
+					operation.complete(committed ? operation.result
+							: executeUnbatched(operation));
+				}
+
+				batch.clear();
+			}
+		}
+
+		private Connection connection() throws SQLException {
+			if (connection == null) {
+				connection = jdbcAccess.getConnection();
+
+				if (connection.getAutoCommit()) {
+					connection.setAutoCommit(false);
+				}
+			}
+
+			return connection;
+		}
+
+		private void discardConnection() {
+			if (connection != null) {
+				try {
+					connection.rollback();
+				} catch (SQLException e) {
+					// Ignore
+				}
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					// Ignore
+				}
+
+				connection = null;
+			}
+		}
+
+		private Connection connection;
+	}
+
+	private static class Operation {
+
+		static final int WRITE = 0;
+		static final int REMOVE = 1;
+		static final int COMMIT = 2;
+
+		Operation(int kind, Uid uid, String typeName, int stateType,
+				OutputObjectState state) {
+			this.kind = kind;
+			this.uid = uid;
+			this.uidString = uid.stringForm();
+			this.originalTypeName = typeName;
+			// Taken this requirement from ObjStoreBrowser
+			this.typeName = typeName.startsWith("/") ? typeName.substring(1) : typeName;
+			this.stateType = stateType;
+			this.state = state;
+			this.key = this.typeName + '\0' + uidString;
+		}
+
+		synchronized void complete(boolean result) {
+			this.result = result;
+			this.done = true;
+
+			notifyAll();
+		}
+
+		/*
+		 * The outcome must be known before returning, so keep waiting if interrupted.
+		 */
+		synchronized boolean await() {
+			boolean interrupted = false;
+
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+
+			return result;
+		}
+
+		final int kind;
+		final Uid uid;
+		final String uidString;
+		final String originalTypeName;
+		final String typeName;
+		final int stateType;
+		final OutputObjectState state;
+		final String key;
+
+		boolean result;
+		private boolean done;
+	}
+
+	private final JDBCImple_driver driver;
+	private final JDBCAccess jdbcAccess;
+	private final String tableName;
+	private final int batchSize;
+	private final BlockingQueue<Operation> queue = new LinkedBlockingQueue<Operation>();
+}
@@ -62,9 +62,18 @@ public abstract class JDBCImple_driver {
 	// protected Connection connection;
 	protected String tableName;
 	private JDBCAccess jdbcAccess;
+	private JDBCBatchWriter batchWriter;
 
 	public boolean commit_state(Uid objUid, String typeName)
 			throws ObjectStoreException {
+		if (batchWriter != null)
+			return batchWriter.commit_state(objUid, typeName);
+
+		return doCommitState(objUid, typeName);
+	}
+
+	boolean doCommitState(Uid objUid, String typeName)
+			throws ObjectStoreException {
 		// Taken this requirement from ObjStoreBrowser
 		if (typeName.startsWith("/"))
 			typeName = typeName.substring(1);
@@ -475,6 +484,14 @@ public abstract class JDBCImple_driver {
 
 	public boolean remove_state(Uid objUid, String typeName, int stateType)
 			throws ObjectStoreException {
+		if (batchWriter != null)
+			return batchWriter.remove_state(objUid, typeName, stateType);
+
+		return doRemoveState(objUid, typeName, stateType);
+	}
+
+	boolean doRemoveState(Uid objUid, String typeName, int stateType)
+			throws ObjectStoreException {
 		// Taken this requirement from ObjStoreBrowser
 		if (typeName.startsWith("/"))
 			typeName = typeName.substring(1);
@@ -606,6 +623,14 @@ public abstract class JDBCImple_driver {
 
 	public boolean write_state(Uid objUid, String typeName,
 			OutputObjectState state, int stateType) throws ObjectStoreException {
+		if (batchWriter != null)
+			return batchWriter.write_state(objUid, typeName, state, stateType);
+
+		return doWriteState(objUid, typeName, state, stateType);
+	}
+
+	boolean doWriteState(Uid objUid, String typeName,
+			OutputObjectState state, int stateType) throws ObjectStoreException {
 		// Taken this requirement from ObjStoreBrowser
 		if (typeName.startsWith("/"))
 			typeName = typeName.substring(1);
@@ -765,6 +790,12 @@ public abstract class JDBCImple_driver {
 		}
 
 		this.tableName = tableName;
+
+		if (jdbcStoreEnvironmentBean.getJdbcBatchWrites()) {
+			batchWriter = new JDBCBatchWriter(this, jdbcAccess, tableName,
+					jdbcStoreEnvironmentBean.getJdbcBatchSize(),
+					jdbcStoreEnvironmentBean.getJdbcBatchConnections());
+		}
 	}
 
 	/**
@@ -786,6 +817,21 @@ public abstract class JDBCImple_driver {
 		return "bytea";
 	}
 
+	/**
+	 * Can be overridden by implementation-specific code to supply a single
+	 * statement which inserts a state, or replaces the ObjectState of the
+	 * existing row, for use when writes are batched. The parameters are
+	 * TypeName, UidString, StateType and ObjectState, in that order. A new row
+	 * is not hidden, and the Hidden flag of an existing row must be left
+	 * alone.
+	 * 
+	 * If null (the default) batched writes are done as an UPDATE followed by an
+	 * INSERT of those states which did not already exist.
+	 */
+	protected String getUpsertSQL(String tableName) {
+		return null;
+	}
+
 	protected abstract void checkCreateTableError(SQLException ex)
 			throws SQLException;
 
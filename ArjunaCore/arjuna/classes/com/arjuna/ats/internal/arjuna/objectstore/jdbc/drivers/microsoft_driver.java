@@ -52,6 +52,16 @@ public class microsoft_driver extends JDBCImple_driver {
 		return "VARBINARY(MAX)";
 	}
 
+	@Override
+	protected String getUpsertSQL(String tableName) {
+		return "MERGE INTO " + tableName + " WITH (HOLDLOCK) AS t"
+				+ " USING (VALUES (?,?,?,?)) AS s (TypeName, UidString, StateType, ObjectState)"
+				+ " ON t.UidString = s.UidString AND t.TypeName = s.TypeName AND t.StateType = s.StateType"
+				+ " WHEN MATCHED THEN UPDATE SET ObjectState = s.ObjectState"
+				+ " WHEN NOT MATCHED THEN INSERT (TypeName,UidString,StateType,Hidden,ObjectState)"
+				+ " VALUES (s.TypeName, s.UidString, s.StateType, 0, s.ObjectState);";
+	}
+
 	@Override
 	protected void checkCreateTableError(SQLException ex) throws SQLException {
 		if (!ex.getSQLState().equals(30001) && ex.getErrorCode() != 2714) {
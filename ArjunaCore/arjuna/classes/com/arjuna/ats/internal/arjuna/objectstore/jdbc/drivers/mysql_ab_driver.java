@@ -35,6 +35,13 @@ public class mysql_ab_driver extends
 		return "BLOB";
 	}
 
+	@Override
+	protected String getUpsertSQL(String tableName) {
+		return "INSERT INTO " + tableName
+				+ " (TypeName,UidString,StateType,Hidden,ObjectState) VALUES (?,?,?,0,?)"
+				+ " ON DUPLICATE KEY UPDATE ObjectState = VALUES(ObjectState)";
+	}
+
 	@Override
 	protected void checkCreateTableError(SQLException ex) throws SQLException {
 		if (!ex.getSQLState().equals("42S01")) {
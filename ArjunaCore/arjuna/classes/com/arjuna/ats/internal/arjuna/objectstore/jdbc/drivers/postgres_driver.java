@@ -31,6 +31,14 @@ import com.arjuna.ats.internal.arjuna.objectstore.jdbc.JDBCImple_driver;
  */
 public class postgres_driver extends JDBCImple_driver {
 
+	@Override
+	protected String getUpsertSQL(String tableName) {
+		// requires PostgreSQL 9.5 or later
+		return "INSERT INTO " + tableName
+				+ " (TypeName,UidString,StateType,Hidden,ObjectState) VALUES (?,?,?,0,?)"
+				+ " ON CONFLICT (UidString, TypeName, StateType) DO UPDATE SET ObjectState = EXCLUDED.ObjectState";
+	}
+
 	@Override
 	protected void checkCreateTableError(SQLException ex) throws SQLException {
 		if (!ex.getSQLState().equals("42P07")) {
@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.objectstore.segmentedlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single preallocated file of the segmented log. Records are only ever
+ * appended (by the owning store, under its append lock) and read back with
+ * positional reads, so reads never contend with the writer.
+ *
+ * Layout: a fixed header (magic, version, segment id) followed by frames as
+ * described in {@link SegmentedLogStore}. Unused space is zero filled, which
+ * terminates the frame scan on load.
+ */
+class LogSegment
+{
+    static final int MAGIC = 0x4a425453;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4 + 4 + 8;
+
+    static LogSegment create (File file, long id, long capacity) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try
+        {
+            raf.setLength(capacity);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+            header.putInt(MAGIC).putInt(VERSION).putLong(id);
+            header.flip();
+
+            FileChannel channel = raf.getChannel();
+
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+
+            channel.force(true);
+
+            return new LogSegment(file, raf, id, capacity, HEADER_SIZE);
+        }
+        catch (IOException e)
+        {
+            raf.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Open an existing segment for reading.
+     *
+     * @return the segment, or null if the file does not carry a valid header.
+     */
+    static LogSegment open (File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        FileChannel channel = raf.getChannel();
+
+        while (header.hasRemaining())
+        {
+            if (channel.read(header, header.position()) < 0)
+                break;
+        }
+
+        header.flip();
+
+        if ((header.remaining() < HEADER_SIZE) || (header.getInt() != MAGIC) || (header.getInt() != VERSION))
+        {
+            raf.close();
+
+            return null;
+        }
+
+        long id = header.getLong();
+
+        return new LogSegment(file, raf, id, raf.length(), HEADER_SIZE);
+    }
+
+    private LogSegment (File file, RandomAccessFile raf, long id, long capacity, long writePosition)
+    {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.id = id;
+        this.capacity = capacity;
+        this.writePosition = writePosition;
+    }
+
+    long getId ()
+    {
+        return id;
+    }
+
+    File getFile ()
+    {
+        return file;
+    }
+
+    long remaining ()
+    {
+        return capacity - writePosition;
+    }
+
+    long getWritePosition ()
+    {
+        return writePosition;
+    }
+
+    void setWritePosition (long writePosition)
+    {
+        this.writePosition = writePosition;
+    }
+
+    /**
+     * Append the frame at the current write position.
+     *
+     * @return the offset at which the frame was written.
+     */
+    long append (ByteBuffer frame) throws IOException
+    {
+        long offset = writePosition;
+        long position = offset;
+
+        while (frame.hasRemaining())
+            position += channel.write(frame, position);
+
+        writePosition = position;
+
+        return offset;
+    }
+
+    ByteBuffer read (long offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                break;
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    void force () throws IOException
+    {
+        channel.force(false);
+    }
+
+    void addLive (long bytes)
+    {
+        liveBytes.addAndGet(bytes);
+    }
+
+    void releaseLive (long bytes)
+    {
+        liveBytes.addAndGet(-bytes);
+    }
+
+    long getLiveBytes ()
+    {
+        return liveBytes.get();
+    }
+
+    /**
+     * @return the number of bytes written to the segment, excluding the header.
+     */
+    long getUsedBytes ()
+    {
+        return writePosition - HEADER_SIZE;
+    }
+
+    void close ()
+    {
+        try
+        {
+            raf.close();
+        }
+        catch (IOException e)
+        {
+            // nothing more can be done with it
+        }
+    }
+
+    boolean delete ()
+    {
+        close();
+
+        return file.delete();
+    }
+
+    public String toString ()
+    {
+        return "LogSegment<" + id + ", " + file.getName() + ">";
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long id;
+    private final long capacity;
+    private volatile long writePosition;
+    private final AtomicLong liveBytes = new AtomicLong();
+}
@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.objectstore.segmentedlog;
+
+import java.io.File;
+
+import com.arjuna.common.internal.util.propertyservice.PropertyPrefix;
+
+/**
+ * A JavaBean containing configuration properties for the segmented, append-only transaction log store.
+ */
+@PropertyPrefix(prefix = "com.arjuna.ats.arjuna.segmentedlog.")
+public class SegmentedLogEnvironmentBean implements SegmentedLogEnvironmentBeanMBean
+{
+    private volatile String storeDir = System.getProperty("user.dir") + File.separator + "SegmentedLogStore";
+
+    private volatile int segmentSize = 1024*1024*4;
+
+    private volatile String filePrefix = "jbossts";
+
+    private volatile String fileExtension = "seglog";
+
+    private volatile boolean syncWrites = true;
+
+    private volatile boolean syncDeletes = true;
+
+    private volatile int compactPercentage = 30;
+
+    private volatile int compactionInterval = 5000;
+
+    /**
+     * Returns the directory in which the log segments are kept.
+     *
+     * Default: {user.dir}/SegmentedLogStore
+     *
+     * @return the path to the log directory.
+     */
+    public String getStoreDir()
+    {
+        return storeDir;
+    }
+
+    /**
+     * Sets the directory in which the log segments are kept.
+     *
+     * @param storeDir the path to the log directory.
+     */
+    public void setStoreDir(String storeDir)
+    {
+        this.storeDir = storeDir;
+    }
+
+    /**
+     * Returns the size in bytes to which each log segment is preallocated.
+     * A record larger than this is written to a segment of its own.
+     *
+     * Default: 4MB (4194304 bytes)
+     *
+     * @return the segment size, in bytes.
+     */
+    public int getSegmentSize()
+    {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the size in bytes to which each log segment is preallocated.
+     *
+     * @param segmentSize the segment size, in bytes.
+     */
+    public void setSegmentSize(int segmentSize)
+    {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns the prefix used when naming each segment file.
+     *
+     * Default: "jbossts"
+     *
+     * @return the prefix used to construct segment file names.
+     */
+    public String getFilePrefix()
+    {
+        return filePrefix;
+    }
+
+    /**
+     * Sets the prefix used when naming each segment file.
+     *
+     * @param filePrefix the prefix used to construct segment file names.
+     */
+    public void setFilePrefix(String filePrefix)
+    {
+        this.filePrefix = filePrefix;
+    }
+
+    /**
+     * Returns the extension used when naming each segment file.
+     *
+     * Default: "seglog"
+     *
+     * @return the extension used to construct segment file names.
+     */
+    public String getFileExtension()
+    {
+        return fileExtension;
+    }
+
+    /**
+     * Sets the extension used when naming each segment file.
+     *
+     * @param fileExtension the extension used to construct segment file names.
+     */
+    public void setFileExtension(String fileExtension)
+    {
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Returns true if writes to the log should be forced to disk before returning.
+     * Concurrent writers share a single force of the active segment.
+     *
+     * Default: true
+     *
+     * @return true if writes should be forced to disk, false otherwise.
+     */
+    public boolean isSyncWrites()
+    {
+        return syncWrites;
+    }
+
+    /**
+     * Sets if writes to the log should be forced to disk before returning.
+     *
+     * @param syncWrites true for synchronous operation, false otherwise.
+     */
+    public void setSyncWrites(boolean syncWrites)
+    {
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Returns true if deletes from the log should be forced to disk before returning.
+     *
+     * Default: true
+     *
+     * @return true if deletes should be forced to disk, false otherwise.
+     */
+    public boolean isSyncDeletes()
+    {
+        return syncDeletes;
+    }
+
+    /**
+     * Sets if deletes from the log should be forced to disk before returning.
+     *
+     * @param syncDeletes true for synchronous operation, false otherwise.
+     */
+    public void setSyncDeletes(boolean syncDeletes)
+    {
+        this.syncDeletes = syncDeletes;
+    }
+
+    /**
+     * Returns the percentage of live data at or below which the oldest segment is
+     * compacted, i.e. its live records are copied forward and the file is removed.
+     *
+     * Default: 30
+     *
+     * @return the threshold percentage.
+     */
+    public int getCompactPercentage()
+    {
+        return compactPercentage;
+    }
+
+    /**
+     * Sets the percentage of live data at or below which the oldest segment is compacted.
+     *
+     * @param compactPercentage the threshold percentage.
+     */
+    public void setCompactPercentage(int compactPercentage)
+    {
+        this.compactPercentage = compactPercentage;
+    }
+
+    /**
+     * Returns the interval, in milliseconds, on which the background compactor
+     * checks for segments to reclaim. The compactor is also woken whenever a segment fills.
+     *
+     * Default: 5000 milliseconds
+     *
+     * @return the compaction interval in milliseconds.
+     */
+    public int getCompactionInterval()
+    {
+        return compactionInterval;
+    }
+
+    /**
+     * Sets the interval, in milliseconds, on which the background compactor runs.
+     *
+     * @param compactionInterval the compaction interval in milliseconds.
+     */
+    public void setCompactionInterval(int compactionInterval)
+    {
+        this.compactionInterval = compactionInterval;
+    }
+}
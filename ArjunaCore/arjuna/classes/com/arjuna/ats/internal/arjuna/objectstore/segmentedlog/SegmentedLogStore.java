@@ -0,0 +1,711 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.objectstore.segmentedlog;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.state.InputBuffer;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputBuffer;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+
+/**
+ * Implementation of the tx store as an append-only log of preallocated segment
+ * files, with no dependencies beyond the JDK. This is a bean suitable for hooking
+ * into the app server lifecycle, in the same way as the HornetQ journal store.
+ *
+ * Every write and delete appends a CRC protected frame to the active segment:
+ * <pre>
+ *     int length | byte type | long sequence | int crc | payload[length]
+ * </pre>
+ * where the crc covers the type, sequence and payload. An in-memory index maps each
+ * Uid to the location of its latest frame, so reads are a single positional read.
+ * Writers that need durability share a single force of the active segment.
+ *
+ * A background compactor reclaims the oldest segment once the proportion of
+ * live data in it drops to the configured threshold, by copying any live records
+ * forward and removing the file. Segments are always reclaimed oldest first, which
+ * means a delete frame can be dropped along with its segment: no older frame for the
+ * same Uid can remain.
+ */
+public class SegmentedLogStore
+{
+    private static final int FRAME_HEADER_SIZE = 4 + 1 + 8 + 4;
+
+    private static final byte WRITE_RECORD = 0x01;
+
+    private static final byte DELETE_RECORD = 0x02;
+
+    private final ConcurrentMap<String, ConcurrentMap<Uid, RecordLocation>> content = new ConcurrentHashMap<String, ConcurrentMap<Uid, RecordLocation>>();
+
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<Long, LogSegment>();
+
+    private final Object appendLock = new Object();
+
+    private final Object forceLock = new Object();
+
+    private final Object compactLock = new Object();
+
+    private final AtomicLong forcedSequence = new AtomicLong(0);
+
+    // guarded by appendLock
+    private LogSegment head;
+    private long sequence;
+    private long nextSegmentId;
+
+    private final File storeDir;
+    private final String storeDirCanonicalPath;
+    private final String filePrefix;
+    private final String fileExtension;
+    private final long segmentSize;
+    private final boolean syncWrites;
+    private final boolean syncDeletes;
+    private final int compactPercentage;
+    private final long compactionInterval;
+
+    private Compactor compactor;
+
+    public SegmentedLogStore(SegmentedLogEnvironmentBean envBean) throws IOException {
+
+        syncWrites = envBean.isSyncWrites();
+        syncDeletes = envBean.isSyncDeletes();
+        filePrefix = envBean.getFilePrefix();
+        fileExtension = envBean.getFileExtension();
+        segmentSize = Math.max(envBean.getSegmentSize(), LogSegment.HEADER_SIZE + FRAME_HEADER_SIZE);
+        compactPercentage = envBean.getCompactPercentage();
+        compactionInterval = Math.max(1, envBean.getCompactionInterval());
+
+        storeDir = new File(envBean.getStoreDir());
+        if(!storeDir.exists() && !storeDir.mkdirs()) {
+            throw new IOException(tsLogger.i18NLogger.get_dir_create_failed(storeDir.getCanonicalPath()));
+        }
+        storeDirCanonicalPath = storeDir.getCanonicalPath();
+    }
+
+    public void start() throws Exception {
+
+        TreeMap<Long, LogSegment> existing = new TreeMap<Long, LogSegment>();
+
+        for(File file : listSegmentFiles()) {
+            LogSegment segment = LogSegment.open(file);
+
+            if(segment == null) {
+                tsLogger.i18NLogger.warn_segmentedlog_invalid_segment(file.getPath());
+                continue;
+            }
+
+            existing.put(segment.getId(), segment);
+        }
+
+        synchronized (appendLock) {
+            for(LogSegment segment : existing.values()) {
+                load(segment);
+                segments.put(segment.getId(), segment);
+                nextSegmentId = segment.getId() + 1;
+            }
+
+            forcedSequence.set(sequence);
+
+            // never append after a possibly torn tail, always start a fresh segment
+            head = newSegment(segmentSize);
+        }
+
+        compactor = new Compactor();
+        compactor.start();
+    }
+
+    public void stop() throws Exception {
+
+        if(compactor != null) {
+            compactor.shutdown();
+            compactor = null;
+        }
+
+        synchronized (appendLock) {
+            if(head != null) {
+                head.force();
+            }
+
+            for(LogSegment segment : segments.values()) {
+                segment.close();
+            }
+
+            segments.clear();
+            content.clear();
+            head = null;
+        }
+    }
+
+    /**
+     * Remove the object's committed state.
+     *
+     * @param uid  The object to work on.
+     * @param typeName The type of the object to work on.
+     * @return <code>true</code> if no errors occurred, <code>false</code>
+     *         otherwise.
+     * @throws ObjectStoreException if things go wrong.
+     */
+    public boolean remove_committed(Uid uid, String typeName) throws ObjectStoreException
+    {
+        long recordSequence;
+
+        try {
+            byte[] payload = packKey(uid, typeName);
+
+            synchronized (appendLock) {
+                RecordLocation previous = getContentForType(typeName).remove(uid);
+
+                if(previous == null) {
+                    return false;
+                }
+
+                previous.segment.releaseLive(previous.length);
+
+                recordSequence = append(DELETE_RECORD, payload).sequence;
+            }
+        } catch(IOException e) {
+            throw new ObjectStoreException(e);
+        }
+
+        if(syncDeletes) {
+            force(recordSequence);
+        }
+
+        return true;
+    }
+
+    /**
+     * Write a new copy of the object's committed state.
+     *
+     * @param uid    The object to work on.
+     * @param typeName   The type of the object to work on.
+     * @param txData The state to write.
+     * @return <code>true</code> if no errors occurred, <code>false</code>
+     *         otherwise.
+     * @throws ObjectStoreException if things go wrong.
+     */
+    public boolean write_committed(Uid uid, String typeName, OutputObjectState txData) throws ObjectStoreException
+    {
+        long recordSequence;
+
+        try {
+            OutputBuffer outputBuffer = new OutputBuffer();
+            UidHelper.packInto(uid, outputBuffer);
+            outputBuffer.packString(typeName);
+            outputBuffer.packBytes(txData.buffer());
+            byte[] payload = outputBuffer.buffer();
+
+            synchronized (appendLock) {
+                RecordLocation location = append(WRITE_RECORD, payload);
+
+                location.segment.addLive(location.length);
+
+                RecordLocation previous = getContentForType(typeName).put(uid, location);
+
+                if(previous != null) {
+                    previous.segment.releaseLive(previous.length);
+                }
+
+                recordSequence = location.sequence;
+            }
+        } catch(IOException e) {
+            throw new ObjectStoreException(e);
+        }
+
+        if(syncWrites) {
+            force(recordSequence);
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the object's committed state.
+     *
+     * @param uid  The object to work on.
+     * @param typeName The type of the object to work on.
+     * @return the state of the object.
+     * @throws ObjectStoreException if things go wrong.
+     */
+    public InputObjectState read_committed(Uid uid, String typeName) throws ObjectStoreException
+    {
+        ConcurrentMap<Uid, RecordLocation> records = getContentForType(typeName);
+
+        while(true) {
+            RecordLocation location = records.get(uid);
+
+            if(location == null) {
+                return null;
+            }
+
+            try {
+                ByteBuffer frame = location.segment.read(location.offset, location.length);
+                InputBuffer inputBuffer = new InputBuffer(decodePayload(frame, location.segment));
+                UidHelper.unpackFrom(inputBuffer);
+                inputBuffer.unpackString();
+                return new InputObjectState(uid, typeName, inputBuffer.unpackBytes());
+            } catch(ClosedChannelException e) {
+                // the segment was compacted under us, the index now refers to the new copy
+                if(records.get(uid) == location) {
+                    throw new ObjectStoreException(e);
+                }
+            } catch(Exception e) {
+                throw new ObjectStoreException(e);
+            }
+        }
+    }
+
+    public boolean contains(Uid uid, String typeName) {
+        return getContentForType(typeName).containsKey(uid);
+    }
+
+    /**
+     * Force everything that has been appended so far to disk.
+     */
+    public void sync() throws ObjectStoreException {
+        long target;
+
+        synchronized (appendLock) {
+            target = sequence;
+        }
+
+        force(target);
+    }
+
+    /**
+     * @return the "name" of the object store. Where in the hierarchy it appears, e.g., /ObjectStore/MyName/...
+     */
+    public String getStoreName()
+    {
+        return this.getClass().getSimpleName()+":"+storeDirCanonicalPath;
+    }
+
+    public String[] getKnownTypes() {
+        return content.keySet().toArray(new String[content.size()]);
+    }
+
+    public Uid[] getUidsForType(String typeName) {
+        Set<Uid> keySet = getContentForType(typeName).keySet();
+        return keySet.toArray(new Uid[keySet.size()]);
+    }
+
+    /**
+     * @return the number of segment files currently in use, including the active one.
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Reclaim as many of the oldest segments as the compaction threshold allows.
+     * Normally run by the background compactor.
+     *
+     * @return the number of segments reclaimed.
+     */
+    public int compact() throws ObjectStoreException {
+        int reclaimed = 0;
+
+        synchronized (compactLock) {
+            try {
+                while(compactOldest()) {
+                    reclaimed++;
+                }
+            } catch(IOException e) {
+                throw new ObjectStoreException(e);
+            }
+        }
+
+        return reclaimed;
+    }
+
+    /////////////////////////////////
+
+    private ConcurrentMap<Uid, RecordLocation> getContentForType(String typeName) {
+        ConcurrentMap<Uid, RecordLocation> result = content.get(typeName);
+
+        if(result == null) {
+            ConcurrentHashMap<Uid, RecordLocation> newMap = new ConcurrentHashMap<Uid, RecordLocation>();
+            result = content.putIfAbsent(typeName, newMap);
+
+            if(result == null) {
+                result = newMap;
+            }
+        }
+        return result;
+    }
+
+    private byte[] packKey(Uid uid, String typeName) throws IOException {
+        OutputBuffer outputBuffer = new OutputBuffer();
+        UidHelper.packInto(uid, outputBuffer);
+        outputBuffer.packString(typeName);
+        return outputBuffer.buffer();
+    }
+
+    // must be called holding appendLock
+    private RecordLocation append(byte type, byte[] payload) throws IOException {
+        int frameLength = FRAME_HEADER_SIZE + payload.length;
+
+        if(head.remaining() < frameLength) {
+            roll(frameLength);
+        }
+
+        long recordSequence = ++sequence;
+        ByteBuffer frame = ByteBuffer.allocate(frameLength);
+
+        frame.putInt(payload.length);
+        frame.put(type);
+        frame.putLong(recordSequence);
+        frame.putInt(0);
+        frame.put(payload);
+        frame.putInt(13, checksum(frame.array(), payload.length));
+        frame.flip();
+
+        long offset = head.append(frame);
+
+        return new RecordLocation(head, offset, frameLength, recordSequence);
+    }
+
+    // must be called holding appendLock
+    private void roll(int minimumSpace) throws IOException {
+        // everything in the old head is durable before anything lands in the new one
+        head.force();
+        advanceForcedSequence(sequence);
+
+        head = newSegment(Math.max(segmentSize, LogSegment.HEADER_SIZE + minimumSpace));
+
+        if(compactor != null) {
+            compactor.wake();
+        }
+    }
+
+    // must be called holding appendLock
+    private LogSegment newSegment(long capacity) throws IOException {
+        long id = nextSegmentId++;
+        File file = new File(storeDir, filePrefix + "-" + id + "." + fileExtension);
+        LogSegment segment = LogSegment.create(file, id, capacity);
+
+        segments.put(id, segment);
+
+        return segment;
+    }
+
+    private void force(long recordSequence) throws ObjectStoreException {
+        if(forcedSequence.get() >= recordSequence) {
+            return;
+        }
+
+        synchronized (forceLock) {
+            // someone else's force may have covered us while we waited
+            if(forcedSequence.get() >= recordSequence) {
+                return;
+            }
+
+            LogSegment segment;
+            long target;
+
+            synchronized (appendLock) {
+                segment = head;
+                target = sequence;
+            }
+
+            try {
+                segment.force();
+            } catch(ClosedChannelException e) {
+                /*
+                 * If the segment has since been rolled over (and then compacted) the roll
+                 * already forced it, otherwise the store has been stopped under us.
+                 */
+                synchronized (appendLock) {
+                    if(segment == head || head == null) {
+                        throw new ObjectStoreException(e);
+                    }
+                }
+            } catch(IOException e) {
+                throw new ObjectStoreException(e);
+            }
+
+            advanceForcedSequence(target);
+        }
+    }
+
+    private void advanceForcedSequence(long target) {
+        long current = forcedSequence.get();
+
+        while(current < target && !forcedSequence.compareAndSet(current, target)) {
+            current = forcedSequence.get();
+        }
+    }
+
+    private static int checksum(byte[] frame, int payloadLength) {
+        CRC32 crc = new CRC32();
+
+        crc.update(frame, 4, 1 + 8); // type and sequence
+        crc.update(frame, FRAME_HEADER_SIZE, payloadLength);
+
+        return (int) crc.getValue();
+    }
+
+    private byte[] decodePayload(ByteBuffer frame, LogSegment segment) throws IOException {
+        int payloadLength = frame.getInt(0);
+
+        if(frame.limit() != FRAME_HEADER_SIZE + payloadLength || frame.getInt(13) != checksum(frame.array(), payloadLength)) {
+            throw new IOException(tsLogger.i18NLogger.get_segmentedlog_corrupt_record(segment.getFile().getPath()));
+        }
+
+        byte[] payload = new byte[payloadLength];
+        System.arraycopy(frame.array(), FRAME_HEADER_SIZE, payload, 0, payloadLength);
+
+        return payload;
+    }
+
+    /*
+     * Replay the frames of the segment into the index. Scanning stops at the first
+     * zero length (unused, preallocated space) or damaged frame.
+     */
+    private void load(LogSegment segment) throws IOException {
+        long offset = LogSegment.HEADER_SIZE;
+        long limit = offset + segment.remaining();
+
+        while(offset + FRAME_HEADER_SIZE <= limit) {
+            ByteBuffer header = segment.read(offset, FRAME_HEADER_SIZE);
+            int payloadLength = header.limit() == FRAME_HEADER_SIZE ? header.getInt(0) : 0;
+
+            if(payloadLength <= 0 || offset + FRAME_HEADER_SIZE + payloadLength > limit) {
+                break;
+            }
+
+            int frameLength = FRAME_HEADER_SIZE + payloadLength;
+            ByteBuffer frame = segment.read(offset, frameLength);
+
+            if(frame.limit() != frameLength || frame.getInt(13) != checksum(frame.array(), payloadLength)) {
+                tsLogger.i18NLogger.warn_segmentedlog_torn_record(segment.getFile().getPath(), offset);
+                break;
+            }
+
+            byte type = frame.get(4);
+            long recordSequence = frame.getLong(5);
+            InputBuffer inputBuffer = new InputBuffer(decodePayload(frame, segment));
+            Uid uid = UidHelper.unpackFrom(inputBuffer);
+            String typeName = inputBuffer.unpackString();
+            ConcurrentMap<Uid, RecordLocation> records = getContentForType(typeName);
+            RecordLocation previous;
+
+            if(type == WRITE_RECORD) {
+                RecordLocation location = new RecordLocation(segment, offset, frameLength, recordSequence);
+                segment.addLive(frameLength);
+                previous = records.put(uid, location);
+            } else {
+                previous = records.remove(uid);
+            }
+
+            if(previous != null) {
+                previous.segment.releaseLive(previous.length);
+            }
+
+            if(recordSequence > sequence) {
+                sequence = recordSequence;
+            }
+
+            offset += frameLength;
+        }
+
+        segment.setWritePosition(offset);
+    }
+
+    private List<File> listSegmentFiles() {
+        final String suffix = "." + fileExtension;
+        File[] files = storeDir.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(filePrefix + "-") && name.endsWith(suffix);
+            }
+        });
+
+        List<File> result = new ArrayList<File>();
+
+        if(files != null) {
+            for(File file : files) {
+                result.add(file);
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Copy the live records of the oldest sealed segment forward (if it is below the
+     * compaction threshold) and then remove it.
+     */
+    private boolean compactOldest() throws IOException {
+        Map.Entry<Long, LogSegment> oldestEntry = segments.firstEntry();
+        LogSegment oldest = oldestEntry == null ? null : oldestEntry.getValue();
+
+        synchronized (appendLock) {
+            if(oldest == null || oldest == head) {
+                return false;
+            }
+        }
+
+        long used = oldest.getUsedBytes();
+
+        if(used > 0 && oldest.getLiveBytes() * 100 > used * compactPercentage) {
+            return false;
+        }
+
+        long offset = LogSegment.HEADER_SIZE;
+        long limit = oldest.getWritePosition();
+        long lastCopied = 0;
+
+        while(offset + FRAME_HEADER_SIZE <= limit && oldest.getLiveBytes() > 0) {
+            int payloadLength = oldest.read(offset, FRAME_HEADER_SIZE).getInt(0);
+            int frameLength = FRAME_HEADER_SIZE + payloadLength;
+            ByteBuffer frame = oldest.read(offset, frameLength);
+
+            if(frame.get(4) == WRITE_RECORD) {
+                byte[] payload = decodePayload(frame, oldest);
+                InputBuffer inputBuffer = new InputBuffer(payload);
+                Uid uid = UidHelper.unpackFrom(inputBuffer);
+                String typeName = inputBuffer.unpackString();
+
+                synchronized (appendLock) {
+                    ConcurrentMap<Uid, RecordLocation> records = getContentForType(typeName);
+                    RecordLocation current = records.get(uid);
+
+                    if(current != null && current.segment == oldest && current.offset == offset) {
+                        RecordLocation location = append(WRITE_RECORD, payload);
+
+                        location.segment.addLive(location.length);
+                        records.put(uid, location);
+                        oldest.releaseLive(current.length);
+
+                        lastCopied = location.sequence;
+                    }
+                }
+            }
+
+            offset += frameLength;
+        }
+
+        if(lastCopied > 0) {
+            try {
+                force(lastCopied);
+            } catch(ObjectStoreException e) {
+                throw new IOException(e);
+            }
+        }
+
+        segments.remove(oldest.getId());
+
+        if(!oldest.delete()) {
+            tsLogger.i18NLogger.warn_segmentedlog_delete_failed(oldest.getFile().getPath());
+        }
+
+        return true;
+    }
+
+    private static class RecordLocation
+    {
+        RecordLocation(LogSegment segment, long offset, int length, long sequence) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.sequence = sequence;
+        }
+
+        final LogSegment segment;
+        final long offset;
+        final int length;
+        final long sequence;
+    }
+
+    private class Compactor extends Thread
+    {
+        Compactor() {
+            super("SegmentedLogStore compactor");
+            setDaemon(true);
+        }
+
+        public void run() {
+            while(true) {
+                synchronized (this) {
+                    if(terminated) {
+                        return;
+                    }
+
+                    if(!woken) {
+                        try {
+                            wait(compactionInterval);
+                        } catch(InterruptedException e) {
+                            return;
+                        }
+                    }
+
+                    woken = false;
+
+                    if(terminated) {
+                        return;
+                    }
+                }
+
+                try {
+                    compact();
+                } catch(Throwable e) {
+                    tsLogger.i18NLogger.warn_segmentedlog_compaction_failed(storeDirCanonicalPath, e);
+                }
+            }
+        }
+
+        synchronized void wake() {
+            woken = true;
+            notifyAll();
+        }
+
+        void shutdown() throws InterruptedException {
+            synchronized (this) {
+                terminated = true;
+                notifyAll();
+            }
+
+            join();
+        }
+
+        private boolean woken;
+        private boolean terminated;
+    }
+}
@@ -33,10 +33,12 @@ package com.arjuna.ats.internal.arjuna.recovery ;
 
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.function.Consumer;
 
 import com.arjuna.ats.arjuna.AtomicAction;
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.TransactionLogBatcher;
 import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
 import com.arjuna.ats.arjuna.logging.tsLogger;
 import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
@@ -68,6 +70,7 @@ public class AtomicActionRecoveryModule implements RecoveryModule
       }
 
       _transactionStatusConnectionMgr = new TransactionStatusConnectionManager() ;
+      _splitLogBatches = true ;
    }
 
    /**
@@ -87,6 +90,10 @@ public class AtomicActionRecoveryModule implements RecoveryModule
           tsLogger.logger.debug("AtomicActionRecoveryModule first pass");
       }
 
+	  // batch entries are split first so that their transactions are picked up below
+	  if (_splitLogBatches)
+	      splitLogBatches();
+
 	  AtomicActions = _recoveryStore.allObjUids( _transactionType, aa_uids );
 
       }
@@ -157,6 +164,50 @@ public class AtomicActionRecoveryModule implements RecoveryModule
       }
    }
 
+   /**
+    * Turn the batch entries written by TransactionLogBatcher back into the
+    * individual logs of their transactions. An entry is left alone while any
+    * of its transactions is still running, here or in another JVM.
+    */
+   private void splitLogBatches()
+   {
+      InputObjectState batchUids = new InputObjectState() ;
+
+      try
+      {
+         if (!_recoveryStore.allObjUids( TransactionLogBatcher.BATCH_TYPE, batchUids ))
+            return ;
+      }
+      catch ( ObjectStoreException ex ) {
+          tsLogger.i18NLogger.warn_recovery_AtomicActionRecoveryModule_1(ex);
+
+          return ;
+      }
+
+      for (Uid batchUid : processTransactions( batchUids ))
+      {
+         if (TransactionLogBatcher.isActive( batchUid ))
+            continue ;
+
+         try
+         {
+            Uid[] members = TransactionLogBatcher.batchMembers( _recoveryStore, batchUid ) ;
+            boolean inFlight = false ;
+
+            for (int i = 0; (members != null) && (i < members.length) && !inFlight; i++)
+            {
+               inFlight = isTransactionInMidFlight( _transactionStatusConnectionMgr.getTransactionStatus( _transactionType, members[i] ) ) ;
+            }
+
+            if ((members != null) && !inFlight)
+               TransactionLogBatcher.splitBatch( _recoveryStore, batchUid ) ;
+         }
+         catch ( ObjectStoreException ex ) {
+             tsLogger.i18NLogger.warn_recovery_AtomicActionRecoveryModule_splitFailed(batchUid, ex);
+         }
+      }
+   }
+
    private boolean isTransactionInMidFlight( int status )
    {
       boolean inFlight = false ;
@@ -193,9 +244,9 @@ public class AtomicActionRecoveryModule implements RecoveryModule
       return inFlight ;
    }
 
-   private Vector processTransactions( InputObjectState uids )
+   private Vector<Uid> processTransactions( InputObjectState uids )
    {
-      Vector uidVector = new Vector() ;
+      Vector<Uid> uidVector = new Vector<Uid>() ;
 
       if (tsLogger.logger.isDebugEnabled()) {
           tsLogger.logger.debug("processing " + _transactionType
@@ -241,32 +292,51 @@ public class AtomicActionRecoveryModule implements RecoveryModule
        // to recover anything but if this module is still configured it would 
        // get an NPE
         if (_transactionUidVector != null) {
+            // Independent transactions, so with parallel recovery they are shared
+            // out in batches between the recovery threads
+            if (RecoveryExecutor.isParallel()) {
+                RecoveryExecutor.processInBatches(_transactionUidVector, new Consumer<Uid>() {
+                    public void accept(Uid uid) {
+                        processTransactionStatus(uid);
+                    }
+                });
+
+                return;
+            }
+
             // Process the Vector of transaction Uids
-            Enumeration transactionUidEnum = _transactionUidVector.elements();
+            Enumeration<Uid> transactionUidEnum = _transactionUidVector.elements();
 
             while (transactionUidEnum.hasMoreElements()) {
-                Uid currentUid = (Uid) transactionUidEnum.nextElement();
-
-                try {
-                    if (_recoveryStore.currentState(currentUid,
-                            _transactionType) != StateStatus.OS_UNKNOWN) {
-                        doRecoverTransaction(currentUid);
-                    }
-                } catch (ObjectStoreException ex) {
-                    tsLogger.i18NLogger
-                            .warn_recovery_AtomicActionRecoveryModule_3(
-                                    currentUid, ex);
-                }
+                processTransactionStatus(transactionUidEnum.nextElement());
             }
         }
    }
 
+   private void processTransactionStatus(Uid currentUid)
+   {
+       try {
+           if (_recoveryStore.currentState(currentUid,
+                   _transactionType) != StateStatus.OS_UNKNOWN) {
+               doRecoverTransaction(currentUid);
+           }
+       } catch (ObjectStoreException ex) {
+           tsLogger.i18NLogger
+                   .warn_recovery_AtomicActionRecoveryModule_3(
+                           currentUid, ex);
+       }
+   }
+
    // 'type' within the Object Store for AtomicActions.
    private String _transactionType = new AtomicAction().type() ;
 
+   // Only the AtomicAction module looks for batch entries, since only
+   // AtomicActions are written to them.
+   private boolean _splitLogBatches = false ;
+
    // Array of transactions found in the object store of the
    // AtomicAction type.
-   private Vector _transactionUidVector = null ;
+   private Vector<Uid> _transactionUidVector = null ;
 
    // Reference to the Object Store.
    private static RecoveryStore _recoveryStore = null ;
@@ -36,7 +36,14 @@ import java.net.ServerSocket;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
 import com.arjuna.ats.arjuna.logging.tsLogger;
@@ -205,6 +212,9 @@ public class PeriodicRecovery extends Thread
                // ignore
            }
        }
+
+       // let the recovery threads go once any module passes they are running have finished
+       RecoveryExecutor.shutdown();
    }
 
     /**
@@ -749,8 +759,14 @@ public class PeriodicRecovery extends Thread
         // dynamic updates in the middle of a scan, ensuring first+second pass happen
         // for the same stable set of modules.
 
-        Vector copyOfModules = getModules();
-        
+        Vector<RecoveryModule> copyOfModules = getModules();
+
+        if (RecoveryExecutor.isParallel()) {
+            doParallelWork(copyOfModules);
+
+            return;
+        }
+
         Enumeration modules = copyOfModules.elements();
 
         while (modules.hasMoreElements())
@@ -772,6 +788,45 @@ public class PeriodicRecovery extends Thread
             }
         }
 
+        if (!doPhaseBarrier()) {
+            return;
+        }
+
+        // move on to phase 2
+
+        if (tsLogger.logger.isDebugEnabled()) {
+            tsLogger.logger.debug("Periodic recovery second pass at "+_theTimestamper.format(new Date()));
+        }
+
+        modules = copyOfModules.elements();
+
+        while (modules.hasMoreElements())
+        {
+            RecoveryModule m = (RecoveryModule) modules.nextElement();
+
+            ClassLoader cl = switchClassLoader(m);
+            try {
+            m.periodicWorkSecondPass();
+            } finally {
+                restoreClassLoader(cl);
+            }
+
+            if (tsLogger.logger.isDebugEnabled()) {
+                tsLogger.logger.debug(" ");
+            }
+        }
+
+        // n.b. the caller is responsible for clearing the active scan
+    }
+
+    /**
+     * wait between the first and second passes of a scan
+     *
+     * @return false if the scan was TERMINATED and the second pass should not go ahead
+     */
+
+    private boolean doPhaseBarrier()
+    {
         // take the lock again so we can do a backoff wait on it
 
         synchronized (_stateLock) {
@@ -790,35 +845,125 @@ public class PeriodicRecovery extends Thread
                 if (tsLogger.logger.isDebugEnabled()) {
                     tsLogger.logger.debug("PeriodicRecovery: scan TERMINATED at phase 1");
                 }
-                return;
+                return false;
             }
         }
 
-        // move on to phase 2
+        return true;
+    }
+
+    /**
+     * run a scan with the passes of the modules on the recovery threads. every module finishes its first
+     * pass, or times out, before any module starts its second pass, and a module only gets a second
+     * pass if its first pass completed.
+     *
+     * @param copyOfModules the modules to scan
+     */
+
+    private void doParallelWork(Vector<RecoveryModule> copyOfModules)
+    {
+        Vector<RecoveryModule> ready = new Vector<RecoveryModule>();
+
+        for (RecoveryModule m : copyOfModules) {
+            Future<?> pass = _busyModules.get(m);
+
+            if (pass != null) {
+                if (!pass.isDone()) {
+                    if (tsLogger.logger.isDebugEnabled()) {
+                        tsLogger.logger.debug("PeriodicRecovery: skipping "+m.getClass().getName()+" which is still busy");
+                    }
+                    continue;
+                }
+
+                _busyModules.remove(m);
+            }
+
+            ready.add(m);
+        }
+
+        Vector<RecoveryModule> completed = doParallelPass(ready, true);
+
+        if (!doPhaseBarrier()) {
+            return;
+        }
 
         if (tsLogger.logger.isDebugEnabled()) {
             tsLogger.logger.debug("Periodic recovery second pass at "+_theTimestamper.format(new Date()));
         }
 
-        modules = copyOfModules.elements();
+        doParallelPass(completed, false);
 
-        while (modules.hasMoreElements())
-        {
-            RecoveryModule m = (RecoveryModule) modules.nextElement();
+        // n.b. the caller is responsible for clearing the active scan
+    }
+
+    /**
+     * run one pass of each module on the recovery threads and wait for them, up to the recovery module
+     * timeout, to finish
+     *
+     * @param modules the modules to run
+     * @param firstPass true for the first pass, false for the second
+     * @return the modules which completed the pass
+     */
+
+    private Vector<RecoveryModule> doParallelPass(Vector<RecoveryModule> modules, final boolean firstPass)
+    {
+        String pass = firstPass ? "first" : "second";
+        int timeout = recoveryPropertyManager.getRecoveryEnvironmentBean().getRecoveryModuleTimeout();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
+        Map<RecoveryModule, Future<?>> passes = new LinkedHashMap<RecoveryModule, Future<?>>();
+        Vector<RecoveryModule> completed = new Vector<RecoveryModule>();
+        boolean interrupted = false;
+
+        for (final RecoveryModule m : modules) {
+            passes.put(m, RecoveryExecutor.getExecutorService().submit(new Runnable() {
+                public void run() {
+                    ClassLoader cl = switchClassLoader(m);
+                    try {
+                        if (firstPass) {
+                            m.periodicWorkFirstPass();
+                        } else {
+                            m.periodicWorkSecondPass();
+                        }
+                    } finally {
+                        restoreClassLoader(cl);
+                    }
+                }
+            }));
+        }
+
+        for (Map.Entry<RecoveryModule, Future<?>> entry : passes.entrySet()) {
+            String name = entry.getKey().getClass().getName();
 
-            ClassLoader cl = switchClassLoader(m);
             try {
-            m.periodicWorkSecondPass();
-            } finally {
-                restoreClassLoader(cl);
-            }
+                if (interrupted) {
+                    throw new TimeoutException();
+                } else if (timeout > 0) {
+                    entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } else {
+                    entry.getValue().get();
+                }
 
-            if (tsLogger.logger.isDebugEnabled()) {
-                tsLogger.logger.debug(" ");
+                completed.add(entry.getKey());
+            } catch (TimeoutException e) {
+                tsLogger.i18NLogger.warn_recovery_PeriodicRecovery_moduleTimeout(name, pass, timeout);
+
+                _busyModules.put(entry.getKey(), entry.getValue());
+            } catch (ExecutionException e) {
+                tsLogger.i18NLogger.warn_recovery_PeriodicRecovery_moduleFailed(name, pass, e.getCause());
+            } catch (InterruptedException e) {
+                // stop waiting and leave the rest to finish in the background
+
+                interrupted = true;
+
+                _busyModules.put(entry.getKey(), entry.getValue());
             }
         }
 
-        // n.b. the caller is responsible for clearing the active scan
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return completed;
     }
 
     /**
@@ -916,6 +1061,12 @@ public class PeriodicRecovery extends Thread
     */
    private final Vector<RecoveryModule> _recoveryModules = new Vector<RecoveryModule>();
 
+    /**
+     * modules whose pass did not complete within the recovery module timeout in a parallel scan, and which
+     * are left out of scans until it does
+     */
+    private final Map<RecoveryModule, Future<?>> _busyModules = new ConcurrentHashMap<RecoveryModule, Future<?>>();
+
    /**
     * time in seconds between the first and second pass in any given scan
     */
@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.arjuna.recovery;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+
+/**
+ * The bounded pool of threads used when RecoveryEnvironmentBean.parallelRecovery
+ * is set. PeriodicRecovery runs the passes of the recovery modules on it, and
+ * modules can use it to recover independent transactions in batches.
+ */
+
+public final class RecoveryExecutor
+{
+    /**
+     * @return true if parallel recovery is enabled.
+     */
+
+    public static boolean isParallel ()
+    {
+        return recoveryPropertyManager.getRecoveryEnvironmentBean().isParallelRecovery();
+    }
+
+    /**
+     * @return the recovery thread pool, which is created if necessary.
+     */
+
+    public static synchronized ExecutorService getExecutorService ()
+    {
+        if (_executor == null)
+        {
+            _executor = Executors.newFixedThreadPool(recoveryPropertyManager.getRecoveryEnvironmentBean().getRecoveryThreads(), new ThreadFactory()
+            {
+                public Thread newThread (Runnable r)
+                {
+                    Thread thread = new Thread(r, "Recovery Worker-" + _threadCount.incrementAndGet());
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+        }
+
+        return _executor;
+    }
+
+    /**
+     * Stop the recovery thread pool, letting any work in progress complete.
+     */
+
+    public static synchronized void shutdown ()
+    {
+        if (_executor != null)
+        {
+            _executor.shutdown();
+            _executor = null;
+        }
+    }
+
+    /**
+     * Process the items in batches of RecoveryEnvironmentBean.recoveryBatchSize on
+     * the recovery threads, returning once every item has been processed. The
+     * calling thread processes batches as well, so this completes even if every
+     * recovery thread is busy, and the recovery threads use the caller's context
+     * class loader.
+     *
+     * @param items the items to process.
+     * @param processor what to do with each item. It must be safe to call from several threads at once.
+     */
+
+    public static <T> void processInBatches (List<T> items, final Consumer<T> processor)
+    {
+        processInBatches(items, recoveryPropertyManager.getRecoveryEnvironmentBean().getRecoveryBatchSize(), processor);
+    }
+
+    /**
+     * Process the items in batches of the given size on the recovery threads, as
+     * processInBatches(List, Consumer) does. A batch size of 1 gives every item its
+     * own thread, which suits slow independent calls such as resource manager scans.
+     *
+     * @param items the items to process.
+     * @param batchSize the number of items each thread takes at a time.
+     * @param processor what to do with each item. It must be safe to call from several threads at once.
+     */
+
+    public static <T> void processInBatches (List<T> items, int batchSize, final Consumer<T> processor)
+    {
+        if (batchSize < 1)
+            batchSize = 1;
+
+        final ConcurrentLinkedQueue<List<T>> batches = new ConcurrentLinkedQueue<List<T>>();
+
+        for (int i = 0; i < items.size(); i += batchSize)
+            batches.add(items.subList(i, Math.min(i + batchSize, items.size())));
+
+        final CountDownLatch done = new CountDownLatch(batches.size());
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        Runnable worker = new Runnable()
+        {
+            public void run ()
+            {
+                Thread currentThread = Thread.currentThread();
+                ClassLoader cl = currentThread.getContextClassLoader();
+                List<T> batch;
+
+                currentThread.setContextClassLoader(loader);
+
+                try
+                {
+                    while ((batch = batches.poll()) != null)
+                    {
+                        try
+                        {
+                            for (T item : batch)
+                                processor.accept(item);
+                        }
+                        finally
+                        {
+                            done.countDown();
+                        }
+                    }
+                }
+                finally
+                {
+                    currentThread.setContextClassLoader(cl);
+                }
+            }
+        };
+
+        int helpers = Math.min(batches.size() - 1, recoveryPropertyManager.getRecoveryEnvironmentBean().getRecoveryThreads());
+
+        for (int i = 0; i < helpers; i++)
+        {
+            try
+            {
+                getExecutorService().execute(worker);
+            }
+            catch (final RejectedExecutionException ex)
+            {
+                break; // shutting down, so do the rest here
+            }
+        }
+
+        worker.run();
+
+        // only batches being processed by other threads can be left
+
+        boolean interrupted = false;
+
+        while (done.getCount() > 0)
+        {
+            try
+            {
+                done.await();
+            }
+            catch (final InterruptedException ex)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private RecoveryExecutor ()
+    {
+    }
+
+    private static ExecutorService _executor = null;
+
+    private static final AtomicInteger _threadCount = new AtomicInteger();
+}
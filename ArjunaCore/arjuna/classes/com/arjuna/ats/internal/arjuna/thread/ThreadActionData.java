@@ -33,7 +33,9 @@ package com.arjuna.ats.internal.arjuna.thread;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.arjuna.ats.arjuna.coordinator.BasicAction;
@@ -163,7 +165,7 @@ public class ThreadActionData
 	{
 		Deque<BasicAction> txs = _threadList.get();
 
-		if (txs != null)
+		if (txs != null && !txs.isEmpty())
 		{
 			BasicAction a = txs.pop();
 
@@ -172,10 +174,10 @@ public class ThreadActionData
 				a.removeChildThread(threadId);
 			}
 
-			if (txs.size() == 0)
-			{
-				_threadList.set(null);
-			}
+			/*
+			 * Keep the (now empty) deque for the next transaction on
+			 * this thread rather than allocating a new one each time.
+			 */
 
 			return a;
 		}
@@ -208,11 +210,6 @@ public class ThreadActionData
 		if (txs != null)
 		{
 			txs.remove(act);
-
-			if (txs.size() == 0)
-			{
-				_threadList.set(null);
-			}
 		}
 	}
 
@@ -259,9 +256,13 @@ public class ThreadActionData
 	
 	public static void addSetup (ThreadSetup s)
 	{
-		synchronized (_threadSetups)
+		synchronized (_setupLock)
 		{
-			_threadSetups.add(s);
+			ThreadSetup[] setups = Arrays.copyOf(_threadSetups, _threadSetups.length + 1);
+
+			setups[setups.length - 1] = s;
+
+			_threadSetups = setups;
 		}
 	}
 
@@ -275,17 +276,30 @@ public class ThreadActionData
 	
 	public static boolean removeSetup (ThreadSetup s)
 	{
-		synchronized (_threadSetups)
+		synchronized (_setupLock)
 		{
-			return _threadSetups.remove(s);
+			List<ThreadSetup> setups = new ArrayList<ThreadSetup>(Arrays.asList(_threadSetups));
+
+			if (!setups.remove(s))
+				return false;
+
+			_threadSetups = setups.toArray(new ThreadSetup[setups.size()]);
+
+			return true;
 		}
 	}
 
 	private static void setup ()
 	{
-		for (int i = 0; i < _threadSetups.size(); i++)
+		/*
+		 * Changes replace the whole array so we can read it without locking.
+		 */
+
+		ThreadSetup[] setups = _threadSetups;
+
+		for (int i = 0; i < setups.length; i++)
 		{
-			ThreadSetup s = _threadSetups.get(i);
+			ThreadSetup s = setups[i];
 
 			if (s != null)
 				s.setup();
@@ -294,6 +308,8 @@ public class ThreadActionData
 
 	private static ThreadLocal<Deque<BasicAction>> _threadList = new ThreadLocal<Deque<BasicAction>>();
 
-	private static ArrayList<ThreadSetup> _threadSetups = new ArrayList<ThreadSetup>();
+	private static volatile ThreadSetup[] _threadSetups = new ThreadSetup[0];
+
+	private static final Object _setupLock = new Object();
 
 }
@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.BasicAction;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import com.arjuna.ats.internal.arjuna.thread.ThreadActionData;
+import com.arjuna.ats.internal.arjuna.thread.ThreadSetup;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+
+public class ActionManagerUnitTest
+{
+    @BeforeClass
+    public static void setUp ()
+    {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setActionManagerStripes(4);
+        arjPropertyManager.getCoordinatorEnvironmentBean().setLazyActionTracking(true);
+        arjPropertyManager.getCoordinatorEnvironmentBean().setEnableStatistics(false);
+    }
+
+    @Test
+    public void testStripes ()
+    {
+        List<AtomicAction> actions = new ArrayList<AtomicAction>();
+        int before = ActionManager.manager().getNumberOfInflightTransactions();
+
+        for (int i = 0; i < 100; i++)
+        {
+            AtomicAction A = new AtomicAction();
+
+            ActionManager.manager().put(A);
+            actions.add(A);
+        }
+
+        assertEquals(before + 100, ActionManager.manager().getNumberOfInflightTransactions());
+
+        Collection<BasicAction> inflight = ActionManager.manager().getInflightTransactions();
+
+        assertTrue(inflight.containsAll(actions));
+
+        for (AtomicAction A : actions)
+        {
+            assertSame(A, ActionManager.manager().get(A.get_uid()));
+
+            ActionManager.manager().remove(A.get_uid());
+
+            assertNull(ActionManager.manager().get(A.get_uid()));
+        }
+
+        assertEquals(before, ActionManager.manager().getNumberOfInflightTransactions());
+
+        /*
+         * The snapshot does not change.
+         */
+
+        assertTrue(inflight.containsAll(actions));
+    }
+
+    @Test
+    public void testLazyTracking ()
+    {
+        AtomicAction A = new AtomicAction();
+        TrackingRecord rec = new TrackingRecord(A);
+
+        A.begin();
+
+        assertNull(ActionManager.manager().get(A.get_uid()));
+
+        A.add(rec);
+
+        assertEquals(ActionStatus.COMMITTED, A.commit());
+
+        /*
+         * One phase commit, so never tracked.
+         */
+
+        assertFalse(rec.tracked);
+
+        A = new AtomicAction();
+        rec = new TrackingRecord(A);
+
+        A.begin();
+
+        A.add(rec);
+        A.add(new BasicRecord());
+
+        assertEquals(ActionStatus.COMMITTED, A.commit());
+
+        /*
+         * Two phase, so tracked from prepare until the end.
+         */
+
+        assertTrue(rec.tracked);
+        assertNull(ActionManager.manager().get(A.get_uid()));
+    }
+
+    @Test
+    public void testThreadSetup ()
+    {
+        final int[] calls = new int[1];
+        ThreadSetup setup = new ThreadSetup()
+        {
+            public void setup ()
+            {
+                calls[0]++;
+            }
+        };
+
+        ThreadActionData.addSetup(setup);
+
+        ThreadActionData.currentAction();
+
+        assertEquals(1, calls[0]);
+        assertTrue(ThreadActionData.removeSetup(setup));
+        assertFalse(ThreadActionData.removeSetup(setup));
+
+        ThreadActionData.currentAction();
+
+        assertEquals(1, calls[0]);
+    }
+
+    private static class TrackingRecord extends BasicRecord
+    {
+        public TrackingRecord (BasicAction action)
+        {
+            _action = action;
+        }
+
+        public int topLevelPrepare ()
+        {
+            tracked = (ActionManager.manager().get(_action.get_uid()) == _action);
+
+            return super.topLevelPrepare();
+        }
+
+        public int topLevelOnePhaseCommit ()
+        {
+            tracked = (ActionManager.manager().get(_action.get_uid()) != null);
+
+            return TwoPhaseOutcome.FINISH_OK;
+        }
+
+        boolean tracked;
+
+        private final BasicAction _action;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.TransactionReaper;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+
+public class AsyncPrepareUnitTest
+{
+    // NOTE: these bean properties can only be set once (TxControl and the thread pool take static copies)
+    @BeforeClass
+    public static void init() {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setAsyncPrepare(true);
+        // a single worker runs the submitted prepares one after the other
+        arjPropertyManager.getCoordinatorEnvironmentBean().setMaxTwoPhaseCommitThreads(1);
+        // keep the reaper out of the way so that only the prepare deadline is exercised
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTxReaperMode(TransactionReaper.PERIODIC);
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTxReaperTimeout(60000);
+    }
+
+    @Test
+    public void testShortCircuitOnFailure() throws Exception {
+        AtomicInteger prepares = new AtomicInteger();
+        AtomicInteger aborts = new AtomicInteger();
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+
+        for (int i = 0; i < 5; i++)
+            A.add(new CountingRecord(prepares, aborts, TwoPhaseOutcome.PREPARE_NOTOK, 0));
+
+        Assert.assertEquals(ActionStatus.ABORTED, A.commit());
+
+        // the first pooled prepare fails so the queued ones are skipped, only the callers record may run alongside it
+        Assert.assertTrue(prepares.get() >= 1 && prepares.get() <= 2);
+        Assert.assertEquals(5, aborts.get());
+    }
+
+    @Test
+    public void testReadOnlyDoesNotMaskFailure() throws Exception {
+        AtomicInteger prepares = new AtomicInteger();
+        AtomicInteger aborts = new AtomicInteger();
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+
+        // the first record is prepared on the pool after the last (read only) one has voted on the callers thread
+        A.add(new CountingRecord(prepares, aborts, TwoPhaseOutcome.PREPARE_NOTOK, 200));
+        A.add(new CountingRecord(prepares, aborts, TwoPhaseOutcome.PREPARE_READONLY, 0));
+
+        Assert.assertEquals(ActionStatus.ABORTED, A.commit());
+
+        // the failed record must be rolled back, not one phase committed (which would prepare it again)
+        Assert.assertEquals(2, prepares.get());
+        Assert.assertEquals(1, aborts.get());
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        AtomicInteger prepares = new AtomicInteger();
+        AtomicInteger aborts = new AtomicInteger();
+        AtomicAction A = new AtomicAction();
+
+        A.begin(1);
+
+        // only the participants prepared off the callers thread are slow, the callers own (last) record returns at once
+        for (int i = 0; i < 3; i++)
+            A.add(new CountingRecord(prepares, aborts, TwoPhaseOutcome.PREPARE_OK, 2000));
+
+        A.add(new CountingRecord(prepares, aborts, TwoPhaseOutcome.PREPARE_OK, 0));
+
+        long start = System.currentTimeMillis();
+
+        Assert.assertEquals(ActionStatus.ABORTED, A.commit());
+
+        /*
+         * The prepares in flight when the deadline passed are waited for but nothing else is started. A queued
+         * prepare may be run by the caller while the pool thread starts the next, so up to two can be in flight.
+         */
+        Assert.assertTrue(prepares.get() >= 2 && prepares.get() <= 3);
+        Assert.assertEquals(4, aborts.get());
+        Assert.assertTrue(System.currentTimeMillis() - start < 4000);
+    }
+
+    private static class CountingRecord extends BasicRecord
+    {
+        CountingRecord(AtomicInteger prepares, AtomicInteger aborts, int vote, long delay) {
+            this.prepares = prepares;
+            this.aborts = aborts;
+            this.vote = vote;
+            this.delay = delay;
+        }
+
+        public int topLevelPrepare() {
+            prepares.incrementAndGet();
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return TwoPhaseOutcome.PREPARE_NOTOK;
+                }
+            }
+
+            return vote;
+        }
+
+        public int topLevelAbort() {
+            aborts.incrementAndGet();
+
+            return TwoPhaseOutcome.FINISH_OK;
+        }
+
+        public boolean doSave() {
+            return false;
+        }
+
+        private final AtomicInteger prepares;
+        private final AtomicInteger aborts;
+        private final int vote;
+        private final long delay;
+    }
+}
@@ -21,6 +21,11 @@
  */
 package com.hp.mwtests.ts.arjuna.atomicaction;
 
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.AddOutcome;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+import com.hp.mwtests.ts.arjuna.resources.SyncRecord;
 import com.hp.mwtests.ts.arjuna.resources.TestBase;
 import org.junit.Test;
 import org.junit.Assert;
@@ -28,6 +33,10 @@ import org.junit.BeforeClass;
 
 import com.arjuna.ats.arjuna.common.arjPropertyManager;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class AtomicActionAsyncTest extends AtomicActionTestBase
 {
     // NOTE: The following bean properties can only be set once (because TxControl takes a static copy of them)
@@ -140,4 +149,107 @@ public class AtomicActionAsyncTest extends AtomicActionTestBase
     public void testRegistrationDuringCompletion4b() throws Exception {
         super.testRegistrationDuringCompletion4b();
     }
+
+    @Test
+    public void testParallelBeforeCompletion() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        SyncRecord[] syncs = new SyncRecord[3];
+
+        /*
+         * each synchronisation waits for all of the others to start so the transaction can only commit
+         * if the members of the non interposed group run concurrently
+         */
+        for (int i = 0; i < syncs.length; i++) {
+            syncs[i] = new SyncRecord() {
+                @Override
+                public boolean beforeCompletion() {
+                    latch.countDown();
+
+                    try {
+                        return latch.await(10, TimeUnit.SECONDS) && super.beforeCompletion();
+                    } catch (InterruptedException e) {
+                        return false;
+                    }
+                }
+            };
+        }
+
+        executeTest(true, ActionStatus.COMMITTED, syncs, new BasicRecord(), new BasicRecord());
+
+        for (SyncRecord sync : syncs)
+            Assert.assertTrue(sync.called());
+    }
+
+    @Test
+    public void testRegistrationAfterBeforeCompletion() throws Exception {
+        final AtomicAction A = new AtomicAction();
+        final AtomicInteger registered = new AtomicInteger(-1);
+        SyncRecord[] syncs = { new SyncRecord(), new SyncRecord() };
+
+        A.begin();
+
+        for (SyncRecord sync : syncs)
+            A.addSynchronization(sync);
+
+        // a participant registers during prepare, which is too late for anybody to run its beforeCompletion
+        A.add(new BasicRecord() {
+            @Override
+            public int topLevelPrepare() {
+                registered.set(A.addSynchronization(new SyncRecord(true, SyncRecord.FailureMode.NONE)));
+
+                return super.topLevelPrepare();
+            }
+        });
+        A.add(new BasicRecord());
+
+        Assert.assertEquals(ActionStatus.COMMITTED, A.commit());
+        Assert.assertEquals(AddOutcome.AR_REJECTED, registered.get());
+
+        for (SyncRecord sync : syncs)
+            Assert.assertTrue(sync.called());
+    }
+
+    @Test
+    public void testInterposedOrdering() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger violations = new AtomicInteger();
+        SyncRecord[] syncs = new SyncRecord[4];
+
+        for (int i = 0; i < syncs.length; i++) {
+            final boolean interposed = (i % 2 == 1);
+
+            syncs[i] = new SyncRecord(interposed, SyncRecord.FailureMode.NONE) {
+                @Override
+                public boolean beforeCompletion() {
+                    if (interposed) {
+                        // no non interposed synchronisation may still be running
+                        if (running.get() != 0)
+                            violations.incrementAndGet();
+                    } else {
+                        running.incrementAndGet();
+
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            return false;
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    }
+
+                    return super.beforeCompletion();
+                }
+            };
+        }
+
+        // an interposed registration made by the non interposed group must wait for that group to finish
+        SyncRecord late = new SyncRecord(true, SyncRecord.FailureMode.NONE);
+        syncs[0].registerSynchDuringSynch(late);
+
+        executeTest(true, ActionStatus.COMMITTED, syncs, new BasicRecord(), new BasicRecord());
+
+        Assert.assertEquals(0, violations.get());
+        Assert.assertTrue(late.getBeforeTimeStamp() >= syncs[0].getBeforeTimeStamp());
+        Assert.assertTrue("late registrations must see afterCompletion", late.called());
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.BasicAction;
+import com.arjuna.ats.arjuna.coordinator.TransactionReaper;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitThreadPool;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCoordinator;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+import com.hp.mwtests.ts.arjuna.resources.ShutdownRecord;
+import com.hp.mwtests.ts.arjuna.resources.SyncRecord;
+
+public class CommitAsyncUnitTest
+{
+    private static final int POOL_SIZE = 2;
+
+    // NOTE: TxControl and the thread pool take static copies of these bean properties
+    @BeforeClass
+    public static void init()
+    {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setMaxTwoPhaseCommitThreads(POOL_SIZE);
+        arjPropertyManager.getCoordinatorEnvironmentBean().setAsyncPrepare(true);
+        arjPropertyManager.getCoordinatorEnvironmentBean().setAsyncBeforeSynchronization(true);
+    }
+
+    @Test
+    public void testCommitAsync() throws Exception
+    {
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+
+        A.add(new BasicRecord());
+        A.add(new BasicRecord());
+
+        CompletionStage<Integer> outcome = A.commitAsync();
+
+        // the caller is no longer associated with the transaction
+        assertNull(BasicAction.Current());
+
+        assertEquals(ActionStatus.COMMITTED, outcome(outcome));
+        assertEquals(ActionStatus.COMMITTED, A.status());
+    }
+
+    @Test
+    public void testAssociation() throws Exception
+    {
+        final AtomicAction A = new AtomicAction();
+        final Thread caller = Thread.currentThread();
+        final Object[] seen = new Object[2];
+
+        A.begin();
+
+        A.addSynchronization(new SyncRecord() {
+            public boolean beforeCompletion()
+            {
+                seen[0] = Thread.currentThread();
+                seen[1] = BasicAction.Current();
+
+                return super.beforeCompletion();
+            }
+        });
+
+        assertEquals(ActionStatus.COMMITTED, outcome(A.commitAsync()));
+
+        // terminated on another thread, which was associated with the transaction
+        assertNotSame(caller, seen[0]);
+        assertSame(A, seen[1]);
+
+        // which does not keep the JVM alive
+        assertTrue(((Thread) seen[0]).isDaemon());
+    }
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        assertEquals(ActionStatus.COMMITTED, outcome(commitAsync()));
+
+        TwoPhaseCommitThreadPool.shutdown();
+
+        long completed = TwoPhaseCommitThreadPool.getCompletedTaskCount();
+
+        // the executors are created again, and terminations are metered with the rest of the work
+        assertEquals(ActionStatus.COMMITTED, outcome(commitAsync()));
+        assertTrue(TwoPhaseCommitThreadPool.getCompletedTaskCount() > completed);
+    }
+
+    @Test
+    public void testPrepareFailure() throws Exception
+    {
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+
+        A.add(new BasicRecord());
+        A.add(new ShutdownRecord(ShutdownRecord.FAIL_IN_PREPARE));
+
+        assertEquals(ActionStatus.ABORTED, outcome(A.commitAsync()));
+    }
+
+    @Test
+    public void testReaper() throws Exception
+    {
+        AtomicAction A = new AtomicAction();
+
+        A.begin(60);
+
+        assertEquals(1, TransactionReaper.transactionReaper().numberOfTransactions());
+
+        assertEquals(ActionStatus.COMMITTED, outcome(A.commitAsync()));
+        assertEquals(0, TransactionReaper.transactionReaper().numberOfTransactions());
+    }
+
+    @Test
+    public void testEndAsync() throws Exception
+    {
+        TwoPhaseCoordinator tx = new TwoPhaseCoordinator();
+        SyncRecord sync = new SyncRecord();
+
+        tx.start();
+
+        tx.addSynchronization(sync);
+        tx.add(new BasicRecord());
+        tx.add(new BasicRecord());
+
+        assertEquals(ActionStatus.COMMITTED, outcome(tx.endAsync(true)));
+        assertTrue(sync.called());
+    }
+
+    @Test
+    public void testMany() throws Exception
+    {
+        List<CompletableFuture<Integer>> outcomes = new ArrayList<CompletableFuture<Integer>>();
+
+        for (int i = 0; i < 1000; i++) {
+            AtomicAction A = new AtomicAction();
+
+            A.begin();
+
+            A.add(new BasicRecord());
+            A.add(new BasicRecord());
+
+            outcomes.add(A.commitAsync().toCompletableFuture());
+        }
+
+        for (CompletableFuture<Integer> outcome : outcomes)
+            assertEquals(ActionStatus.COMMITTED, outcome(outcome));
+    }
+
+    @Test
+    public void testSaturatedPool() throws Exception
+    {
+        List<CompletableFuture<Integer>> outcomes = new ArrayList<CompletableFuture<Integer>>();
+        List<SyncRecord> syncs = new ArrayList<SyncRecord>();
+
+        /*
+         * Many more terminations than pool threads, each of which waits for prepare and synchronization
+         * work of its own on the pool, which it could never get if the terminations held every pool thread.
+         */
+        for (int i = 0; i < POOL_SIZE * 10; i++) {
+            AtomicAction A = new AtomicAction();
+
+            A.begin();
+
+            for (int j = 0; j < 3; j++) {
+                SyncRecord sync = new SyncRecord();
+
+                syncs.add(sync);
+                A.addSynchronization(sync);
+                A.add(new BasicRecord());
+            }
+
+            outcomes.add(A.commitAsync().toCompletableFuture());
+        }
+
+        for (CompletableFuture<Integer> outcome : outcomes)
+            assertEquals(ActionStatus.COMMITTED, outcome(outcome));
+
+        for (SyncRecord sync : syncs)
+            assertTrue(sync.called());
+    }
+
+    private static CompletionStage<Integer> commitAsync()
+    {
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+
+        A.add(new BasicRecord());
+
+        return A.commitAsync();
+    }
+
+    private static int outcome(CompletionStage<Integer> outcome) throws Exception
+    {
+        return outcome.toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import org.junit.BeforeClass;
+
+public class InvalidExecutorFactoryTest extends TwoPhaseCommitExecutorTestBase
+{
+    // NOTE: the executor is created once, so this needs a JVM of its own
+    @BeforeClass
+    public static void init() {
+        init("com.hp.mwtests.ts.arjuna.atomicaction.NoSuchExecutorFactory");
+    }
+
+    // a factory which cannot be loaded is reported and the default fixed thread pool is used instead
+    @Override
+    protected boolean isExecutorThread(Thread thread) {
+        return thread.getName().startsWith("Two Phase Commit Worker-");
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.TxStats;
+import com.arjuna.ats.arjuna.coordinator.internal.LatencyHistogram;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+import com.hp.mwtests.ts.arjuna.resources.SyncRecord;
+
+public class LatencyHistogramUnitTest
+{
+    @Test
+    public void testPercentiles ()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+
+        for (long i = 1; i <= 1000; i++)
+            histogram.record(i * 1000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000000, snapshot.getMax());
+        assertEquals(500500, snapshot.getMean());
+
+        assertWithin(500000, snapshot.getValueAtPercentile(50));
+        assertWithin(990000, snapshot.getValueAtPercentile(99));
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+        assertWithin(1000, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testExtremes ()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(10));
+        assertEquals(3, snapshot.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE / 2, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBadPercentile ()
+    {
+        try
+        {
+            new LatencyHistogram().snapshot().getValueAtPercentile(101);
+
+            fail();
+        }
+        catch (final IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testConcurrent () throws Exception
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run ()
+                {
+                    for (int j = 0; j < 10000; j++)
+                        histogram.record(j);
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(80000, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testTxStats () throws Exception
+    {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setEnableStatistics(true);
+
+        for (int i = 0; i < 10; i++)
+        {
+            AtomicAction A = new AtomicAction();
+
+            A.begin();
+
+            A.add(new BasicRecord());
+            A.add(new BasicRecord());
+            A.addSynchronization(new SyncRecord());
+
+            assertEquals(ActionStatus.COMMITTED, A.commit());
+        }
+
+        TxStats stats = TxStats.getInstance();
+
+        for (TxStats.Phase phase : TxStats.Phase.values())
+        {
+            assertEquals(phase.toString(), 10, stats.getLatencySnapshot(phase).getCount());
+            assertTrue(stats.getLatencyPercentile(phase.name(), 50) <= stats.getMaxLatency(phase.name()));
+        }
+
+        assertEquals(10, stats.getLatencyCount("log_write"));
+        assertEquals(10, stats.getNumberOfCommittedTransactions());
+        assertEquals(stats.getLatencySnapshot(TxStats.Phase.COMMIT).getMean(), stats.getAverageCommitTime());
+    }
+
+    private static void assertWithin (long expected, long actual)
+    {
+        assertTrue(actual + " is not within 12.5% of " + expected,
+                Math.abs(actual - expected) <= expected / 8);
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.SyncFailedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.RecordType;
+import com.arjuna.ats.arjuna.coordinator.TransactionLogBatcher;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.objectstore.StoreManager;
+import com.arjuna.ats.arjuna.objectstore.TxLog;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+
+public class LogBatchingUnitTest
+{
+    private static final String TYPE = "/StateManager/BasicAction/TwoPhaseCoordinator/AtomicAction/LogBatchingUnitTest";
+
+    // NOTE: TxControl takes a static copy of this property
+    @BeforeClass
+    public static void init() {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setLogBatching(true);
+    }
+
+    @Test
+    public void testBatching() throws Exception
+    {
+        RecoveryStore store = StoreManager.getRecoveryStore();
+        BlockingLog log = new BlockingLog(store);
+        TransactionLogBatcher batcher = TransactionLogBatcher.forStore(log);
+        List<Uid> uids = writeBatch(log, batcher);
+
+        assertEquals(4, uids.size());
+        assertEquals(2, log.types.size());
+        assertEquals(TYPE, log.types.get(0));
+        assertEquals(TransactionLogBatcher.BATCH_TYPE, log.types.get(1));
+
+        Uid batchUid = log.uids.get(1);
+
+        assertTrue(TransactionLogBatcher.isActive(batchUid));
+        assertEquals(3, TransactionLogBatcher.batchMembers(store, batchUid).length);
+
+        // the entry goes with the last of its members
+        for (Uid uid : uids)
+            assertTrue(batcher.remove(uid, TYPE));
+
+        assertFalse(TransactionLogBatcher.isActive(batchUid));
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(batchUid, TransactionLogBatcher.BATCH_TYPE));
+    }
+
+    @Test
+    public void testSplitBatch() throws Exception
+    {
+        RecoveryStore store = StoreManager.getRecoveryStore();
+        Uid batchUid = new Uid();
+        Uid[] uids = { new Uid(), new Uid() };
+        OutputObjectState batch = new OutputObjectState(batchUid, TransactionLogBatcher.BATCH_TYPE);
+
+        batch.packInt(uids.length);
+
+        for (int i = 0; i < uids.length; i++)
+        {
+            OutputObjectState member = new OutputObjectState(uids[i], TYPE);
+
+            member.packString("batched " + i);
+
+            UidHelper.packInto(uids[i], batch);
+            batch.packString(TYPE);
+            batch.packBytes(member.buffer());
+        }
+
+        assertTrue(store.write_committed(batchUid, TransactionLogBatcher.BATCH_TYPE, batch));
+
+        // a member which has already rewritten its own log keeps it
+        OutputObjectState rewritten = new OutputObjectState(uids[1], TYPE);
+
+        rewritten.packString("rewritten");
+
+        assertTrue(store.write_committed(uids[1], TYPE, rewritten));
+
+        assertTrue(TransactionLogBatcher.splitBatch(store, batchUid));
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(batchUid, TransactionLogBatcher.BATCH_TYPE));
+
+        InputObjectState first = store.read_committed(uids[0], TYPE);
+        InputObjectState second = store.read_committed(uids[1], TYPE);
+
+        assertNotNull(first);
+        assertEquals("batched 0", first.unpackString());
+        assertEquals("rewritten", second.unpackString());
+
+        for (Uid uid : uids)
+            assertTrue(store.remove_committed(uid, TYPE));
+    }
+
+    @Test
+    public void testSplitBatchSkipsCompletedMembers() throws Exception
+    {
+        RecoveryStore store = StoreManager.getRecoveryStore();
+        BlockingLog log = new BlockingLog(store);
+        TransactionLogBatcher batcher = TransactionLogBatcher.forStore(log);
+
+        assertEquals(4, writeBatch(log, batcher).size());
+
+        Uid batchUid = log.uids.get(1);
+        Uid[] members = TransactionLogBatcher.batchMembers(store, batchUid);
+
+        assertEquals(3, members.length);
+
+        // one member completes and removes its log
+        assertTrue(batcher.remove(members[0], TYPE));
+
+        // another rewrites its log, as after a heuristic, and then removes that
+        assertTrue(store.write_committed(members[1], TYPE, new OutputObjectState(members[1], TYPE, new byte[] { 2 })));
+        assertTrue(batcher.release(members[1]));
+        assertTrue(store.remove_committed(members[1], TYPE));
+
+        assertEquals(1, TransactionLogBatcher.batchMembers(store, batchUid).length);
+
+        // the system fails before the last member completes
+        assertTrue(TransactionLogBatcher.splitBatch(store, batchUid));
+
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(members[0], TYPE));
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(members[1], TYPE));
+        assertEquals(StateStatus.OS_COMMITTED, store.currentState(members[2], TYPE));
+
+        assertTrue(store.remove_committed(members[2], TYPE));
+        assertTrue(batcher.remove(log.uids.get(0), TYPE));
+    }
+
+    @Test
+    public void testConcurrentCommits() throws Exception
+    {
+        final int threads = 8;
+        final int transactions = 50;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final List<Integer> outcomes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        for (int i = 0; i < threads; i++)
+        {
+            new Thread() {
+                public void run() {
+                    for (int j = 0; j < transactions; j++)
+                    {
+                        AtomicAction A = new AtomicAction();
+
+                        A.begin();
+                        A.add(new BasicRecord());
+                        A.add(new BasicRecord());
+
+                        outcomes.add(A.commit());
+                    }
+
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(threads * transactions, outcomes.size());
+
+        for (int outcome : outcomes)
+            assertEquals(ActionStatus.COMMITTED, outcome);
+
+        // every action removed its share of the batch entries
+        InputObjectState batches = new InputObjectState();
+
+        StoreManager.getRecoveryStore().allObjUids(TransactionLogBatcher.BATCH_TYPE, batches);
+
+        assertEquals(Uid.nullUid(), UidHelper.unpackFrom(batches));
+    }
+
+    @Test
+    public void testXAParticipantsNotBatched() throws Exception
+    {
+        BatchingAction A = new BatchingAction();
+
+        A.begin();
+        A.add(new BasicRecord());
+
+        assertTrue(A.batches());
+
+        // the XA orphan filters look the log of such a transaction up by its Uid
+        A.add(new BasicRecord() {
+            public int typeIs() {
+                return RecordType.JTA_RECORD;
+            }
+        });
+
+        assertFalse(A.batches());
+
+        A.abort();
+    }
+
+    /*
+     * The first write holds the store while three more arrive, so those three
+     * go into one batch entry.
+     */
+    private static List<Uid> writeBatch(BlockingLog log, TransactionLogBatcher batcher) throws Exception
+    {
+        List<Thread> threads = new ArrayList<Thread>();
+        List<Uid> uids = Collections.synchronizedList(new ArrayList<Uid>());
+
+        for (int i = 0; i < 4; i++)
+        {
+            Thread thread = new Writer(batcher, uids);
+
+            threads.add(thread);
+            thread.start();
+
+            if (i == 0)
+                assertTrue(log.blocked.await(10, TimeUnit.SECONDS));
+        }
+
+        while (batcher.getQueueDepth() < 3)
+            Thread.sleep(10);
+
+        log.release.countDown();
+
+        for (Thread thread : threads)
+            thread.join();
+
+        return uids;
+    }
+
+    private static class BatchingAction extends AtomicAction
+    {
+        boolean batches()
+        {
+            return batchIntentionList();
+        }
+    }
+
+    private static class Writer extends Thread
+    {
+        Writer(TransactionLogBatcher batcher, List<Uid> uids)
+        {
+            this.batcher = batcher;
+            this.uids = uids;
+        }
+
+        public void run()
+        {
+            Uid uid = new Uid();
+
+            try
+            {
+                if (batcher.write(uid, TYPE, new OutputObjectState(uid, TYPE, new byte[] { 1 })))
+                    uids.add(uid);
+            }
+            catch (ObjectStoreException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        private final TransactionLogBatcher batcher;
+        private final List<Uid> uids;
+    }
+
+    private static class BlockingLog implements TxLog
+    {
+        BlockingLog(RecoveryStore store)
+        {
+            this.store = store;
+        }
+
+        public boolean remove_committed(Uid u, String tn) throws ObjectStoreException
+        {
+            return store.remove_committed(u, tn);
+        }
+
+        public boolean write_committed(Uid u, String tn, OutputObjectState buff) throws ObjectStoreException
+        {
+            uids.add(u);
+            types.add(tn);
+
+            if (blocked.getCount() > 0)
+            {
+                blocked.countDown();
+
+                try
+                {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new ObjectStoreException(e);
+                }
+            }
+
+            return store.write_committed(u, tn, buff);
+        }
+
+        public void sync() throws SyncFailedException, ObjectStoreException
+        {
+            store.sync();
+        }
+
+        public String getStoreName()
+        {
+            return store.getStoreName();
+        }
+
+        public void start()
+        {
+        }
+
+        public void stop()
+        {
+        }
+
+        final List<Uid> uids = Collections.synchronizedList(new ArrayList<Uid>());
+        final List<String> types = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        private final RecoveryStore store;
+    }
+}
@@ -21,11 +21,14 @@
 package com.hp.mwtests.ts.arjuna.atomicaction;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
 import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.coordinator.ActionHierarchy;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.coordinator.BasicAction;
 import com.arjuna.ats.internal.arjuna.thread.ThreadActionData;
@@ -92,4 +95,93 @@ public class OnePhaseCommitUnitTest
         assertTrue(!rec1.onePhaseCalled());
         assertTrue(rec2.onePhaseCalled());
     }
+    
+    @Test
+    public void testNoFailureLists () throws Exception
+    {
+        ListAction A = new ListAction();
+        
+        A.begin();
+        
+        A.add(new OnePhaseAbstractRecord());
+        
+        assertEquals(ActionStatus.COMMITTED, A.commit());
+        
+        /*
+         * A successful one-phase commit should not have needed any of
+         * the lists used to track failures.
+         */
+        
+        assertNull(A.failedList());
+        assertNull(A.heuristicList());
+        assertTrue(A.getDeferredThrowables().isEmpty());
+        
+        A = new ListAction();
+        
+        A.begin();
+        
+        assertEquals(ActionStatus.COMMITTED, A.commit());
+        
+        assertNull(A.failedList());
+        assertNull(A.heuristicList());
+    }
+    
+    @Test
+    public void testHierarchy () throws Exception
+    {
+        AtomicAction A = new AtomicAction();
+        AtomicAction B = new AtomicAction();
+        
+        A.begin();
+        
+        assertEquals(1, A.hierarchyDepth());
+        
+        B.begin();
+        
+        ActionHierarchy hierarchy = B.getHierarchy();
+        
+        assertEquals(2, hierarchy.depth());
+        assertEquals(A.get_uid(), hierarchy.getActionUid(0));
+        assertEquals(B.get_uid(), hierarchy.getActionUid(1));
+        
+        assertSame(A.getHierarchy(), A.getHierarchy());
+        assertEquals(1, A.getHierarchy().depth());
+        assertEquals(A.get_uid(), A.getHierarchy().getDeepestActionUid());
+        
+        B.commit();
+        A.commit();
+    }
+    
+    @Test
+    public void testThreadActionData () throws Exception
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            AtomicAction A = new AtomicAction();
+            
+            A.begin();
+            
+            assertSame(A, ThreadActionData.currentAction());
+            
+            A.add(new OnePhaseAbstractRecord());
+            
+            assertEquals(ActionStatus.COMMITTED, A.commit());
+            
+            assertNull(ThreadActionData.currentAction());
+            assertNull(ThreadActionData.popAction());
+        }
+    }
+    
+    private static class ListAction extends AtomicAction
+    {
+        public Object failedList ()
+        {
+            return failedList;
+        }
+        
+        public Object heuristicList ()
+        {
+            return heuristicList;
+        }
+    }
 }
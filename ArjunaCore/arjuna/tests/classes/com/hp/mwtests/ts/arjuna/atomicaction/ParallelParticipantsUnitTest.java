@@ -0,0 +1,223 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.AbstractRecord;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.RecordType;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+
+public class ParallelParticipantsUnitTest
+{
+    @Test
+    public void testDifferentResourceManagers() throws Exception {
+        // every participant waits for the others, so prepare and commit only get through if they run together
+        CyclicBarrier prepared = new CyclicBarrier(3);
+        CyclicBarrier committed = new CyclicBarrier(3);
+        AtomicInteger commits = new AtomicInteger();
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+        A.setParallelParticipants(true);
+
+        for (int i = 0; i < 3; i++)
+            A.add(new ResourceManagerRecord("rm" + i, prepared, committed, commits, null));
+
+        Assert.assertEquals(ActionStatus.COMMITTED, A.commit());
+        Assert.assertEquals(3, commits.get());
+    }
+
+    @Test
+    public void testSameResourceManager() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        AtomicInteger activeA = new AtomicInteger();
+        AtomicInteger activeB = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+        A.setParallelParticipants(true);
+
+        for (int i = 0; i < 2; i++) {
+            A.add(new SlowRecord("a", activeA, overlapped, commits));
+            A.add(new SlowRecord("b", activeB, overlapped, commits));
+        }
+
+        Assert.assertEquals(ActionStatus.COMMITTED, A.commit());
+        Assert.assertEquals(4, commits.get());
+        Assert.assertFalse("two branches of one resource manager were completed at once", overlapped.get());
+    }
+
+    @Test
+    public void testCommitPointFirst() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        AtomicBoolean commitPoint = new AtomicBoolean();
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+        A.setParallelParticipants(true);
+
+        for (int i = 0; i < 3; i++)
+            A.add(new ResourceManagerRecord("rm" + i, null, null, commits, commitPoint));
+
+        A.add(new CommitPointRecord(commitPoint));
+
+        Assert.assertEquals(ActionStatus.COMMITTED, A.commit());
+        // a participant which committed ahead of the commit point does not count itself
+        Assert.assertEquals(3, commits.get());
+    }
+
+    @Test
+    public void testSerialByDefault() throws Exception {
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+
+        Assert.assertFalse(A.parallelParticipants());
+
+        A.abort();
+    }
+
+    private static class ResourceManagerRecord extends BasicRecord
+    {
+        ResourceManagerRecord(String rm, CyclicBarrier prepared, CyclicBarrier committed, AtomicInteger commits, AtomicBoolean commitPoint) {
+            this.rm = rm;
+            this.prepared = prepared;
+            this.committed = committed;
+            this.commits = commits;
+            this.commitPoint = commitPoint;
+        }
+
+        public int topLevelPrepare() {
+            return await(prepared) ? TwoPhaseOutcome.PREPARE_OK : TwoPhaseOutcome.PREPARE_NOTOK;
+        }
+
+        public int topLevelCommit() {
+            if (!await(committed) || (commitPoint != null && !commitPoint.get()))
+                return TwoPhaseOutcome.FINISH_ERROR;
+
+            commits.incrementAndGet();
+
+            return TwoPhaseOutcome.FINISH_OK;
+        }
+
+        public boolean sameResourceManager(AbstractRecord other) {
+            return (other instanceof ResourceManagerRecord) && rm.equals(((ResourceManagerRecord) other).rm);
+        }
+
+        public boolean doSave() {
+            return false;
+        }
+
+        private static boolean await(CyclicBarrier barrier) {
+            if (barrier == null)
+                return true;
+
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private final String rm;
+        private final CyclicBarrier prepared;
+        private final CyclicBarrier committed;
+        private final AtomicInteger commits;
+        private final AtomicBoolean commitPoint;
+    }
+
+    private static class SlowRecord extends ResourceManagerRecord
+    {
+        SlowRecord(String rm, AtomicInteger active, AtomicBoolean overlapped, AtomicInteger commits) {
+            super(rm, null, null, commits, null);
+
+            this.active = active;
+            this.overlapped = overlapped;
+        }
+
+        public int topLevelPrepare() {
+            return slowly(super.topLevelPrepare());
+        }
+
+        public int topLevelCommit() {
+            return slowly(super.topLevelCommit());
+        }
+
+        private int slowly(int outcome) {
+            if (active.incrementAndGet() > 1)
+                overlapped.set(true);
+
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+            }
+
+            active.decrementAndGet();
+
+            return outcome;
+        }
+
+        private final AtomicInteger active;
+        private final AtomicBoolean overlapped;
+    }
+
+    private static class CommitPointRecord extends BasicRecord
+    {
+        CommitPointRecord(AtomicBoolean commitPoint) {
+            this.commitPoint = commitPoint;
+        }
+
+        public int typeIs() {
+            return RecordType.COMMITMARKABLERESOURCE;
+        }
+
+        public Uid order() {
+            return Uid.minUid();
+        }
+
+        public int topLevelCommit() {
+            commitPoint.set(true);
+
+            return TwoPhaseOutcome.FINISH_OK;
+        }
+
+        public boolean doSave() {
+            return false;
+        }
+
+        private final AtomicBoolean commitPoint;
+    }
+}
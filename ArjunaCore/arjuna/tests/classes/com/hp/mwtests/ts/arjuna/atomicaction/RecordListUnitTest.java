@@ -21,16 +21,24 @@
 package com.hp.mwtests.ts.arjuna.atomicaction;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
+import com.arjuna.ats.arjuna.coordinator.AbstractRecord;
 import com.arjuna.ats.arjuna.coordinator.RecordList;
+import com.arjuna.ats.arjuna.coordinator.RecordListIterator;
 import com.arjuna.ats.internal.arjuna.abstractrecords.ActivationRecord;
 import com.arjuna.ats.internal.arjuna.abstractrecords.DisposeRecord;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
 
 public class RecordListUnitTest
 {
@@ -65,4 +73,80 @@ public class RecordListUnitTest
         
         assertTrue(rl.remove(dr));
     }
+
+    @Test
+    public void testOrderedInsert () throws Exception
+    {
+        List<AbstractRecord> records = new ArrayList<AbstractRecord>();
+
+        for (int i = 0; i < 200; i++)
+            records.add(new OrderOnlyRecord());
+
+        Collections.shuffle(records, new Random(42));
+
+        RecordList rl = new RecordList();
+
+        for (AbstractRecord record : records)
+            assertTrue(rl.insert(record));
+
+        // an equal record is rejected wherever it sits in the list
+        assertFalse(rl.insert(records.get(17)));
+        assertEquals(records.size(), rl.size());
+
+        RecordListIterator iter = new RecordListIterator(rl);
+        AbstractRecord previous = iter.iterate();
+        AbstractRecord current;
+        int count = 1;
+
+        while ((current = iter.iterate()) != null)
+        {
+            assertTrue(previous.lessThan(current));
+            previous = current;
+            count++;
+        }
+
+        assertEquals(records.size(), count);
+    }
+
+    @Test
+    public void testOrderedInsertAfterExplicitPush () throws Exception
+    {
+        AbstractRecord a = new OrderOnlyRecord();
+        AbstractRecord b = new OrderOnlyRecord();
+        AbstractRecord c = new OrderOnlyRecord();
+        AbstractRecord last = new OrderOnlyRecord();
+        RecordList rl = new RecordList();
+
+        rl.insert(a);
+        rl.insert(b);
+        rl.putFront(last);
+
+        /*
+         * the list is no longer in order so the record must be placed by the
+         * walk from the head, which puts it before the first larger record
+         */
+        assertTrue(rl.insert(c));
+        assertEquals(c, rl.peekFront());
+        assertEquals(b, rl.peekRear());
+
+        // emptying the list makes it ordered again
+        while (rl.size() > 0)
+            rl.getFront();
+
+        rl.insert(b);
+        rl.insert(a);
+        rl.insert(c);
+
+        assertEquals(a, rl.getFront());
+        assertEquals(b, rl.getFront());
+        assertEquals(c, rl.getFront());
+    }
+
+    private static class OrderOnlyRecord extends BasicRecord
+    {
+        public boolean insertsByOrderOnly ()
+        {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitExecutorFactory;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import com.hp.mwtests.ts.arjuna.resources.BasicRecord;
+
+public class RejectedParallelParticipantsUnitTest
+{
+    // NOTE: the executor is created once, so this needs a JVM of its own
+    @BeforeClass
+    public static void init() {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTwoPhaseCommitExecutorFactoryClassName(ShutdownExecutorFactory.class.getName());
+    }
+
+    @Test
+    public void testCompletesOnCallersThread() throws Exception {
+        AtomicInteger prepares = new AtomicInteger();
+        AtomicInteger commits = new AtomicInteger();
+        AtomicAction A = new AtomicAction();
+
+        A.begin();
+        A.setParallelParticipants(true);
+
+        // every record is on a resource manager of its own, so all but one are submitted to the pool
+        for (int i = 0; i < 3; i++)
+            A.add(new CountingRecord(prepares, commits));
+
+        Assert.assertEquals(ActionStatus.COMMITTED, A.commit());
+        Assert.assertEquals(3, prepares.get());
+        Assert.assertEquals(3, commits.get());
+    }
+
+    public static class ShutdownExecutorFactory implements TwoPhaseCommitExecutorFactory
+    {
+        public ExecutorService createExecutor(int maxThreads) {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            // a shut down executor rejects every job it is given
+            executor.shutdown();
+
+            return executor;
+        }
+    }
+
+    private static class CountingRecord extends BasicRecord
+    {
+        CountingRecord(AtomicInteger prepares, AtomicInteger commits) {
+            this.prepares = prepares;
+            this.commits = commits;
+        }
+
+        public int topLevelPrepare() {
+            prepares.incrementAndGet();
+
+            return TwoPhaseOutcome.PREPARE_OK;
+        }
+
+        public int topLevelCommit() {
+            commits.incrementAndGet();
+
+            return TwoPhaseOutcome.FINISH_OK;
+        }
+
+        public boolean doSave() {
+            return false;
+        }
+
+        private final AtomicInteger prepares;
+        private final AtomicInteger commits;
+    }
+}
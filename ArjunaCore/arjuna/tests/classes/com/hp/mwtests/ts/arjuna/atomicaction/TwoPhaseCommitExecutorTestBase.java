@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.atomicaction;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitExecutorFactory;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitThreadPool;
+
+/**
+ * Runs the two phase commit tests against a configured executor factory.
+ * Subclasses select the factory from a @BeforeClass method. The executor
+ * is created once, so each subclass needs a JVM of its own.
+ */
+public abstract class TwoPhaseCommitExecutorTestBase extends AtomicActionTestBase
+{
+    protected static void init(Class<? extends TwoPhaseCommitExecutorFactory> factory) {
+        init(factory.getName());
+    }
+
+    protected static void init(String factoryClassName) {
+        AtomicActionTestBase.init(true);
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTwoPhaseCommitExecutorFactoryClassName(factoryClassName);
+    }
+
+    /**
+     * @return true if the thread belongs to the executor the configured factory creates.
+     */
+    protected abstract boolean isExecutorThread(Thread thread);
+
+    @Test
+    public void testConfiguredExecutor() throws Exception {
+        final Thread[] ran = new Thread[1];
+
+        TwoPhaseCommitThreadPool.submitJob(new Callable<Integer>() {
+            public Integer call() {
+                ran[0] = Thread.currentThread();
+
+                return 0;
+            }
+        }).get(30, TimeUnit.SECONDS);
+
+        Assert.assertTrue(ran[0].getName(), isExecutorThread(ran[0]));
+    }
+
+    @Test
+    @Override
+    public void testCommit() throws Exception {
+        long completed = TwoPhaseCommitThreadPool.getCompletedTaskCount();
+
+        super.testCommit();
+
+        Assert.assertTrue(TwoPhaseCommitThreadPool.getCompletedTaskCount() > completed);
+        Assert.assertTrue(TwoPhaseCommitThreadPool.getMaxTaskLatency() > 0);
+        Assert.assertTrue(TwoPhaseCommitThreadPool.getAverageTaskLatency() <= TwoPhaseCommitThreadPool.getMaxTaskLatency());
+    }
+
+    @Test
+    @Override
+    public void testAbort() throws Exception {
+        super.testAbort();
+    }
+
+    @Test
+    @Override
+    public void testCompletionWithFailures() throws Exception {
+        super.testCompletionWithFailures();
+    }
+}
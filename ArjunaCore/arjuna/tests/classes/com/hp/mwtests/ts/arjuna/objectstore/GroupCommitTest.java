@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.objectstore.GroupCommitSync;
+import com.arjuna.ats.internal.arjuna.objectstore.ShadowNoFileLockStore;
+
+public class GroupCommitTest
+{
+    private static final String TYPE_NAME = "/StateManager/junit/groupcommit";
+
+    private static class GroupCommitStore extends ShadowNoFileLockStore
+    {
+        public GroupCommitStore(ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
+        {
+            super(objectStoreEnvironmentBean);
+        }
+
+        public GroupCommitSync getGroupCommit()
+        {
+            return groupCommit;
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters () throws Exception
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot("groupCommit");
+        objectStoreEnvironmentBean.setGroupCommit(true);
+        objectStoreEnvironmentBean.setGroupCommitWindow(2000);
+
+        final GroupCommitStore store = new GroupCommitStore(objectStoreEnvironmentBean);
+        final int threads = 8;
+        final int iterations = 25;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+
+        assertNotNull(store.getGroupCommit());
+
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < iterations; j++)
+                        {
+                            Uid u = new Uid();
+                            OutputObjectState state = new OutputObjectState();
+
+                            state.packString(u.stringForm());
+
+                            if (!store.write_committed(u, TYPE_NAME, state))
+                                failures.incrementAndGet();
+
+                            InputObjectState read = store.read_committed(u, TYPE_NAME);
+
+                            if ((read == null) || !u.stringForm().equals(read.unpackString()))
+                                failures.incrementAndGet();
+
+                            if (!store.remove_committed(u, TYPE_NAME))
+                                failures.incrementAndGet();
+
+                            if (store.currentState(u, TYPE_NAME) != StateStatus.OS_UNKNOWN)
+                                failures.incrementAndGet();
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        e.printStackTrace();
+
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+
+            workers[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread worker : workers)
+            worker.join();
+
+        assertEquals(0, failures.get());
+
+        GroupCommitSync groupCommit = store.getGroupCommit();
+
+        // every write and every removal is made durable through the group commit
+        assertEquals(2 * threads * iterations, groupCommit.getRequestCount());
+        assertTrue(groupCommit.getBatchCount() <= groupCommit.getRequestCount());
+    }
+
+    @Test
+    public void testDisabledByDefault () throws Exception
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot("groupCommit");
+
+        GroupCommitStore store = new GroupCommitStore(objectStoreEnvironmentBean);
+
+        assertTrue(store.getGroupCommit() == null);
+    }
+}
@@ -20,11 +20,13 @@
  */
 package com.hp.mwtests.ts.arjuna.objectstore;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -132,4 +134,61 @@ public class JDBCStoreTest {
 		api.stop();
 		// }
 	}
+
+	@Test
+	public void testBatchedWrites() throws Exception {
+		ObjectStoreEnvironmentBean jdbcStoreEnvironmentBean = BeanPopulator
+				.getDefaultInstance(ObjectStoreEnvironmentBean.class);
+
+		// the prefix gives a separate table, and so a separate store implementation
+		String tablePrefix = jdbcStoreEnvironmentBean.getTablePrefix();
+		boolean batchWrites = jdbcStoreEnvironmentBean.getJdbcBatchWrites();
+
+		jdbcStoreEnvironmentBean.setTablePrefix("Batched");
+		jdbcStoreEnvironmentBean.setJdbcBatchWrites(true);
+
+		try {
+			final ObjectStoreAPI api = new JDBCStore(jdbcStoreEnvironmentBean);
+			final AtomicInteger failures = new AtomicInteger();
+			Thread[] threads = new Thread[8];
+
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread() {
+					public void run() {
+						try {
+							for (int j = 0; j < 20; j++) {
+								Uid uid = new Uid();
+								OutputObjectState state = new OutputObjectState();
+
+								state.packInt(j);
+
+								if (!api.write_uncommitted(uid, "typeName", state)
+										|| !api.commit_state(uid, "typeName")
+										|| api.commit_state(uid, "typeName")
+										|| !api.write_committed(uid, "typeName", state)
+										|| api.read_committed(uid, "typeName").unpackInt() != j
+										|| !api.remove_committed(uid, "typeName")
+										|| api.remove_committed(uid, "typeName")) {
+									failures.incrementAndGet();
+								}
+							}
+						} catch (Exception e) {
+							failures.incrementAndGet();
+						}
+					}
+				};
+
+				threads[i].start();
+			}
+
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			assertEquals(0, failures.get());
+		} finally {
+			jdbcStoreEnvironmentBean.setTablePrefix(tablePrefix);
+			jdbcStoreEnvironmentBean.setJdbcBatchWrites(batchWrites);
+		}
+	}
 }
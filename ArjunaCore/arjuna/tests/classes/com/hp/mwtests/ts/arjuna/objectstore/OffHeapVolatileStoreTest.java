@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.objectstore.OffHeapVolatileStore;
+
+public class OffHeapVolatileStoreTest
+{
+    @Test
+    public void testReadWriteRemove () throws Exception
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot("tmp");
+        objectStoreEnvironmentBean.setOffHeapStoreSegments(2);
+        objectStoreEnvironmentBean.setOffHeapStoreChunkSize(256);
+
+        OffHeapVolatileStore store = new OffHeapVolatileStore(objectStoreEnvironmentBean);
+        String tn = "/StateManager/junit";
+        List<Uid> uids = new ArrayList<Uid>();
+
+        for (int i = 0; i < 1000; i++)
+        {
+            Uid u = new Uid();
+            OutputObjectState state = new OutputObjectState(u, tn);
+
+            state.packInt(i);
+            state.packString("state " + i);
+
+            if (i % 100 == 0)
+                state.packBytes(new byte[1024]); // bigger than a block
+
+            assertTrue(store.write_committed(u, tn, state));
+
+            uids.add(u);
+        }
+
+        assertEquals(1000, store.size());
+
+        // overwrite every third state and remove every other one
+
+        for (int i = 0; i < uids.size(); i++)
+        {
+            Uid u = uids.get(i);
+
+            if (i % 3 == 0)
+            {
+                OutputObjectState state = new OutputObjectState(u, tn);
+
+                state.packInt(-i);
+                state.packString("new state " + i);
+
+                assertTrue(store.write_committed(u, tn, state));
+            }
+
+            if (i % 2 == 1)
+                assertTrue(store.remove_committed(u, tn));
+        }
+
+        assertEquals(500, store.size());
+
+        for (int i = 0; i < uids.size(); i++)
+        {
+            Uid u = uids.get(i);
+            InputObjectState state = store.read_committed(u, tn);
+
+            if (i % 2 == 1)
+            {
+                assertNull(state);
+                assertEquals(StateStatus.OS_UNKNOWN, store.currentState(u, tn));
+                assertFalse(store.remove_committed(u, tn));
+            }
+            else
+            {
+                assertEquals(StateStatus.OS_COMMITTED, store.currentState(u, tn));
+
+                if (i % 3 == 0)
+                {
+                    assertEquals(-i, state.unpackInt());
+                    assertEquals("new state " + i, state.unpackString());
+                }
+                else
+                {
+                    assertEquals(i, state.unpackInt());
+                    assertEquals("state " + i, state.unpackString());
+                }
+            }
+        }
+
+        long allocated = store.getAllocatedMemory();
+
+        for (Uid u : uids)
+            store.remove_committed(u, tn);
+
+        assertEquals(0, store.size());
+        assertTrue(store.getAllocatedMemory() < allocated);
+    }
+
+    @Test
+    public void testConcurrentAccess () throws Exception
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot("tmp");
+
+        final OffHeapVolatileStore store = new OffHeapVolatileStore(objectStoreEnvironmentBean);
+        final String tn = "/StateManager/junit";
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run ()
+                {
+                    try
+                    {
+                        for (int j = 0; j < 2000; j++)
+                        {
+                            Uid u = new Uid();
+                            OutputObjectState state = new OutputObjectState(u, tn);
+
+                            state.packString(u.stringForm());
+
+                            store.write_committed(u, tn, state);
+
+                            InputObjectState read = store.read_committed(u, tn);
+
+                            if (read == null || !u.stringForm().equals(read.unpackString()) || !store.remove_committed(u, tn))
+                                failures.incrementAndGet();
+                        }
+                    }
+                    catch (final Exception ex)
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(0, failures.get());
+        assertEquals(0, store.size());
+    }
+}
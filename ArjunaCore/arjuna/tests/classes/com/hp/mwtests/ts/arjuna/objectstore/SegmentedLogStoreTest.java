@@ -0,0 +1,240 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+import com.arjuna.ats.internal.arjuna.objectstore.segmentedlog.SegmentedLogEnvironmentBean;
+import com.arjuna.ats.internal.arjuna.objectstore.segmentedlog.SegmentedLogObjectStoreAdaptor;
+import com.arjuna.ats.internal.arjuna.objectstore.segmentedlog.SegmentedLogStore;
+
+public class SegmentedLogStoreTest
+{
+    private static final String TYPE_NAME = "/StateManager/BasicAction/TwoPhaseCoordinator/AtomicAction";
+
+    private File storeDir;
+    private SegmentedLogEnvironmentBean envBean;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        storeDir = new File(System.getProperty("java.io.tmpdir"), "SegmentedLogStoreTest-" + new Uid().fileStringForm());
+
+        envBean = new SegmentedLogEnvironmentBean();
+        envBean.setStoreDir(storeDir.getPath());
+        envBean.setSegmentSize(4096);
+        envBean.setCompactionInterval(Integer.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = storeDir.listFiles();
+
+        if (files != null)
+        {
+            for (File file : files)
+                file.delete();
+        }
+
+        storeDir.delete();
+    }
+
+    @Test
+    public void testWriteReadRemove() throws Exception
+    {
+        SegmentedLogObjectStoreAdaptor store = new SegmentedLogObjectStoreAdaptor(new SegmentedLogStore(envBean));
+        store.start();
+
+        Uid uid = new Uid();
+
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(uid, TYPE_NAME));
+        assertTrue(store.write_committed(uid, TYPE_NAME, stateFor(uid, "first")));
+        assertTrue(store.write_committed(uid, TYPE_NAME, stateFor(uid, "second")));
+        assertEquals(StateStatus.OS_COMMITTED, store.currentState(uid, TYPE_NAME));
+        assertEquals("second", valueOf(store.read_committed(uid, TYPE_NAME)));
+
+        InputObjectState uids = new InputObjectState();
+
+        assertTrue(store.allObjUids(TYPE_NAME, uids));
+        assertEquals(uid, UidHelper.unpackFrom(uids));
+
+        assertTrue(store.remove_committed(uid, TYPE_NAME));
+        assertFalse(store.remove_committed(uid, TYPE_NAME));
+        assertNull(store.read_committed(uid, TYPE_NAME));
+
+        store.stop();
+    }
+
+    @Test
+    public void testRestartReplaysLog() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(envBean);
+        store.start();
+
+        Uid kept = new Uid();
+        Uid removed = new Uid();
+
+        for (int i = 0; i < 50; i++)
+            store.write_committed(new Uid(), TYPE_NAME, stateFor(kept, "filler-" + i));
+
+        store.write_committed(kept, TYPE_NAME, stateFor(kept, "kept"));
+        store.write_committed(removed, TYPE_NAME, stateFor(removed, "removed"));
+        store.remove_committed(removed, TYPE_NAME);
+
+        assertTrue(store.getSegmentCount() > 1);
+
+        store.stop();
+
+        store = new SegmentedLogStore(envBean);
+        store.start();
+
+        assertEquals("kept", valueOf(store.read_committed(kept, TYPE_NAME)));
+        assertFalse(store.contains(removed, TYPE_NAME));
+        assertEquals(51, store.getUidsForType(TYPE_NAME).length);
+
+        store.stop();
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(envBean);
+        store.start();
+
+        Uid longLived = new Uid();
+
+        store.write_committed(longLived, TYPE_NAME, stateFor(longLived, "in-doubt"));
+
+        for (int i = 0; i < 200; i++)
+        {
+            Uid uid = new Uid();
+
+            store.write_committed(uid, TYPE_NAME, stateFor(uid, "short-lived"));
+            store.remove_committed(uid, TYPE_NAME);
+        }
+
+        // the compactor is also woken as segments fill, so only the end result is deterministic
+        store.compact();
+
+        assertEquals(1, store.getSegmentCount());
+
+        // the live record was copied forward and survives a restart
+        assertEquals("in-doubt", valueOf(store.read_committed(longLived, TYPE_NAME)));
+
+        store.stop();
+
+        store = new SegmentedLogStore(envBean);
+        store.start();
+
+        assertEquals("in-doubt", valueOf(store.read_committed(longLived, TYPE_NAME)));
+        assertEquals(1, store.getUidsForType(TYPE_NAME).length);
+
+        store.stop();
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(envBean);
+        store.start();
+
+        Uid first = new Uid();
+        Uid second = new Uid();
+
+        store.write_committed(first, TYPE_NAME, stateFor(first, "first"));
+        store.write_committed(second, TYPE_NAME, stateFor(second, "second"));
+        store.stop();
+
+        // damage the last byte of the second record
+        File segment = storeDir.listFiles()[0];
+        long damageAt = lastNonZeroByte(segment);
+
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.seek(damageAt);
+        raf.write(raf.read() ^ 0xff);
+        raf.close();
+
+        store = new SegmentedLogStore(envBean);
+        store.start();
+
+        assertNotNull(store.read_committed(first, TYPE_NAME));
+        assertFalse(store.contains(second, TYPE_NAME));
+
+        store.stop();
+    }
+
+    private static long lastNonZeroByte(File file) throws Exception
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try
+        {
+            for (long position = raf.length() - 1; position >= 0; position--)
+            {
+                raf.seek(position);
+
+                if (raf.read() != 0)
+                    return position;
+            }
+
+            return -1;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static OutputObjectState stateFor(Uid uid, String value) throws Exception
+    {
+        OutputObjectState state = new OutputObjectState(uid, TYPE_NAME);
+
+        state.packString(value);
+
+        return state;
+    }
+
+    private static String valueOf(InputObjectState state) throws Exception
+    {
+        assertNotNull(state);
+
+        return state.unpackString();
+    }
+}
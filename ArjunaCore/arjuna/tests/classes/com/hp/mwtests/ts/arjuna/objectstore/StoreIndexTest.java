@@ -0,0 +1,260 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+import com.arjuna.ats.internal.arjuna.objectstore.HashedStore;
+import com.arjuna.ats.internal.arjuna.objectstore.ShadowNoFileLockStore;
+import com.arjuna.ats.internal.arjuna.objectstore.ShadowingStore;
+import com.arjuna.ats.internal.arjuna.objectstore.StoreIndex;
+
+public class StoreIndexTest
+{
+    private static final String TYPE_NAME = "/StateManager/junit/storeindex";
+
+    private static class IndexedStore extends ShadowNoFileLockStore
+    {
+        public IndexedStore(ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
+        {
+            super(objectStoreEnvironmentBean);
+        }
+
+        public StoreIndex getIndex() throws ObjectStoreException
+        {
+            return storeIndex();
+        }
+    }
+
+    private static class IndexedHashedStore extends HashedStore
+    {
+        public IndexedHashedStore(ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
+        {
+            super(objectStoreEnvironmentBean);
+        }
+
+        public StoreIndex getIndex() throws ObjectStoreException
+        {
+            return storeIndex();
+        }
+
+        public File getIndexFile() throws ObjectStoreException
+        {
+            return new File(locateStore(getStoreName()), StoreIndex.INDEX_NAME);
+        }
+    }
+
+    @Test
+    public void testIndexedStore () throws Exception
+    {
+        IndexedStore store = new IndexedStore(bean("storeIndex", true));
+
+        assertNotNull(store.getIndex());
+
+        Uid[] uids = writeStates(store, 10);
+
+        assertTrue(store.remove_committed(uids[0], TYPE_NAME));
+        assertTrue(store.write_uncommitted(uids[1], TYPE_NAME, new OutputObjectState()));
+
+        assertEquals(9, countUids(store, StateStatus.OS_UNKNOWN));
+        assertEquals(8, countUids(store, StateStatus.OS_COMMITTED));
+        assertEquals(1, countUids(store, StateStatus.OS_UNCOMMITTED));
+
+        assertTrue(store.commit_state(uids[1], TYPE_NAME));
+        assertEquals(0, countUids(store, StateStatus.OS_UNCOMMITTED));
+
+        assertTrue(containsType(store, TYPE_NAME));
+
+        // simulate a restart: the index must be reloaded from disk rather than rebuilt
+
+        store.getIndex().close();
+
+        IndexedStore restarted = new IndexedStore(bean("storeIndex", true));
+        StoreIndex index = restarted.getIndex();
+
+        assertNotNull(index);
+        assertFalse(index.requiresRebuild());
+        assertEquals(9, countUids(restarted, StateStatus.OS_COMMITTED));
+
+        cleanup(restarted, uids);
+
+        assertEquals(0, countUids(restarted, StateStatus.OS_UNKNOWN));
+
+        index.close();
+    }
+
+    @Test
+    public void testRebuild () throws Exception
+    {
+        // the store directory is named after the store class, so both instances must be of the same type
+        IndexedHashedStore unindexed = new IndexedHashedStore(bean("storeIndexRebuild", false));
+        Uid[] uids = writeStates(unindexed, 5);
+
+        IndexedHashedStore store = new IndexedHashedStore(bean("storeIndexRebuild", true));
+
+        // discard any index left by a previous run so that it must be rebuilt from the store
+        store.getIndexFile().delete();
+
+        StoreIndex index = store.getIndex();
+
+        assertNotNull(index);
+        assertFalse(index.requiresRebuild());
+        assertEquals(5, countUids(store, StateStatus.OS_COMMITTED));
+
+        // a state removed behind the index's back is dropped when the index is next read
+
+        assertTrue(unindexed.remove_committed(uids[0], TYPE_NAME));
+        assertEquals(4, countUids(store, StateStatus.OS_UNKNOWN));
+        assertEquals(4, index.getEntries(TYPE_NAME).size());
+
+        cleanup(store, uids);
+
+        index.close();
+    }
+
+    @Test
+    public void testUncleanShutdown () throws Exception
+    {
+        IndexedHashedStore store = new IndexedHashedStore(bean("storeIndexUnclean", true));
+        File indexFile = store.getIndexFile();
+
+        indexFile.delete();
+
+        StoreIndex index = store.getIndex();
+        Uid[] uids = writeStates(store, 3);
+
+        // keep the index as a VM which failed would leave it, without the updates which were never forced
+        byte[] inUse = Files.readAllBytes(indexFile.toPath());
+
+        index.close();
+
+        Files.write(indexFile.toPath(), inUse);
+
+        IndexedHashedStore unindexed = new IndexedHashedStore(bean("storeIndexUnclean", false));
+        Uid[] missing = writeStates(unindexed, 1);
+
+        IndexedHashedStore restarted = new IndexedHashedStore(bean("storeIndexUnclean", true));
+
+        index = restarted.getIndex();
+
+        assertNotNull(index);
+        assertEquals(4, countUids(restarted, StateStatus.OS_COMMITTED));
+
+        cleanup(restarted, uids);
+        cleanup(restarted, missing);
+
+        index.close();
+    }
+
+    private static ObjectStoreEnvironmentBean bean (String root, boolean indexed)
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot(root);
+        objectStoreEnvironmentBean.setObjectStoreIndex(indexed);
+
+        return objectStoreEnvironmentBean;
+    }
+
+    private static Uid[] writeStates (ShadowingStore store, int count) throws Exception
+    {
+        Uid[] uids = new Uid[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            OutputObjectState state = new OutputObjectState();
+
+            state.packInt(i);
+
+            uids[i] = new Uid();
+
+            assertTrue(store.write_committed(uids[i], TYPE_NAME, state));
+        }
+
+        return uids;
+    }
+
+    private static void cleanup (ShadowingStore store, Uid[] uids) throws Exception
+    {
+        for (Uid uid : uids)
+        {
+            if (store.currentState(uid, TYPE_NAME) == StateStatus.OS_COMMITTED)
+                store.remove_committed(uid, TYPE_NAME);
+        }
+    }
+
+    private static int countUids (ShadowingStore store, int match) throws Exception
+    {
+        InputObjectState ios = new InputObjectState();
+        Set<Uid> found = new HashSet<Uid>();
+
+        assertTrue(store.allObjUids(TYPE_NAME, ios, match));
+
+        Uid uid = UidHelper.unpackFrom(ios);
+
+        while (uid.notEquals(Uid.nullUid()))
+        {
+            found.add(uid);
+
+            uid = UidHelper.unpackFrom(ios);
+        }
+
+        return found.size();
+    }
+
+    private static boolean containsType (ShadowingStore store, String typeName) throws Exception
+    {
+        InputObjectState ios = new InputObjectState();
+
+        assertTrue(store.allTypes(ios));
+
+        String type = ios.unpackString();
+
+        while (type != null && type.length() > 0)
+        {
+            if (typeName.equals(File.separator + type) || typeName.equals(type))
+                return true;
+
+            type = ios.unpackString();
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.objectstore.WriteBehindCacheStore;
+
+public class WriteBehindCacheStoreTest
+{
+    private static final String TYPE_NAME = "/StateManager/junit/writebehind";
+
+    @Test
+    public void testStateMachine () throws Exception
+    {
+        WriteBehindCacheStore store = new WriteBehindCacheStore(bean());
+        Uid uid = new Uid();
+
+        assertTrue(store.write_uncommitted(uid, TYPE_NAME, state(1)));
+
+        // visible before it reaches the disk
+        assertEquals(1, store.read_uncommitted(uid, TYPE_NAME).unpackInt());
+
+        assertTrue(store.commit_state(uid, TYPE_NAME));
+        assertEquals(1, store.read_committed(uid, TYPE_NAME).unpackInt());
+        assertNull(store.read_uncommitted(uid, TYPE_NAME));
+
+        store.sync();
+
+        assertEquals(0, store.getQueueDepth());
+        assertEquals(StateStatus.OS_COMMITTED, store.currentState(uid, TYPE_NAME));
+        assertEquals(1, store.read_committed(uid, TYPE_NAME).unpackInt());
+
+        assertTrue(store.remove_committed(uid, TYPE_NAME));
+
+        store.sync();
+
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(uid, TYPE_NAME));
+        assertFalse(store.remove_committed(uid, TYPE_NAME));
+    }
+
+    @Test
+    public void testRemoveCancelsWrite () throws Exception
+    {
+        WriteBehindCacheStore store = new WriteBehindCacheStore(bean());
+        Uid uid = new Uid();
+
+        assertTrue(store.write_committed(uid, TYPE_NAME, state(1)));
+        assertTrue(store.remove_committed(uid, TYPE_NAME));
+        assertNull(store.read_committed(uid, TYPE_NAME));
+
+        store.sync();
+
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(uid, TYPE_NAME));
+    }
+
+    @Test
+    public void testConcurrentWriters () throws Exception
+    {
+        final WriteBehindCacheStore store = new WriteBehindCacheStore(bean());
+        final int threads = 8;
+        final int iterations = 50;
+        final Uid[] uids = new Uid[threads];
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++)
+        {
+            final Uid uid = new Uid();
+
+            uids[i] = uid;
+            workers[i] = new Thread()
+            {
+                public void run ()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < iterations; j++)
+                        {
+                            if (!store.write_committed(uid, TYPE_NAME, state(j)))
+                                failures.incrementAndGet();
+                        }
+                    }
+                    catch (Exception ex)
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+
+            workers[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread worker : workers)
+            worker.join();
+
+        store.sync();
+
+        assertEquals(0, failures.get());
+        assertEquals(0, store.getQueueDepth());
+        assertEquals(threads * iterations, store.getFlushedCount() + store.getCoalescedCount());
+
+        for (Uid uid : uids)
+        {
+            InputObjectState state = store.read_committed(uid, TYPE_NAME);
+
+            assertNotNull(state);
+            assertEquals(iterations - 1, state.unpackInt());
+            assertTrue(store.remove_committed(uid, TYPE_NAME));
+        }
+
+        store.sync();
+    }
+
+    private static ObjectStoreEnvironmentBean bean ()
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot("writeBehind");
+        objectStoreEnvironmentBean.setWriteBehindFlushers(2);
+
+        return objectStoreEnvironmentBean;
+    }
+
+    private static OutputObjectState state (int value) throws Exception
+    {
+        OutputObjectState state = new OutputObjectState();
+
+        state.packInt(value);
+
+        return state;
+    }
+}
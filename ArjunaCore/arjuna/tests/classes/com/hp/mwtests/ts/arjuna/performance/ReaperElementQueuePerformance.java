@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.performance;
+
+import io.narayana.perf.Measurement;
+import io.narayana.perf.WorkerWorkload;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.Reapable;
+import com.arjuna.ats.internal.arjuna.coordinator.ReaperElement;
+import com.arjuna.ats.internal.arjuna.coordinator.ReaperElementManager;
+import com.arjuna.ats.internal.arjuna.coordinator.ReaperElementQueue;
+import com.arjuna.ats.internal.arjuna.coordinator.TimingWheelReaperElementManager;
+
+/**
+ * Compare the reaper's sorted list with the timing wheel when many threads add and remove
+ * transactions while the reaper keeps asking for the first one. Transactions which live
+ * long enough to be sorted by the list are where the two differ.
+ */
+public class ReaperElementQueuePerformance
+{
+    @Test
+    public void testSortedList() throws Exception
+    {
+        measure("_sortedList", new ReaperElementManager());
+    }
+
+    @Test
+    public void testTimingWheel() throws Exception
+    {
+        measure("_timingWheel", new TimingWheelReaperElementManager(10));
+    }
+
+    private void measure(String name, final ReaperElementQueue elements) throws Exception
+    {
+        int warmUpCount = 100000;
+        int numberOfTransactions = 1000000;
+        int threadCount = 8;
+        int batchSize = 100;
+
+        // transactions which stay around for the duration, so that the queue is not trivially small
+        for (int i = 0; i < 10000; i++) {
+            elements.add(new ReaperElement(new MockReapable(), 300 + i % 60));
+        }
+
+        Thread reaper = new Thread() {
+            public void run() {
+                while (!isInterrupted()) {
+                    elements.getFirst();
+
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        };
+
+        reaper.start();
+
+        // each thread keeps a window of transactions in flight, so that some of them are still
+        // around when the reaper looks for the first one
+        final ThreadLocal<Window> windows = new ThreadLocal<Window>() {
+            @Override
+            protected Window initialValue() {
+                return new Window();
+            }
+        };
+
+        WorkerWorkload<Void> worker = new WorkerWorkload<Void>() {
+            @Override
+            public Void doWork(Void context, int batchSize, Measurement<Void> config) {
+                Window window = windows.get();
+
+                for (int i = 0; i < batchSize; i++) {
+                    int slot = window.next++ % window.elements.length;
+
+                    if (window.elements[slot] != null) {
+                        elements.remove(window.elements[slot]);
+                    }
+
+                    window.elements[slot] = new ReaperElement(new MockReapable(), 60 + slot % 10);
+                    elements.add(window.elements[slot]);
+                }
+
+                return context;
+            }
+
+            @Override
+            public void finishWork(Measurement<Void> measurement) {
+            }
+        };
+
+        try {
+            Measurement measurement = new Measurement.Builder(getClass().getName() + name)
+                    .maxTestTime(0L).numberOfCalls(numberOfTransactions)
+                    .numberOfThreads(threadCount).batchSize(batchSize)
+                    .numberOfWarmupCalls(warmUpCount).build().measure(worker);
+
+            Assert.assertEquals(0, measurement.getNumberOfErrors());
+            Assert.assertFalse(measurement.getInfo(), measurement.shouldFail());
+
+            System.out.printf("%s%n", measurement.getInfo());
+            System.out.println(name.substring(1) + " throughput: " + measurement.getThroughput());
+        } finally {
+            reaper.interrupt();
+            reaper.join();
+        }
+
+        Assert.assertTrue(elements.size() >= 10000);
+    }
+
+    private static class Window
+    {
+        final ReaperElement[] elements = new ReaperElement[1000];
+        int next;
+    }
+
+    private static class MockReapable implements Reapable
+    {
+        public boolean running()
+        {
+            return false;
+        }
+
+        public boolean preventCommit()
+        {
+            return false;
+        }
+
+        public int cancel()
+        {
+            return ActionStatus.ABORTED;
+        }
+
+        public Uid get_uid()
+        {
+            return uid;
+        }
+
+        private final Uid uid = new Uid();
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.reaper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.Reapable;
+import com.arjuna.ats.arjuna.coordinator.TransactionReaper;
+import com.arjuna.ats.internal.arjuna.coordinator.ReaperElement;
+import com.arjuna.ats.internal.arjuna.coordinator.TimingWheelReaperElementManager;
+
+public class TimingWheelReaperElementManagerTest
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTxReaperTimingWheel(true);
+    }
+
+    @Test
+    public void testOrdering()
+    {
+        TimingWheelReaperElementManager elements = new TimingWheelReaperElementManager(10);
+
+        ReaperElement reaperElement = new ReaperElement(new MockReapable(), 30);
+        ReaperElement reaperElement2 = new ReaperElement(new MockReapable(), 20);
+        ReaperElement reaperElement3 = new ReaperElement(new MockReapable(), 10);
+
+        assertTrue(elements.isEmpty());
+        assertNull(elements.getFirst());
+
+        elements.add(reaperElement);
+        elements.add(reaperElement3);
+        elements.add(reaperElement2);
+
+        assertEquals(3, elements.size());
+        assertSame(reaperElement3, elements.getFirst());
+
+        try {
+            elements.add(reaperElement3);
+            fail("duplicate add failed to blow up");
+        } catch (IllegalStateException e) {
+        }
+
+        elements.remove(reaperElement3);
+        assertSame(reaperElement2, elements.getFirst());
+
+        // push the first element out beyond the last one
+        long first = elements.reorder(reaperElement2, 40000);
+        assertEquals(reaperElement.getAbsoluteTimeout(), first);
+        assertSame(reaperElement, elements.getFirst());
+
+        elements.remove(reaperElement);
+        assertSame(reaperElement2, elements.getFirst());
+        elements.remove(reaperElement2);
+        elements.remove(reaperElement2);
+
+        assertEquals(0, elements.size());
+        assertNull(elements.getFirst());
+    }
+
+    @Test
+    public void testOverflow()
+    {
+        // with a 1ms tick the wheels cover a little over four and a half hours
+        TimingWheelReaperElementManager elements = new TimingWheelReaperElementManager(1);
+
+        ReaperElement later = new ReaperElement(new MockReapable(), 10);
+        ReaperElement tomorrow = new ReaperElement(new MockReapable(), 10);
+        tomorrow.setAbsoluteTimeout(System.currentTimeMillis() + 24 * 60 * 60 * 1000L);
+
+        elements.add(tomorrow);
+        assertSame(tomorrow, elements.getFirst());
+
+        elements.add(later);
+        assertSame(later, elements.getFirst());
+
+        elements.remove(later);
+        assertSame(tomorrow, elements.getFirst());
+        elements.remove(tomorrow);
+        assertTrue(elements.isEmpty());
+    }
+
+    @Test
+    public void testExpiry() throws Exception
+    {
+        TimingWheelReaperElementManager elements = new TimingWheelReaperElementManager(1);
+
+        ReaperElement soon = new ReaperElement(new MockReapable(), 10);
+        soon.setAbsoluteTimeout(System.currentTimeMillis() + 50);
+        ReaperElement later = new ReaperElement(new MockReapable(), 10);
+        // a couple of turns of the first wheel, so the element has to move down
+        later.setAbsoluteTimeout(System.currentTimeMillis() + 200);
+        ReaperElement never = new ReaperElement(new MockReapable(), 10000);
+
+        elements.add(never);
+        elements.add(later);
+        elements.add(soon);
+
+        Thread.sleep(100);
+
+        ReaperElement first = elements.getFirst();
+        assertSame(soon, first);
+        assertTrue(first.getAbsoluteTimeout() <= System.currentTimeMillis());
+        elements.remove(soon);
+
+        Thread.sleep(150);
+
+        assertSame(later, elements.getFirst());
+        elements.remove(later);
+        assertSame(never, elements.getFirst());
+
+        elements.add(later);
+        elements.setAllTimeoutsToZero();
+
+        assertEquals(2, elements.size());
+        assertEquals(0, elements.getFirst().getAbsoluteTimeout());
+        elements.remove(never);
+        assertSame(later, elements.getFirst());
+        assertEquals(0, later.getAbsoluteTimeout());
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws Exception
+    {
+        final TimingWheelReaperElementManager elements = new TimingWheelReaperElementManager(1);
+        final int threadCount = 8;
+        final int iterations = 10000;
+        final AtomicInteger errors = new AtomicInteger();
+        final List<ReaperElement> kept = new ArrayList<ReaperElement>();
+
+        for (int i = 0; i < threadCount; i++) {
+            kept.add(new ReaperElement(new MockReapable(), 10000 + i));
+        }
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            final ReaperElement keep = kept.get(i);
+
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            ReaperElement reaperElement = new ReaperElement(new MockReapable(), 1 + j % 5);
+
+                            // some of them time out while we are going round
+                            if (j % 3 == 0) {
+                                reaperElement.setAbsoluteTimeout(System.currentTimeMillis() + j % 7);
+                            }
+
+                            elements.add(reaperElement);
+                            elements.remove(reaperElement);
+                        }
+
+                        elements.add(keep);
+                    } catch (Throwable e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        // meanwhile the reaper moves time on and reorders things as it would
+        boolean running = true;
+
+        while (running) {
+            ReaperElement first = elements.getFirst();
+
+            if (first != null && first.getAbsoluteTimeout() <= System.currentTimeMillis()) {
+                elements.reorder(first, 1000);
+            }
+
+            running = false;
+
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(threadCount, elements.size());
+        assertSame(kept.get(0), elements.getFirst());
+
+        for (ReaperElement reaperElement : kept) {
+            elements.remove(reaperElement);
+        }
+
+        assertTrue(elements.isEmpty());
+        assertNull(elements.getFirst());
+    }
+
+    @Test
+    public void testReaper() throws Exception
+    {
+        TransactionReaper.transactionReaper();
+
+        AtomicAction A = new AtomicAction();
+
+        A.begin(1);
+
+        assertEquals(1, TransactionReaper.transactionReaper().numberOfTransactions());
+
+        // allow the reaper time to notice and roll the transaction back
+        for (int i = 0; i < 50 && A.status() == ActionStatus.RUNNING; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(ActionStatus.ABORTED, A.status());
+        assertEquals(0, TransactionReaper.transactionReaper().numberOfTransactions());
+    }
+
+    private static class MockReapable implements Reapable
+    {
+        public boolean running()
+        {
+            return false;
+        }
+
+        public boolean preventCommit()
+        {
+            return false;
+        }
+
+        public int cancel()
+        {
+            return ActionStatus.ABORTED;
+        }
+
+        public Uid get_uid()
+        {
+            return uid;
+        }
+
+        private final Uid uid = new Uid();
+    }
+}
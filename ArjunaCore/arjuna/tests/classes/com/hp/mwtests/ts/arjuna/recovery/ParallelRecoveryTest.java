@@ -0,0 +1,219 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.recovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.RecoveryEnvironmentBean;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import com.arjuna.ats.arjuna.recovery.RecoveryModule;
+import com.arjuna.ats.internal.arjuna.recovery.PeriodicRecovery;
+import com.arjuna.ats.internal.arjuna.recovery.RecoveryExecutor;
+
+public class ParallelRecoveryTest
+{
+    @Before
+    public void setUp()
+    {
+        RecoveryEnvironmentBean bean = recoveryPropertyManager.getRecoveryEnvironmentBean();
+
+        bean.setRecoveryModuleClassNames(new ArrayList<String>());
+        bean.setRecoveryBackoffPeriod(1);
+        bean.setParallelRecovery(true);
+        bean.setRecoveryThreads(4);
+        bean.setRecoveryBatchSize(10);
+        bean.setRecoveryModuleTimeout(0);
+    }
+
+    @After
+    public void tearDown()
+    {
+        recoveryPropertyManager.getRecoveryEnvironmentBean().setParallelRecovery(false);
+    }
+
+    @Test
+    public void testPassBarrier() throws Exception
+    {
+        PeriodicRecovery periodicRecovery = new PeriodicRecovery(false, false);
+        AtomicLong lastFirstPass = new AtomicLong();
+        AtomicLong firstSecondPass = new AtomicLong(Long.MAX_VALUE);
+        List<TimedModule> modules = new ArrayList<TimedModule>();
+
+        for (int i = 0; i < 3; i++)
+        {
+            TimedModule module = new TimedModule(100 * (i + 1), lastFirstPass, firstSecondPass, null);
+
+            modules.add(module);
+            periodicRecovery.addModule(module);
+        }
+
+        periodicRecovery.doWork();
+
+        for (TimedModule module : modules)
+        {
+            assertEquals(1, module.firstPasses.get());
+            assertEquals(1, module.secondPasses.get());
+        }
+
+        assertTrue(lastFirstPass.get() <= firstSecondPass.get());
+
+        // the first passes ran at the same time
+
+        assertTrue(TimedModule.maxRunning.get() > 1);
+
+        periodicRecovery.shutdown(false);
+    }
+
+    @Test
+    public void testModuleTimeout() throws Exception
+    {
+        recoveryPropertyManager.getRecoveryEnvironmentBean().setRecoveryModuleTimeout(1);
+
+        PeriodicRecovery periodicRecovery = new PeriodicRecovery(false, false);
+        CountDownLatch release = new CountDownLatch(1);
+        TimedModule stuck = new TimedModule(0, new AtomicLong(), new AtomicLong(), release);
+        TimedModule quick = new TimedModule(0, new AtomicLong(), new AtomicLong(), null);
+
+        periodicRecovery.addModule(stuck);
+        periodicRecovery.addModule(quick);
+
+        periodicRecovery.doWork();
+
+        assertEquals(1, stuck.firstPasses.get());
+        assertEquals(0, stuck.secondPasses.get());
+        assertEquals(1, quick.secondPasses.get());
+
+        // still busy, so left out of the next scan
+
+        periodicRecovery.doWork();
+
+        assertEquals(1, stuck.firstPasses.get());
+        assertEquals(2, quick.secondPasses.get());
+
+        release.countDown();
+
+        while (stuck.inFirstPass.get() > 0)
+            Thread.sleep(10);
+
+        periodicRecovery.doWork();
+
+        assertEquals(2, stuck.firstPasses.get());
+        assertEquals(1, stuck.secondPasses.get());
+
+        periodicRecovery.shutdown(false);
+    }
+
+    @Test
+    public void testProcessInBatches() throws Exception
+    {
+        List<Integer> items = new ArrayList<Integer>();
+        final ConcurrentHashMap<Integer, Integer> seen = new ConcurrentHashMap<Integer, Integer>();
+
+        for (int i = 0; i < 1000; i++)
+            items.add(i);
+
+        RecoveryExecutor.processInBatches(items, new Consumer<Integer>()
+        {
+            public void accept(Integer item)
+            {
+                assertEquals(null, seen.put(item, item));
+            }
+        });
+
+        assertEquals(items.size(), seen.size());
+
+        RecoveryExecutor.shutdown();
+    }
+
+    private static class TimedModule implements RecoveryModule
+    {
+        TimedModule(long delay, AtomicLong lastFirstPass, AtomicLong firstSecondPass, CountDownLatch release)
+        {
+            this.delay = delay;
+            this.lastFirstPass = lastFirstPass;
+            this.firstSecondPass = firstSecondPass;
+            this.release = release;
+        }
+
+        public void periodicWorkFirstPass()
+        {
+            firstPasses.incrementAndGet();
+            inFirstPass.incrementAndGet();
+
+            int concurrent = running.incrementAndGet();
+
+            while (maxRunning.get() < concurrent && !maxRunning.compareAndSet(maxRunning.get(), concurrent));
+
+            try
+            {
+                Thread.sleep(delay);
+
+                if (release != null)
+                    release.await();
+            }
+            catch (InterruptedException e)
+            {
+            }
+
+            long now = System.nanoTime();
+
+            while (lastFirstPass.get() < now && !lastFirstPass.compareAndSet(lastFirstPass.get(), now));
+
+            running.decrementAndGet();
+            inFirstPass.decrementAndGet();
+        }
+
+        public void periodicWorkSecondPass()
+        {
+            long now = System.nanoTime();
+
+            while (firstSecondPass.get() > now && !firstSecondPass.compareAndSet(firstSecondPass.get(), now));
+
+            secondPasses.incrementAndGet();
+        }
+
+        final AtomicInteger firstPasses = new AtomicInteger();
+        final AtomicInteger secondPasses = new AtomicInteger();
+        final AtomicInteger inFirstPass = new AtomicInteger();
+
+        static final AtomicInteger running = new AtomicInteger();
+        static final AtomicInteger maxRunning = new AtomicInteger();
+
+        private final long delay;
+        private final AtomicLong lastFirstPass;
+        private final AtomicLong firstSecondPass;
+        private final CountDownLatch release;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.arjuna.state;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.state.InputBuffer;
+import com.arjuna.ats.arjuna.state.OutputBuffer;
+
+/**
+ * Runs the state tests again with byte buffer states, and checks that the
+ * packed format is the one DataOutputStream based buffers produce.
+ */
+
+public class ByteBufferStateUnitTest extends IOStateUnitTest
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        arjPropertyManager.getCoreEnvironmentBean().setByteBufferStates(true);
+    }
+
+    @Test
+    public void testFormat() throws Exception
+    {
+        OutputBuffer obuff = new OutputBuffer(4);
+
+        obuff.packBoolean(true);
+        obuff.packByte((byte) -2);
+        obuff.packBytes(new byte[] { 1, 2, 3, 4, 5 });
+        obuff.packChar('z');
+        obuff.packDouble(2.5);
+        obuff.packFloat(1.5f);
+        obuff.packInt(42);
+        obuff.packLong(-1L);
+        obuff.packShort((short) 7);
+        obuff.packString("cafe");
+        obuff.packString(null);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(expected);
+
+        out.write(new byte[] { '#', 'B', 'E', 1, 16, 32, 64, 0 });
+        out.writeInt(1);
+        out.writeInt(-2);
+        out.writeInt(5);
+        out.write(new byte[] { 1, 2, 3, 4, 5, 0, 0, 0 });
+        out.writeInt('z');
+        out.writeDouble(2.5);
+        out.writeFloat(1.5f);
+        out.writeInt(42);
+        out.writeLong(-1L);
+        out.writeInt(7);
+        out.writeInt(5);
+        out.write("cafe\0".getBytes(StandardCharsets.UTF_8));
+        out.write(new byte[] { 0, 0, 0 });
+        out.writeInt(0);
+        out.flush();
+
+        assertArrayEquals(expected.toByteArray(), obuff.buffer());
+        assertEquals(expected.size(), obuff.length());
+
+        ByteBuffer view = obuff.byteBuffer();
+        byte[] viewed = new byte[view.remaining()];
+
+        view.get(viewed);
+
+        assertArrayEquals(obuff.buffer(), viewed);
+
+        ByteBuffer target = ByteBuffer.allocate(obuff.length());
+
+        obuff.writeTo(target);
+
+        assertArrayEquals(obuff.buffer(), target.array());
+
+        InputBuffer ibuff = new InputBuffer(obuff.buffer());
+
+        assertTrue(ibuff.unpackBoolean());
+        assertEquals((byte) -2, ibuff.unpackByte());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, ibuff.unpackBytes());
+        assertEquals('z', ibuff.unpackChar());
+        assertTrue(ibuff.unpackDouble() == 2.5);
+        assertTrue(ibuff.unpackFloat() == 1.5f);
+        assertEquals(42, ibuff.unpackInt());
+        assertEquals(-1L, ibuff.unpackLong());
+        assertEquals((short) 7, ibuff.unpackShort());
+        assertEquals("cafe", ibuff.unpackString());
+        assertEquals(null, ibuff.unpackString());
+    }
+
+    @Test
+    public void testUnderflow() throws Exception
+    {
+        OutputBuffer obuff = new OutputBuffer();
+
+        obuff.packInt(1);
+
+        InputBuffer ibuff = new InputBuffer(obuff.buffer());
+
+        assertEquals(1, ibuff.unpackInt());
+
+        try
+        {
+            ibuff.unpackLong();
+
+            fail();
+        }
+        catch (IOException ex)
+        {
+        }
+
+        assertFalse(ibuff.valid());
+    }
+}
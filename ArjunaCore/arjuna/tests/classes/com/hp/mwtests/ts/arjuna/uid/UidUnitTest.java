@@ -20,15 +20,21 @@
  */
 package com.hp.mwtests.ts.arjuna.uid;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 
@@ -149,4 +155,88 @@ public class UidUnitTest
         assertTrue(maxUid.greaterThan(minUid));
         assertTrue(maxUid.greaterThan(uid));
     }
+
+    @Test
+    public void testByteForm () throws Exception
+    {
+        long[] addr = {0x0123456789abcdefL, -2};
+        Uid u = new Uid(addr, -1, 0x7fffffff, 42);
+        
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        DataOutputStream ds = new DataOutputStream(bs);
+        
+        ds.writeLong(addr[0]);
+        ds.writeLong(addr[1]);
+        ds.writeInt(-1);
+        ds.writeInt(0x7fffffff);
+        ds.writeInt(42);
+        
+        assertArrayEquals(bs.toByteArray(), u.getBytes());
+        assertSame(u.getBytes(), u.getBytes());
+        
+        Uid copy = new Uid(u.getBytes());
+        
+        assertTrue(copy.valid());
+        assertEquals(u, copy);
+        assertEquals(u.hashCode(), copy.hashCode());
+        assertEquals(u.stringForm(), copy.stringForm());
+    }
+    
+    @Test
+    public void testStringForms () throws Exception
+    {
+        Uid u = new Uid();
+        
+        assertEquals(u.stringForm().replace(':', '_'), u.fileStringForm());
+        assertSame(u.fileStringForm(), u.fileStringForm());
+        
+        assertEquals(u, new Uid(u.stringForm()));
+        assertEquals(u, new Uid(u.fileStringForm()));
+        assertEquals("7fffffffffffffff:7fffffffffffffff:7fffffff:7fffffff:7fffffff", Uid.maxUid().stringForm());
+        assertEquals("-8000000000000000_-8000000000000000_-80000000_-80000000_-80000000", Uid.minUid().fileStringForm());
+    }
+    
+    @Test
+    public void testConcurrentGeneration () throws Exception
+    {
+        final int threads = 8;
+        final int uids = 10000;
+        final Set<Uid> generated = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean ordered = new AtomicBoolean(true);
+        Thread[] workers = new Thread[threads];
+        
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread()
+            {
+                public void run ()
+                {
+                    Uid previous = null;
+                    
+                    for (int j = 0; j < uids; j++)
+                    {
+                        Uid u = new Uid();
+                        
+                        /*
+                         * Each thread still sees its own Uids in creation order.
+                         */
+                        
+                        if ((previous != null) && !previous.lessThan(u))
+                            ordered.set(false);
+                        
+                        generated.add(u);
+                        previous = u;
+                    }
+                }
+            };
+            
+            workers[i].start();
+        }
+        
+        for (Thread t : workers)
+            t.join();
+        
+        assertTrue(ordered.get());
+        assertEquals(threads * uids, generated.size());
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package io.narayana.perf.arjuna;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.SynchronizationRecord;
+
+/**
+ * A synchronization which does nothing, so that the benchmarks measure the
+ * cost of registering and calling it.
+ */
+public class BenchmarkSynchronization implements SynchronizationRecord
+{
+    public Uid get_uid()
+    {
+        return _theUid;
+    }
+
+    public boolean beforeCompletion()
+    {
+        return true;
+    }
+
+    public boolean afterCompletion(int status)
+    {
+        return true;
+    }
+
+    public boolean isInterposed()
+    {
+        return false;
+    }
+
+    public int compareTo(Object o)
+    {
+        SynchronizationRecord other = (SynchronizationRecord) o;
+
+        if (_theUid.equals(other.get_uid()))
+            return 0;
+        else
+            return _theUid.lessThan(other.get_uid()) ? -1 : 1;
+    }
+
+    private final Uid _theUid = new Uid();
+}
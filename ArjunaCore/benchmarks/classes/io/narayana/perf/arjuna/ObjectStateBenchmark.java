@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package io.narayana.perf.arjuna;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+
+/**
+ * Pack an OutputObjectState the way a transaction log entry is packed, with both
+ * the byte array and the ByteBuffer implementations of the state buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectStateBenchmark
+{
+    @Param({"false", "true"})
+    public boolean byteBufferStates;
+
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        // must be set before the state classes are loaded, which is why each value gets its own fork
+        arjPropertyManager.getCoreEnvironmentBean().setByteBufferStates(byteBufferStates);
+
+        payload = new byte[payloadSize];
+        packed = pack();
+    }
+
+    @Benchmark
+    public OutputObjectState pack() throws IOException
+    {
+        OutputObjectState os = new OutputObjectState(uid, TYPE);
+
+        os.packInt(0);
+        UidHelper.packInto(uid, os);
+        os.packString(TYPE);
+        os.packLong(System.currentTimeMillis());
+        os.packBoolean(true);
+        os.packBytes(payload);
+
+        return os;
+    }
+
+    @Benchmark
+    public byte[] packToBytes() throws IOException
+    {
+        return pack().buffer();
+    }
+
+    @Benchmark
+    public byte[] unpack() throws IOException
+    {
+        InputObjectState is = new InputObjectState(packed);
+
+        is.unpackInt();
+        UidHelper.unpackFrom(is);
+        is.unpackString();
+        is.unpackLong();
+        is.unpackBoolean();
+
+        return is.unpackBytes();
+    }
+
+    private static final String TYPE = "/StateManager/BasicAction/TwoPhaseCoordinator/AtomicAction";
+
+    private final Uid uid = new Uid();
+    private byte[] payload;
+    private OutputObjectState packed;
+}
@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package io.narayana.perf.arjuna;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.objectstore.StoreManager;
+import com.arjuna.common.internal.util.propertyservice.BeanPopulator;
+
+/**
+ * Configures the object store which the transaction benchmarks log to. Each
+ * store type is benchmarked in its own fork, since StoreManager creates the
+ * stores once per JVM. A store type without a package is taken to be one of
+ * those in com.arjuna.ats.internal.arjuna.objectstore.
+ *
+ * JDBCStore and the journal based stores need a database or extra libraries,
+ * so they are not in the default list, but they can be given with -p as long
+ * as their other properties are supplied as system properties.
+ */
+@State(Scope.Benchmark)
+public class ObjectStoreState
+{
+    @Param({"ShadowNoFileLockStore", "ShadowingStore", "HashedStore", "HashedActionStore", "ActionStore",
+            "LogStore", "CacheStore", "WriteBehindCacheStore", "VolatileStore", "TwoPhaseVolatileStore",
+            "OffHeapVolatileStore", "NullActionStore"})
+    public String objectStoreType;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        String storeType = objectStoreType.indexOf('.') < 0 ? STORE_PACKAGE + objectStoreType : objectStoreType;
+
+        objectStoreDir = Files.createTempDirectory("arjunacore-benchmarks").toFile();
+
+        // the status manager would otherwise recreate the communication store, in the deleted
+        // directory, when the JVM exits
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTransactionStatusManagerEnable(false);
+
+        for (String name : STORE_NAMES) {
+            ObjectStoreEnvironmentBean bean = BeanPopulator.getNamedInstance(ObjectStoreEnvironmentBean.class, name);
+
+            bean.setObjectStoreType(storeType);
+            bean.setObjectStoreDir(objectStoreDir.getPath());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        StoreManager.shutdown();
+
+        delete(objectStoreDir);
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+
+        file.delete();
+    }
+
+    private static final String STORE_PACKAGE = "com.arjuna.ats.internal.arjuna.objectstore.";
+
+    // the default (action) store, and the named ones StoreManager also creates
+    private static final String[] STORE_NAMES = {null, "communicationStore", "stateStore"};
+
+    private File objectStoreDir;
+}
@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package io.narayana.perf.arjuna;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.Reapable;
+import com.arjuna.ats.arjuna.coordinator.TransactionReaper;
+
+/**
+ * Insert a transaction into the reaper and remove it again, as every transaction
+ * with a timeout does, using both the sorted list and the timing wheel. Each thread
+ * keeps a window of transactions in flight, so that the reaper has something to
+ * sort.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionReaperBenchmark
+{
+    @Param({"false", "true"})
+    public boolean timingWheel;
+
+    @Param({"0", "1000"})
+    public int inFlight;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        arjPropertyManager.getCoordinatorEnvironmentBean().setTxReaperTimingWheel(timingWheel);
+
+        reaper = TransactionReaper.transactionReaper();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        TransactionReaper.terminate(false);
+    }
+
+    @State(Scope.Thread)
+    public static class Window
+    {
+        @Setup(Level.Trial)
+        public void setUp(TransactionReaperBenchmark benchmark)
+        {
+            reapables = new BenchmarkReapable[benchmark.inFlight + 1];
+
+            for (int i = 0; i < reapables.length; i++) {
+                reapables[i] = new BenchmarkReapable();
+
+                if (i > 0)
+                    benchmark.reaper.insert(reapables[i], TIMEOUT);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(TransactionReaperBenchmark benchmark)
+        {
+            for (BenchmarkReapable reapable : reapables)
+                benchmark.reaper.remove(reapable);
+        }
+
+        // insert the next one and remove the oldest one
+        Reapable next(TransactionReaper reaper)
+        {
+            int slot = next++ % reapables.length;
+
+            reaper.insert(reapables[slot], TIMEOUT);
+
+            slot = next % reapables.length;
+
+            reaper.remove(reapables[slot]);
+
+            return reapables[slot];
+        }
+
+        private BenchmarkReapable[] reapables;
+        private int next;
+    }
+
+    @Benchmark
+    public Reapable insertRemove(Window window)
+    {
+        return window.next(reaper);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Reapable insertRemoveContended(Window window)
+    {
+        return window.next(reaper);
+    }
+
+    private static class BenchmarkReapable implements Reapable
+    {
+        public boolean running()
+        {
+            return true;
+        }
+
+        public boolean preventCommit()
+        {
+            return true;
+        }
+
+        public int cancel()
+        {
+            return ActionStatus.ABORTED;
+        }
+
+        public Uid get_uid()
+        {
+            return uid;
+        }
+
+        private final Uid uid = new Uid();
+    }
+
+    // seconds, well beyond the length of a run so that nothing is reaped
+    private static final int TIMEOUT = 600;
+
+    private TransactionReaper reaper;
+}
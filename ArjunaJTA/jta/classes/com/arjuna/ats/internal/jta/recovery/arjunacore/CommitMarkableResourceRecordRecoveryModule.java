@@ -28,7 +28,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -36,6 +35,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -45,6 +45,7 @@ import javax.transaction.xa.Xid;
 import com.arjuna.ats.arjuna.AtomicAction;
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitThreadPool;
 import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
 import com.arjuna.ats.arjuna.logging.tsLogger;
 import com.arjuna.ats.arjuna.objectstore.ObjectStoreIterator;
@@ -72,6 +73,19 @@ import com.arjuna.common.internal.util.propertyservice.BeanPopulator;
  * The CommitMarkableResourceRecord does not support nested transactions
  * 
  * TODO you have to set max_allowed_packet for large reaps on mysql
+ *
+ * The recovery scan selects by transactionManagerID and completed branches are
+ * deleted by xid, so at high transaction rates the table should have a primary
+ * key (or unique index) on xid and an index on transactionManagerID, e.g.
+ *
+ * create index xids_tm on xids (transactionManagerID)
+ *
+ * Neither query depends on the physical layout of the table, so it may also be
+ * partitioned by the DBA, e.g. on a time based column with a default value.
+ *
+ * If JTAEnvironmentBean.commitMarkableResourceRecordAsyncDeleteThreshold is set,
+ * the completed branches of a datasource are deleted in the background as soon as
+ * that many are waiting, rather than on the next recovery scan.
  */
 public class CommitMarkableResourceRecordRecoveryModule implements
 		RecoveryModule {
@@ -104,6 +118,11 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 	 */
 	private String whereFilter;
 
+	/**
+	 * The node identifiers bound to the parameters of the whereFilter.
+	 */
+	private List<String> whereFilterNodes = new ArrayList<String>();
+
 	private TransactionStatusConnectionManager transactionStatusConnectionMgr;
 
 	private static JTAEnvironmentBean jtaEnvironmentBean = BeanPopulator
@@ -146,7 +165,8 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 			StringBuffer buffer = new StringBuffer();
 			Iterator<String> iterator = xaRecoveryNodes.iterator();
 			while (iterator.hasNext()) {
-				buffer.append("\'" + iterator.next() + "\',");
+				whereFilterNodes.add(iterator.next());
+				buffer.append("?,");
 			}
 			whereFilter = " where transactionManagerID in ( "
 					+ buffer.substring(0, buffer.length() - 1) + ")";
@@ -158,8 +178,12 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 		transactionStatusConnectionMgr = new TransactionStatusConnectionManager();
 	}
 
-	public void notifyOfCompletedBranch(String commitMarkableResourceJndiName,
+	public void notifyOfCompletedBranch(final String commitMarkableResourceJndiName,
 			Xid xid) {
+		int asyncDeleteThreshold = jtaEnvironmentBean
+				.getCommitMarkableResourceRecordAsyncDeleteThreshold();
+		List<Xid> toDelete = null;
+
 		synchronized (completedBranches) {
 			List<Xid> completedXids = completedBranches
 					.get(commitMarkableResourceJndiName);
@@ -169,6 +193,37 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 						completedXids);
 			}
 			completedXids.add(xid);
+
+			if (asyncDeleteThreshold > 0
+					&& completedXids.size() >= asyncDeleteThreshold) {
+				toDelete = completedBranches
+						.remove(commitMarkableResourceJndiName);
+			}
+		}
+
+		if (toDelete != null) {
+			final List<Xid> batch = toDelete;
+
+			try {
+				TwoPhaseCommitThreadPool.submitJob(new Runnable() {
+					@Override
+					public void run() {
+						delete(commitMarkableResourceJndiName, batch);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// leave them for the next recovery scan
+				synchronized (completedBranches) {
+					List<Xid> completedXids = completedBranches
+							.get(commitMarkableResourceJndiName);
+					if (completedXids == null) {
+						completedBranches.put(commitMarkableResourceJndiName,
+								batch);
+					} else {
+						completedXids.addAll(batch);
+					}
+				}
+			}
 		}
 	}
 
@@ -225,17 +280,20 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 							.lookup(jndiName);
 					Connection connection = dataSource.getConnection();
 					try {
-						Statement createStatement = connection
-								.createStatement();
+						String tableName = commitMarkableResourceTableNameMap
+								.get(jndiName);
+						if (tableName == null) {
+							tableName = defaultTableName;
+						}
+						PreparedStatement createStatement = connection
+								.prepareStatement("SELECT xid,actionuid from "
+										+ tableName + whereFilter);
 						try {
-							String tableName = commitMarkableResourceTableNameMap
-									.get(jndiName);
-							if (tableName == null) {
-								tableName = defaultTableName;
+							for (int i = 0; i < whereFilterNodes.size(); i++) {
+								createStatement.setString(i + 1,
+										whereFilterNodes.get(i));
 							}
-							ResultSet rs = createStatement
-									.executeQuery("SELECT xid,actionuid from "
-											+ tableName + whereFilter);
+							ResultSet rs = createStatement.executeQuery();
 							try {
 								int i = 0;
 								while (rs.next()) {
@@ -604,6 +662,19 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 		}
 	}
 
+	/**
+	 * Drop the Xids deleted from the table of a datasource from the results of
+	 * the last recovery scan. Deletion may run on another thread than the scan.
+	 */
+	private synchronized void forgetDeleted(String jndiName, List<Xid> deleted) {
+		committedXidsToJndiNames.keySet().removeAll(deleted);
+
+		Map<Xid, Uid> map = jndiNamesToPossibleXidsForGC.get(jndiName);
+		if (map != null) {
+			map.keySet().removeAll(deleted);
+		}
+	}
+
 	private void delete(String jndiName, List<Xid> completedXids) {
 		int batchSize = jtaEnvironmentBean
 				.getCommitMarkableResourceRecordDeleteBatchSize();
@@ -681,7 +752,7 @@ public class CommitMarkableResourceRecordRecoveryModule implements
 							} else {
 								connection.commit();
 
-                                committedXidsToJndiNames.keySet().removeAll(deleted);
+								forgetDeleted(jndiName, deleted);
 							}
 						} catch (IOException e) {
 							tsLogger.logger
@@ -28,6 +28,7 @@ import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
 import com.arjuna.ats.arjuna.objectstore.StateStatus;
 import com.arjuna.ats.arjuna.objectstore.StoreManager;
 import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
 import com.arjuna.ats.internal.jta.transaction.arjunacore.AtomicAction;
 import com.arjuna.ats.jta.logging.jtaLogger;
 import com.arjuna.ats.jta.recovery.XAResourceOrphanFilter;
@@ -36,6 +37,9 @@ import com.arjuna.ats.jta.xa.XATxConverter;
 import com.arjuna.ats.jta.xa.XidImple;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * An XAResourceOrphanFilter which vetos rollback for xids owned by top level JTA transactions.
@@ -67,6 +71,85 @@ public class JTATransactionLogXAResourceOrphanFilter implements XAResourceOrphan
         return Vote.ABSTAIN;
     }
 
+    /**
+     * Vote on a batch of xids using one listing of the transaction logs in the object
+     * store rather than looking each xid up in turn. Only transactions which have a
+     * commit markable resource log are read in full. A transaction with XA participants
+     * is never written into a log batch entry, so its own log is the only one to find.
+     */
+    @Override
+    public Vote[] checkXids(Xid[] xids)
+    {
+        Vote[] votes = new Vote[xids.length];
+        Set<Uid> transactions;
+        Set<Uid> connectableTransactions;
+
+        try {
+            transactions = loggedTransactions(new AtomicAction().type());
+            connectableTransactions = loggedTransactions(RecoverConnectableAtomicAction.CONNECTABLE_ATOMIC_ACTION_TYPE);
+        } catch (ObjectStoreException | IOException e) {
+            jtaLogger.i18NLogger.warn_could_not_access_object_store(e);
+            // we don't know what the state of the parent transactions is so leave them alone
+            Arrays.fill(votes, Vote.LEAVE_ALONE);
+            return votes;
+        }
+
+        if (transactions == null || connectableTransactions == null) {
+            jtaLogger.i18NLogger.warn_recovery_alluids();
+            Arrays.fill(votes, Vote.LEAVE_ALONE);
+            return votes;
+        }
+
+        for (int i = 0; i < xids.length; i++) {
+            votes[i] = Vote.ABSTAIN;
+
+            if (xids[i].getFormatId() != XATxConverter.FORMAT_ID) {
+                continue;
+            }
+
+            Uid u = new XidImple(xids[i]).getTransactionUid();
+
+            if (u.equals(Uid.nullUid())) {
+                jtaLogger.i18NLogger.info_recovery_notaxid(XAHelper.xidToString(xids[i]));
+            } else if (transactions.contains(u)) {
+                votes[i] = Vote.LEAVE_ALONE;
+            } else if (connectableTransactions.contains(u)) {
+                try {
+                    if (containsCommitMarkableResourceRecord(u)) {
+                        votes[i] = Vote.LEAVE_ALONE;
+                    }
+                } catch (ObjectStoreException | IOException e) {
+                    jtaLogger.i18NLogger.warn_could_not_access_object_store(e);
+                    votes[i] = Vote.LEAVE_ALONE;
+                }
+            }
+
+            if (jtaLogger.logger.isDebugEnabled()) {
+                jtaLogger.logger.debug("Xid " + XAHelper.xidToString(xids[i]) + " has " +
+                        (votes[i] == Vote.LEAVE_ALONE ? "a" : "no") + " transaction log");
+            }
+        }
+
+        return votes;
+    }
+
+    private Set<Uid> loggedTransactions(String transactionType) throws ObjectStoreException, IOException {
+        InputObjectState uids = new InputObjectState();
+        Set<Uid> transactions = new HashSet<Uid>();
+
+        if (!StoreManager.getRecoveryStore().allObjUids(transactionType, uids)) {
+            return null;
+        }
+
+        if (uids.notempty()) {
+            for (Uid u = UidHelper.unpackFrom(uids); u.notEquals(Uid.nullUid()); u = UidHelper.unpackFrom(uids)) {
+                transactions.add(u);
+            }
+        }
+
+        return transactions;
+    }
+
     private boolean containsCommitMarkableResourceRecord(Uid u) throws ObjectStoreException, IOException {
         InputObjectState state = StoreManager.getRecoveryStore().read_committed(
                 u, RecoverConnectableAtomicAction.CONNECTABLE_ATOMIC_ACTION_TYPE);
@@ -35,13 +35,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
@@ -57,6 +60,7 @@ import com.arjuna.ats.arjuna.recovery.RecoveryManager;
 import com.arjuna.ats.arjuna.recovery.RecoveryModule;
 import com.arjuna.ats.arjuna.state.InputObjectState;
 import com.arjuna.ats.internal.arjuna.common.UidHelper;
+import com.arjuna.ats.internal.arjuna.recovery.RecoveryExecutor;
 import com.arjuna.ats.internal.jta.resources.arjunacore.XAResourceRecord;
 import com.arjuna.ats.jta.common.jtaPropertyManager;
 import com.arjuna.ats.jta.logging.jtaLogger;
@@ -68,6 +72,7 @@ import com.arjuna.ats.jta.recovery.XAResourceRecovery;
 import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
 import com.arjuna.ats.jta.utils.XAHelper;
 import com.arjuna.ats.jta.utils.XARecoveryResourceHelper;
+import com.arjuna.ats.jta.xa.XidImple;
 
 import org.jboss.tm.XAResourceWrapper;
 
@@ -189,9 +194,27 @@ public class XARecoveryModule implements RecoveryModule
 		_resources.addAll(resourceInitiatedRecoveryForRecoveryHelpers());
 
 		List<XAResource> resources = new ArrayList<XAResource>(_resources);
-		for (XAResource xaResource : resources) {
+		List<RecoveryScan> scans = new ArrayList<RecoveryScan>(resources.size());
+
+		for (XAResource xaResource : resources)
+			scans.add(new RecoveryScan(xaResource));
+
+		if (RecoveryExecutor.isParallel() && scans.size() > 1) {
+			/*
+			 * Only the recover calls run on the recovery threads, since they are
+			 * what takes the time. The results are then applied to _xidScans here.
+			 */
+
+			RecoveryExecutor.processInBatches(scans, 1, new Consumer<RecoveryScan>() {
+				public void accept(RecoveryScan scan) {
+					scan.run();
+				}
+			});
+		}
+
+		for (RecoveryScan scan : scans) {
 			try {
-				xaRecoveryFirstPass(xaResource);
+				xaRecoveryFirstPass(scan);
 			} catch (Exception ex) {
 				jtaLogger.i18NLogger.warn_recovery_getxaresource(ex);
 			}
@@ -588,53 +611,97 @@ public class XARecoveryModule implements RecoveryModule
     }
 
 
-	private final void xaRecoveryFirstPass(XAResource xares)
+	/**
+	 * Start a recovery scan of the resource manager and return the Xids it has
+	 * in doubt. If XA recovery scan paging is enabled, keep asking for more with
+	 * TMNOFLAGS until the resource manager has no Xids we have not already seen.
+	 */
+	private Xid[] startScan(XAResource xares) throws XAException
 	{
 		if (jtaLogger.logger.isDebugEnabled()) {
             jtaLogger.logger.debug("xarecovery of " + xares);
         }
 
-		
-			Xid[] trans = null;
+		Xid[] trans = xares.recover(XAResource.TMSTARTRSCAN);
 
-			try
+		if ((trans != null) && (trans.length > 0) && jtaPropertyManager.getJTAEnvironmentBean().isXaRecoveryScanPaging())
+		{
+			Set<XidImple> seen = new HashSet<XidImple>();
+			List<Xid> all = new ArrayList<Xid>(trans.length);
+			Xid[] page = trans;
+
+			do
 			{
-				trans = xares.recover(XAResource.TMSTARTRSCAN);
+				int found = all.size();
 
-				if (jtaLogger.logger.isDebugEnabled()) {
-                    jtaLogger.logger.debug("Found "
-                            + ((trans != null) ? trans.length : 0)
-                            + " xids in doubt");
-                }
-				if (jtaLogger.logger.isTraceEnabled()) {
-					for (Xid xid : trans) {
-						byte[] globalTransactionId = xid.getGlobalTransactionId();
-						byte[] branchQualifier = xid.getBranchQualifier();
-	
-						StringBuilder stringBuilder = new StringBuilder();
-						stringBuilder.append("< ");
-						stringBuilder.append(xid.getFormatId());
-						stringBuilder.append(", ");
-						stringBuilder.append(globalTransactionId.length);
-						stringBuilder.append(", ");
-						stringBuilder.append(branchQualifier.length);
-						stringBuilder.append(", ");
-						for (int i = 0; i < globalTransactionId.length; i++) {
-							stringBuilder.append(globalTransactionId[i]);
-						}
-						stringBuilder.append(", ");
-						for (int i = 0; i < branchQualifier.length; i++) {
-							stringBuilder.append(branchQualifier[i]);
-						}
-						stringBuilder.append(" >");
-	
-						jtaLogger.logger.debug("Recovered: "
-								+ stringBuilder.toString());
-					}
+				for (Xid xid : page) {
+					if (seen.add(new XidImple(xid)))
+						all.add(xid);
 				}
+
+				// some drivers return the whole list again rather than the next page
+
+				if (all.size() == found)
+					break;
+
+				page = xares.recover(XAResource.TMNOFLAGS);
 			}
-			catch (XAException e)
+			while ((page != null) && (page.length > 0));
+
+			trans = all.toArray(new Xid[all.size()]);
+		}
+
+		if (jtaLogger.logger.isDebugEnabled()) {
+            jtaLogger.logger.debug("Found "
+                    + ((trans != null) ? trans.length : 0)
+                    + " xids in doubt");
+        }
+		if (jtaLogger.logger.isTraceEnabled()) {
+			for (Xid xid : trans) {
+				byte[] globalTransactionId = xid.getGlobalTransactionId();
+				byte[] branchQualifier = xid.getBranchQualifier();
+
+				StringBuilder stringBuilder = new StringBuilder();
+				stringBuilder.append("< ");
+				stringBuilder.append(xid.getFormatId());
+				stringBuilder.append(", ");
+				stringBuilder.append(globalTransactionId.length);
+				stringBuilder.append(", ");
+				stringBuilder.append(branchQualifier.length);
+				stringBuilder.append(", ");
+				for (int i = 0; i < globalTransactionId.length; i++) {
+					stringBuilder.append(globalTransactionId[i]);
+				}
+				stringBuilder.append(", ");
+				for (int i = 0; i < branchQualifier.length; i++) {
+					stringBuilder.append(branchQualifier[i]);
+				}
+				stringBuilder.append(" >");
+
+				jtaLogger.logger.debug("Recovered: "
+						+ stringBuilder.toString());
+			}
+		}
+
+		return trans;
+	}
+
+	private final void xaRecoveryFirstPass(RecoveryScan scan) throws Exception
+	{
+			XAResource xares = scan.xares;
+
+			if (!scan.done)
+				scan.run();
+
+			if (scan.exception != null)
+				throw scan.exception;
+
+			Xid[] trans = scan.xids;
+
+			if (scan.xaException != null)
 			{
+				XAException e = scan.xaException;
+
                 jtaLogger.i18NLogger.warn_recovery_xarecovery1(_logName+".xaRecovery", XAHelper.printXAErrorCode(e), e);
 
 				try
@@ -645,7 +712,8 @@ public class XARecoveryModule implements RecoveryModule
 				{
 				}
 
-				_xidScans.remove(xares);
+				if (_xidScans != null)
+					_xidScans.remove(xares);
 				return;
 			}
 
@@ -714,10 +782,10 @@ public class XARecoveryModule implements RecoveryModule
 	                            + " Xids to recover on this pass.");
 	                }
 	
+					List<Xid> orphans = new ArrayList<Xid>();
+
 					for (int j = 0; j < xids.length; j++)
 					{
-						boolean doForget = false;
-	
 						/*
 						 * Check if in failure list.
 						 */
@@ -725,65 +793,43 @@ public class XARecoveryModule implements RecoveryModule
 						Uid recordUid = null;
 						boolean foundTransaction = false;
 	
-						do
+						// is the xid known to be one that couldn't be recovered
+
+						while ((recordUid = previousFailure(xids[j])) != null)
 						{
-							// is the xid known to be one that couldn't be recovered
-	
-							recordUid = previousFailure(xids[j]);
-	
-							if ((recordUid == null) && (foundTransaction))
-								break; // end
-							// of
-							// recovery
-							// for
-							// this
-							// transaction
-	
-							if (recordUid == null)
-	                        {
-	                            /*
-	                            * It wasn't an xid that we couldn't recover, so the
-	                            * RM knows about it, but we don't. Therefore it may
-	                            * have to be rolled back.
-	                            */
-	                            doForget = handleOrphan(xares, xids[j]);
-	                        }
-	                        else
-							{
-								foundTransaction = true;
-	
-								/*
-								 * In the failures list so it may be that we just
-								 * need another XAResource to be able to recover
-								 * this.
-								 */
-	
-								XARecoveryResource record = _recoveryManagerClass
-										.getResource(recordUid, xares);
-								int recoveryStatus = record.recover();
-	
-								if (recoveryStatus != XARecoveryResource.RECOVERED_OK)
-								{
-	                                jtaLogger.i18NLogger.warn_recovery_failedtorecover(_logName+".xaRecovery", XARecoveryResourceHelper.stringForm(recoveryStatus));
-								}
-	
-								removeFailure(record.getXid(), record.get_uid());
-							}
-	
-							if (doForget)
+							foundTransaction = true;
+
+							/*
+							 * In the failures list so it may be that we just
+							 * need another XAResource to be able to recover
+							 * this.
+							 */
+
+							XARecoveryResource record = _recoveryManagerClass
+									.getResource(recordUid, xares);
+							int recoveryStatus = record.recover();
+
+							if (recoveryStatus != XARecoveryResource.RECOVERED_OK)
 							{
-								try
-								{
-									xares.forget(xids[j]);
-								}
-								catch (Exception e)
-								{
-	                                jtaLogger.i18NLogger.warn_recovery_forgetfailed(_logName+".xaRecovery", e);
-								}
+                                jtaLogger.i18NLogger.warn_recovery_failedtorecover(_logName+".xaRecovery", XARecoveryResourceHelper.stringForm(recoveryStatus));
 							}
-	
-						} while (recordUid != null);
+
+							removeFailure(record.getXid(), record.get_uid());
+						}
+
+						if (!foundTransaction)
+						{
+                            /*
+                            * It wasn't an xid that we couldn't recover, so the
+                            * RM knows about it, but we don't. Therefore it may
+                            * have to be rolled back.
+                            */
+							orphans.add(xids[j]);
+						}
 					}
+
+					if (!orphans.isEmpty())
+						handleOrphans(xares, orphans.toArray(new Xid[orphans.size()]));
 				}
 			}
 			catch (Exception e)
@@ -806,43 +852,105 @@ public class XARecoveryModule implements RecoveryModule
 	}
 
     /**
-     * Apply use configurable filtering to determine how to handle the in-doubt resource.
+     * Roll back, and forget if necessary, the in-doubt Xids of a resource manager
+     * which the orphan filters agree should be rolled back. The filters vote on
+     * all of the Xids at once.
      *
      * @param xares
-     * @param xid
-     * @return true if forget should be called, false otherwise.
+     * @param xids
+     */
+    private void handleOrphans(XAResource xares, Xid[] xids)
+    {
+        XAResourceOrphanFilter.Vote[] outcomes = orphanVotes(xids);
+
+        for (int i = 0; i < xids.length; i++)
+        {
+            if ((outcomes[i] == XAResourceOrphanFilter.Vote.ROLLBACK) && rollbackOrphan(xares, xids[i]))
+            {
+                try
+                {
+                    xares.forget(xids[i]);
+                }
+                catch (Exception e)
+                {
+                    jtaLogger.i18NLogger.warn_recovery_forgetfailed(_logName+".xaRecovery", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Combine the votes of the orphan filters on each Xid. Once a filter votes to leave
+     * an Xid alone the later filters are not asked about it.
+     *
+     * @param xids
+     * @return ROLLBACK for each Xid that should be rolled back, LEAVE_ALONE otherwise.
      */
-    private boolean handleOrphan(XAResource xares, Xid xid)
+    private XAResourceOrphanFilter.Vote[] orphanVotes(Xid[] xids)
     {
         // be default we play it safe and leave resources alone unless a filter explicitly recognizes them.
         // getting presumed abort behaviour therefore requires appropriate filters to be registered.
-        XAResourceOrphanFilter.Vote votingOutcome = XAResourceOrphanFilter.Vote.LEAVE_ALONE;
+        XAResourceOrphanFilter.Vote[] votingOutcomes = new XAResourceOrphanFilter.Vote[xids.length];
+        List<Integer> undecided = new ArrayList<Integer>(xids.length);
+
+        for (int i = 0; i < xids.length; i++) {
+            votingOutcomes[i] = XAResourceOrphanFilter.Vote.LEAVE_ALONE;
+            undecided.add(i);
+        }
 
         for(XAResourceOrphanFilter filter : _xaResourceOrphanFilters) {
-            XAResourceOrphanFilter.Vote vote = filter.checkXid(xid);
+            if (undecided.isEmpty())
+                break;
 
-            if(jtaLogger.logger.isDebugEnabled()) {
-                jtaLogger.logger.debug("XAResourceOrphanFilter " + filter.getClass().getName() + " voted " + vote);
-            }
+            Xid[] candidates = new Xid[undecided.size()];
 
-            if(vote == XAResourceOrphanFilter.Vote.LEAVE_ALONE)
-            {
-                return false;
-            }
-            else if(vote == XAResourceOrphanFilter.Vote.ROLLBACK)
-            {
-                votingOutcome = vote;
+            for (int i = 0; i < candidates.length; i++)
+                candidates[i] = xids[undecided.get(i)];
+
+            XAResourceOrphanFilter.Vote[] votes = filter.checkXids(candidates);
+            List<Integer> stillUndecided = new ArrayList<Integer>(candidates.length);
+
+            for (int i = 0; i < candidates.length; i++) {
+                int index = undecided.get(i);
+
+                if(jtaLogger.logger.isDebugEnabled()) {
+                    jtaLogger.logger.debug("XAResourceOrphanFilter " + filter.getClass().getName() + " voted " + votes[i]
+                            + " for " + XAHelper.xidToString(candidates[i]));
+                }
+
+                if(votes[i] == XAResourceOrphanFilter.Vote.LEAVE_ALONE)
+                {
+                    votingOutcomes[index] = XAResourceOrphanFilter.Vote.LEAVE_ALONE;
+                    continue;
+                }
+                else if(votes[i] == XAResourceOrphanFilter.Vote.ROLLBACK)
+                {
+                    votingOutcomes[index] = XAResourceOrphanFilter.Vote.ROLLBACK;
+                }
+
+                stillUndecided.add(index);
             }
+
+            undecided = stillUndecided;
         }
 
+        return votingOutcomes;
+    }
+
+    /**
+     * Roll back an in-doubt Xid the orphan filters have voted to roll back.
+     *
+     * @param xares
+     * @param xid
+     * @return true if forget should be called, false otherwise.
+     */
+    private boolean rollbackOrphan(XAResource xares, Xid xid)
+    {
         try
         {
-            if(votingOutcome == XAResourceOrphanFilter.Vote.ROLLBACK)
-            {
-                jtaLogger.i18NLogger.info_recovery_rollingback(XAHelper.xidToString(xid));
+            jtaLogger.i18NLogger.info_recovery_rollingback(XAHelper.xidToString(xid));
 
-                xares.rollback(xid);
-            }
+            xares.rollback(xid);
         }
         catch (XAException e1)
         {
@@ -923,28 +1031,23 @@ public class XARecoveryModule implements RecoveryModule
 			return null;
 		}
 
-		Enumeration e = _failures.keys();
+		XidImple theXid = new XidImple(xid);
+		List<Uid> failureItem = _failures.get(theXid);
 
-		while (e.hasMoreElements())
+		if (failureItem == null)
 		{
-			Xid theXid = (Xid) e.nextElement();
+			// not present in the failures list.
 
-			if (XAHelper.sameXID(xid, theXid))
-			{
-				// remove uid from failure list
-				Vector failureItem = (Vector) _failures.get(theXid);
-				Uid u = (Uid) failureItem.remove(0);
-
-				if (failureItem.size() == 0)
-					_failures.remove(theXid);
-
-				return u;
-			}
+			return null;
 		}
 
-		// not present in the failures list.
+		// remove uid from failure list
+		Uid u = failureItem.remove(0);
 
-		return null;
+		if (failureItem.size() == 0)
+			_failures.remove(theXid);
+
+		return u;
 	}
 
 	/* methods to manipulate the failure list */
@@ -956,25 +1059,27 @@ public class XARecoveryModule implements RecoveryModule
 	private void addFailure(Xid xid, Uid uid)
 	{
 		if (_failures == null)
-			_failures = new Hashtable();
+			_failures = new HashMap<XidImple,List<Uid>>();
 
-		Vector failureItem = (Vector) _failures.get(xid);
+		XidImple theXid = new XidImple(xid);
+		List<Uid> failureItem = _failures.get(theXid);
 
 		if (failureItem == null)
 		{
-			failureItem = new Vector();
+			failureItem = new ArrayList<Uid>();
 
-			_failures.put(xid, failureItem);
+			_failures.put(theXid, failureItem);
 		}
 
-		failureItem.addElement(uid);
+		failureItem.add(uid);
 	}
 
 	/* remove record uid from failure list */
 	private void removeFailure(Xid xid, Uid uid)
 	{
 		// find the failure item for this xid
-		Vector failureItem = (Vector) _failures.get(xid);
+		XidImple theXid = new XidImple(xid);
+		List<Uid> failureItem = (_failures == null) ? null : _failures.get(theXid);
 
 		if (failureItem == null)
 		{
@@ -995,7 +1100,7 @@ public class XARecoveryModule implements RecoveryModule
 
 			// if that was the last one, remove the item altogether
 			if (failureItem.size() == 0)
-				_failures.remove(xid);
+				_failures.remove(theXid);
 		}
 	}
 
@@ -1085,6 +1190,42 @@ public class XARecoveryModule implements RecoveryModule
         }
     }
 
+    /**
+     * The start of a recovery scan of one resource manager, which may run on a
+     * recovery thread so that several resource managers are scanned at once.
+     */
+    private class RecoveryScan implements Runnable
+    {
+        RecoveryScan(XAResource xares)
+        {
+            this.xares = xares;
+        }
+
+        public void run()
+        {
+            try
+            {
+                xids = startScan(xares);
+            }
+            catch (XAException e)
+            {
+                xaException = e;
+            }
+            catch (Exception e)
+            {
+                exception = e;
+            }
+
+            done = true;
+        }
+
+        final XAResource xares;
+        Xid[] xids;
+        XAException xaException;
+        Exception exception;
+        boolean done;
+    }
+
     private RecoveryStore _recoveryStore = StoreManager.getRecoveryStore();
 
 	private InputObjectState _uids = new InputObjectState();
@@ -1106,7 +1247,12 @@ public class XARecoveryModule implements RecoveryModule
 
     private final List<XAResourceOrphanFilter> _xaResourceOrphanFilters;
 
-    private Hashtable _failures = null;
+    /*
+     * Keyed by XidImple, whose equals and hashCode compare the format id,
+     * global transaction id and branch qualifier as XAHelper.sameXID does.
+     */
+
+    private Map<XidImple,List<Uid>> _failures = null;
 
     private Hashtable<XAResourceRecoveryHelper,XAResource[]> recoveryHelpersXAResource = new Hashtable<XAResourceRecoveryHelper,XAResource[]>();
 
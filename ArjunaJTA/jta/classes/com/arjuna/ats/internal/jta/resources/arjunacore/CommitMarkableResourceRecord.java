@@ -596,4 +596,8 @@ public class CommitMarkableResourceRecord extends AbstractRecord {
 	public boolean shouldReplace(AbstractRecord a) {
 		return false;
 	}
+
+	public boolean insertsByOrderOnly() {
+		return true;
+	}
 }
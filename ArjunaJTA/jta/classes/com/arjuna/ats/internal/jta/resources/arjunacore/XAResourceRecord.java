@@ -73,6 +73,7 @@ import java.util.Vector;
 
 import org.jboss.tm.FirstResource;
 import org.jboss.tm.LastResource;
+import org.jboss.tm.XAResourceWrapper;
 
 /**
  * @author Mark Little (mark_little@hp.com)
@@ -1107,6 +1108,35 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 		return false;
 	}
 
+	public boolean insertsByOrderOnly()
+	{
+		return true;
+	}
+
+	/**
+	 * The transaction has already used isSameRM to give every resource manager
+	 * a single branch, so two records can only share one if isSameRM was
+	 * overridden to keep their branches apart. They are then recognised by
+	 * being enlisted under the same JNDI name.
+	 */
+	public boolean sameResourceManager(AbstractRecord other)
+	{
+		if (!(other instanceof XAResourceRecord))
+			return false;
+
+		String jndiName = resourceJndiName();
+
+		return (jndiName != null) && jndiName.equals(((XAResourceRecord) other).resourceJndiName());
+	}
+
+	private String resourceJndiName()
+	{
+		if (_jndiName == null && _theXAResource instanceof XAResourceWrapper)
+			return ((XAResourceWrapper) _theXAResource).getJndiName();
+
+		return _jndiName;
+	}
+
     /**
      * Returns the resource manager product name.
      * @return the product name
@@ -0,0 +1,244 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.internal.jta.transaction.arjunacore;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+
+import org.jboss.tm.XAResourceWrapper;
+
+import com.arjuna.ats.internal.jta.xa.TxInfo;
+
+/**
+ * The resources enlisted with a transaction and the state of their association
+ * with it. The first resource enlisted for a resource manager drives the branch
+ * of that resource manager, any other resource which joins the branch is kept
+ * as a duplicate so that it can still be delisted and ended.
+ *
+ * Transactions rarely enlist more than a handful of resources, so the entries
+ * are held in small arrays which are replaced, rather than modified, when a
+ * resource is added. Lookups never lock, and additions only lock the table.
+ */
+
+class EnlistmentTable
+{
+    static final class Entry
+    {
+        Entry (XAResource resource, TxInfo info)
+        {
+            this.resource = resource;
+            this.info = info;
+        }
+
+        final XAResource resource;
+        final TxInfo info;
+    }
+
+    /**
+     * @return the state of the given resource, or null if it has not been
+     * enlisted with the transaction.
+     */
+
+    TxInfo get (XAResource xaRes)
+    {
+        TxInfo info = find(_primaries, xaRes);
+
+        return (info == null) ? find(_duplicates, xaRes) : info;
+    }
+
+    /**
+     * Add a resource which starts a new branch.
+     */
+
+    synchronized void add (XAResource xaRes, TxInfo info)
+    {
+        _primaries = append(_primaries, new Entry(xaRes, info));
+    }
+
+    /**
+     * Add a resource which joined the branch of a resource manager that is
+     * already enlisted.
+     */
+
+    synchronized void addDuplicate (XAResource xaRes, TxInfo info)
+    {
+        _duplicates = append(_duplicates, new Entry(xaRes, info));
+    }
+
+    /**
+     * @return the number of branches.
+     */
+
+    int size ()
+    {
+        return _primaries.length;
+    }
+
+    /**
+     * @return the resources which drive a branch, in the order they were
+     * enlisted. The array must not be modified.
+     */
+
+    Entry[] primaries ()
+    {
+        return _primaries;
+    }
+
+    /**
+     * @return the resources which joined an existing branch. The array must
+     * not be modified.
+     */
+
+    Entry[] duplicates ()
+    {
+        return _duplicates;
+    }
+
+    /**
+     * Find the state of a resource enlisted for the same resource manager as
+     * the given one, trying the branches before the duplicates.
+     *
+     * @return the state of the resource found, or null if the resource manager
+     * has not been seen before.
+     */
+
+    TxInfo findSameRM (XAResource xaRes) throws XAException
+    {
+        Entry entry = findSameRM(_primaries, xaRes);
+
+        if (entry == null)
+            entry = findSameRM(_duplicates, xaRes);
+
+        return (entry == null) ? null : entry.info;
+    }
+
+    /**
+     * @return the first entry, in the given entries, of a resource on the same
+     * resource manager as the given one.
+     */
+
+    static Entry findSameRM (Entry[] entries, XAResource xaRes) throws XAException
+    {
+        for (Entry entry : entries)
+        {
+            if (mayBeSameRM(entry.resource) && entry.resource.isSameRM(xaRes))
+                return entry;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return an unmodifiable copy of the resources which drive a branch.
+     */
+
+    Map<XAResource, TxInfo> asMap ()
+    {
+        Entry[] entries = _primaries;
+        Map<XAResource, TxInfo> map = new LinkedHashMap<XAResource, TxInfo>(entries.length * 2);
+
+        for (Entry entry : entries)
+            map.put(entry.resource, entry.info);
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /*
+     * Some resources (e.g. those of a datasource which overrides isSameRM)
+     * never report that they share a resource manager with anything, not even
+     * themselves. That is decided per datasource, so find it out once per JNDI
+     * name for the life of the VM and from then on skip the isSameRM of such a
+     * resource. Any other resource is asked every time, just as it would be
+     * without the cache.
+     */
+
+    private static boolean mayBeSameRM (XAResource resource)
+    {
+        if (!(resource instanceof XAResourceWrapper))
+            return true;
+
+        String jndiName = ((XAResourceWrapper) resource).getJndiName();
+
+        if (jndiName == null)
+            return true;
+
+        Boolean sameRM = _sameRMWithItself.get(jndiName);
+
+        if (sameRM == null)
+        {
+            try
+            {
+                sameRM = resource.isSameRM(resource);
+            }
+            catch (XAException e)
+            {
+                // ask again next time
+                return true;
+            }
+
+            _sameRMWithItself.putIfAbsent(jndiName, sameRM);
+        }
+
+        return sameRM;
+    }
+
+    private static TxInfo find (Entry[] entries, XAResource xaRes)
+    {
+        for (Entry entry : entries)
+        {
+            if (entry.resource == xaRes)
+                return entry.info;
+        }
+
+        for (Entry entry : entries)
+        {
+            if (entry.resource.equals(xaRes))
+                return entry.info;
+        }
+
+        return null;
+    }
+
+    private static Entry[] append (Entry[] entries, Entry entry)
+    {
+        Entry[] result = new Entry[entries.length + 1];
+
+        System.arraycopy(entries, 0, result, 0, entries.length);
+        result[entries.length] = entry;
+
+        return result;
+    }
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private static final ConcurrentMap<String, Boolean> _sameRMWithItself = new ConcurrentHashMap<String, Boolean>();
+
+    private volatile Entry[] _primaries = EMPTY;
+    private volatile Entry[] _duplicates = EMPTY;
+}
@@ -34,12 +34,11 @@ package com.arjuna.ats.internal.jta.transaction.arjunacore;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.RollbackException;
 import javax.transaction.Status;
@@ -49,6 +48,8 @@ import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
 import org.jboss.tm.ConnectableResource;
+import org.jboss.tm.FirstResource;
+import org.jboss.tm.LastResource;
 import org.jboss.tm.XAResourceWrapper;
 
 import com.arjuna.ats.arjuna.common.Uid;
@@ -103,12 +104,12 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 		_theTransaction.begin(timeout);
 
-		_resources = new Hashtable();
-		_duplicateResources = new Hashtable();
-		_suspendCount = 0;
+		_resources = new EnlistmentTable();
 		_xaTransactionTimeoutEnabled = getXATransactionTimeoutEnabled();
 
         _txLocalResources = Collections.synchronizedMap(new HashMap());
+
+        _theTransaction.setParallelParticipants(jtaPropertyManager.getJTAEnvironmentBean().isParallelBranchCompletion());
     }
 
 	/**
@@ -479,20 +480,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 			try
 			{
-				synchronized (this)
-				{
-					info = (TxInfo) _resources.get(xaRes);
-
-					if (info == null)
-					{
-						/*
-						 * Null info means it's not in the main resources list,
-						 * but may be in the duplicates.
-						 */
-
-						info = (TxInfo) _duplicateResources.get(xaRes);
-					}
-				}
+				info = _resources.get(xaRes);
 
 				if (info != null)
 				{
@@ -514,10 +502,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 						info.setState(TxInfo.ASSOCIATED);
 
-						synchronized (this)
-						{
-							_suspendCount--;
-						}
+						_suspendCount.decrementAndGet();
 
 						return true; // already registered resource with this
 						// transaction!
@@ -594,14 +579,11 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 				boolean branchRequired = true;
 
-				synchronized (this)
+				if (_resources.size() == 0)// first ever, so no need for
+				// branch
 				{
-					if (_resources.size() == 0)// first ever, so no need for
-					// branch
-					{
-						// branchRequired = false;
-						branchRequired = true;
-					}
+					// branchRequired = false;
+					branchRequired = true;
 				}
 
 				xid = createXid(branchRequired, theModifier, xaRes);
@@ -661,7 +643,7 @@ public class TransactionImple implements javax.transaction.Transaction,
                         if(abstractRecord != null) {
                             xaRes.start(xid, xaStartNormal);
                             if(_theTransaction.add(abstractRecord) == AddOutcome.AR_ADDED) {
-                                _resources.put(xaRes, new TxInfo(xid));
+                                _resources.add(xaRes, new TxInfo(xid));
                                 return true; // dive out, no need to set associatedWork = true;
                             } else {
                                 // we called start on the resource, but _theTransaction did not accept it.
@@ -755,7 +737,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 				 * (particularly if we later have to delist).
 				 */
 
-				_duplicateResources.put(xaRes, new TxInfo(xid));
+				_resources.addDuplicate(xaRes, new TxInfo(xid));
 
 				return true;
 			}
@@ -809,6 +791,17 @@ public class TransactionImple implements javax.transaction.Transaction,
         }
         else
         {
+            /*
+             * First and last resources rely on their place in the intentions list,
+             * which completing the branches in parallel would not honour.
+             */
+
+            if ((xaRes instanceof FirstResource) || (xaRes instanceof LastResource))
+            {
+                _orderedBranches = true;
+                _theTransaction.setParallelParticipants(false);
+            }
+
             return new XAResourceRecord(this, xaRes, xid, params);
         }
     }
@@ -845,13 +838,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 		try
 		{
-			synchronized (this)
-			{
-				info = (TxInfo) _resources.get(xaRes);
-
-				if (info == null)
-					info = (TxInfo) _duplicateResources.get(xaRes);
-			}
+			info = _resources.get(xaRes);
 
 			if (info == null)
 			{
@@ -904,10 +891,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 							xaRes.end(info.xid(), XAResource.TMSUSPEND);
 							info.setState(TxInfo.ASSOCIATION_SUSPENDED);
 
-							synchronized (this)
-							{
-								_suspendCount++;
-							}
+							_suspendCount.incrementAndGet();
 						}
 						else
 						{
@@ -930,10 +914,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 						xaRes.end(info.xid(), XAResource.TMSUCCESS);
 						info.setState(TxInfo.NOT_ASSOCIATED);
 
-						synchronized (this)
-						{
-							_suspendCount--;
-						}
+						_suspendCount.decrementAndGet();
 					}
 					else
 					{
@@ -950,10 +931,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 							xaRes.end(info.xid(), XAResource.TMFAIL);
 							info.setState(TxInfo.FAILED);
 
-							synchronized (this)
-							{
-								_suspendCount--;
-							}
+							_suspendCount.decrementAndGet();
 						}
 					}
 				}
@@ -1062,8 +1040,8 @@ public class TransactionImple implements javax.transaction.Transaction,
 				toThrow = e;
 			}
 		}
-		for (Object resource : _duplicateResources.keySet()) {
-			XAResource dupXar = (XAResource) resource;
+		for (EnlistmentTable.Entry duplicate : _resources.duplicates()) {
+			XAResource dupXar = duplicate.resource;
 			if (_theXAResource.isSameRM(dupXar)) {
 				try {
 					doEnd(_tranID, dupXar, xaState, txInfoState);
@@ -1111,12 +1089,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 		if (xaRes != null)
 		{
-			TxInfo info = (TxInfo) _resources.get(xaRes);
-
-			if (info == null)
-			{
-				info = (TxInfo) _duplicateResources.get(xaRes);
-			}
+			TxInfo info = _resources.get(xaRes);
 
 			if (info != null)
 				state = info.getState();
@@ -1129,12 +1102,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 	{
 		if (xaRes != null)
 		{
-			TxInfo info = (TxInfo) _resources.get(xaRes);
-
-			if (info == null)
-			{
-				info = (TxInfo) _duplicateResources.get(xaRes);
-			}
+			TxInfo info = _resources.get(xaRes);
 
 			if (info != null)
 				info.setState(state);
@@ -1233,17 +1201,14 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 		if (_theTransaction != null)
 		{
-			_resources = new Hashtable();
-			_duplicateResources = new Hashtable();
+			_resources = new EnlistmentTable();
             _txLocalResources = Collections.synchronizedMap(new HashMap());
 		}
 		else
 		{
 			_resources = null;
-			_duplicateResources = null;
 		}
 
-		_suspendCount = 0;
 		_xaTransactionTimeoutEnabled = getXATransactionTimeoutEnabled();
 	}
 
@@ -1401,10 +1366,8 @@ public class TransactionImple implements javax.transaction.Transaction,
 	{
 		boolean result = true;
 
-		if (_suspendCount > 0)
+		if (_suspendCount.get() > 0)
 		{
-			Enumeration el = _resources.keys();
-
 			/*
 			 * Loop over all registered resources. Those that are in a suspended
 			 * state must have end called on them. If this fails, then we will
@@ -1412,86 +1375,57 @@ public class TransactionImple implements javax.transaction.Transaction,
 			 * the list to try to end any other suspended resources.
 			 */
 
-			if (el != null)
-			{
-				try
-				{
-					/*
-					 * Would it gain us much to just loop for _suspendCount?
-					 */
-
-					while (el.hasMoreElements())
-					{
-						/*
-						 * Get the XAResource in case we have to call end on it.
-						 */
+			if (!endSuspendedRMs(_resources.primaries()))
+				result = false;
 
-						XAResource xaRes = (XAResource) el.nextElement();
-						TxInfo info = (TxInfo) _resources.get(xaRes);
+			/*
+			 * need to do the same for all duplicated resources
+			 */
 
-						if (info.getState() == TxInfo.ASSOCIATION_SUSPENDED)
-						{
-							if (XAUtils.mustEndSuspendedRMs(xaRes))
-								xaRes.start(info.xid(), XAResource.TMRESUME);
+			if (!endSuspendedRMs(_resources.duplicates()))
+				result = false;
 
-							xaRes.end(info.xid(), XAResource.TMSUCCESS);
-							info.setState(TxInfo.NOT_ASSOCIATED);
-						}
-					}
-				}
-				catch (XAException ex)
-				{
-                    jtaLogger.i18NLogger.warn_transaction_arjunacore_xaenderror(ex);
+			_suspendCount.set(0);
+		}
 
-					result = false;
-				}
-			}
+		return result;
+	}
 
+	private final boolean endSuspendedRMs(EnlistmentTable.Entry[] entries)
+	{
+		try
+		{
 			/*
-			 * need to do the same for all duplicated resources
+			 * Would it gain us much to just loop for _suspendCount?
 			 */
 
-			el = _duplicateResources.keys();
-
-			if (el != null)
+			for (EnlistmentTable.Entry entry : entries)
 			{
-				try
-				{
-					/*
-					 * Would it gain us much to just loop for _suspendCount?
-					 */
-
-					while (el.hasMoreElements())
-					{
-						/*
-						 * Get the XAResource in case we have to call end on it.
-						 */
-
-						XAResource xaRes = (XAResource) el.nextElement();
-						TxInfo info = (TxInfo) _duplicateResources.get(xaRes);
+				/*
+				 * Get the XAResource in case we have to call end on it.
+				 */
 
-						if (info.getState() == TxInfo.ASSOCIATION_SUSPENDED)
-						{
-							if (XAUtils.mustEndSuspendedRMs(xaRes))
-								xaRes.start(info.xid(), XAResource.TMRESUME);
+				XAResource xaRes = entry.resource;
+				TxInfo info = entry.info;
 
-							xaRes.end(info.xid(), XAResource.TMSUCCESS);
-							info.setState(TxInfo.NOT_ASSOCIATED);
-						}
-					}
-				}
-				catch (XAException ex)
+				if (info.getState() == TxInfo.ASSOCIATION_SUSPENDED)
 				{
-                    jtaLogger.i18NLogger.warn_transaction_arjunacore_xaenderror(ex);
+					if (XAUtils.mustEndSuspendedRMs(xaRes))
+						xaRes.start(info.xid(), XAResource.TMRESUME);
 
-					result = false;
+					xaRes.end(info.xid(), XAResource.TMSUCCESS);
+					info.setState(TxInfo.NOT_ASSOCIATED);
 				}
 			}
+		}
+		catch (XAException ex)
+		{
+            jtaLogger.i18NLogger.warn_transaction_arjunacore_xaenderror(ex);
 
-			_suspendCount = 0;
+			return false;
 		}
 
-		return result;
+		return true;
 	}
 
 	/*
@@ -1507,39 +1441,12 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 		try
 		{
-			Enumeration el = _resources.keys();
-
-			if (el != null)
+			for (EnlistmentTable.Entry[] entries : new EnlistmentTable.Entry[][] { _resources.primaries(), _resources.duplicates() })
 			{
-				while (el.hasMoreElements())
+				for (EnlistmentTable.Entry entry : entries)
 				{
-					XAResource x = (XAResource) el.nextElement();
-
-					if (x.isSameRM(xaRes))
-					{
-						TxInfo info = (TxInfo) _resources.get(x);
-
-						if (info.thread() == t)
-							return true;
-					}
-				}
-			}
-
-			el = _duplicateResources.keys();
-
-			if (el != null)
-			{
-				while (el.hasMoreElements())
-				{
-					XAResource x = (XAResource) el.nextElement();
-
-					if (x.isSameRM(xaRes))
-					{
-						TxInfo info = (TxInfo) _resources.get(x);
-
-						if (info.thread() == t)
-							return true;
-					}
+					if (entry.resource.isSameRM(xaRes) && (entry.info.thread() == t))
+						return true;
 				}
 			}
 		}
@@ -1562,38 +1469,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 	{
 		try
 		{
-			synchronized (this)
-			{
-				Enumeration el = _resources.keys();
-
-				if (el != null)
-				{
-					while (el.hasMoreElements())
-					{
-						XAResource x = (XAResource) el.nextElement();
-
-						if (x.isSameRM(xaRes))
-						{
-							return (TxInfo) _resources.get(x);
-						}
-					}
-				}
-
-				el = _duplicateResources.keys();
-
-				if (el != null)
-				{
-					while (el.hasMoreElements())
-					{
-						XAResource x = (XAResource) el.nextElement();
-
-						if (x.isSameRM(xaRes))
-						{
-							return (TxInfo) _duplicateResources.get(x);
-						}
-					}
-				}
-			}
+			return _resources.findSameRM(xaRes);
 		}
 		catch (XAException ex)
 		{
@@ -1609,8 +1485,6 @@ public class TransactionImple implements javax.transaction.Transaction,
 
 			throw new com.arjuna.ats.arjuna.exceptions.FatalError(e.toString(), e);
 		}
-
-		return null;
 	}
 
 	protected Xid createXid(boolean branch, XAModifier theModifier, XAResource xaResource) throws IOException, ObjectStoreException
@@ -1684,7 +1558,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 
     public Map<XAResource, TxInfo> getResources()
     {
-        return Collections.unmodifiableMap(_resources);
+        return _resources.asMap();
     }
 
     public int getTimeout()
@@ -1692,6 +1566,30 @@ public class TransactionImple implements javax.transaction.Transaction,
         return _theTransaction.getTimeout();
     }
 
+    /**
+     * Prepare and commit the branches of this transaction on different resource
+     * managers in parallel, so that the transaction completes in the time of its
+     * slowest resource manager rather than the sum of them all. Branches on the
+     * same resource manager are still completed one after the other, a last
+     * resource is still only committed once every other branch has prepared and
+     * a commit markable resource still commits before every other branch. This
+     * is ignored if a FirstResource or LastResource is enlisted.
+     *
+     * Default: JTAEnvironmentBean.isParallelBranchCompletion.
+     *
+     * @param parallel true to complete the branches in parallel.
+     */
+    public void setParallelBranchCompletion(boolean parallel)
+    {
+        if (_theTransaction != null)
+            _theTransaction.setParallelParticipants(parallel && !_orderedBranches);
+    }
+
+    public boolean isParallelBranchCompletion()
+    {
+        return (_theTransaction != null) && _theTransaction.parallelParticipants();
+    }
+
     public long getRemainingTimeoutMills() {
         return TransactionReaper.transactionReaper().getRemainingTimeoutMills(_theTransaction);
     }
@@ -1706,16 +1604,16 @@ public class TransactionImple implements javax.transaction.Transaction,
 
     protected com.arjuna.ats.arjuna.AtomicAction _theTransaction;
 
-	private Hashtable _resources;
+	private EnlistmentTable _resources;
 
-	private Hashtable _duplicateResources;
-
-	private int _suspendCount;
+	private final AtomicInteger _suspendCount = new AtomicInteger();
 
 	private final boolean _xaTransactionTimeoutEnabled;
 
 	private Map _txLocalResources;
 
+	private volatile boolean _orderedBranches;
+
     private Throwable _rollbackOnlyCallerStacktrace;
     
 	private static final boolean XA_TRANSACTION_TIMEOUT_ENABLED = jtaPropertyManager.getJTAEnvironmentBean()
@@ -0,0 +1,132 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.ats.internal.jta.transaction.arjunacore.jca;
+
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.internal.jta.xa.XID;
+import com.arjuna.ats.jta.xa.XATxConverter;
+import com.arjuna.ats.jta.xa.XidImple;
+
+/**
+ * The key of an imported transaction. Xids in the format of this transaction
+ * manager are matched on the global transaction id alone, as SubordinateXidImple
+ * does, and other Xids on all of their fields.
+ *
+ * The key reads the bytes of the Xid it was created for in place, so looking up an
+ * imported transaction does not copy the Xid. Keys which are stored must therefore
+ * only be created for Xids that are never modified afterwards.
+ */
+
+final class ImportedXidKey
+{
+    ImportedXidKey (Xid xid)
+    {
+        if (xid instanceof XidImple)
+        {
+            XID theXid = ((XidImple) xid).getXID();
+
+            _formatId = theXid.formatID;
+            _gtrid = theXid.data;
+            _gtridLength = theXid.gtrid_length;
+            _bqual = theXid.data;
+            _bqualOffset = theXid.gtrid_length;
+            _bqualLength = theXid.bqual_length;
+        }
+        else
+        {
+            byte[] bqual = xid.getBranchQualifier();
+
+            _formatId = xid.getFormatId();
+            _gtrid = xid.getGlobalTransactionId();
+            _gtridLength = _gtrid.length;
+            _bqual = bqual;
+            _bqualOffset = 0;
+            _bqualLength = (bqual == null) ? 0 : bqual.length;
+        }
+
+        int hash = 31 + _formatId;
+
+        for (int i = 0; i < _gtridLength; i++)
+            hash = 31 * hash + _gtrid[i];
+
+        if (!gtridOnly())
+        {
+            for (int i = 0; i < _bqualLength; i++)
+                hash = 31 * hash + _bqual[_bqualOffset + i];
+        }
+
+        _hashCode = hash;
+    }
+
+    public int hashCode ()
+    {
+        return _hashCode;
+    }
+
+    public boolean equals (Object obj)
+    {
+        if (obj == this)
+            return true;
+
+        if (!(obj instanceof ImportedXidKey))
+            return false;
+
+        ImportedXidKey other = (ImportedXidKey) obj;
+
+        if ((_hashCode != other._hashCode) || (_formatId != other._formatId) || (_gtridLength != other._gtridLength))
+            return false;
+
+        for (int i = 0; i < _gtridLength; i++)
+        {
+            if (_gtrid[i] != other._gtrid[i])
+                return false;
+        }
+
+        if (gtridOnly())
+            return true;
+
+        if (_bqualLength != other._bqualLength)
+            return false;
+
+        for (int i = 0; i < _bqualLength; i++)
+        {
+            if (_bqual[_bqualOffset + i] != other._bqual[other._bqualOffset + i])
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean gtridOnly ()
+    {
+        return _formatId == XATxConverter.FORMAT_ID;
+    }
+
+    private final int _formatId;
+    private final byte[] _gtrid;
+    private final int _gtridLength;
+    private final byte[] _bqual;
+    private final int _bqualOffset;
+    private final int _bqualLength;
+    private final int _hashCode;
+}
@@ -34,8 +34,10 @@ package com.arjuna.ats.internal.jta.transaction.arjunacore.jca;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ExecutionException;
 
 import javax.transaction.SystemException;
 import javax.transaction.xa.XAException;
@@ -44,6 +46,7 @@ import javax.transaction.xa.Xid;
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.TxControl;
 import com.arjuna.ats.internal.jta.transaction.arjunacore.subordinate.jca.TransactionImple;
+import com.arjuna.ats.jta.logging.jtaLogger;
 import com.arjuna.ats.jta.xa.XATxConverter;
 import com.arjuna.ats.jta.xa.XidImple;
 import org.jboss.tm.TransactionImportResult;
@@ -158,13 +161,12 @@ public class TransactionImporterImple implements TransactionImporter
 		if (xid == null)
 			throw new IllegalArgumentException();
 
-		AtomicReference<TransactionImple> holder = _transactions.get(new SubordinateXidImple(xid));
-		TransactionImple tx = holder == null ? null : holder.get();
+		TransactionImple tx = imported(_transactions.get(new ImportedXidKey(xid)));
 
 		if (tx == null) {
 			/*
-			 * Remark: if holder != null and holder.get() == null then the setter is about to
-			 * import the transaction but has not yet updated the holder. We implement the getter
+			 * Remark: if the holder is not yet complete then the importer is about to
+			 * import the transaction but has not yet finished. We implement the getter
 			 * (the thing that is trying to terminate the imported transaction) as though the imported
 			 * transaction only becomes observable when it has been fully imported.
 			 */
@@ -206,31 +208,29 @@ public class TransactionImporterImple implements TransactionImporter
 		if (xid == null)
 			throw new IllegalArgumentException();
 
-        AtomicReference<TransactionImple> remove = _transactions.remove(new SubordinateXidImple(xid));
+        CompletableFuture<TransactionImple> remove = _transactions.remove(new ImportedXidKey(xid));
         if (remove != null) {
-            synchronized (remove) {
-                TransactionImple transactionImple = remove.get();
-                while (transactionImple == null) {
-                    try {
-                        remove.wait();
-                        transactionImple = remove.get();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new XAException(XAException.XAER_RMFAIL);
-                    }
-                }
-                TransactionImple.removeTransaction(transactionImple);
+            TransactionImple transactionImple;
+            try {
+                // wait for an import in progress to finish
+                transactionImple = remove.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XAException(XAException.XAER_RMFAIL);
+            } catch (ExecutionException e) {
+                // the import failed so there is nothing to remove
+                return;
             }
+            TransactionImple.removeTransaction(transactionImple);
         }
     }
 
 	
 	public Set<Xid> getInflightXids(String parentNodeName) {
-		Iterator<AtomicReference<TransactionImple>> iterator = _transactions.values().iterator();
+		Iterator<CompletableFuture<TransactionImple>> iterator = _transactions.values().iterator();
 		Set<Xid> toReturn = new HashSet<Xid>();
 		while (iterator.hasNext()) {
-			AtomicReference<TransactionImple> holder = iterator.next();
-			TransactionImple imported = holder.get();
+			TransactionImple imported = imported(iterator.next());
 
 			if (imported != null && imported.getParentNodeName().equals(parentNodeName)) {
 				toReturn.add(imported.baseXid());
@@ -242,6 +242,13 @@ public class TransactionImporterImple implements TransactionImporter
 	/**
 	 * This can be used for newly imported transactions or recovered ones.
 	 *
+	 * Each imported transaction is held in a CompletableFuture which moves from importing to
+	 * imported (or to failed, in which case it is removed again) without taking a lock. The
+	 * thread that adds the holder to the map creates the transaction; any other thread
+	 * importing the same transaction at the same time waits for it. If recovery replaces the
+	 * holder while the transaction is being created, that transaction is rolled back and the
+	 * recovered one is returned instead.
+	 *
 	 * @param recoveredTransaction If this is recovery
 	 * @param mapKey
 	 * @param xid if this is import
@@ -249,44 +256,84 @@ public class TransactionImporterImple implements TransactionImporter
 	 * @return
 	 */
 	private TransactionImportResult addImportedTransaction(TransactionImple recoveredTransaction, Xid mapKey, Xid xid, int timeout) {
-		boolean isNew = false;
-		SubordinateXidImple importedXid = new SubordinateXidImple(mapKey);
-		// We need to store the imported transaction in a volatile field holder so that it can be shared between threads
-		AtomicReference<TransactionImple> holder = new AtomicReference<>();
-		AtomicReference<TransactionImple> existing;
-
-		if ((existing = _transactions.putIfAbsent(importedXid, holder)) != null) {
-			holder = existing;
-		}
-
-		TransactionImple txn = holder.get();
+		ImportedXidKey importedXid = new ImportedXidKey(mapKey);
 
 		// Should only be called by the recovery system - this will replace the Transaction with one from disk
-		if (recoveredTransaction!= null) {
-			synchronized (holder) {
-				// now it's safe to add the imported transaction to the holder
-				recoveredTransaction.recordTransaction();
-				txn = recoveredTransaction;
-				holder.set(txn);
-				holder.notifyAll();
+		if (recoveredTransaction != null) {
+			recoveredTransaction.recordTransaction();
+
+			CompletableFuture<TransactionImple> replaced = _transactions.put(importedXid,
+					CompletableFuture.completedFuture((TransactionImple) recoveredTransaction));
+
+			if (replaced != null) {
+				// release anyone waiting for an import in progress
+				replaced.complete(recoveredTransaction);
 			}
+
+			return new TransactionImportResult(recoveredTransaction, false);
 		}
 
-		if (txn == null) {
-			// retry the get under a lock - this double check idiom is safe because AtomicReference is effectively
-			// a volatile so can be concurrently accessed by multiple threads
-			synchronized (holder) {
-				txn = holder.get();
-				if (txn == null) {
-					txn = new TransactionImple(timeout, xid);
-					holder.set(txn);
-					holder.notifyAll();
-                    isNew = true;
+		while (true) {
+			CompletableFuture<TransactionImple> holder = _transactions.get(importedXid);
+
+			if (holder == null) {
+				CompletableFuture<TransactionImple> created = new CompletableFuture<TransactionImple>();
+
+				holder = _transactions.putIfAbsent(importedXid, created);
+
+				if (holder == null) {
+					TransactionImple txn;
+
+					try {
+						txn = new TransactionImple(timeout, xid);
+					} catch (RuntimeException | Error e) {
+						_transactions.remove(importedXid, created);
+						created.completeExceptionally(e);
+						throw e;
+					}
+
+					if (created.complete(txn)) {
+						return new TransactionImportResult(txn, true);
+					}
+
+					/*
+					 * Recovery replaced the transaction while it was being created. Nothing can
+					 * have been enlisted with the one created here, so end it rather than leave
+					 * it with the reaper until it times out.
+					 */
+					discard(txn);
+
+					holder = created;
 				}
 			}
+
+			try {
+				return new TransactionImportResult(holder.join(), false);
+			} catch (CompletionException e) {
+				// the thread importing it failed and removed the holder so try again
+			}
+		}
+	}
+
+	private static void discard(TransactionImple txn) {
+		try {
+			txn.doRollback();
+		} catch (Exception e) {
+			if (jtaLogger.logger.isDebugEnabled()) {
+				jtaLogger.logger.debug("Could not roll back the discarded import " + txn, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the transaction in the holder, or null if it has not been imported.
+	 */
+	private static TransactionImple imported(CompletableFuture<TransactionImple> holder) {
+		if (holder == null || !holder.isDone() || holder.isCompletedExceptionally()) {
+			return null;
 		}
 
-		return new TransactionImportResult(txn, isNew);
+		return holder.getNow(null);
 	}
 
 	private XidImple convertXid(Xid xid)
@@ -300,7 +347,7 @@ public class TransactionImporterImple implements TransactionImporter
 		}
 	}
 
-	private static ConcurrentHashMap<SubordinateXidImple, AtomicReference<TransactionImple>> _transactions =
+	private static ConcurrentHashMap<ImportedXidKey, CompletableFuture<TransactionImple>> _transactions =
 			new ConcurrentHashMap<>();
 }
 
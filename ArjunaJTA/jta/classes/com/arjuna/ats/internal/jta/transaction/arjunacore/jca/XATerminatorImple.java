@@ -32,10 +32,15 @@
 package com.arjuna.ats.internal.jta.transaction.arjunacore.jca;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.transaction.HeuristicCommitException;
 import javax.transaction.HeuristicMixedException;
@@ -48,6 +53,7 @@ import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
 import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCommitThreadPool;
 import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
 import com.arjuna.ats.arjuna.coordinator.TxControl;
 import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
@@ -574,6 +580,76 @@ public class XATerminatorImple implements javax.resource.spi.XATerminator, XATer
         }
     }
     
+    /**
+     * Prepare several imported transactions at once. The transactions are
+     * prepared in parallel on the two phase commit thread pool, with the
+     * calling thread doing its share.
+     * 
+     * @param xids
+     *            the transactions to prepare.
+     * @return for each transaction, what prepare would have returned, or the
+     *         error code of the XAException it would have thrown.
+     */
+
+    public int[] prepare (final Xid[] xids)
+    {
+        return completeAll(xids, new XidOperation()
+        {
+            public int apply (Xid xid) throws XAException
+            {
+                return prepare(xid);
+            }
+        });
+    }
+
+    /**
+     * Commit several imported transactions at once, in parallel as
+     * prepare(Xid[]) does.
+     * 
+     * @param xids
+     *            the transactions to commit.
+     * @param onePhase
+     *            whether or not this is a one-phase commit of each transaction.
+     * @return for each transaction, XAResource.XA_OK if it committed, or the
+     *         error code of the XAException commit would have thrown.
+     */
+
+    public int[] commit (final Xid[] xids, final boolean onePhase)
+    {
+        return completeAll(xids, new XidOperation()
+        {
+            public int apply (Xid xid) throws XAException
+            {
+                commit(xid, onePhase);
+
+                return XAResource.XA_OK;
+            }
+        });
+    }
+
+    /**
+     * Roll back several imported transactions at once, in parallel as
+     * prepare(Xid[]) does.
+     * 
+     * @param xids
+     *            the transactions to roll back.
+     * @return for each transaction, XAResource.XA_OK if it rolled back, or the
+     *         error code of the XAException rollback would have thrown.
+     */
+
+    public int[] rollback (final Xid[] xids)
+    {
+        return completeAll(xids, new XidOperation()
+        {
+            public int apply (Xid xid) throws XAException
+            {
+                rollback(xid);
+
+                return XAResource.XA_OK;
+            }
+        });
+    }
+
     public boolean beforeCompletion (Xid xid) throws javax.transaction.SystemException
     {
         try
@@ -660,6 +736,96 @@ public class XATerminatorImple implements javax.resource.spi.XATerminator, XATer
         return xidsToRecover.toArray(NO_XIDS);
     }
 
+    private interface XidOperation
+    {
+        public int apply (Xid xid) throws XAException;
+    }
+
+    private int[] completeAll (final Xid[] xids, final XidOperation operation)
+    {
+        final int[] outcomes = new int[xids.length];
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(xids.length);
+
+        for (int i = 0; i < xids.length; i++)
+        {
+            final int index = i;
+            FutureTask<Void> task = new FutureTask<Void>(new Runnable()
+            {
+                public void run ()
+                {
+                    try
+                    {
+                        outcomes[index] = operation.apply(xids[index]);
+                    }
+                    catch (XAException e)
+                    {
+                        outcomes[index] = e.errorCode;
+                    }
+                    catch (RuntimeException e)
+                    {
+                        if (jtaLogger.logger.isDebugEnabled()) {
+                            jtaLogger.logger.debug("Could not complete " + xids[index], e);
+                        }
+
+                        outcomes[index] = XAException.XAER_RMERR;
+                    }
+                }
+            }, null);
+
+            tasks.add(task);
+
+            // the first one is left for this thread
+            if (i > 0)
+            {
+                try
+                {
+                    TwoPhaseCommitThreadPool.submitJob(task);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // run below
+                }
+            }
+        }
+
+        boolean interrupted = false;
+
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            FutureTask<Void> task = tasks.get(i);
+
+            // runs the task here if no pool thread has started it yet
+            task.run();
+
+            while (true)
+            {
+                try
+                {
+                    task.get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    if (jtaLogger.logger.isDebugEnabled()) {
+                        jtaLogger.logger.debug("Could not complete " + xids[i], e.getCause());
+                    }
+
+                    outcomes[i] = XAException.XAER_RMERR;
+                    break;
+                }
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        return outcomes;
+    }
+
     private boolean _recoveryStarted = false;
     private static final Xid[] NO_XIDS = new Xid[0];
 }
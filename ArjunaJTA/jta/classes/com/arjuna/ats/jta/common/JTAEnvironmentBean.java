@@ -87,6 +87,8 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
 
     private volatile boolean xaTransactionTimeoutEnabled = true;
 
+    private volatile boolean parallelBranchCompletion = false;
+
     private volatile String lastResourceOptimisationInterfaceClassName = "com.arjuna.ats.jta.resources.LastResourceCommitOptimisation";
     private volatile Class lastResourceOptimisationInterface = null;
 
@@ -96,6 +98,8 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
 	private int asyncCommitPoolSize = 10;
 
     private int orphanSafetyInterval = 20000;
+
+    private volatile boolean xaRecoveryScanPaging = false;
     
     private String commitMarkableResourceTableName = "xids";
 
@@ -109,6 +113,8 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
 
 	private int commitMarkableResourceRecordDeleteBatchSize = 30000;
 
+	private volatile int commitMarkableResourceRecordAsyncDeleteThreshold = 0;
+
 	private Map<String, Boolean> performImmediateCleanupOfCommitMarkableResourceBranchesMap = new HashMap<String, Boolean>();
 
 	private Map<String, Integer> commitMarkableResourceRecordDeleteBatchSizeMap = new HashMap<String, Integer>();
@@ -819,6 +825,31 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
         this.xaTransactionTimeoutEnabled = xaTransactionTimeoutEnabled;
     }
 
+    /**
+     * Returns if new transactions prepare and commit their branches on different
+     * resource managers in parallel rather than one after the other.
+     *
+     * Default: false.
+     *
+     * @return true to complete the branches of a transaction in parallel, false to complete them in order.
+     */
+    public boolean isParallelBranchCompletion()
+    {
+        return parallelBranchCompletion;
+    }
+
+    /**
+     * Sets if new transactions prepare and commit their branches on different
+     * resource managers in parallel. Individual transactions can still change
+     * this through TransactionImple.setParallelBranchCompletion.
+     *
+     * @param parallelBranchCompletion true to complete branches in parallel, false to complete them in order.
+     */
+    public void setParallelBranchCompletion(boolean parallelBranchCompletion)
+    {
+        this.parallelBranchCompletion = parallelBranchCompletion;
+    }
+
     /**
      * Returns the class name of the marker interface used to indicate a LastResource.
      *
@@ -1014,6 +1045,29 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
         this.orphanSafetyInterval = orphanSafetyInterval;
     }
 
+    /**
+     * Returns if the recovery scan of a resource manager keeps calling
+     * recover(TMNOFLAGS) after recover(TMSTARTRSCAN) to collect Xids the
+     * resource manager returns a page at a time.
+     *
+     * Default: false.
+     *
+     * @return true to page through the Xids of each resource manager, false to make a single recover call.
+     */
+    public boolean isXaRecoveryScanPaging() {
+        return xaRecoveryScanPaging;
+    }
+
+    /**
+     * Sets if the recovery scan of a resource manager pages through its in-doubt
+     * Xids with recover(TMNOFLAGS) until no new Xids are returned.
+     *
+     * @param xaRecoveryScanPaging true to page through the Xids of each resource manager, false to make a single recover call.
+     */
+    public void setXaRecoveryScanPaging(boolean xaRecoveryScanPaging) {
+        this.xaRecoveryScanPaging = xaRecoveryScanPaging;
+    }
+
 	/**
 	 * Get the name of the table to use for storing commit markable resources
 	 * commit state notifiers in.
@@ -1215,6 +1269,32 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
 		}
 	}
 
+	/**
+	 * If this is a positive number, the completed branches the recovery module
+	 * is notified of are deleted from the database of a CommitMarkableResource
+	 * on a background thread as soon as this many are waiting, rather than on
+	 * the next recovery scan.
+	 * 
+	 * Default: 0.
+	 * 
+	 * @return the number of completed branches to collect before deleting them, 0 to wait for recovery.
+	 */
+	public int getCommitMarkableResourceRecordAsyncDeleteThreshold() {
+		return commitMarkableResourceRecordAsyncDeleteThreshold;
+	}
+
+	/**
+	 * Set the number of completed branches of a CommitMarkableResource to
+	 * collect before deleting them from its database on a background thread.
+	 * 
+	 * @param commitMarkableResourceRecordAsyncDeleteThreshold
+	 *            0 to leave deletion to the recovery scan.
+	 */
+	public void setCommitMarkableResourceRecordAsyncDeleteThreshold(
+			int commitMarkableResourceRecordAsyncDeleteThreshold) {
+		this.commitMarkableResourceRecordAsyncDeleteThreshold = commitMarkableResourceRecordAsyncDeleteThreshold;
+	}
+
 	/**
 	 * If this is enabled we will tell the recovery module when we complete
 	 * branches. This means they will not in normal mode need fetching from the
@@ -57,5 +57,9 @@ public interface JTAEnvironmentBeanMBean
 
     boolean isXaTransactionTimeoutEnabled();
 
+    boolean isParallelBranchCompletion();
+
+    boolean isXaRecoveryScanPaging();
+
     String getLastResourceOptimisationInterfaceClassName();
 }
@@ -45,4 +45,22 @@ public interface XAResourceOrphanFilter
      * @return a Vote in accordance with the guidelines above.
      */
     public Vote checkXid(Xid xid);
+
+    /**
+     * Called by the XARecoveryModule with all of the in-doubt Xids of a resource manager
+     * that it may roll back on this recovery pass. Filters which consult the object store
+     * or another remote service should override this to answer for the whole batch at once.
+     *
+     * @param xids The in-doubt xids.
+     * @return a Vote for each xid, in the same order, in accordance with the guidelines of checkXid.
+     */
+    public default Vote[] checkXids(Xid[] xids) {
+        Vote[] votes = new Vote[xids.length];
+
+        for (int i = 0; i < xids.length; i++) {
+            votes[i] = checkXid(xids[i]);
+        }
+
+        return votes;
+    }
 }
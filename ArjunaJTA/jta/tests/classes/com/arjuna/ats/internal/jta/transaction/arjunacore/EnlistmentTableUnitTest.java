@@ -0,0 +1,255 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.arjuna.ats.internal.jta.transaction.arjunacore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.jboss.tm.XAResourceWrapper;
+import org.junit.Test;
+
+import com.arjuna.ats.internal.jta.xa.TxInfo;
+
+public class EnlistmentTableUnitTest
+{
+    @Test
+    public void testLookup() throws Exception
+    {
+        EnlistmentTable table = new EnlistmentTable();
+        XAResource branch = new RMResource("rm1");
+        XAResource joined = new RMResource("rm1");
+        TxInfo branchInfo = new TxInfo(null);
+        TxInfo joinedInfo = new TxInfo(null);
+
+        table.add(branch, branchInfo);
+        table.addDuplicate(joined, joinedInfo);
+
+        assertSame(branchInfo, table.get(branch));
+        assertSame(joinedInfo, table.get(joined));
+        assertNull(table.get(new RMResource("rm1")));
+        assertEquals(1, table.size());
+        assertEquals(1, table.asMap().size());
+        assertSame(branchInfo, table.asMap().get(branch));
+    }
+
+    @Test
+    public void testFindSameRM() throws Exception
+    {
+        EnlistmentTable table = new EnlistmentTable();
+        TxInfo rm2 = new TxInfo(null);
+
+        table.add(new RMResource("rm1"), new TxInfo(null));
+        table.add(new RMResource("rm2"), rm2);
+
+        assertSame(rm2, table.findSameRM(new RMResource("rm2")));
+        assertNull(table.findSameRM(new RMResource("rm3")));
+    }
+
+    @Test
+    public void testOrdinaryResourcesAskedAsUsual() throws Exception
+    {
+        EnlistmentTable table = new EnlistmentTable();
+        AtomicInteger calls = new AtomicInteger();
+
+        table.add(new RMResource("rm1", calls), new TxInfo(null));
+
+        // the second resource is compared with the first, and nothing more
+        assertNull(table.findSameRM(new RMResource("rm2")));
+        assertEquals(1, calls.get());
+
+        table.add(new RMResource("rm2", calls), new TxInfo(null));
+
+        // and the third with the first two
+        assertNull(table.findSameRM(new RMResource("rm3")));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testNeverSameRMAskedOncePerJndiName() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++)
+        {
+            EnlistmentTable table = new EnlistmentTable();
+
+            for (int j = 0; j < 3; j++)
+                table.add(new WrapperResource("never", "java:/NeverSameRM", true, calls), new TxInfo(null));
+
+            for (int j = 0; j < 5; j++)
+                assertNull(table.findSameRM(new RMResource("rm1")));
+        }
+
+        // only the first resource of that datasource is asked whether it is the same RM as itself
+        assertEquals(1, calls.get());
+
+        // which says nothing about resources of other datasources, which are asked as usual
+        EnlistmentTable table = new EnlistmentTable();
+        AtomicInteger otherCalls = new AtomicInteger();
+        TxInfo joinable = new TxInfo(null);
+
+        table.add(new WrapperResource("rm2", "java:/SameRM", false, otherCalls), joinable);
+
+        assertSame(joinable, table.findSameRM(new RMResource("rm2")));
+        assertSame(joinable, table.findSameRM(new RMResource("rm2")));
+
+        // once with itself and once for each search
+        assertEquals(3, otherCalls.get());
+    }
+
+    @Test
+    public void testEnlistJoinsBranch() throws Exception
+    {
+        TransactionImple tx = new TransactionImple(0);
+        RMResource first = new RMResource("rm1");
+        RMResource second = new RMResource("rm1");
+
+        assertTrue(tx.enlistResource(first));
+        assertTrue(tx.enlistResource(second));
+
+        assertEquals(1, tx.getResources().size());
+        assertEquals(XAResource.TMJOIN, second.startFlags);
+
+        assertTrue(tx.delistResource(first, XAResource.TMSUSPEND));
+        assertEquals(TxInfo.ASSOCIATION_SUSPENDED, tx.getXAResourceState(first));
+
+        assertTrue(tx.enlistResource(first));
+        assertEquals(XAResource.TMRESUME, first.startFlags);
+        assertEquals(TxInfo.ASSOCIATED, tx.getXAResourceState(first));
+
+        tx.rollback();
+    }
+
+    private static class RMResource implements XAResource
+    {
+        RMResource(String rm)
+        {
+            this(rm, new AtomicInteger());
+        }
+
+        RMResource(String rm, AtomicInteger calls)
+        {
+            this.rm = rm;
+            this.calls = calls;
+        }
+
+        public boolean isSameRM(XAResource xares) throws XAException
+        {
+            calls.incrementAndGet();
+
+            return (xares instanceof RMResource) && rm.equals(((RMResource) xares).rm);
+        }
+
+        public void start(Xid xid, int flags) throws XAException
+        {
+            startFlags = flags;
+        }
+
+        public void end(Xid xid, int flags) throws XAException
+        {
+        }
+
+        public int prepare(Xid xid) throws XAException
+        {
+            return XA_OK;
+        }
+
+        public void commit(Xid xid, boolean onePhase) throws XAException
+        {
+        }
+
+        public void rollback(Xid xid) throws XAException
+        {
+        }
+
+        public void forget(Xid xid) throws XAException
+        {
+        }
+
+        public Xid[] recover(int flag) throws XAException
+        {
+            return new Xid[0];
+        }
+
+        public int getTransactionTimeout() throws XAException
+        {
+            return 0;
+        }
+
+        public boolean setTransactionTimeout(int seconds) throws XAException
+        {
+            return false;
+        }
+
+        private final String rm;
+        private final AtomicInteger calls;
+        int startFlags = -1;
+    }
+
+    private static class WrapperResource extends RMResource implements XAResourceWrapper
+    {
+        WrapperResource(String rm, String jndiName, boolean overrideSameRM, AtomicInteger calls)
+        {
+            super(rm, calls);
+
+            this.jndiName = jndiName;
+            this.overrideSameRM = overrideSameRM;
+        }
+
+        public boolean isSameRM(XAResource xares) throws XAException
+        {
+            return super.isSameRM(xares) && !overrideSameRM;
+        }
+
+        public XAResource getResource()
+        {
+            return null;
+        }
+
+        public String getProductName()
+        {
+            return null;
+        }
+
+        public String getProductVersion()
+        {
+            return null;
+        }
+
+        public String getJndiName()
+        {
+            return jndiName;
+        }
+
+        private final String jndiName;
+        private final boolean overrideSameRM;
+    }
+}
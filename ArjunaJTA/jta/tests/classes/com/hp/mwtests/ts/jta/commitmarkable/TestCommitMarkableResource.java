@@ -19,11 +19,13 @@
  */
 package com.hp.mwtests.ts.jta.commitmarkable;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.util.Enumeration;
 import java.util.Vector;
 
@@ -39,6 +41,8 @@ import org.postgresql.ds.PGSimpleDataSource;
 
 import com.arjuna.ats.arjuna.recovery.RecoveryModule;
 import com.arjuna.ats.internal.jta.recovery.arjunacore.CommitMarkableResourceRecordRecoveryModule;
+import com.arjuna.ats.jta.common.JTAEnvironmentBean;
+import com.arjuna.common.internal.util.propertyservice.BeanPopulator;
 
 public class TestCommitMarkableResource extends TestCommitMarkableResourceBase {
 	// @Ignore
@@ -50,6 +54,65 @@ public class TestCommitMarkableResource extends TestCommitMarkableResourceBase {
 		doTest(dataSource);
 	}
 
+	@Test
+	public void testH2AsyncDelete() throws Exception {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:JBTMDB;MVCC=TRUE;DB_CLOSE_DELAY=-1");
+
+		JTAEnvironmentBean jtaEnvironmentBean = BeanPopulator
+				.getDefaultInstance(JTAEnvironmentBean.class);
+		jtaEnvironmentBean.setCommitMarkableResourceRecordAsyncDeleteThreshold(2);
+
+		try {
+			Utils.createTables(dataSource.getConnection());
+			new InitialContext().rebind("commitmarkableresource", dataSource);
+
+			javax.transaction.TransactionManager tm = com.arjuna.ats.jta.TransactionManager
+					.transactionManager();
+
+			for (int i = 0; i < 2; i++) {
+				tm.begin();
+
+				Connection localJDBCConnection = dataSource.getConnection();
+				localJDBCConnection.setAutoCommit(false);
+				tm.getTransaction().enlistResource(
+						new JDBCConnectableResource(localJDBCConnection));
+				tm.getTransaction().enlistResource(new DummyXAResource());
+
+				localJDBCConnection.createStatement().execute(
+						"INSERT INTO foo (bar) VALUES (1)");
+
+				tm.commit();
+			}
+
+			// The second completed branch should trigger the deletion of both
+			// without waiting for a recovery scan
+			long timeout = System.currentTimeMillis() + 10000;
+			int remaining;
+
+			do {
+				Thread.sleep(100);
+				remaining = countXids(dataSource);
+			} while (remaining > 0 && System.currentTimeMillis() < timeout);
+
+			assertEquals(0, remaining);
+		} finally {
+			jtaEnvironmentBean.setCommitMarkableResourceRecordAsyncDeleteThreshold(0);
+		}
+	}
+
+	private int countXids(DataSource dataSource) throws Exception {
+		Connection connection = dataSource.getConnection();
+		try {
+			ResultSet rs = connection.createStatement().executeQuery(
+					"SELECT count(*) from xids");
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			connection.close();
+		}
+	}
+
 	@Ignore
 	@Test
 	public void testPostgres() throws Exception {
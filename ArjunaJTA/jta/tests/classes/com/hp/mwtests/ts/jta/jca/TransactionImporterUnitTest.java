@@ -36,6 +36,7 @@ import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class TransactionImporterUnitTest {
@@ -114,4 +115,38 @@ public class TransactionImporterUnitTest {
         assertTrue(importedTransaction1 == importedTransaction2);
         importedTransaction2.doCommit();
     }
+
+    @Test
+    public void testLookupWithOtherXidImplementation() throws XAException {
+        final XidImple xid = new XidImple(new Uid());
+
+        SubordinateTransaction subordinateTransaction = SubordinationManager.getTransactionImporter().importTransaction(xid);
+
+        try {
+            // the same global transaction is found whatever the branch qualifier
+            Xid otherBranch = new Xid() {
+                @Override
+                public int getFormatId() {
+                    return xid.getFormatId();
+                }
+
+                @Override
+                public byte[] getGlobalTransactionId() {
+                    return xid.getGlobalTransactionId();
+                }
+
+                @Override
+                public byte[] getBranchQualifier() {
+                    return new byte[] {1, 2, 3};
+                }
+            };
+
+            assertTrue(subordinateTransaction == SubordinationManager.getTransactionImporter().getImportedTransaction(otherBranch));
+            assertTrue(subordinateTransaction == SubordinationManager.getTransactionImporter().importTransaction(otherBranch));
+        } finally {
+            SubordinationManager.getTransactionImporter().removeImportedTransaction(xid);
+        }
+
+        assertNull(SubordinationManager.getTransactionImporter().getImportedTransaction(xid));
+    }
 }
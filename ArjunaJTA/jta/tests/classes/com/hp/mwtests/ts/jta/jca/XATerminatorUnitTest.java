@@ -734,6 +734,40 @@ public class XATerminatorUnitTest
 
     }
 
+    @Test
+    public void testBatchPrepareAndCommit () throws Exception {
+        XATerminatorImple xa = new XATerminatorImple();
+        TransactionImporter imp = SubordinationManager.getTransactionImporter();
+        XidImple[] xids = new XidImple[4];
+        XAResourceImple[] resources = new XAResourceImple[3];
+
+        for (int i = 0; i < resources.length; i++) {
+            xids[i] = new XidImple(new Uid());
+            resources[i] = new XAResourceImple(XAResource.XA_OK, XAResource.XA_OK);
+
+            SubordinateTransaction subordinateTransaction = imp.importTransaction(xids[i]);
+            subordinateTransaction.enlistResource(resources[i]);
+            subordinateTransaction.enlistResource(new XAResourceImple(XAResource.XA_OK, XAResource.XA_OK));
+        }
+
+        // never imported
+        xids[3] = new XidImple(new Uid());
+
+        int[] prepared = xa.prepare(xids);
+
+        for (int i = 0; i < resources.length; i++)
+            assertEquals(XAResource.XA_OK, prepared[i]);
+        assertEquals(XAException.XAER_INVAL, prepared[3]);
+
+        int[] committed = xa.commit(Arrays.copyOf(xids, resources.length), false);
+
+        for (int i = 0; i < resources.length; i++) {
+            assertEquals(XAResource.XA_OK, committed[i]);
+            assertTrue(resources[i].wasCommitted());
+            assertEquals(null, imp.getImportedTransaction(xids[i]));
+        }
+    }
+
     private class XAResourceImple implements XAResource {
 
         private final int prepareFlag;
@@ -43,6 +43,8 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
@@ -53,6 +55,7 @@ import org.jboss.tm.XAResourceWrapper;
 import org.junit.Test;
 
 import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.coordinator.AddOutcome;
 import com.arjuna.ats.arjuna.coordinator.BasicAction;
@@ -283,14 +286,14 @@ public class XARecoveryModuleUnitTest
         Class[] parameterTypes = new Class[2];
         
         parameterTypes[0] = XAResource.class;
-        parameterTypes[1] = Xid.class;
+        parameterTypes[1] = Xid[].class;
         
-        Method m = xarm.getClass().getDeclaredMethod("handleOrphan", parameterTypes);
+        Method m = xarm.getClass().getDeclaredMethod("handleOrphans", parameterTypes);
         m.setAccessible(true);
         
         Object[] parameters = new Object[2];
         parameters[0] = new RecoveryXAResource();
-        parameters[1] = new XidImple();
+        parameters[1] = new Xid[] { new XidImple() };
         
         m.invoke(xarm, parameters);
     }
@@ -512,6 +515,149 @@ public class XARecoveryModuleUnitTest
         jtaPropertyManager.getJTAEnvironmentBean().setXaRecoveryNodes(xaRecoveryNodes);
     }
 
+    @Test
+    public void testPagedRecoveryScan() throws Exception {
+        final Xid a = new XidImple(new Uid());
+        final Xid b = new XidImple(new Uid());
+        final Xid c = new XidImple(new Uid());
+        final ScanXAResource xares = new ScanXAResource(null, new Xid[]{a, b}, new Xid[]{c}, new Xid[]{a});
+        final List<Integer> batches = new ArrayList<Integer>();
+
+        Field safetyIntervalMillis = RecoveryXids.class.getDeclaredField("safetyIntervalMillis");
+        safetyIntervalMillis.setAccessible(true);
+        Object safetyInterval = safetyIntervalMillis.get(null);
+        safetyIntervalMillis.set(null, 0);
+        jtaPropertyManager.getJTAEnvironmentBean().setXaRecoveryScanPaging(true);
+
+        try {
+            XARecoveryModule xarm = new XARecoveryModule();
+            xarm.addXAResourceRecoveryHelper(new ScanRecoveryHelper(xares));
+            xarm.addXAResourceOrphanFilter(new DummyXAResourceOrphanFilter(XAResourceOrphanFilter.Vote.ROLLBACK) {
+                @Override
+                public Vote[] checkXids(Xid[] xids) {
+                    batches.add(xids.length);
+                    return super.checkXids(xids);
+                }
+            });
+
+            xarm.periodicWorkFirstPass();
+            xarm.periodicWorkSecondPass();
+
+            // the repeated page stops the scan and every orphan is voted on at once
+            assertEquals(3, xares.recoverCalls);
+            assertEquals(Arrays.asList(3), batches);
+            assertEquals(3, xares.rolledBack.size());
+            assertTrue(xares.rolledBack.containsAll(Arrays.asList(a, b, c)));
+        } finally {
+            jtaPropertyManager.getJTAEnvironmentBean().setXaRecoveryScanPaging(false);
+            safetyIntervalMillis.set(null, safetyInterval);
+        }
+    }
+
+    @Test
+    public void testParallelRecoveryScans() throws Exception {
+        // each scan waits for the other one, so they only both succeed if they run at the same time
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ScanXAResource one = new ScanXAResource(barrier, new Xid[]{new XidImple(new Uid())});
+        ScanXAResource two = new ScanXAResource(barrier, new Xid[]{new XidImple(new Uid())});
+
+        recoveryPropertyManager.getRecoveryEnvironmentBean().setParallelRecovery(true);
+
+        try {
+            XARecoveryModule xarm = new XARecoveryModule();
+            xarm.addXAResourceRecoveryHelper(new ScanRecoveryHelper(one, two));
+
+            xarm.periodicWorkFirstPass();
+
+            assertTrue(one.scanned);
+            assertTrue(two.scanned);
+
+            xarm.periodicWorkSecondPass();
+
+            // no orphan filters are registered so nothing may be rolled back
+            assertTrue(one.rolledBack.isEmpty());
+            assertTrue(two.rolledBack.isEmpty());
+        } finally {
+            recoveryPropertyManager.getRecoveryEnvironmentBean().setParallelRecovery(false);
+        }
+    }
+
+    class ScanRecoveryHelper implements XAResourceRecoveryHelper
+    {
+        public ScanRecoveryHelper (XAResource... xares)
+        {
+            _xares = xares;
+        }
+
+        @Override
+        public boolean initialise(String p) throws Exception
+        {
+            return true;
+        }
+
+        @Override
+        public XAResource[] getXAResources() throws Exception
+        {
+            return _xares;
+        }
+
+        private final XAResource[] _xares;
+    }
+
+    class ScanXAResource extends RecoveryXAResource
+    {
+        public ScanXAResource (CyclicBarrier barrier, Xid[]... pages)
+        {
+            _barrier = barrier;
+            _pages = pages;
+        }
+
+        @Override
+        public Xid[] recover(int flag) throws XAException
+        {
+            if (flag == XAResource.TMENDRSCAN)
+                return new Xid[0];
+
+            if (flag == XAResource.TMSTARTRSCAN) {
+                _page = 0;
+
+                if (_barrier != null) {
+                    try {
+                        _barrier.await(10, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new XAException(XAException.XAER_RMFAIL);
+                    }
+                }
+
+                scanned = true;
+            }
+
+            recoverCalls++;
+
+            return (_page < _pages.length) ? _pages[_page++] : new Xid[0];
+        }
+
+        @Override
+        public void rollback(Xid xid) throws XAException
+        {
+            rolledBack.add(xid);
+        }
+
+        @Override
+        public boolean isSameRM(XAResource xares) throws XAException
+        {
+            return xares == this;
+        }
+
+        final List<Xid> rolledBack = new ArrayList<Xid>();
+        volatile boolean scanned;
+        int recoverCalls;
+
+        private final CyclicBarrier _barrier;
+        private final Xid[][] _pages;
+        private int _page;
+    }
+
     class DummyXAResourceOrphanFilter implements XAResourceOrphanFilter
     {
         public DummyXAResourceOrphanFilter ()
@@ -21,6 +21,7 @@
 package com.hp.mwtests.ts.jta.recovery;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,9 +38,13 @@ import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
 import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
+import com.arjuna.ats.arjuna.objectstore.StoreManager;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
 import com.arjuna.ats.arjuna.recovery.RecoveryManager;
 import com.arjuna.ats.internal.jta.recovery.arjunacore.SubordinateJTAXAResourceOrphanFilter;
 import com.arjuna.ats.internal.jta.recovery.arjunacore.SubordinationManagerXAResourceOrphanFilter;
+import com.arjuna.ats.internal.jta.transaction.arjunacore.AtomicAction;
 import com.arjuna.ats.internal.jta.transaction.arjunacore.jca.SubordinateTransaction;
 import com.arjuna.ats.internal.jta.transaction.arjunacore.jca.SubordinationManager;
 import com.arjuna.ats.jta.xa.XidImple;
@@ -108,6 +113,39 @@ public class XAResourceOrphanFilterTest
         assertEquals(XAResourceOrphanFilter.Vote.ABSTAIN, orphanFilter.checkXid(jtaFormatId));
     }
 
+    @Test
+    public void testJTATransactionLogOrphanFilterBulk() throws Exception
+    {
+        XAResourceOrphanFilter orphanFilter = new JTATransactionLogXAResourceOrphanFilter();
+        RecoveryStore recoveryStore = StoreManager.getRecoveryStore();
+        String transactionType = new AtomicAction().type();
+        Uid logged = new Uid();
+
+        assertTrue(recoveryStore.write_committed(logged, transactionType, new OutputObjectState()));
+
+        try {
+            Xid[] xids = new Xid[] {
+                    XATxConverter.getXid(logged, false, XATxConverter.FORMAT_ID),
+                    XATxConverter.getXid(new Uid(), false, XATxConverter.FORMAT_ID),
+                    XATxConverter.getXid(logged, false, 0)
+            };
+
+            XAResourceOrphanFilter.Vote[] votes = orphanFilter.checkXids(xids);
+
+            assertEquals(XAResourceOrphanFilter.Vote.LEAVE_ALONE, votes[0]);
+            assertEquals(XAResourceOrphanFilter.Vote.ABSTAIN, votes[1]);
+            assertEquals(XAResourceOrphanFilter.Vote.ABSTAIN, votes[2]);
+
+            for (int i = 0; i < xids.length; i++)
+                assertEquals(orphanFilter.checkXid(xids[i]), votes[i]);
+        } finally {
+            recoveryStore.remove_committed(logged, transactionType);
+        }
+
+        assertEquals(XAResourceOrphanFilter.Vote.ABSTAIN,
+                orphanFilter.checkXids(new Xid[] {XATxConverter.getXid(logged, false, XATxConverter.FORMAT_ID)})[0]);
+    }
+
     @Test
     public void testJTAActionStatusServiceXAResourceOrphanFilter() {
         XAResourceOrphanFilter orphanFilter = new JTAActionStatusServiceXAResourceOrphanFilter();
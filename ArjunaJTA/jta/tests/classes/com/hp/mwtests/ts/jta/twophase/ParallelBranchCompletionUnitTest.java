@@ -0,0 +1,304 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.hp.mwtests.ts.jta.twophase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.jboss.tm.FirstResource;
+import org.jboss.tm.LastResource;
+import org.jboss.tm.XAResourceWrapper;
+import org.junit.Test;
+
+import com.arjuna.ats.internal.arjuna.thread.ThreadActionData;
+import com.arjuna.ats.internal.jta.transaction.arjunacore.TransactionImple;
+
+public class ParallelBranchCompletionUnitTest
+{
+    @Test
+    public void testDifferentResourceManagers() throws Exception
+    {
+        // every branch waits for the others, so prepare and commit only get through if they run together
+        CyclicBarrier prepared = new CyclicBarrier(3);
+        CyclicBarrier committed = new CyclicBarrier(3);
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        TransactionImple tx = begin();
+
+        for (int i = 0; i < 3; i++)
+            assertTrue(tx.enlistResource(new BranchResource("rm" + i, "java:/rm" + i, prepared, committed, events)));
+
+        tx.commit();
+
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void testSameJndiName() throws Exception
+    {
+        // the first branch of the shared resource manager can only prepare alongside the other resource manager
+        CyclicBarrier prepared = new CyclicBarrier(2);
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        TransactionImple tx = begin();
+
+        // isSameRM is overridden, so the two branches are only known to share a resource manager by their JNDI name
+        BranchResource first = new BranchResource("shared1", "java:/shared", prepared, null, events);
+        BranchResource second = new BranchResource("shared2", "java:/shared", null, null, events);
+        BranchResource other = new BranchResource("other", "java:/other", prepared, null, events);
+
+        assertTrue(tx.enlistResource(first));
+        assertTrue(tx.enlistResource(second));
+        assertTrue(tx.enlistResource(other));
+
+        assertEquals(3, tx.getResources().size());
+
+        tx.commit();
+
+        assertTrue(events.indexOf("prepare shared1") < events.indexOf("prepare shared2"));
+        assertTrue(events.indexOf("commit shared1") < events.indexOf("commit shared2"));
+
+        // completed one after the other on the same thread
+        assertSame(first.prepareThread, second.prepareThread);
+        assertSame(first.commitThread, second.commitThread);
+        assertFalse("two branches of one resource manager were completed at once", BranchResource.overlapped.get());
+    }
+
+    @Test
+    public void testFirstResource() throws Exception
+    {
+        testOrderedBranches(new FirstBranchResource());
+    }
+
+    @Test
+    public void testLastResource() throws Exception
+    {
+        testOrderedBranches(new LastBranchResource());
+    }
+
+    private void testOrderedBranches(BranchResource ordered) throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        TransactionImple tx = begin();
+        BranchResource other = new BranchResource("other", "java:/other", null, null, events);
+
+        assertTrue(tx.isParallelBranchCompletion());
+        assertTrue(tx.enlistResource(ordered));
+        assertTrue(tx.enlistResource(other));
+
+        // the resource relies on its place in the intentions list, so the branches are completed in order
+        assertFalse(tx.isParallelBranchCompletion());
+
+        tx.setParallelBranchCompletion(true);
+
+        assertFalse(tx.isParallelBranchCompletion());
+
+        tx.commit();
+
+        for (BranchResource resource : new BranchResource[] { ordered, other })
+        {
+            assertSame(Thread.currentThread(), resource.prepareThread);
+            assertSame(Thread.currentThread(), resource.commitThread);
+        }
+    }
+
+    private static TransactionImple begin()
+    {
+        ThreadActionData.purgeActions();
+
+        TransactionImple tx = new TransactionImple(0);
+
+        tx.setParallelBranchCompletion(true);
+
+        return tx;
+    }
+
+    private static class BranchResource implements XAResourceWrapper
+    {
+        BranchResource(String name, String jndiName, CyclicBarrier prepared, CyclicBarrier committed, List<String> events)
+        {
+            this.name = name;
+            this.jndiName = jndiName;
+            this.prepared = prepared;
+            this.committed = committed;
+            this.events = events;
+        }
+
+        public int prepare(Xid xid) throws XAException
+        {
+            prepareThread = Thread.currentThread();
+
+            complete("prepare", prepared);
+
+            return XA_OK;
+        }
+
+        public void commit(Xid xid, boolean onePhase) throws XAException
+        {
+            commitThread = Thread.currentThread();
+
+            complete("commit", committed);
+        }
+
+        /*
+         * Branches of the same resource manager record that they overlapped,
+         * and take a little time so that they would if they were run together.
+         */
+        private void complete(String phase, CyclicBarrier barrier) throws XAException
+        {
+            AtomicInteger active = activeFor(jndiName);
+
+            if (active.incrementAndGet() > 1)
+                overlapped.set(true);
+
+            try
+            {
+                if (barrier != null)
+                    barrier.await(10, TimeUnit.SECONDS);
+                else
+                    Thread.sleep(50);
+            }
+            catch (Exception e)
+            {
+                XAException xae = new XAException(XAException.XAER_RMERR);
+
+                xae.initCause(e);
+
+                throw xae;
+            }
+            finally
+            {
+                active.decrementAndGet();
+            }
+
+            events.add(phase + " " + name);
+        }
+
+        private static synchronized AtomicInteger activeFor(String jndiName)
+        {
+            AtomicInteger active = activeByJndiName.get(jndiName);
+
+            if (active == null)
+                activeByJndiName.put(jndiName, active = new AtomicInteger());
+
+            return active;
+        }
+
+        public boolean isSameRM(XAResource xares) throws XAException
+        {
+            return false;
+        }
+
+        public void start(Xid xid, int flags) throws XAException
+        {
+        }
+
+        public void end(Xid xid, int flags) throws XAException
+        {
+        }
+
+        public void rollback(Xid xid) throws XAException
+        {
+        }
+
+        public void forget(Xid xid) throws XAException
+        {
+        }
+
+        public Xid[] recover(int flag) throws XAException
+        {
+            return new Xid[0];
+        }
+
+        public int getTransactionTimeout() throws XAException
+        {
+            return 0;
+        }
+
+        public boolean setTransactionTimeout(int seconds) throws XAException
+        {
+            return false;
+        }
+
+        public XAResource getResource()
+        {
+            return this;
+        }
+
+        public String getProductName()
+        {
+            return null;
+        }
+
+        public String getProductVersion()
+        {
+            return null;
+        }
+
+        public String getJndiName()
+        {
+            return jndiName;
+        }
+
+        static final AtomicBoolean overlapped = new AtomicBoolean();
+        private static final Map<String, AtomicInteger> activeByJndiName = new HashMap<String, AtomicInteger>();
+
+        private final String name;
+        private final String jndiName;
+        private final CyclicBarrier prepared;
+        private final CyclicBarrier committed;
+        private final List<String> events;
+
+        volatile Thread prepareThread;
+        volatile Thread commitThread;
+    }
+
+    private static class FirstBranchResource extends BranchResource implements FirstResource
+    {
+        FirstBranchResource()
+        {
+            super("first", "java:/first", null, null, Collections.synchronizedList(new ArrayList<String>()));
+        }
+    }
+
+    private static class LastBranchResource extends BranchResource implements LastResource
+    {
+        LastBranchResource()
+        {
+            super("last", "java:/last", null, null, Collections.synchronizedList(new ArrayList<String>()));
+        }
+    }
+}